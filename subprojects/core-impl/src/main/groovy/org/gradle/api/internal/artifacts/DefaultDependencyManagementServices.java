@@ -35,14 +35,24 @@ import org.gradle.api.internal.artifacts.dsl.dependencies.DefaultDependencyHandl
 import org.gradle.api.internal.artifacts.dsl.dependencies.DependencyFactory;
 import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
 import org.gradle.api.internal.artifacts.ivyservice.*;
+import org.gradle.api.internal.artifacts.ivyservice.artifactcache.ArtifactCacheAccessTracker;
+import org.gradle.api.internal.artifacts.ivyservice.artifactcache.ArtifactCacheCleaner;
+import org.gradle.api.internal.artifacts.ivyservice.artifactcache.ArtifactCacheEvictionPolicy;
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.ModuleResolutionCache;
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.SingleFileBackedModuleResolutionCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.BinaryModuleDescriptorStore;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.InMemoryModuleDescriptorCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.LayeredModuleDescriptorCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleDescriptorCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.RepositoryAffinityCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.SingleFileBackedRepositoryAffinityCache;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.*;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.dependencies.*;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultDependencyResolver;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultLocalMavenCacheLocator;
 import org.gradle.api.internal.artifacts.repositories.DefaultInternalRepository;
 import org.gradle.api.internal.artifacts.repositories.DefaultResolverFactory;
+import org.gradle.api.internal.artifacts.repositories.RepositoryListingCache;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.file.IdentityFileResolver;
 import org.gradle.api.internal.notations.*;
@@ -50,9 +60,11 @@ import org.gradle.api.internal.notations.api.NotationParser;
 import org.gradle.api.internal.project.DefaultServiceRegistry;
 import org.gradle.api.internal.project.ServiceRegistry;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
 import org.gradle.cache.internal.FileLockManager;
 import org.gradle.listener.ListenerManager;
 import org.gradle.logging.ProgressLoggerFactory;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.util.TimeProvider;
 import org.gradle.util.WrapUtil;
 import org.jfrog.wharf.ivy.lock.LockHolderFactory;
@@ -154,10 +166,34 @@ public class DefaultDependencyManagementServices extends DefaultServiceRegistry
 
     protected DefaultCacheLockingManager createCacheLockingManager() {
         return new DefaultCacheLockingManager(
-                get(FileLockManager.class)
+                get(FileLockManager.class),
+                get(DependencyResolutionInstrumentation.class)
         );
     }
     
+    protected ArtifactCacheAccessTracker createArtifactCacheAccessTracker() {
+        ArtifactCacheCleaner cleaner = null;
+        ArtifactCacheEvictionPolicy evictionPolicy = ArtifactCacheEvictionPolicy.fromProperties(System.getProperties());
+        if (evictionPolicy.isEnabled() && !get(StartParameter.class).isOffline()) {
+            // Never evict when offline, as evicted files cannot be downloaded again
+            cleaner = new ArtifactCacheCleaner(
+                    get(ArtifactCacheMetaData.class),
+                    get(CacheLockingManager.class),
+                    get(LockHolderFactory.class),
+                    get(TimeProvider.class),
+                    evictionPolicy);
+        }
+        ArtifactCacheAccessTracker accessTracker = new ArtifactCacheAccessTracker(
+                get(ArtifactCacheMetaData.class),
+                get(CacheLockingManager.class),
+                get(TimeProvider.class),
+                cleaner,
+                get(ExecutorFactory.class)
+        );
+        accessTracker.startCleanup();
+        return accessTracker;
+    }
+
     protected ModuleResolutionCache createModuleResolutionCache() {
         return new SingleFileBackedModuleResolutionCache(
                 get(ArtifactCacheMetaData.class),
@@ -166,13 +202,45 @@ public class DefaultDependencyManagementServices extends DefaultServiceRegistry
         );
     }
 
-    protected SettingsConverter createSettingsConverter() {
-        return new DefaultSettingsConverter(
-                get(ProgressLoggerFactory.class),
-                new IvySettingsFactory(
+    protected ModuleDescriptorCache createModuleDescriptorCache() {
+        return new LayeredModuleDescriptorCache(
+                new InMemoryModuleDescriptorCache(get(CrossBuildInMemoryCaches.class)),
+                new BinaryModuleDescriptorStore(
                         get(ArtifactCacheMetaData.class),
-                        get(LockHolderFactory.class)),
-                get(ModuleResolutionCache.class));
+                        get(CacheLockingManager.class)));
+    }
+
+    protected RepositoryAffinityCache createRepositoryAffinityCache() {
+        return new SingleFileBackedRepositoryAffinityCache(
+                get(ArtifactCacheMetaData.class),
+                get(CacheLockingManager.class)
+        );
+    }
+
+    protected RepositoryListingCache createRepositoryListingCache() {
+        return new RepositoryListingCache(
+                get(TimeProvider.class),
+                get(ExecutorFactory.class)
+        );
+    }
+
+    protected SettingsConverter createSettingsConverter() {
+        return new PerThreadSettingsConverter(new Factory<SettingsConverter>() {
+            public SettingsConverter create() {
+                return new DefaultSettingsConverter(
+                        get(ProgressLoggerFactory.class),
+                        new IvySettingsFactory(
+                                get(ArtifactCacheMetaData.class),
+                                get(LockHolderFactory.class)),
+                        get(ModuleResolutionCache.class),
+                        get(ModuleDescriptorCache.class),
+                        get(RepositoryAffinityCache.class),
+                        get(RepositoryListingCache.class),
+                        get(DependencyResolutionInstrumentation.class),
+                        get(ArtifactCacheAccessTracker.class),
+                        get(StartParameter.class).isOffline());
+            }
+        });
     }
 
     protected IvyFactory createIvyFactory() {
@@ -261,13 +329,15 @@ public class DefaultDependencyManagementServices extends DefaultServiceRegistry
                     clientModuleRegistry);
 
             ResolvedArtifactFactory resolvedArtifactFactory = new ResolvedArtifactFactory(
-                    get(CacheLockingManager.class)
+                    get(CacheLockingManager.class),
+                    get(ArtifactCacheAccessTracker.class)
             );
 
             ArtifactDependencyResolver resolver = new DefaultDependencyResolver(
                     ivyFactory,
                     get(PublishModuleDescriptorConverter.class),
-                    resolvedArtifactFactory);
+                    resolvedArtifactFactory,
+                    get(DependencyResolutionInstrumentation.class));
             return new ErrorHandlingArtifactDependencyResolver(
                     new EventBroadcastingArtifactDependencyResolver(
                             new ShortcircuitEmptyConfigsArtifactDependencyResolver(
@@ -102,6 +102,13 @@ public class DefaultResolvedArtifact implements ResolvedArtifact {
         return artifact.getExtraAttribute(Dependency.CLASSIFIER);
     }
     
+    /**
+     * Returns true if the file of this artifact has been resolved.
+     */
+    public boolean isFileResolved() {
+        return file != null;
+    }
+
     public File getFile() {
         if (file == null) {
             file = artifactSource.get();
@@ -16,6 +16,7 @@
 package org.gradle.api.internal.artifacts.ivyservice;
 
 import org.apache.ivy.core.settings.IvySettings;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
 import org.gradle.cache.internal.FileLock;
 import org.gradle.cache.internal.FileLockManager;
 import org.gradle.cache.internal.LockTimeoutException;
@@ -29,23 +30,28 @@ import org.jfrog.wharf.ivy.lock.LockLogger;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class DefaultCacheLockingManager implements LockHolderFactory, CacheLockingManager {
     private final FileLockManager fileLockManager;
+    private final DependencyResolutionInstrumentation instrumentation;
     private final Lock lock = new ReentrantLock();
+    private final Condition artifactLockReleased = lock.newCondition();
     private final Map<File, ArtifactLock> artifactLocks = new HashMap<File, ArtifactLock>();
     private final Map<File, FileLock> metadataLocks = new HashMap<File, FileLock>();
+    private final Set<File> pendingMetadataLocks = new HashSet<File>();
     
-    private boolean locked;
+    // The cache may be locked by several threads of this process at once, for example when configurations are resolved in parallel
+    private final Set<Thread> lockingThreads = new HashSet<Thread>();
     private String operationDisplayName;
 
-    public DefaultCacheLockingManager(FileLockManager fileLockManager) {
+    public DefaultCacheLockingManager(FileLockManager fileLockManager, DependencyResolutionInstrumentation instrumentation) {
         this.fileLockManager = fileLockManager;
+        this.instrumentation = instrumentation;
     }
 
     public <T> T withCacheLock(String operationDisplayName, Callable<? extends T> action) {
@@ -62,11 +68,13 @@ public class DefaultCacheLockingManager implements LockHolderFactory, CacheLocki
     private void lockCache(String operationDisplayName) {
         lock.lock();
         try {
-            if (locked) {
+            if (lockingThreads.contains(Thread.currentThread())) {
                 throw new IllegalStateException("Cannot lock the artifact cache, as it is already locked by this process.");
             }
-            this.operationDisplayName = operationDisplayName;
-            locked = true;
+            if (lockingThreads.isEmpty()) {
+                this.operationDisplayName = operationDisplayName;
+            }
+            lockingThreads.add(Thread.currentThread());
         } finally {
             lock.unlock();
         }
@@ -75,21 +83,42 @@ public class DefaultCacheLockingManager implements LockHolderFactory, CacheLocki
     private void unlockCache() {
         lock.lock();
         try {
-            // Metadata locks are opened on demand, but closed when the cache lock is released
-            closeMetadataLocks();
+            List<ArtifactLock> unreleased = releaseArtifactLocksOwnedBy(Thread.currentThread());
+            if (lockingThreads.size() == 1) {
+                // Metadata locks are opened on demand, but closed when the last cache lock is released
+                closeMetadataLocks();
+            }
 
-            if (!artifactLocks.isEmpty()) {
-                new CompositeStoppable().addCloseables(artifactLocks.values()).stop();
+            if (!unreleased.isEmpty()) {
+                new CompositeStoppable().addCloseables(unreleased).stop();
                 throw new IllegalStateException("Some artifact file locks were not released.");
             }
         } finally {
-            locked = false;
-            metadataLocks.clear();
-            artifactLocks.clear();
+            lockingThreads.remove(Thread.currentThread());
+            if (lockingThreads.isEmpty()) {
+                metadataLocks.clear();
+                artifactLocks.clear();
+            }
             lock.unlock();
         }
     }
 
+    private List<ArtifactLock> releaseArtifactLocksOwnedBy(Thread owner) {
+        List<ArtifactLock> released = new ArrayList<ArtifactLock>();
+        Iterator<ArtifactLock> iterator = artifactLocks.values().iterator();
+        while (iterator.hasNext()) {
+            ArtifactLock artifactLock = iterator.next();
+            if (artifactLock.owner == owner) {
+                iterator.remove();
+                released.add(artifactLock);
+            }
+        }
+        if (!released.isEmpty()) {
+            artifactLockReleased.signalAll();
+        }
+        return released;
+    }
+
     private void closeMetadataLocks() {
         for (FileLock metadataFileLock : metadataLocks.values()) {
             metadataFileLock.close();
@@ -113,21 +142,57 @@ public class DefaultCacheLockingManager implements LockHolderFactory, CacheLocki
     }
 
     private void acquire(File protectedFile) {
+        long waitStarted = instrumentation.isEnabled() ? System.nanoTime() : 0;
+        ArtifactLock artifactLock;
+        String displayName;
         lock.lock();
         try {
-            if (!locked) {
+            if (!lockingThreads.contains(Thread.currentThread())) {
                 throw new IllegalStateException("Cannot acquire artifact lock, as the artifact cache is not locked by this process.");
             }
-            ArtifactLock artifactLock = artifactLocks.get(protectedFile);
-            if (artifactLock == null) {
-                FileLock fileLock = fileLockManager.lock(protectedFile, FileLockManager.LockMode.Exclusive, String.format("artifact file %s", protectedFile), operationDisplayName);
-                artifactLock = new ArtifactLock(fileLock);
-                artifactLocks.put(protectedFile, artifactLock);
+            artifactLock = artifactLocks.get(protectedFile);
+            while (artifactLock != null && artifactLock.owner != Thread.currentThread()) {
+                // Another thread of this process holds, or is acquiring, the lock on this artifact
+                artifactLockReleased.awaitUninterruptibly();
+                artifactLock = artifactLocks.get(protectedFile);
+            }
+            if (artifactLock != null) {
+                artifactLock.refCount++;
+                recordLockWait(waitStarted);
+                return;
             }
-            artifactLock.refCount++;
+            // Reserve the artifact for this thread, so that the file lock can be acquired without blocking other threads
+            artifactLock = new ArtifactLock(Thread.currentThread());
+            artifactLocks.put(protectedFile, artifactLock);
+            displayName = operationDisplayName;
         } finally {
             lock.unlock();
         }
+
+        FileLock fileLock = null;
+        try {
+            fileLock = fileLockManager.lock(protectedFile, FileLockManager.LockMode.Exclusive, String.format("artifact file %s", protectedFile), displayName);
+        } finally {
+            lock.lock();
+            try {
+                if (fileLock == null) {
+                    artifactLocks.remove(protectedFile);
+                    artifactLockReleased.signalAll();
+                } else {
+                    artifactLock.lock = fileLock;
+                    artifactLock.refCount++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        recordLockWait(waitStarted);
+    }
+
+    private void recordLockWait(long waitStarted) {
+        if (instrumentation.isEnabled()) {
+            instrumentation.lockWait((System.nanoTime() - waitStarted) / 1000000);
+        }
     }
 
     private void release(File protectedFile) {
@@ -140,7 +205,8 @@ public class DefaultCacheLockingManager implements LockHolderFactory, CacheLocki
             artifactLock.refCount--;
             if (artifactLock.refCount == 0) {
                 artifactLocks.remove(protectedFile);
-                artifactLock.lock.close();
+                artifactLock.close();
+                artifactLockReleased.signalAll();
             }
         } finally {
             lock.unlock();
@@ -190,32 +256,58 @@ public class DefaultCacheLockingManager implements LockHolderFactory, CacheLocki
     }
 
     private FileLock acquireMetadataFileLock(File metadataFile) {
+        String displayName;
         lock.lock();
         try {
-            if (!locked) {
+            if (!lockingThreads.contains(Thread.currentThread())) {
                 throw new IllegalStateException("Cannot acquire artifact lock, as the artifact cache is not locked by this process.");
             }
+            while (pendingMetadataLocks.contains(metadataFile)) {
+                // Another thread of this process is acquiring the lock on this metadata file
+                artifactLockReleased.awaitUninterruptibly();
+            }
             FileLock metadataFileLock = metadataLocks.get(metadataFile);
-            if (metadataFileLock == null) {
-                metadataFileLock = fileLockManager.lock(metadataFile, FileLockManager.LockMode.Exclusive, String.format("metadata file %s", metadataFile.getName()), operationDisplayName);
-                metadataLocks.put(metadataFile, metadataFileLock);
+            if (metadataFileLock != null) {
+                return metadataFileLock;
             }
-            return metadataFileLock;
+            pendingMetadataLocks.add(metadataFile);
+            displayName = operationDisplayName;
         } finally {
             lock.unlock();
         }
+
+        FileLock metadataFileLock = null;
+        try {
+            metadataFileLock = fileLockManager.lock(metadataFile, FileLockManager.LockMode.Exclusive, String.format("metadata file %s", metadataFile.getName()), displayName);
+            return metadataFileLock;
+        } finally {
+            lock.lock();
+            try {
+                pendingMetadataLocks.remove(metadataFile);
+                if (metadataFileLock != null) {
+                    metadataLocks.put(metadataFile, metadataFileLock);
+                }
+                artifactLockReleased.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     private static class ArtifactLock implements Closeable {
-        private final FileLock lock;
+        private final Thread owner;
+        // Null while the owner is acquiring the file lock
+        private FileLock lock;
         private int refCount;
 
-        private ArtifactLock(FileLock lock) {
-            this.lock = lock;
+        private ArtifactLock(Thread owner) {
+            this.owner = owner;
         }
 
         public void close() {
-            lock.close();
+            if (lock != null) {
+                lock.close();
+            }
         }
     }
 
@@ -242,11 +334,17 @@ public class DefaultCacheLockingManager implements LockHolderFactory, CacheLocki
         }
 
         public <T> T readFromFile(Callable<T> action) throws LockTimeoutException {
-            return acquireLock().readFromFile(action);
+            FileLock fileLock = acquireLock();
+            synchronized (fileLock) {
+                return fileLock.readFromFile(action);
+            }
         }
 
         public void writeToFile(Runnable action) throws LockTimeoutException {
-            acquireLock().writeToFile(action);
+            FileLock fileLock = acquireLock();
+            synchronized (fileLock) {
+                fileLock.writeToFile(action);
+            }
         }
 
         public void close() {
@@ -26,9 +26,16 @@ import org.apache.ivy.plugins.repository.TransferListener;
 import org.apache.ivy.plugins.resolver.*;
 import org.apache.ivy.util.Message;
 import org.gradle.api.internal.Factory;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
+import org.gradle.api.internal.artifacts.ivyservice.artifactcache.ArtifactCacheAccessTracker;
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.ModuleResolutionCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleDescriptorCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.RepositoryAffinityCache;
+import org.gradle.api.internal.artifacts.repositories.CommonsHttpClientBackedRepository;
 import org.gradle.api.internal.artifacts.repositories.InternalRepository;
+import org.gradle.api.internal.artifacts.repositories.RepositoryListingCache;
 import org.gradle.logging.ProgressLogger;
 import org.gradle.logging.ProgressLoggerFactory;
 import org.gradle.util.WrapUtil;
@@ -45,15 +52,30 @@ public class DefaultSettingsConverter implements SettingsConverter {
     private final Map<String, DependencyResolver> resolversById = new HashMap<String, DependencyResolver>();
     private final TransferListener transferListener = new ProgressLoggingTransferListener();
     private final ModuleResolutionCache moduleResolutionCache;
+    private final ModuleDescriptorCache moduleDescriptorCache;
+    private final RepositoryAffinityCache repositoryAffinityCache;
+    private final RepositoryListingCache repositoryListingCache;
+    private final DependencyResolutionInstrumentation instrumentation;
+    private final ArtifactCacheAccessTracker accessTracker;
+    private final boolean offline;
     private IvySettings publishSettings;
     private IvySettings resolveSettings;
     private UserResolverChain userResolverChain;
     private DependencyResolver outerChain;
 
-    public DefaultSettingsConverter(ProgressLoggerFactory progressLoggerFactory, Factory<IvySettings> settingsFactory, ModuleResolutionCache moduleResolutionCache) {
+    public DefaultSettingsConverter(ProgressLoggerFactory progressLoggerFactory, Factory<IvySettings> settingsFactory, ModuleResolutionCache moduleResolutionCache,
+                                    ModuleDescriptorCache moduleDescriptorCache, RepositoryAffinityCache repositoryAffinityCache,
+                                    RepositoryListingCache repositoryListingCache, DependencyResolutionInstrumentation instrumentation,
+                                    ArtifactCacheAccessTracker accessTracker, boolean offline) {
         this.progressLoggerFactory = progressLoggerFactory;
         this.settingsFactory = settingsFactory;
         this.moduleResolutionCache = moduleResolutionCache;
+        this.moduleDescriptorCache = moduleDescriptorCache;
+        this.repositoryAffinityCache = repositoryAffinityCache;
+        this.repositoryListingCache = repositoryListingCache;
+        this.instrumentation = instrumentation;
+        this.accessTracker = accessTracker;
+        this.offline = offline;
         Message.setDefaultLogger(new IvyLoggingAdaper());
     }
 
@@ -94,7 +116,9 @@ public class DefaultSettingsConverter implements SettingsConverter {
             initializeResolvers(resolveSettings, WrapUtil.toList(userResolverChain, clientModuleResolver, outerChain));
         }
         
-        userResolverChain.setCachePolicy(resolutionStrategy.getCachePolicy());
+        CachePolicy cachePolicy = resolutionStrategy.getCachePolicy();
+        userResolverChain.setCachePolicy(cachePolicy);
+        repositoryListingCache.useCachePolicy(cachePolicy);
 
         replaceResolvers(dependencyResolvers, userResolverChain);
         resolveSettings.setDefaultResolver(outerChain.getName());
@@ -106,9 +130,10 @@ public class DefaultSettingsConverter implements SettingsConverter {
     }
 
     private UserResolverChain createUserResolverChain() {
-        UserResolverChain chainResolver = new UserResolverChain(moduleResolutionCache);
+        UserResolverChain chainResolver = new UserResolverChain(moduleResolutionCache, moduleDescriptorCache, repositoryAffinityCache, instrumentation, accessTracker);
         chainResolver.setName(USER_RESOLVER_CHAIN_NAME);
         chainResolver.setReturnFirst(true);
+        chainResolver.setOffline(offline);
         chainResolver.setRepositoryCacheManager(new NoOpRepositoryCacheManager(chainResolver.getName()));
         return chainResolver;
     }
@@ -157,6 +182,10 @@ public class DefaultSettingsConverter implements SettingsConverter {
             if (!repository.hasTransferListener(transferListener)) {
                 repository.addTransferListener(transferListener);
             }
+            if (repository instanceof CommonsHttpClientBackedRepository) {
+                ((CommonsHttpClientBackedRepository) repository).setListingCache(repositoryListingCache);
+                ((CommonsHttpClientBackedRepository) repository).setInstrumentation(instrumentation);
+            }
         }
         if (dependencyResolver instanceof DualResolver) {
             DualResolver dualResolver = (DualResolver) dependencyResolver;
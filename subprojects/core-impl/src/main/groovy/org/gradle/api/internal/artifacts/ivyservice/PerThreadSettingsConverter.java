@@ -0,0 +1,50 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.core.settings.IvySettings;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.gradle.api.internal.Factory;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link SettingsConverter} which hands each thread its own converter. The Ivy settings and resolver chains built by a
+ * converter are mutated for every resolve, so they must not be shared by configurations which are resolved concurrently.
+ */
+public class PerThreadSettingsConverter implements SettingsConverter {
+    private final ThreadLocal<SettingsConverter> converters;
+
+    public PerThreadSettingsConverter(final Factory<? extends SettingsConverter> factory) {
+        converters = new ThreadLocal<SettingsConverter>() {
+            @Override
+            protected SettingsConverter initialValue() {
+                return factory.create();
+            }
+        };
+    }
+
+    public IvySettings convertForPublish(List<DependencyResolver> publishResolvers) {
+        return converters.get().convertForPublish(publishResolvers);
+    }
+
+    public IvySettings convertForResolve(List<DependencyResolver> classpathResolvers, DependencyResolver projectResolver, Map<String, ModuleDescriptor> clientModuleRegistry, ResolutionStrategyInternal resolutionStrategy) {
+        return converters.get().convertForResolve(classpathResolvers, projectResolver, clientModuleRegistry, resolutionStrategy);
+    }
+}
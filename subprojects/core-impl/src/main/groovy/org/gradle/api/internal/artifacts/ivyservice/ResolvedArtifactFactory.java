@@ -21,22 +21,60 @@ import org.apache.ivy.core.resolve.ResolveEngine;
 import org.gradle.api.artifacts.ResolvedArtifact;
 import org.gradle.api.artifacts.ResolvedDependency;
 import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.api.internal.artifacts.ivyservice.artifactcache.ArtifactCacheAccessTracker;
 import org.gradle.api.internal.file.FileSource;
 
+import org.gradle.util.UncheckedException;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 public class ResolvedArtifactFactory {
     private final CacheLockingManager lockingManager;
+    private final ArtifactCacheAccessTracker accessTracker;
+    private final ThreadLocal<Boolean> resolvingFiles = new ThreadLocal<Boolean>();
 
-    public ResolvedArtifactFactory(CacheLockingManager lockingManager) {
+    public ResolvedArtifactFactory(CacheLockingManager lockingManager, ArtifactCacheAccessTracker accessTracker) {
         this.lockingManager = lockingManager;
+        this.accessTracker = accessTracker;
+    }
+
+    /**
+     * Resolves the files of the given artifacts which have not already been resolved, holding the cache lock once for
+     * all of them rather than once per artifact.
+     */
+    public void resolveFiles(Collection<? extends ResolvedArtifact> artifacts) {
+        final List<ResolvedArtifact> unresolved = new ArrayList<ResolvedArtifact>();
+        for (ResolvedArtifact artifact : artifacts) {
+            if (artifact instanceof DefaultResolvedArtifact && !((DefaultResolvedArtifact) artifact).isFileResolved()) {
+                unresolved.add(artifact);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return;
+        }
+        lockingManager.withCacheLock(String.format("download %s artifacts", unresolved.size()), new Callable<Object>() {
+            public Object call() throws Exception {
+                resolvingFiles.set(true);
+                try {
+                    for (ResolvedArtifact artifact : unresolved) {
+                        artifact.getFile();
+                    }
+                } finally {
+                    resolvingFiles.remove();
+                }
+                return null;
+            }
+        });
     }
 
     public ResolvedArtifact create(ResolvedDependency owner, final Artifact artifact, final ResolveEngine resolvedEngine) {
         return new DefaultResolvedArtifact(owner, artifact, new FileSource() {
             public File get() {
-                return lockingManager.withCacheLock(String.format("download %s", artifact), new Callable<File>() {
+                return download(artifact, new Callable<File>() {
                     public File call() throws Exception {
                         return resolvedEngine.download(artifact, new DownloadOptions()).getLocalFile();
                     }
@@ -48,7 +86,7 @@ public class ResolvedArtifactFactory {
     public ResolvedArtifact create(ResolvedDependency owner, final Artifact artifact, final ArtifactToFileResolver resolver) {
         return new DefaultResolvedArtifact(owner, artifact, new FileSource() {
             public File get() {
-                return lockingManager.withCacheLock(String.format("download %s", artifact), new Callable<File>() {
+                return download(artifact, new Callable<File>() {
                     public File call() throws Exception {
                         return resolver.resolve(artifact);
                     }
@@ -56,4 +94,24 @@ public class ResolvedArtifactFactory {
             }
         });
     }
+
+    private File download(Artifact artifact, final Callable<File> action) {
+        // Record the use of the file while holding the cache lock, so that it cannot be evicted before it is recorded
+        Callable<File> recordingAction = new Callable<File>() {
+            public File call() throws Exception {
+                File file = action.call();
+                accessTracker.recordAccess(file);
+                return file;
+            }
+        };
+        if (resolvingFiles.get() != null) {
+            // Already holding the cache lock
+            try {
+                return recordingAction.call();
+            } catch (Exception e) {
+                throw UncheckedException.asUncheckedException(e);
+            }
+        }
+        return lockingManager.withCacheLock(String.format("download %s", artifact), recordingAction);
+    }
 }
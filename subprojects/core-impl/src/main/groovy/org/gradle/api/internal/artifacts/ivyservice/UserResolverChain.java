@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.artifacts.ivyservice;
 
+import org.apache.ivy.core.cache.CacheDownloadOptions;
 import org.apache.ivy.core.cache.CacheMetadataOptions;
 import org.apache.ivy.core.module.descriptor.Artifact;
 import org.apache.ivy.core.module.descriptor.DependencyDescriptor;
@@ -26,36 +27,74 @@ import org.apache.ivy.core.report.DownloadStatus;
 import org.apache.ivy.core.resolve.DownloadOptions;
 import org.apache.ivy.core.resolve.ResolveData;
 import org.apache.ivy.core.resolve.ResolvedModuleRevision;
+import org.apache.ivy.core.IvyPatternHelper;
 import org.apache.ivy.plugins.latest.ArtifactInfo;
 import org.apache.ivy.plugins.latest.ComparatorLatestStrategy;
+import org.apache.ivy.plugins.repository.ArtifactResourceResolver;
+import org.apache.ivy.plugins.repository.Resource;
+import org.apache.ivy.plugins.repository.ResourceDownloader;
 import org.apache.ivy.plugins.resolver.AbstractResolver;
 import org.apache.ivy.plugins.resolver.ChainResolver;
 import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.apache.ivy.plugins.resolver.RepositoryResolver;
+import org.apache.ivy.plugins.resolver.util.ResolvedResource;
 import org.apache.ivy.util.StringUtils;
 import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.ResolvedModuleVersion;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.ChangingModuleRevision;
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.ModuleResolutionCache;
 import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
+import org.gradle.api.internal.artifacts.ivyservice.artifactcache.ArtifactCacheAccessTracker;
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.ForceChangeDependencyDescriptor;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleDescriptorCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.RepositoryAffinityCache;
+import org.gradle.api.internal.artifacts.repositories.CommonsHttpClientBackedRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.text.ParseException;
 import java.util.*;
 
 public class UserResolverChain extends ChainResolver {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserResolverChain.class);
+    private static final String MODULE_RESOLUTION_CACHE = "module resolution";
+    private static final String MODULE_DESCRIPTOR_CACHE = "module descriptor";
+    private static final String REPOSITORY_METADATA_CACHE = "repository metadata";
+    private static final String REPOSITORY_AFFINITY_CACHE = "repository affinity";
+    private static final String ARTIFACT_CACHE = "artifact";
 
     private final Map<ModuleRevisionId, DependencyResolver> artifactResolvers = new HashMap<ModuleRevisionId, DependencyResolver>();
     private final DynamicRevisionDependencyConverter dynamicRevisions;
-
-    public UserResolverChain(ModuleResolutionCache moduleResolutionCache) {
-        dynamicRevisions = new DynamicRevisionDependencyConverter(moduleResolutionCache);
+    private final ModuleDescriptorCache moduleDescriptorCache;
+    private final RepositoryAffinityCache repositoryAffinityCache;
+    private final DependencyResolutionInstrumentation instrumentation;
+    private final ArtifactCacheAccessTracker accessTracker;
+    private boolean offline;
+
+    public UserResolverChain(ModuleResolutionCache moduleResolutionCache, ModuleDescriptorCache moduleDescriptorCache, RepositoryAffinityCache repositoryAffinityCache,
+                             DependencyResolutionInstrumentation instrumentation, ArtifactCacheAccessTracker accessTracker) {
+        this.moduleDescriptorCache = moduleDescriptorCache;
+        this.repositoryAffinityCache = repositoryAffinityCache;
+        this.instrumentation = instrumentation;
+        this.accessTracker = accessTracker;
+        dynamicRevisions = new DynamicRevisionDependencyConverter(moduleResolutionCache, instrumentation);
     }
 
     public void setCachePolicy(CachePolicy cachePolicy) {
-        dynamicRevisions.setCachePolicy(cachePolicy);
+        dynamicRevisions.setCachePolicy(offline ? new OfflineCachePolicy() : cachePolicy);
+    }
+
+    /**
+     * When offline, modules and artifacts are served only from the dependency cache and from repositories on the local
+     * file system. Cached dynamic versions and changing modules never expire, and anything missing from the cache fails
+     * without a remote repository being accessed. Must be set before the cache policy.
+     */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
     }
 
     @Override
@@ -70,6 +109,13 @@ public class UserResolverChain extends ChainResolver {
             return latestCached.getModule();
         }
 
+        if (offline) {
+            resolutionList = getLocalResolutions(resolutionList);
+        } else if (!resolutionList.isEmpty() && !resolutionList.get(0).isStaticVersion()) {
+            // All resolvers will be asked for a dynamic version, so list the candidate revisions of each resolver concurrently
+            prefetchRevisionListings(dd.getDependencyRevisionId());
+        }
+
         // Otherwise delegate to each resolver in turn
         ModuleResolution latestResolved = resolveLatestModule(resolutionList);
         if (latestResolved != null) {
@@ -78,9 +124,73 @@ public class UserResolverChain extends ChainResolver {
             rememberResolverToUseForArtifactDownload(downloadedModule.getArtifactResolver(), downloadedModule);
             return downloadedModule;
         }
+        if (offline) {
+            ModuleRevisionId id = dd.getDependencyRevisionId();
+            throw new ModuleVersionNotFoundException(String.format("No cached version of group:%s, module:%s, version:%s available for offline mode.", id.getOrganisation(), id.getName(), id.getRevision()));
+        }
         return null;
     }
 
+    private void prefetchRevisionListings(ModuleRevisionId id) {
+        for (DependencyResolver resolver : getResolvers()) {
+            if (!(resolver instanceof RepositoryResolver)) {
+                continue;
+            }
+            RepositoryResolver repositoryResolver = (RepositoryResolver) resolver;
+            if (repositoryResolver.isM2compatible() || !(repositoryResolver.getRepository() instanceof CommonsHttpClientBackedRepository)) {
+                // Maven repositories use maven-metadata.xml in preference to listing
+                continue;
+            }
+            Set<String> parents = new LinkedHashSet<String>();
+            List<String> patterns = new ArrayList<String>();
+            patterns.addAll(repositoryResolver.getIvyPatterns());
+            patterns.addAll(repositoryResolver.getArtifactPatterns());
+            for (String pattern : patterns) {
+                String parent = getRevisionListingParent(repositoryResolver.getRepository().standardize(pattern), id);
+                if (parent != null) {
+                    parents.add(parent);
+                }
+            }
+            ((CommonsHttpClientBackedRepository) repositoryResolver.getRepository()).prefetchListings(parents);
+        }
+    }
+
+    /**
+     * Returns the directory which Ivy lists to find the revisions of the given module matching the given pattern, or null
+     * when the revision is not a whole directory name preceded only by the organisation and module.
+     */
+    private String getRevisionListingParent(String pattern, ModuleRevisionId id) {
+        String revisionToken = IvyPatternHelper.getTokenString(IvyPatternHelper.REVISION_KEY);
+        int index = pattern.indexOf(revisionToken);
+        int end = index + revisionToken.length();
+        if (index <= 0 || pattern.charAt(index - 1) != '/' || (end < pattern.length() && pattern.charAt(end) != '/')) {
+            return null;
+        }
+        Map<String, String> tokens = new HashMap<String, String>();
+        tokens.put(IvyPatternHelper.ORGANISATION_KEY, id.getOrganisation());
+        tokens.put(IvyPatternHelper.ORGANISATION_KEY2, id.getOrganisation());
+        tokens.put(IvyPatternHelper.MODULE_KEY, id.getName());
+        String parent = IvyPatternHelper.substituteTokens(pattern.substring(0, index), tokens);
+        if (parent.indexOf('[') >= 0 || parent.indexOf('(') >= 0) {
+            return null;
+        }
+        return parent;
+    }
+
+    private List<ModuleResolution> getLocalResolutions(List<ModuleResolution> resolutionList) {
+        List<ModuleResolution> localResolutions = new ArrayList<ModuleResolution>();
+        for (ModuleResolution moduleResolution : resolutionList) {
+            if (isLocal(moduleResolution.resolver)) {
+                localResolutions.add(moduleResolution);
+            }
+        }
+        return localResolutions;
+    }
+
+    private boolean isLocal(DependencyResolver resolver) {
+        return resolver.getRepositoryCacheManager() instanceof LocalFileRepositoryCacheManager;
+    }
+
     private List<ModuleResolution> createResolutionList(DependencyDescriptor dd, ResolveData data) {
         boolean staticVersion = !getSettings().getVersionMatcher().isDynamic(dd.getDependencyRevisionId());
         List<ModuleResolution> resolutionList = new ArrayList<ModuleResolution>();
@@ -105,14 +215,25 @@ public class UserResolverChain extends ChainResolver {
     private ModuleResolution resolveLatestModule(List<ModuleResolution> resolutionList) {
 
         List<RuntimeException> errors = new ArrayList<RuntimeException>();
+
+        // Ask the resolver which last supplied this module first, to avoid asking the resolvers declared ahead of it
+        List<DependencyResolver> resolvers = getResolvers(resolutionList);
+        ModuleResolution preferred = getPreferredResolution(resolutionList, resolvers);
+        if (preferred != null && resolveModule(preferred, errors)) {
+            int requestsAvoided = resolutionList.indexOf(preferred);
+            LOGGER.debug("Found module '{}' using preferred resolver '{}', skipping {} other resolvers", new Object[] {preferred.getModule(), preferred.resolver.getName(), requestsAvoided});
+            repositoryAffinityCache.recordRequestsAvoided(requestsAvoided);
+            instrumentation.cacheHit(REPOSITORY_AFFINITY_CACHE);
+            return preferred;
+        }
+        if (resolutionList.size() > 1 && resolutionList.get(0).isStaticVersion()) {
+            instrumentation.cacheMiss(REPOSITORY_AFFINITY_CACHE);
+        }
+
         for (ModuleResolution moduleResolution : resolutionList) {
-            try {
-                moduleResolution.resolveModule();
-                if (moduleResolution.getModule() != null && moduleResolution.isStaticVersion() && !moduleResolution.isGeneratedModuleDescriptor()) {
-                    return moduleResolution;
-                }
-            } catch (RuntimeException e) {
-                errors.add(e);
+            if (moduleResolution != preferred && resolveModule(moduleResolution, errors)) {
+                repositoryAffinityCache.recordResolver(moduleResolution.descriptor.getDependencyId(), moduleResolution.resolver, resolvers);
+                return moduleResolution;
             }
         }
 
@@ -123,6 +244,38 @@ public class UserResolverChain extends ChainResolver {
         return mr;
     }
 
+    private List<DependencyResolver> getResolvers(List<ModuleResolution> resolutionList) {
+        List<DependencyResolver> resolvers = new ArrayList<DependencyResolver>();
+        for (ModuleResolution moduleResolution : resolutionList) {
+            resolvers.add(moduleResolution.resolver);
+        }
+        return resolvers;
+    }
+
+    private ModuleResolution getPreferredResolution(List<ModuleResolution> resolutionList, List<DependencyResolver> resolvers) {
+        if (resolutionList.size() < 2 || !resolutionList.get(0).isStaticVersion()) {
+            return null;
+        }
+        DependencyResolver preferredResolver = repositoryAffinityCache.getPreferredResolver(resolutionList.get(0).descriptor.getDependencyId(), resolvers);
+        if (preferredResolver == null || preferredResolver == resolvers.get(0)) {
+            return null;
+        }
+        return resolutionList.get(resolvers.indexOf(preferredResolver));
+    }
+
+    /**
+     * Returns true if the resolver found a module which can be used without asking any other resolver.
+     */
+    private boolean resolveModule(ModuleResolution moduleResolution, List<RuntimeException> errors) {
+        try {
+            moduleResolution.resolveModule();
+            return moduleResolution.getModule() != null && moduleResolution.isStaticVersion() && !moduleResolution.isGeneratedModuleDescriptor();
+        } catch (RuntimeException e) {
+            errors.add(e);
+            return false;
+        }
+    }
+
     private ModuleResolution chooseBestResult(List<ModuleResolution> resolutionList) {
         ModuleResolution best = null;
         for (ModuleResolution moduleResolution : resolutionList) {
@@ -158,6 +311,9 @@ public class UserResolverChain extends ChainResolver {
 
     private void rememberResolverToUseForArtifactDownload(DependencyResolver resolver, ResolvedModuleRevision cachedModule) {
         artifactResolvers.put(cachedModule.getId(), resolver);
+        if (cachedModule.getReport() != null) {
+            accessTracker.recordAccess(cachedModule.getReport().getLocalFile());
+        }
     }
 
     private void throwResolutionFailure(List<RuntimeException> errors) {
@@ -191,22 +347,44 @@ public class UserResolverChain extends ChainResolver {
 
     private ArtifactDownloadReport downloadFromSingleRepository(DependencyResolver artifactResolver, Artifact artifact, DownloadOptions options) {
         LOGGER.debug("Attempting to download artifact {} using resolver {}", artifact, artifactResolver);
-        DownloadReport downloadReport = artifactResolver.download(new Artifact[]{artifact}, options);
-        return downloadReport.getArtifactReport(artifact);
+        ArtifactDownloadReport artifactDownload = download(artifactResolver, artifact, options);
+        if (offline && artifactDownload.getDownloadStatus() == DownloadStatus.FAILED) {
+            throw offlineArtifactNotFound(artifact);
+        }
+        return artifactDownload;
+    }
+
+    private ArtifactDownloadReport download(DependencyResolver resolver, Artifact artifact, DownloadOptions options) {
+        if (offline && !isLocal(resolver)) {
+            return resolver.getRepositoryCacheManager().download(artifact, new NoOpArtifactResourceResolver(), new NoOpResourceDownloader(), new CacheDownloadOptions());
+        }
+        DownloadReport downloadReport = resolver.download(new Artifact[]{artifact}, options);
+        ArtifactDownloadReport artifactDownload = downloadReport.getArtifactReport(artifact);
+        if (artifactDownload.getDownloadStatus() == DownloadStatus.NO) {
+            instrumentation.cacheHit(ARTIFACT_CACHE);
+        } else if (artifactDownload.getDownloadStatus() == DownloadStatus.SUCCESSFUL) {
+            instrumentation.cacheMiss(ARTIFACT_CACHE);
+        }
+        return artifactDownload;
+    }
+
+    private GradleException offlineArtifactNotFound(Artifact artifact) {
+        return new GradleException(String.format("No cached version of artifact %s available for offline mode.", artifact));
     }
 
     private ArtifactDownloadReport downloadFromAnyRepository(Artifact artifact, DownloadOptions options) {
         // Check all of the resolvers in turn, stopping at the first successful match
-        Artifact[] singleArtifact = {artifact};
         // TODO Try all repositories for cached artifact first
         LOGGER.debug("Attempting to download {} using all resolvers", artifact);
         for (DependencyResolver resolver : getResolvers()) {
-            DownloadReport downloadReport = resolver.download(singleArtifact, options);
-            ArtifactDownloadReport artifactDownload = downloadReport.getArtifactReport(artifact);
+            ArtifactDownloadReport artifactDownload = download(resolver, artifact, options);
             if (artifactDownload.getDownloadStatus() != DownloadStatus.FAILED) {
                 return artifactDownload;
             }
         }
+        if (offline) {
+            throw offlineArtifactNotFound(artifact);
+        }
 
         ArtifactDownloadReport failedDownload = new ArtifactDownloadReport(artifact);
         failedDownload.setDownloadStatus(DownloadStatus.FAILED);
@@ -218,12 +396,39 @@ public class UserResolverChain extends ChainResolver {
         return super.getResolvers();
     }
 
+    private static class OfflineCachePolicy implements CachePolicy {
+        public boolean mustRefreshDynamicVersion(ResolvedModuleVersion version, long ageMillis) {
+            return false;
+        }
+
+        public boolean mustRefreshChangingModule(ResolvedModuleVersion version, long ageMillis) {
+            return false;
+        }
+    }
+
+    /**
+     * Never locates a resource, so that the cache manager only serves artifacts which are already in the cache.
+     */
+    private static class NoOpArtifactResourceResolver implements ArtifactResourceResolver {
+        public ResolvedResource resolve(Artifact artifact) {
+            return null;
+        }
+    }
+
+    private static class NoOpResourceDownloader implements ResourceDownloader {
+        public void download(Artifact artifact, Resource resource, File dest) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     private static class DynamicRevisionDependencyConverter {
         private final ModuleResolutionCache moduleResolutionCache;
+        private final DependencyResolutionInstrumentation instrumentation;
         private CachePolicy cachePolicy;
 
-        private DynamicRevisionDependencyConverter(ModuleResolutionCache moduleResolutionCache) {
+        private DynamicRevisionDependencyConverter(ModuleResolutionCache moduleResolutionCache, DependencyResolutionInstrumentation instrumentation) {
             this.moduleResolutionCache = moduleResolutionCache;
+            this.instrumentation = instrumentation;
         }
 
         public void setCachePolicy(CachePolicy cachePolicy) {
@@ -254,12 +459,15 @@ public class UserResolverChain extends ChainResolver {
             ModuleRevisionId originalId = original.getDependencyRevisionId();
             ModuleResolutionCache.CachedModuleResolution cachedModuleResolution = moduleResolutionCache.getCachedModuleResolution(resolver, originalId);
             if (cachedModuleResolution == null) {
+                instrumentation.cacheMiss(MODULE_RESOLUTION_CACHE);
                 return original;
             }
             DependencyDescriptor modified = original;
+            boolean expired = false;
             if (cachedModuleResolution.isDynamicVersion()) {
                 if (cachePolicy.mustRefreshDynamicVersion(cachedModuleResolution.getResolvedModule(), cachedModuleResolution.getAgeMillis())) {
                     LOGGER.debug("Resolved revision in dynamic revision cache is expired: will perform fresh resolve of '{}'", originalId);                    
+                    expired = true;
                 } else {
                     LOGGER.debug("Found resolved revision in dynamic revision cache: Using '{}' for '{}'", cachedModuleResolution.getResolvedVersion(), originalId);
                     modified = modified.clone(cachedModuleResolution.getResolvedVersion());
@@ -270,12 +478,18 @@ public class UserResolverChain extends ChainResolver {
                 if (cachePolicy.mustRefreshChangingModule(cachedModuleResolution.getResolvedModule(), cachedModuleResolution.getAgeMillis())) {
                     LOGGER.debug("Resolved changing module in cache is expired: will perform fresh resolve of '{}'", originalId);
                     modified = ForceChangeDependencyDescriptor.forceChangingFlag(modified, true);
+                    expired = true;
                 } else {
                     LOGGER.debug("Found cached version of changing module: Using cached metadata for '{}'", originalId);
                     modified = ForceChangeDependencyDescriptor.forceChangingFlag(modified, false);
                 }
             }
 
+            if (expired) {
+                instrumentation.cacheMiss(MODULE_RESOLUTION_CACHE);
+            } else {
+                instrumentation.cacheHit(MODULE_RESOLUTION_CACHE);
+            }
             return modified;
         }
 
@@ -316,7 +530,24 @@ public class UserResolverChain extends ChainResolver {
 
         public void lookupModuleInCache() {
             resolvedDescriptor = dynamicRevisions.maybeResolveDynamicRevision(resolver, descriptor);
+            boolean cacheable = isDescriptorCacheable(resolvedDescriptor);
+            if (cacheable) {
+                resolvedModule = moduleDescriptorCache.getCachedModule(resolver, resolvedDescriptor.getDependencyRevisionId());
+                if (resolvedModule != null) {
+                    instrumentation.cacheHit(MODULE_DESCRIPTOR_CACHE);
+                    return;
+                }
+                instrumentation.cacheMiss(MODULE_DESCRIPTOR_CACHE);
+            }
             resolvedModule = findModuleInCache(resolver, resolvedDescriptor, resolveData);
+            if (resolvedModule != null) {
+                instrumentation.cacheHit(REPOSITORY_METADATA_CACHE);
+            } else {
+                instrumentation.cacheMiss(REPOSITORY_METADATA_CACHE);
+            }
+            if (cacheable) {
+                maybeCacheDescriptor(resolvedDescriptor);
+            }
         }
         
         public void resolveModule() {
@@ -325,11 +556,24 @@ public class UserResolverChain extends ChainResolver {
                 // Need to ensure that no caching is performed for local repositories before we make the switch
                 resolvedModule = resolver.getDependency(descriptor, resolveData);
                 dynamicRevisions.maybeSaveDynamicRevision(descriptor, resolvedModule);
+                if (staticVersion && !descriptor.isChanging()) {
+                    maybeCacheDescriptor(descriptor);
+                }
             } catch (ParseException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        private boolean isDescriptorCacheable(DependencyDescriptor dd) {
+            return !dd.isChanging() && !getSettings().getVersionMatcher().isDynamic(dd.getDependencyRevisionId());
+        }
+
+        private void maybeCacheDescriptor(DependencyDescriptor dd) {
+            if (resolvedModule != null && !(resolvedModule instanceof ChangingModuleRevision) && !resolvedModule.getDescriptor().isDefault()) {
+                moduleDescriptorCache.cacheModule(resolver, dd.getDependencyRevisionId(), resolvedModule);
+            }
+        }
+
         public ResolvedModuleRevision getModule() {
             return resolvedModule;
         }
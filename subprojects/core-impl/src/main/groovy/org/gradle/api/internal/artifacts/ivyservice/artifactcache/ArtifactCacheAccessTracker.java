@@ -0,0 +1,165 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.artifactcache;
+
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.cache.DefaultSerializer;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.internal.FileLock;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+import org.gradle.util.TimeProvider;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records when the files in the artifact cache were last used, so that files which are no longer used can be evicted.
+ * Accesses are held in memory and written to the cache when the build finishes. If a clean up of the cache is due, it
+ * runs in the background while the build runs.
+ */
+public class ArtifactCacheAccessTracker {
+    private static final Logger LOGGER = Logging.getLogger(ArtifactCacheAccessTracker.class);
+    private final ArtifactCacheMetaData cacheMetaData;
+    private final CacheLockingManager cacheLockingManager;
+    private final TimeProvider timeProvider;
+    private final ArtifactCacheCleaner cleaner;
+    private final ExecutorFactory executorFactory;
+    private final Map<String, Long> accessed = new ConcurrentHashMap<String, Long>();
+    private PersistentIndexedCache<String, Long> cache;
+    private StoppableExecutor cleanupExecutor;
+
+    /**
+     * @param cleaner The cleaner to run in the background, or null to never clean up the cache.
+     */
+    public ArtifactCacheAccessTracker(ArtifactCacheMetaData cacheMetaData, CacheLockingManager cacheLockingManager, TimeProvider timeProvider,
+                                      ArtifactCacheCleaner cleaner, ExecutorFactory executorFactory) {
+        this.cacheMetaData = cacheMetaData;
+        this.cacheLockingManager = cacheLockingManager;
+        this.timeProvider = timeProvider;
+        this.cleaner = cleaner;
+        this.executorFactory = executorFactory;
+    }
+
+    /**
+     * Starts cleaning up the artifact cache in the background, if a clean up is due.
+     */
+    public void startCleanup() {
+        if (cleaner == null || !cleaner.isCleanupDue()) {
+            return;
+        }
+        cleanupExecutor = executorFactory.create("artifact cache cleanup");
+        cleanupExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    cleaner.cleanup(ArtifactCacheAccessTracker.this);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Could not clean up the artifact cache.", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records that the given file has been used. Files which do not live in the artifact cache are ignored.
+     */
+    public void recordAccess(File file) {
+        if (file == null) {
+            return;
+        }
+        String path = getRelativePath(file);
+        if (path != null) {
+            accessed.put(path, timeProvider.getCurrentTime());
+        }
+    }
+
+    /**
+     * Returns the time the given file in the artifact cache was last used, or null when this is not known. The artifact
+     * cache must be locked by the calling thread.
+     */
+    public synchronized Long getLastAccess(File file) {
+        String path = getRelativePath(file);
+        if (path == null) {
+            return null;
+        }
+        Long lastAccess = accessed.get(path);
+        if (lastAccess != null) {
+            return lastAccess;
+        }
+        return getCache().get(path);
+    }
+
+    /**
+     * Discards the access time of a file which has been removed from the artifact cache. The artifact cache must be
+     * locked by the calling thread.
+     */
+    public synchronized void forget(File file) {
+        String path = getRelativePath(file);
+        if (path != null) {
+            accessed.remove(path);
+            getCache().remove(path);
+        }
+    }
+
+    public void stop() {
+        if (cleanupExecutor != null) {
+            cleanupExecutor.stop();
+        }
+        if (accessed.isEmpty()) {
+            return;
+        }
+        cacheLockingManager.withCacheLock("update artifact cache usage", new Callable<Object>() {
+            public Object call() throws Exception {
+                flush();
+                return null;
+            }
+        });
+    }
+
+    private synchronized void flush() {
+        Map<String, Long> pending = new HashMap<String, Long>(accessed);
+        for (Map.Entry<String, Long> entry : pending.entrySet()) {
+            getCache().put(entry.getKey(), entry.getValue());
+            accessed.remove(entry.getKey());
+        }
+    }
+
+    private String getRelativePath(File file) {
+        String cachePath = cacheMetaData.getCacheDir().getAbsolutePath() + File.separator;
+        String path = file.getAbsolutePath();
+        if (!path.startsWith(cachePath)) {
+            return null;
+        }
+        return path.substring(cachePath.length());
+    }
+
+    private PersistentIndexedCache<String, Long> getCache() {
+        if (cache == null) {
+            File accessTimesFile = new File(cacheMetaData.getCacheDir(), "artifact-access.bin");
+            FileLock accessTimesLock = cacheLockingManager.getCacheMetadataFileLock(accessTimesFile);
+            cache = new BTreePersistentIndexedCache<String, Long>(accessTimesFile, accessTimesLock,
+                    new DefaultSerializer<Long>(Long.class.getClassLoader()));
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.artifactcache;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.os.PosixUtil;
+import org.gradle.util.HashUtil;
+import org.gradle.util.TimeProvider;
+import org.jfrog.wharf.ivy.lock.LockHolder;
+import org.jfrog.wharf.ivy.lock.LockHolderFactory;
+import org.jruby.ext.posix.FileStat;
+import org.jruby.ext.posix.POSIX;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * Evicts unused files from the artifact cache, according to an {@link ArtifactCacheEvictionPolicy}, and replaces files
+ * with identical content, such as the same jar published under different coordinates, with hard links to a single copy.
+ * Runs at most once a day. The artifact cache is only locked while the last use of the cached files is read and while
+ * each file is evicted, so that a build can resolve dependencies while the cleanup is running.
+ */
+public class ArtifactCacheCleaner {
+    private static final Logger LOGGER = Logging.getLogger(ArtifactCacheCleaner.class);
+    private static final long CLEANUP_INTERVAL = 24 * 60 * 60 * 1000L;
+    private static final String METADATA_PREFIX = "ivy-";
+    private static final String METADATA_SUFFIX = ".xml";
+
+    private final ArtifactCacheMetaData cacheMetaData;
+    private final CacheLockingManager cacheLockingManager;
+    private final LockHolderFactory lockHolderFactory;
+    private final TimeProvider timeProvider;
+    private final ArtifactCacheEvictionPolicy policy;
+    private final FileLinker linker;
+
+    public ArtifactCacheCleaner(ArtifactCacheMetaData cacheMetaData, CacheLockingManager cacheLockingManager, LockHolderFactory lockHolderFactory,
+                                TimeProvider timeProvider, ArtifactCacheEvictionPolicy policy) {
+        this(cacheMetaData, cacheLockingManager, lockHolderFactory, timeProvider, policy, new PosixFileLinker());
+    }
+
+    ArtifactCacheCleaner(ArtifactCacheMetaData cacheMetaData, CacheLockingManager cacheLockingManager, LockHolderFactory lockHolderFactory,
+                         TimeProvider timeProvider, ArtifactCacheEvictionPolicy policy, FileLinker linker) {
+        this.cacheMetaData = cacheMetaData;
+        this.cacheLockingManager = cacheLockingManager;
+        this.lockHolderFactory = lockHolderFactory;
+        this.timeProvider = timeProvider;
+        this.policy = policy;
+        this.linker = linker;
+    }
+
+    public boolean isCleanupDue() {
+        File marker = getMarkerFile();
+        return !marker.exists() || timeProvider.getCurrentTime() - marker.lastModified() > CLEANUP_INTERVAL;
+    }
+
+    public CleanupResult cleanup(final ArtifactCacheAccessTracker accessTracker) {
+        long now = timeProvider.getCurrentTime();
+        // Mark the cleanup as done up front, so that concurrent builds do not start one as well
+        markCleanedUp(now);
+        CleanupResult result = new CleanupResult();
+        List<CachedFile> files = cacheLockingManager.withCacheLock("find unused artifact cache files", new Callable<List<CachedFile>>() {
+            public List<CachedFile> call() {
+                return findCachedFiles(accessTracker);
+            }
+        });
+
+        Iterator<CachedFile> iterator = files.iterator();
+        while (iterator.hasNext()) {
+            CachedFile file = iterator.next();
+            if (policy.isExpired(file.lastAccess, now)) {
+                evict(file, accessTracker, result);
+                iterator.remove();
+            }
+        }
+
+        if (policy.getMaxSize() > 0) {
+            long totalSize = 0;
+            for (CachedFile file : files) {
+                totalSize += file.size;
+            }
+            Collections.sort(files);
+            iterator = files.iterator();
+            while (totalSize > policy.getMaxSize() && iterator.hasNext()) {
+                CachedFile file = iterator.next();
+                evict(file, accessTracker, result);
+                totalSize -= file.size;
+                iterator.remove();
+            }
+        }
+
+        if (policy.isDeduplicate()) {
+            deduplicate(files, result);
+        }
+
+        if (result.getReclaimedBytes() > 0) {
+            LOGGER.lifecycle(String.format("Cleaned up the artifact cache: evicted %s unused files (%s) and replaced %s duplicate files with links (%s).",
+                    result.getEvictedFiles(), formatSize(result.getEvictedBytes()), result.getDeduplicatedFiles(), formatSize(result.getDeduplicatedBytes())));
+        } else {
+            LOGGER.info("Cleaned up the artifact cache: nothing to reclaim.");
+        }
+        return result;
+    }
+
+    private List<CachedFile> findCachedFiles(ArtifactCacheAccessTracker accessTracker) {
+        List<CachedFile> files = new ArrayList<CachedFile>();
+        File[] children = cacheMetaData.getCacheDir().listFiles();
+        if (children == null) {
+            return files;
+        }
+        for (File child : children) {
+            // Files at the top level of the cache hold the cache indexes, rather than cached artifacts
+            if (child.isDirectory() && !child.getName().equals("wharf")) {
+                findCachedFiles(child, accessTracker, files);
+            }
+        }
+        return files;
+    }
+
+    private void findCachedFiles(File dir, ArtifactCacheAccessTracker accessTracker, List<CachedFile> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                findCachedFiles(child, accessTracker, files);
+            } else if (isCachedFile(child)) {
+                Long lastAccess = accessTracker.getLastAccess(child);
+                CachedFile cachedFile = new CachedFile(child, lastAccess != null ? lastAccess : child.lastModified());
+                for (File companion : cachedFile.companions) {
+                    cachedFile.size += companion.length();
+                }
+                files.add(cachedFile);
+            }
+        }
+    }
+
+    private boolean isCachedFile(File file) {
+        String name = file.getName();
+        return !name.endsWith(".lock") && !name.endsWith(".part") && !name.endsWith(".original") && !name.startsWith("wharfdata-");
+    }
+
+    private void evict(final CachedFile file, final ArtifactCacheAccessTracker accessTracker, final CleanupResult result) {
+        // Hold the cache lock while evicting, so that the file cannot be resolved by a build in the meantime
+        cacheLockingManager.withCacheLock(String.format("evict %s", file.file), new Callable<Object>() {
+            public Object call() {
+                Long lastAccess = accessTracker.getLastAccess(file.file);
+                if (lastAccess != null && lastAccess > file.lastAccess) {
+                    LOGGER.debug("{} has been used since the cleanup started. Not evicting it from the artifact cache.", file.file);
+                    return null;
+                }
+                evictLocked(file, accessTracker, result);
+                return null;
+            }
+        });
+    }
+
+    private void evictLocked(CachedFile file, ArtifactCacheAccessTracker accessTracker, CleanupResult result) {
+        LOGGER.debug("Evicting {} from the artifact cache.", file.file);
+        LockHolder lockHolder = lockHolderFactory.getOrCreateLockHolder(file.file);
+        if (!lockHolder.acquireLock()) {
+            LOGGER.debug("Could not acquire lock for {}. Not evicting it from the artifact cache.", file.file);
+            return;
+        }
+        try {
+            for (File companion : file.companions) {
+                companion.delete();
+            }
+            if (!file.file.delete() && file.file.exists()) {
+                LOGGER.debug("Could not delete {} from the artifact cache.", file.file);
+                return;
+            }
+        } finally {
+            lockHolder.releaseLock();
+        }
+        accessTracker.forget(file.file);
+        result.evicted(file.size);
+    }
+
+    private void deduplicate(List<CachedFile> files, CleanupResult result) {
+        Map<Long, List<CachedFile>> filesBySize = new HashMap<Long, List<CachedFile>>();
+        for (CachedFile file : files) {
+            if (file.metadata || file.size == 0) {
+                continue;
+            }
+            List<CachedFile> sameSize = filesBySize.get(file.size);
+            if (sameSize == null) {
+                sameSize = new ArrayList<CachedFile>();
+                filesBySize.put(file.size, sameSize);
+            }
+            sameSize.add(file);
+        }
+
+        try {
+            for (List<CachedFile> sameSize : filesBySize.values()) {
+                if (sameSize.size() > 1) {
+                    deduplicateSameSize(sameSize, result);
+                }
+            }
+        } catch (UnsupportedOperationException e) {
+            LOGGER.debug("Not deduplicating the artifact cache, as hard links are not supported on this platform.", e);
+        }
+    }
+
+    private void deduplicateSameSize(List<CachedFile> files, CleanupResult result) {
+        Map<String, CachedFile> filesByHash = new HashMap<String, CachedFile>();
+        for (CachedFile file : files) {
+            String hash = new BigInteger(1, HashUtil.createHash(file.file)).toString(16);
+            CachedFile original = filesByHash.get(hash);
+            if (original == null) {
+                filesByHash.put(hash, file);
+                continue;
+            }
+            if (linker.isSameFile(original.file, file.file) || !contentEquals(original.file, file.file)) {
+                continue;
+            }
+            link(original, file, result);
+        }
+    }
+
+    private void link(final CachedFile original, final CachedFile file, final CleanupResult result) {
+        // Hold the cache lock while linking, as the artifact lock can only be acquired while the cache is locked
+        cacheLockingManager.withCacheLock(String.format("replace %s with a link", file.file), new Callable<Object>() {
+            public Object call() {
+                linkLocked(original, file, result);
+                return null;
+            }
+        });
+    }
+
+    private void linkLocked(CachedFile original, CachedFile file, CleanupResult result) {
+        LockHolder lockHolder = lockHolderFactory.getOrCreateLockHolder(file.file);
+        if (!lockHolder.acquireLock()) {
+            LOGGER.debug("Could not acquire lock for {}. Not replacing it with a link.", file.file);
+            return;
+        }
+        try {
+            if (!linker.link(original.file, file.file)) {
+                LOGGER.debug("Could not replace {} with a link to {}.", file.file, original.file);
+                return;
+            }
+        } finally {
+            lockHolder.releaseLock();
+        }
+        result.deduplicated(file.size);
+    }
+
+    private boolean contentEquals(File file1, File file2) {
+        try {
+            return FileUtils.contentEquals(file1, file2);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private File getMarkerFile() {
+        return new File(cacheMetaData.getCacheDir(), "cache-cleanup.marker");
+    }
+
+    private void markCleanedUp(long now) {
+        File marker = getMarkerFile();
+        try {
+            marker.createNewFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        marker.setLastModified(now);
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1048576) {
+            return (bytes / 1024) + " KB";
+        } else {
+            return String.format("%.2f MB", bytes / 1048576.0);
+        }
+    }
+
+    private static class CachedFile implements Comparable<CachedFile> {
+        private final File file;
+        private final long lastAccess;
+        private final boolean metadata;
+        private final List<File> companions = new ArrayList<File>();
+        private long size;
+
+        private CachedFile(File file, long lastAccess) {
+            this.file = file;
+            this.lastAccess = lastAccess;
+            this.size = file.length();
+            String name = file.getName();
+            metadata = name.startsWith(METADATA_PREFIX) && name.endsWith(METADATA_SUFFIX);
+            if (metadata) {
+                // A module descriptor is cached along with its original and the wharf data for its module revision
+                String revision = name.substring(METADATA_PREFIX.length(), name.length() - METADATA_SUFFIX.length());
+                addCompanion(new File(file.getParentFile(), name + ".original"));
+                addCompanion(new File(file.getParentFile(), "wharfdata-" + revision + ".bin"));
+            }
+        }
+
+        private void addCompanion(File companion) {
+            if (companion.isFile()) {
+                companions.add(companion);
+            }
+        }
+
+        public int compareTo(CachedFile other) {
+            return lastAccess < other.lastAccess ? -1 : lastAccess == other.lastAccess ? 0 : 1;
+        }
+    }
+
+    public static class CleanupResult {
+        private int evictedFiles;
+        private long evictedBytes;
+        private int deduplicatedFiles;
+        private long deduplicatedBytes;
+
+        private void evicted(long bytes) {
+            evictedFiles++;
+            evictedBytes += bytes;
+        }
+
+        private void deduplicated(long bytes) {
+            deduplicatedFiles++;
+            deduplicatedBytes += bytes;
+        }
+
+        public int getEvictedFiles() {
+            return evictedFiles;
+        }
+
+        public long getEvictedBytes() {
+            return evictedBytes;
+        }
+
+        public int getDeduplicatedFiles() {
+            return deduplicatedFiles;
+        }
+
+        public long getDeduplicatedBytes() {
+            return deduplicatedBytes;
+        }
+
+        public long getReclaimedBytes() {
+            return evictedBytes + deduplicatedBytes;
+        }
+    }
+
+    interface FileLinker {
+        boolean isSameFile(File file1, File file2);
+
+        /**
+         * Replaces the target file with a hard link to the source file.
+         */
+        boolean link(File source, File target);
+    }
+
+    private static class PosixFileLinker implements FileLinker {
+        public boolean isSameFile(File file1, File file2) {
+            POSIX posix = PosixUtil.current();
+            FileStat stat1 = posix.stat(file1.getAbsolutePath());
+            FileStat stat2 = posix.stat(file2.getAbsolutePath());
+            return stat1.dev() == stat2.dev() && stat1.ino() == stat2.ino();
+        }
+
+        public boolean link(File source, File target) {
+            File temp = new File(target.getParentFile(), target.getName() + ".part");
+            temp.delete();
+            if (PosixUtil.current().link(source.getAbsolutePath(), temp.getAbsolutePath()) != 0) {
+                return false;
+            }
+            if (!temp.renameTo(target)) {
+                temp.delete();
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.artifactcache;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.util.Properties;
+
+/**
+ * Determines which files are evicted from the artifact cache. Files which have not been used for longer than the maximum
+ * age are evicted. When the cache is larger than the maximum size, the least recently used files are then evicted until
+ * it is not. Nothing is evicted or deduplicated unless the corresponding system property is set. A property whose value
+ * is not a non-negative whole number is ignored, with a warning.
+ */
+public class ArtifactCacheEvictionPolicy {
+    private static final Logger LOGGER = Logging.getLogger(ArtifactCacheEvictionPolicy.class);
+    public static final String MAX_AGE_PROPERTY = "org.gradle.cache.artifacts.maxAgeDays";
+    public static final String MAX_SIZE_PROPERTY = "org.gradle.cache.artifacts.maxSizeMb";
+    public static final String DEDUPLICATE_PROPERTY = "org.gradle.cache.artifacts.deduplicate";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long MB = 1024 * 1024L;
+
+    private final long maxAge;
+    private final long maxSize;
+    private final boolean deduplicate;
+
+    /**
+     * @param maxAge The maximum time in milliseconds since a file was last used, or 0 for no limit.
+     * @param maxSize The maximum size in bytes of the cache, or 0 for no limit.
+     * @param deduplicate Whether identical files in the cache should be replaced with hard links to a single copy.
+     */
+    public ArtifactCacheEvictionPolicy(long maxAge, long maxSize, boolean deduplicate) {
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+        this.deduplicate = deduplicate;
+    }
+
+    public static ArtifactCacheEvictionPolicy fromProperties(Properties properties) {
+        long maxAgeDays = getLimit(properties, MAX_AGE_PROPERTY);
+        long maxSizeMb = getLimit(properties, MAX_SIZE_PROPERTY);
+        boolean deduplicate = "true".equals(properties.getProperty(DEDUPLICATE_PROPERTY));
+        return new ArtifactCacheEvictionPolicy(maxAgeDays * DAY, maxSizeMb * MB, deduplicate);
+    }
+
+    private static long getLimit(Properties properties, String name) {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            long limit = Long.parseLong(value.trim());
+            if (limit >= 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        LOGGER.warn(String.format("Ignoring invalid value '%s' for property '%s'. Expected a non-negative whole number.", value, name));
+        return 0;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * Returns true if this policy evicts or deduplicates any files.
+     */
+    public boolean isEnabled() {
+        return maxAge > 0 || maxSize > 0 || deduplicate;
+    }
+
+    public boolean isExpired(long lastAccess, long now) {
+        return maxAge > 0 && now - lastAccess > maxAge;
+    }
+}
@@ -55,15 +55,15 @@ public class SingleFileBackedModuleResolutionCache implements ModuleResolutionCa
                 new DefaultSerializer<ModuleResolutionCacheEntry>(ModuleResolutionCacheEntry.class.getClassLoader()));
     }
 
-    public void recordResolvedDynamicVersion(DependencyResolver resolver, ModuleRevisionId requestedVersion, ModuleRevisionId resolvedVersion) {
+    public synchronized void recordResolvedDynamicVersion(DependencyResolver resolver, ModuleRevisionId requestedVersion, ModuleRevisionId resolvedVersion) {
         getCache().put(createKey(resolver, requestedVersion), createEntry(resolvedVersion));
     }
 
-    public void recordChangingModuleResolution(DependencyResolver resolver, ModuleRevisionId module) {
+    public synchronized void recordChangingModuleResolution(DependencyResolver resolver, ModuleRevisionId module) {
         getCache().put(createKey(resolver, module), createEntry(null));
     }
 
-    public CachedModuleResolution getCachedModuleResolution(DependencyResolver resolver, ModuleRevisionId moduleId) {
+    public synchronized CachedModuleResolution getCachedModuleResolution(DependencyResolver resolver, ModuleRevisionId moduleId) {
         ModuleResolutionCacheEntry moduleResolutionCacheEntry = getCache().get(createKey(resolver, moduleId));
         if (moduleResolutionCacheEntry == null) {
             return null;
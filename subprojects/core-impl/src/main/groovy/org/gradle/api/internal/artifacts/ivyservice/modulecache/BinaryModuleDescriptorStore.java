@@ -0,0 +1,144 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.report.MetadataArtifactDownloadReport;
+import org.apache.ivy.core.resolve.ResolvedModuleRevision;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.Serializer;
+import org.gradle.cache.internal.FileLock;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.jfrog.wharf.ivy.model.WharfResolverMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+
+/**
+ * A {@link ModuleDescriptorCache} which stores descriptors in a compact binary format alongside the artifact cache, so that
+ * the descriptor files do not need to be parsed again in later builds. An entry is discarded when the descriptor file it was
+ * created from changes.
+ */
+public class BinaryModuleDescriptorStore implements ModuleDescriptorCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryModuleDescriptorStore.class);
+    private final ArtifactCacheMetaData cacheMetadata;
+    private final CacheLockingManager cacheLockingManager;
+    private final ModuleDescriptorSerializer descriptorSerializer = new ModuleDescriptorSerializer();
+    private PersistentIndexedCache<String, CachedModuleMetaData> cache;
+
+    public BinaryModuleDescriptorStore(ArtifactCacheMetaData cacheMetadata, CacheLockingManager cacheLockingManager) {
+        this.cacheMetadata = cacheMetadata;
+        this.cacheLockingManager = cacheLockingManager;
+    }
+
+    private PersistentIndexedCache<String, CachedModuleMetaData> getCache() {
+        if (cache == null) {
+            cache = initCache();
+        }
+        return cache;
+    }
+
+    private PersistentIndexedCache<String, CachedModuleMetaData> initCache() {
+        File moduleMetadataFile = new File(cacheMetadata.getCacheDir(), "module-metadata.bin");
+        FileLock moduleMetadataLock = cacheLockingManager.getCacheMetadataFileLock(moduleMetadataFile);
+        return new BTreePersistentIndexedCache<String, CachedModuleMetaData>(moduleMetadataFile, moduleMetadataLock, new CachedModuleMetaDataSerializer(descriptorSerializer));
+    }
+
+    public synchronized ResolvedModuleRevision getCachedModule(DependencyResolver resolver, ModuleRevisionId moduleRevisionId) {
+        String key = createKey(resolver, moduleRevisionId);
+        CachedModuleMetaData cached = getCache().get(key);
+        if (cached == null) {
+            return null;
+        }
+        File descriptorFile = new File(cached.descriptorFile);
+        if (descriptorFile.lastModified() != cached.lastModified || descriptorFile.length() != cached.length) {
+            LOGGER.debug("Descriptor file for {} has changed, discarding stored module metadata.", moduleRevisionId);
+            getCache().remove(key);
+            return null;
+        }
+        LOGGER.debug("Found module metadata for {} in binary module metadata store.", moduleRevisionId);
+        MetadataArtifactDownloadReport report = new MetadataArtifactDownloadReport(cached.descriptor.getMetadataArtifact());
+        report.setLocalFile(descriptorFile);
+        report.setSize(cached.length);
+        return new ResolvedModuleRevision(resolver, resolver, cached.descriptor, report);
+    }
+
+    public synchronized void cacheModule(DependencyResolver resolver, ModuleRevisionId moduleRevisionId, ResolvedModuleRevision module) {
+        File descriptorFile = module.getReport() == null ? null : module.getReport().getLocalFile();
+        if (descriptorFile == null || !descriptorFile.isFile()) {
+            return;
+        }
+        if (!descriptorSerializer.canSerialize(module.getDescriptor())) {
+            LOGGER.debug("Cannot store module metadata for {} in binary module metadata store.", moduleRevisionId);
+            return;
+        }
+        getCache().put(createKey(resolver, moduleRevisionId), new CachedModuleMetaData(module.getDescriptor(), descriptorFile.getAbsolutePath(), descriptorFile.lastModified(), descriptorFile.length()));
+    }
+
+    private String createKey(DependencyResolver resolver, ModuleRevisionId moduleRevisionId) {
+        return new WharfResolverMetadata(resolver).getId() + ":" + moduleRevisionId.encodeToString();
+    }
+
+    private static class CachedModuleMetaData {
+        private final ModuleDescriptor descriptor;
+        private final String descriptorFile;
+        private final long lastModified;
+        private final long length;
+
+        private CachedModuleMetaData(ModuleDescriptor descriptor, String descriptorFile, long lastModified, long length) {
+            this.descriptor = descriptor;
+            this.descriptorFile = descriptorFile;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    private static class CachedModuleMetaDataSerializer implements Serializer<CachedModuleMetaData> {
+        private static final int FORMAT_VERSION = 1;
+        private final ModuleDescriptorSerializer descriptorSerializer;
+
+        private CachedModuleMetaDataSerializer(ModuleDescriptorSerializer descriptorSerializer) {
+            this.descriptorSerializer = descriptorSerializer;
+        }
+
+        public CachedModuleMetaData read(InputStream instr) throws Exception {
+            DataInputStream input = new DataInputStream(instr);
+            int formatVersion = input.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException(String.format("Unexpected module metadata format version %s.", formatVersion));
+            }
+            String descriptorFile = input.readUTF();
+            long lastModified = input.readLong();
+            long length = input.readLong();
+            return new CachedModuleMetaData(descriptorSerializer.read(input), descriptorFile, lastModified, length);
+        }
+
+        public void write(OutputStream outstr, CachedModuleMetaData value) throws Exception {
+            DataOutputStream output = new DataOutputStream(outstr);
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(value.descriptorFile);
+            output.writeLong(value.lastModified);
+            output.writeLong(value.length);
+            descriptorSerializer.write(output, value.descriptor);
+            output.flush();
+        }
+    }
+}
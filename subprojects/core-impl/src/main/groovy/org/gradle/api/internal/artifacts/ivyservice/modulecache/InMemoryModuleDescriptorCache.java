@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.report.MetadataArtifactDownloadReport;
+import org.apache.ivy.core.resolve.ResolvedModuleRevision;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
+import org.jfrog.wharf.ivy.model.WharfResolverMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link ModuleDescriptorCache} which holds parsed descriptors in memory. Entries are softly referenced, so they are
+ * evicted when the heap runs low, and are discarded when the descriptor file they were parsed from changes. The
+ * descriptors are kept in a {@link CrossBuildInMemoryCaches} cache, so that they are shared by all builds run by a
+ * daemon.
+ */
+public class InMemoryModuleDescriptorCache implements ModuleDescriptorCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryModuleDescriptorCache.class);
+    private final ConcurrentMap<CacheKey, CachedDescriptor> descriptors;
+
+    public InMemoryModuleDescriptorCache(CrossBuildInMemoryCaches caches) {
+        descriptors = caches.getSoftValueCache(InMemoryModuleDescriptorCache.class.getName());
+    }
+
+    public ResolvedModuleRevision getCachedModule(DependencyResolver resolver, ModuleRevisionId moduleRevisionId) {
+        CacheKey key = new CacheKey(resolver, moduleRevisionId);
+        CachedDescriptor cached = descriptors.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (!cached.isUpToDate()) {
+            LOGGER.debug("Descriptor file for {} has changed, discarding cached module descriptor.", moduleRevisionId);
+            descriptors.remove(key, cached);
+            return null;
+        }
+        LOGGER.debug("Found module descriptor for {} in memory cache.", moduleRevisionId);
+        MetadataArtifactDownloadReport report = new MetadataArtifactDownloadReport(cached.descriptor.getMetadataArtifact());
+        report.setLocalFile(cached.descriptorFile);
+        report.setSize(cached.length);
+        return new ResolvedModuleRevision(resolver, resolver, cached.descriptor, report);
+    }
+
+    public void cacheModule(DependencyResolver resolver, ModuleRevisionId moduleRevisionId, ResolvedModuleRevision module) {
+        File descriptorFile = module.getReport() == null ? null : module.getReport().getLocalFile();
+        if (descriptorFile == null || !descriptorFile.isFile()) {
+            return;
+        }
+        descriptors.put(new CacheKey(resolver, moduleRevisionId), new CachedDescriptor(module.getDescriptor(), descriptorFile));
+    }
+
+    private static class CacheKey {
+        private final String resolverId;
+        private final ModuleRevisionId moduleRevisionId;
+
+        private CacheKey(DependencyResolver resolver, ModuleRevisionId moduleRevisionId) {
+            this.resolverId = new WharfResolverMetadata(resolver).getId();
+            this.moduleRevisionId = moduleRevisionId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || !(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return resolverId.equals(other.resolverId) && moduleRevisionId.equals(other.moduleRevisionId);
+        }
+
+        @Override
+        public int hashCode() {
+            return resolverId.hashCode() ^ moduleRevisionId.hashCode();
+        }
+    }
+
+    private static class CachedDescriptor {
+        private final ModuleDescriptor descriptor;
+        private final File descriptorFile;
+        private final long lastModified;
+        private final long length;
+
+        private CachedDescriptor(ModuleDescriptor descriptor, File descriptorFile) {
+            this.descriptor = descriptor;
+            this.descriptorFile = descriptorFile;
+            this.lastModified = descriptorFile.lastModified();
+            this.length = descriptorFile.length();
+        }
+
+        public boolean isUpToDate() {
+            return descriptorFile.lastModified() == lastModified && descriptorFile.length() == length;
+        }
+    }
+}
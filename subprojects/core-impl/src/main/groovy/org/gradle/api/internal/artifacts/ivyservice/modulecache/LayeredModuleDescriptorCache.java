@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.resolve.ResolvedModuleRevision;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+
+/**
+ * A {@link ModuleDescriptorCache} which looks in a fast cache before a slower backing cache. Modules found in the backing
+ * cache are added to the fast cache, and modules are always added to both.
+ */
+public class LayeredModuleDescriptorCache implements ModuleDescriptorCache {
+    private final ModuleDescriptorCache fastCache;
+    private final ModuleDescriptorCache backingCache;
+
+    public LayeredModuleDescriptorCache(ModuleDescriptorCache fastCache, ModuleDescriptorCache backingCache) {
+        this.fastCache = fastCache;
+        this.backingCache = backingCache;
+    }
+
+    public ResolvedModuleRevision getCachedModule(DependencyResolver resolver, ModuleRevisionId moduleRevisionId) {
+        ResolvedModuleRevision module = fastCache.getCachedModule(resolver, moduleRevisionId);
+        if (module != null) {
+            return module;
+        }
+        module = backingCache.getCachedModule(resolver, moduleRevisionId);
+        if (module != null) {
+            fastCache.cacheModule(resolver, moduleRevisionId, module);
+        }
+        return module;
+    }
+
+    public void cacheModule(DependencyResolver resolver, ModuleRevisionId moduleRevisionId, ResolvedModuleRevision module) {
+        fastCache.cacheModule(resolver, moduleRevisionId, module);
+        backingCache.cacheModule(resolver, moduleRevisionId, module);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.resolve.ResolvedModuleRevision;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+
+/**
+ * Caches the parsed module descriptors served by a resolver, so that the descriptor files in the artifact cache
+ * do not need to be parsed again.
+ */
+public interface ModuleDescriptorCache {
+    /**
+     * Returns the cached module for the given resolver and module revision, or null if the module is not cached or
+     * its descriptor file has changed since it was cached.
+     */
+    ResolvedModuleRevision getCachedModule(DependencyResolver resolver, ModuleRevisionId moduleRevisionId);
+
+    /**
+     * Caches the descriptor of the given module, as served by the given resolver for the given module revision. Ignored
+     * when the module has no descriptor file in the artifact cache.
+     */
+    void cacheModule(DependencyResolver resolver, ModuleRevisionId moduleRevisionId, ResolvedModuleRevision module);
+}
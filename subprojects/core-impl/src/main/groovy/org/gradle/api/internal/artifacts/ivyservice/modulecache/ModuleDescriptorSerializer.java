@@ -0,0 +1,385 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.module.descriptor.*;
+import org.apache.ivy.core.module.id.ArtifactId;
+import org.apache.ivy.core.module.id.ModuleId;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.plugins.matcher.*;
+import org.gradle.cache.Serializer;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Writes the parts of a module descriptor which are used by the resolve engine in a compact binary format: the
+ * configurations, artifacts, dependencies, exclude rules and extra attributes of the module.
+ */
+public class ModuleDescriptorSerializer implements Serializer<ModuleDescriptor> {
+    private static final Map<String, PatternMatcher> MATCHERS = new HashMap<String, PatternMatcher>();
+
+    static {
+        for (PatternMatcher matcher : Arrays.asList(ExactPatternMatcher.INSTANCE, RegexpPatternMatcher.INSTANCE, GlobPatternMatcher.INSTANCE, ExactOrRegexpPatternMatcher.INSTANCE)) {
+            MATCHERS.put(matcher.getName(), matcher);
+        }
+    }
+
+    // The configuration mappings of a dependency, as declared. The public accessors expand the '*', '%', '!', '@' and '#'
+    // mappings against the requested configuration, so these cannot be used to write the dependency.
+    private static final Field DEPENDENCY_CONFIGURATIONS = findDependencyConfigurationsField();
+
+    private static Field findDependencyConfigurationsField() {
+        try {
+            Field field = DefaultDependencyDescriptor.class.getDeclaredField("confs");
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the given descriptor can be written by this serializer without losing information the resolve engine uses.
+     */
+    public boolean canSerialize(ModuleDescriptor descriptor) {
+        if (!(descriptor instanceof DefaultModuleDescriptor)) {
+            return false;
+        }
+        List<ExcludeRule> excludeRules = new ArrayList<ExcludeRule>(Arrays.asList(descriptor.getAllExcludeRules()));
+        for (DependencyDescriptor dependency : descriptor.getDependencies()) {
+            if (!(dependency instanceof DefaultDependencyDescriptor) || DEPENDENCY_CONFIGURATIONS == null) {
+                return false;
+            }
+            excludeRules.addAll(Arrays.asList(dependency.getAllExcludeRules()));
+            for (IncludeRule includeRule : dependency.getAllIncludeRules()) {
+                if (!MATCHERS.containsKey(includeRule.getMatcher().getName())) {
+                    return false;
+                }
+            }
+        }
+        for (ExcludeRule excludeRule : excludeRules) {
+            if (!MATCHERS.containsKey(excludeRule.getMatcher().getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void write(OutputStream outstr, ModuleDescriptor descriptor) throws Exception {
+        DataOutputStream output = new DataOutputStream(outstr);
+        writeModuleRevisionId(output, descriptor.getModuleRevisionId());
+        writeModuleRevisionId(output, descriptor.getResolvedModuleRevisionId());
+        writeNullableString(output, descriptor.getStatus());
+        writeDate(output, descriptor.getPublicationDate());
+        writeDate(output, descriptor.getResolvedPublicationDate());
+        output.writeBoolean(descriptor.isDefault());
+        writeMap(output, descriptor.getExtraInfo());
+
+        Configuration[] configurations = descriptor.getConfigurations();
+        output.writeInt(configurations.length);
+        for (Configuration configuration : configurations) {
+            output.writeUTF(configuration.getName());
+            output.writeUTF(configuration.getVisibility().toString());
+            writeNullableString(output, configuration.getDescription());
+            writeStrings(output, configuration.getExtends());
+            output.writeBoolean(configuration.isTransitive());
+            writeNullableString(output, configuration.getDeprecated());
+        }
+
+        Artifact[] artifacts = descriptor.getAllArtifacts();
+        output.writeInt(artifacts.length);
+        for (Artifact artifact : artifacts) {
+            writeArtifact(output, artifact.getName(), artifact.getType(), artifact.getExt(), artifact.getUrl(), artifact.getQualifiedExtraAttributes());
+            writeStrings(output, artifact.getConfigurations());
+        }
+
+        DependencyDescriptor[] dependencies = descriptor.getDependencies();
+        output.writeInt(dependencies.length);
+        for (DependencyDescriptor dependency : dependencies) {
+            writeDependency(output, dependency);
+        }
+
+        writeExcludeRules(output, descriptor.getAllExcludeRules());
+        output.flush();
+    }
+
+    public ModuleDescriptor read(InputStream instr) throws Exception {
+        DataInputStream input = new DataInputStream(instr);
+        ModuleRevisionId id = readModuleRevisionId(input);
+        ModuleRevisionId resolvedId = readModuleRevisionId(input);
+        String status = readNullableString(input);
+        Date publicationDate = readDate(input);
+        Date resolvedPublicationDate = readDate(input);
+        boolean isDefault = input.readBoolean();
+        DefaultModuleDescriptor descriptor = new DefaultModuleDescriptor(id, status, publicationDate, isDefault);
+        descriptor.setResolvedModuleRevisionId(resolvedId);
+        descriptor.setResolvedPublicationDate(resolvedPublicationDate);
+        for (Map.Entry<String, String> entry : readMap(input).entrySet()) {
+            descriptor.addExtraInfo(entry.getKey(), entry.getValue());
+        }
+
+        int configurationCount = input.readInt();
+        for (int i = 0; i < configurationCount; i++) {
+            String name = input.readUTF();
+            Configuration.Visibility visibility = Configuration.Visibility.getVisibility(input.readUTF());
+            String description = readNullableString(input);
+            String[] extendsFrom = readStrings(input);
+            boolean transitive = input.readBoolean();
+            String deprecated = readNullableString(input);
+            descriptor.addConfiguration(new Configuration(name, visibility, description, extendsFrom, transitive, deprecated));
+        }
+
+        int artifactCount = input.readInt();
+        for (int i = 0; i < artifactCount; i++) {
+            MDArtifact artifact = new MDArtifact(descriptor, input.readUTF(), input.readUTF(), input.readUTF(), readUrl(input), readMap(input));
+            for (String configuration : readStrings(input)) {
+                artifact.addConfiguration(configuration);
+                descriptor.addArtifact(configuration, artifact);
+            }
+        }
+
+        int dependencyCount = input.readInt();
+        for (int i = 0; i < dependencyCount; i++) {
+            descriptor.addDependency(readDependency(input, descriptor));
+        }
+
+        for (DefaultExcludeRule excludeRule : readExcludeRules(input)) {
+            descriptor.addExcludeRule(excludeRule);
+        }
+        return descriptor;
+    }
+
+    private void writeDependency(DataOutputStream output, DependencyDescriptor dependency) throws IOException {
+        writeModuleRevisionId(output, dependency.getDependencyRevisionId());
+        writeModuleRevisionId(output, dependency.getDynamicConstraintDependencyRevisionId());
+        output.writeBoolean(dependency.isForce());
+        output.writeBoolean(dependency.isChanging());
+        output.writeBoolean(dependency.isTransitive());
+
+        Map<String, List<String>> configurationMappings = getConfigurationMappings(dependency);
+        output.writeInt(configurationMappings.size());
+        for (Map.Entry<String, List<String>> entry : configurationMappings.entrySet()) {
+            output.writeUTF(entry.getKey());
+            writeStrings(output, entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+
+        DependencyArtifactDescriptor[] dependencyArtifacts = dependency.getAllDependencyArtifacts();
+        output.writeInt(dependencyArtifacts.length);
+        for (DependencyArtifactDescriptor artifact : dependencyArtifacts) {
+            writeArtifact(output, artifact.getName(), artifact.getType(), artifact.getExt(), artifact.getUrl(), artifact.getQualifiedExtraAttributes());
+            writeStrings(output, artifact.getConfigurations());
+        }
+
+        IncludeRule[] includeRules = dependency.getAllIncludeRules();
+        output.writeInt(includeRules.length);
+        for (IncludeRule includeRule : includeRules) {
+            writeRule(output, includeRule.getId(), includeRule.getMatcher(), includeRule.getQualifiedExtraAttributes(), includeRule.getConfigurations());
+        }
+
+        writeExcludeRules(output, dependency.getAllExcludeRules());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, List<String>> getConfigurationMappings(DependencyDescriptor dependency) throws IOException {
+        try {
+            return (Map<String, List<String>>) DEPENDENCY_CONFIGURATIONS.get(dependency);
+        } catch (IllegalAccessException e) {
+            throw new IOException(String.format("Could not read the configuration mappings of %s.", dependency));
+        }
+    }
+
+    private DependencyDescriptor readDependency(DataInputStream input, ModuleDescriptor descriptor) throws IOException {
+        ModuleRevisionId id = readModuleRevisionId(input);
+        ModuleRevisionId dynamicId = readModuleRevisionId(input);
+        boolean force = input.readBoolean();
+        boolean changing = input.readBoolean();
+        boolean transitive = input.readBoolean();
+        DefaultDependencyDescriptor dependency = new DefaultDependencyDescriptor(descriptor, id, dynamicId, force, changing, transitive);
+
+        int moduleConfigurationCount = input.readInt();
+        for (int i = 0; i < moduleConfigurationCount; i++) {
+            String moduleConfiguration = input.readUTF();
+            for (String dependencyConfiguration : readStrings(input)) {
+                dependency.addDependencyConfiguration(moduleConfiguration, dependencyConfiguration);
+            }
+        }
+
+        int dependencyArtifactCount = input.readInt();
+        for (int i = 0; i < dependencyArtifactCount; i++) {
+            DefaultDependencyArtifactDescriptor artifact = new DefaultDependencyArtifactDescriptor(dependency, input.readUTF(), input.readUTF(), input.readUTF(), readUrl(input), readMap(input));
+            for (String configuration : readStrings(input)) {
+                artifact.addConfiguration(configuration);
+                dependency.addDependencyArtifact(configuration, artifact);
+            }
+        }
+
+        int includeRuleCount = input.readInt();
+        for (int i = 0; i < includeRuleCount; i++) {
+            ArtifactId artifactId = readArtifactId(input);
+            PatternMatcher matcher = readMatcher(input);
+            DefaultIncludeRule includeRule = new DefaultIncludeRule(artifactId, matcher, readMap(input));
+            for (String configuration : readStrings(input)) {
+                includeRule.addConfiguration(configuration);
+                dependency.addIncludeRule(configuration, includeRule);
+            }
+        }
+
+        for (DefaultExcludeRule excludeRule : readExcludeRules(input)) {
+            for (String configuration : excludeRule.getConfigurations()) {
+                dependency.addExcludeRule(configuration, excludeRule);
+            }
+        }
+        return dependency;
+    }
+
+    private void writeExcludeRules(DataOutputStream output, ExcludeRule[] excludeRules) throws IOException {
+        output.writeInt(excludeRules.length);
+        for (ExcludeRule excludeRule : excludeRules) {
+            writeRule(output, excludeRule.getId(), excludeRule.getMatcher(), excludeRule.getQualifiedExtraAttributes(), excludeRule.getConfigurations());
+        }
+    }
+
+    private List<DefaultExcludeRule> readExcludeRules(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        List<DefaultExcludeRule> excludeRules = new ArrayList<DefaultExcludeRule>(count);
+        for (int i = 0; i < count; i++) {
+            ArtifactId artifactId = readArtifactId(input);
+            PatternMatcher matcher = readMatcher(input);
+            DefaultExcludeRule excludeRule = new DefaultExcludeRule(artifactId, matcher, readMap(input));
+            for (String configuration : readStrings(input)) {
+                excludeRule.addConfiguration(configuration);
+            }
+            excludeRules.add(excludeRule);
+        }
+        return excludeRules;
+    }
+
+    private void writeRule(DataOutputStream output, ArtifactId id, PatternMatcher matcher, Map extraAttributes, String[] configurations) throws IOException {
+        output.writeUTF(id.getModuleId().getOrganisation());
+        output.writeUTF(id.getModuleId().getName());
+        output.writeUTF(id.getName());
+        output.writeUTF(id.getType());
+        output.writeUTF(id.getExt());
+        output.writeUTF(matcher.getName());
+        writeMap(output, extraAttributes);
+        writeStrings(output, configurations);
+    }
+
+    private ArtifactId readArtifactId(DataInputStream input) throws IOException {
+        ModuleId moduleId = new ModuleId(input.readUTF(), input.readUTF());
+        return new ArtifactId(moduleId, input.readUTF(), input.readUTF(), input.readUTF());
+    }
+
+    private PatternMatcher readMatcher(DataInputStream input) throws IOException {
+        String name = input.readUTF();
+        PatternMatcher matcher = MATCHERS.get(name);
+        if (matcher == null) {
+            throw new IOException(String.format("Unknown pattern matcher '%s'.", name));
+        }
+        return matcher;
+    }
+
+    private void writeArtifact(DataOutputStream output, String name, String type, String ext, URL url, Map extraAttributes) throws IOException {
+        output.writeUTF(name);
+        output.writeUTF(type);
+        output.writeUTF(ext);
+        writeNullableString(output, url == null ? null : url.toExternalForm());
+        writeMap(output, extraAttributes);
+    }
+
+    private URL readUrl(DataInputStream input) throws IOException {
+        String url = readNullableString(input);
+        return url == null ? null : new URL(url);
+    }
+
+    private void writeModuleRevisionId(DataOutputStream output, ModuleRevisionId id) throws IOException {
+        output.writeBoolean(id != null);
+        if (id == null) {
+            return;
+        }
+        output.writeUTF(id.getOrganisation());
+        output.writeUTF(id.getName());
+        writeNullableString(output, id.getBranch());
+        output.writeUTF(id.getRevision());
+        writeMap(output, id.getQualifiedExtraAttributes());
+    }
+
+    private ModuleRevisionId readModuleRevisionId(DataInputStream input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        String organisation = input.readUTF();
+        String name = input.readUTF();
+        String branch = readNullableString(input);
+        String revision = input.readUTF();
+        return ModuleRevisionId.newInstance(organisation, name, branch, revision, readMap(input));
+    }
+
+    private void writeDate(DataOutputStream output, Date date) throws IOException {
+        output.writeLong(date == null ? -1 : date.getTime());
+    }
+
+    private Date readDate(DataInputStream input) throws IOException {
+        long time = input.readLong();
+        return time == -1 ? null : new Date(time);
+    }
+
+    private void writeMap(DataOutputStream output, Map<?, ?> map) throws IOException {
+        output.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            output.writeUTF(entry.getKey().toString());
+            writeNullableString(output, entry.getValue() == null ? null : entry.getValue().toString());
+        }
+    }
+
+    private Map<String, String> readMap(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        Map<String, String> map = new LinkedHashMap<String, String>(count);
+        for (int i = 0; i < count; i++) {
+            map.put(input.readUTF(), readNullableString(input));
+        }
+        return map;
+    }
+
+    private void writeStrings(DataOutputStream output, String[] values) throws IOException {
+        output.writeInt(values.length);
+        for (String value : values) {
+            output.writeUTF(value);
+        }
+    }
+
+    private String[] readStrings(DataInputStream input) throws IOException {
+        String[] values = new String[input.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readUTF();
+        }
+        return values;
+    }
+
+    private void writeNullableString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private String readNullableString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
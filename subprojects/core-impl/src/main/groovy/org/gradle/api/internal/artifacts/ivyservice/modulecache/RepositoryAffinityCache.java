@@ -0,0 +1,44 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.module.id.ModuleId;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+
+import java.util.List;
+
+/**
+ * Records which resolver last supplied each module, so that the resolver can be asked for the module before the
+ * resolvers which are declared ahead of it. A recorded resolver is only preferred while the resolvers declared ahead of
+ * it are the same as when it was recorded.
+ */
+public interface RepositoryAffinityCache {
+    /**
+     * Returns the resolver which last supplied the given module, from the given candidates, or null if none of them did or
+     * the candidates declared ahead of it have changed since it was recorded.
+     */
+    DependencyResolver getPreferredResolver(ModuleId moduleId, List<? extends DependencyResolver> candidates);
+
+    /**
+     * Records that the given resolver, one of the given candidates in declaration order, supplied the given module.
+     */
+    void recordResolver(ModuleId moduleId, DependencyResolver resolver, List<? extends DependencyResolver> candidates);
+
+    /**
+     * Records that the given number of requests for missing modules were avoided by asking the preferred resolver first.
+     */
+    void recordRequestsAvoided(int count);
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.module.id.ModuleId;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.cache.DefaultSerializer;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.internal.FileLock;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.jfrog.wharf.ivy.model.WharfResolverMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFileBackedRepositoryAffinityCache implements RepositoryAffinityCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SingleFileBackedRepositoryAffinityCache.class);
+    private final ArtifactCacheMetaData cacheMetadata;
+    private final CacheLockingManager cacheLockingManager;
+    private final AtomicInteger requestsAvoided = new AtomicInteger();
+    private PersistentIndexedCache<String, String> cache;
+
+    public SingleFileBackedRepositoryAffinityCache(ArtifactCacheMetaData cacheMetadata, CacheLockingManager cacheLockingManager) {
+        this.cacheMetadata = cacheMetadata;
+        this.cacheLockingManager = cacheLockingManager;
+    }
+
+    private PersistentIndexedCache<String, String> getCache() {
+        if (cache == null) {
+            cache = initCache();
+        }
+        return cache;
+    }
+
+    private PersistentIndexedCache<String, String> initCache() {
+        File moduleRepositoriesFile = new File(cacheMetadata.getCacheDir(), "module-repositories.bin");
+        FileLock moduleRepositoriesLock = cacheLockingManager.getCacheMetadataFileLock(moduleRepositoriesFile);
+        return new BTreePersistentIndexedCache<String, String>(moduleRepositoriesFile, moduleRepositoriesLock,
+                new DefaultSerializer<String>(String.class.getClassLoader()));
+    }
+
+    public synchronized DependencyResolver getPreferredResolver(ModuleId moduleId, List<? extends DependencyResolver> candidates) {
+        String resolverIds = getCache().get(createKey(moduleId));
+        if (resolverIds == null) {
+            return null;
+        }
+        // The recorded resolver is only preferred while the resolvers declared ahead of it are unchanged
+        for (int i = 0; i < candidates.size(); i++) {
+            if (resolverIds.equals(getResolverIds(candidates.subList(0, i + 1)))) {
+                return candidates.get(i);
+            }
+        }
+        return null;
+    }
+
+    public synchronized void recordResolver(ModuleId moduleId, DependencyResolver resolver, List<? extends DependencyResolver> candidates) {
+        String key = createKey(moduleId);
+        String resolverIds = getResolverIds(candidates.subList(0, candidates.indexOf(resolver) + 1));
+        if (!resolverIds.equals(getCache().get(key))) {
+            getCache().put(key, resolverIds);
+        }
+    }
+
+    public void recordRequestsAvoided(int count) {
+        requestsAvoided.addAndGet(count);
+    }
+
+    public int getRequestsAvoided() {
+        return requestsAvoided.get();
+    }
+
+    public void stop() {
+        if (requestsAvoided.get() > 0) {
+            LOGGER.info("Repository affinity avoided {} requests for missing modules.", requestsAvoided.get());
+        }
+    }
+
+    private String createKey(ModuleId moduleId) {
+        return moduleId.getOrganisation() + ":" + moduleId.getName();
+    }
+
+    private String getResolverIds(List<? extends DependencyResolver> resolvers) {
+        StringBuilder ids = new StringBuilder();
+        for (DependencyResolver resolver : resolvers) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(getResolverId(resolver));
+        }
+        return ids.toString();
+    }
+
+    private String getResolverId(DependencyResolver resolver) {
+        return new WharfResolverMetadata(resolver).getId();
+    }
+}
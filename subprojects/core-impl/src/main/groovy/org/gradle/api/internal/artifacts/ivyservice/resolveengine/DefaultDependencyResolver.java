@@ -23,6 +23,7 @@ import org.apache.ivy.plugins.version.VersionMatcher;
 import org.gradle.api.artifacts.ResolveException;
 import org.gradle.api.artifacts.ResolvedConfiguration;
 import org.gradle.api.internal.artifacts.ArtifactDependencyResolver;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.configurations.conflicts.StrictConflictResolution;
 import org.gradle.api.internal.artifacts.ivyservice.*;
@@ -35,9 +36,13 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
     private final ModuleDescriptorConverter moduleDescriptorConverter;
     private final ResolvedArtifactFactory resolvedArtifactFactory;
     private final ResolveIvyFactory ivyFactory;
+    private final DependencyResolutionInstrumentation instrumentation;
+    private final ResolvedGraphCache graphCache = new ResolvedGraphCache();
 
-    public DefaultDependencyResolver(ResolveIvyFactory ivyFactory, ModuleDescriptorConverter moduleDescriptorConverter, ResolvedArtifactFactory resolvedArtifactFactory) {
+    public DefaultDependencyResolver(ResolveIvyFactory ivyFactory, ModuleDescriptorConverter moduleDescriptorConverter, ResolvedArtifactFactory resolvedArtifactFactory,
+                                     DependencyResolutionInstrumentation instrumentation) {
         this.ivyFactory = ivyFactory;
+        this.instrumentation = instrumentation;
         this.moduleDescriptorConverter = moduleDescriptorConverter;
         this.resolvedArtifactFactory = resolvedArtifactFactory;
     }
@@ -65,8 +70,8 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
             conflictResolver = new LatestModuleConflictResolver();
         }
 
-        DependencyGraphBuilder builder = new DependencyGraphBuilder(moduleDescriptorConverter, resolvedArtifactFactory, artifactResolver, dependencyResolver, conflictResolver);
-        DefaultLenientConfiguration result = builder.resolve(configuration, resolveData);
+        DependencyGraphBuilder builder = new DependencyGraphBuilder(moduleDescriptorConverter, resolvedArtifactFactory, artifactResolver, dependencyResolver, conflictResolver, instrumentation);
+        DefaultLenientConfiguration result = builder.resolve(configuration, resolveData, graphCache);
         return new DefaultResolvedConfiguration(result);
     }
 }
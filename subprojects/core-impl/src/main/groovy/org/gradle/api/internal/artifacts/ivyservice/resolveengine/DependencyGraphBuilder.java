@@ -26,6 +26,7 @@ import org.apache.ivy.core.resolve.ResolveData;
 import org.gradle.api.artifacts.ResolveException;
 import org.gradle.api.artifacts.ResolvedArtifact;
 import org.gradle.api.internal.artifacts.DefaultResolvedDependency;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
 import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.ivyservice.*;
@@ -42,9 +43,12 @@ public class DependencyGraphBuilder {
     private final DependencyToModuleResolver dependencyResolver;
     private final ArtifactToFileResolver artifactResolver;
     private final ForcedModuleConflictResolver conflictResolver;
+    private final DependencyResolutionInstrumentation instrumentation;
 
-    public DependencyGraphBuilder(ModuleDescriptorConverter moduleDescriptorConverter, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver artifactResolver, DependencyToModuleResolver dependencyResolver, ModuleConflictResolver conflictResolver) {
+    public DependencyGraphBuilder(ModuleDescriptorConverter moduleDescriptorConverter, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver artifactResolver, DependencyToModuleResolver dependencyResolver, ModuleConflictResolver conflictResolver,
+                                  DependencyResolutionInstrumentation instrumentation) {
         this.moduleDescriptorConverter = moduleDescriptorConverter;
+        this.instrumentation = instrumentation;
         this.resolvedArtifactFactory = resolvedArtifactFactory;
         this.artifactResolver = artifactResolver;
         this.dependencyResolver = dependencyResolver;
@@ -52,32 +56,107 @@ public class DependencyGraphBuilder {
     }
 
     public DefaultLenientConfiguration resolve(ConfigurationInternal configuration, ResolveData resolveData) throws ResolveException {
+        return resolve(configuration, resolveData, null);
+    }
+
+    /**
+     * Resolves the given configuration. When a graph cache is given, reuses the graph of an already resolved configuration
+     * which the given configuration extends, if there is one, and adds the graph of the given configuration to the cache.
+     */
+    public DefaultLenientConfiguration resolve(ConfigurationInternal configuration, ResolveData resolveData, ResolvedGraphCache graphCache) throws ResolveException {
         ModuleDescriptor moduleDescriptor = moduleDescriptorConverter.convert(configuration.getAll(), configuration.getModule());
 
-        ResolveState resolveState = new ResolveState(moduleDescriptor, configuration.getName(), dependencyResolver);
-        traverseGraph(resolveData, resolveState);
+        ResolveState resolveState = null;
+        ResolvedGraph parentGraph = graphCache == null ? null : graphCache.findParentGraph(configuration);
+        if (parentGraph != null) {
+            resolveState = resolveIncrementally(moduleDescriptor, configuration.getName(), resolveData, parentGraph);
+        }
+        if (resolveState == null) {
+            resolveState = new ResolveState(moduleDescriptor, configuration.getName(), dependencyResolver);
+            traverseGraph(resolveData, resolveState, Collections.<String>emptySet());
+        }
+        instrumentation.configurationResolved(resolveState.incremental);
 
-        DefaultLenientConfiguration result = new DefaultLenientConfiguration(configuration, resolveState.root.getResult());
+        DefaultLenientConfiguration result = new DefaultLenientConfiguration(configuration, resolveState.root.getResult(), resolvedArtifactFactory);
         assembleResult(resolveState, result);
 
+        if (graphCache != null && !result.hasError()) {
+            graphCache.store(configuration, new ResolvedGraph(resolveState));
+        }
         return result;
     }
 
+    /**
+     * Resolves a configuration by traversing only the dependencies declared by the configurations which the parent graph does
+     * not include, then merging in the parent graph. This gives the same result as traversing the whole graph provided the
+     * additional dependencies do not bring in any version of a module which the parent graph also includes, other than
+     * the version the parent graph selected. Otherwise, conflict resolution may select different versions to the parent
+     * graph, so returns null and the graph must be traversed from scratch.
+     */
+    private ResolveState resolveIncrementally(ModuleDescriptor moduleDescriptor, String configurationName, ResolveData resolveData, ResolvedGraph parentGraph) {
+        ResolveState parent = parentGraph.resolveState;
+        ResolveState resolveState = new ResolveState(moduleDescriptor, configurationName, dependencyResolver);
+        if (!parent.root.moduleRevision.id.equals(resolveState.root.moduleRevision.id)) {
+            return null;
+        }
+        traverseGraph(resolveData, resolveState, parent.root.heirarchy);
+
+        for (ModuleId moduleId : resolveState.modules.keySet()) {
+            if (!parent.modules.containsKey(moduleId)) {
+                continue;
+            }
+            DefaultModuleRevisionResolveState parentSelection = moduleId.equals(parent.root.moduleRevision.id.getModuleId()) ? parent.root.moduleRevision : parent.getSelected(moduleId);
+            for (DefaultModuleRevisionResolveState version : resolveState.modules.get(moduleId)) {
+                if (parentSelection == null || !parentSelection.id.equals(version.id)) {
+                    LOGGER.debug("Cannot reuse graph of {}, as {} conflicts with its selection of {}. Resolving from scratch.", parent.root, version, parentSelection);
+                    return null;
+                }
+            }
+        }
+
+        LOGGER.debug("Reusing graph of {} for {}.", parent.root, resolveState.root);
+        replay(parent, resolveState);
+        resolveState.incremental = true;
+        return resolveState;
+    }
+
+    /**
+     * Copies the selected module versions and the edges between configurations from one state into another.
+     */
+    private static void replay(ResolveState source, ResolveState target) {
+        for (DefaultModuleRevisionResolveState revision : source.revisions.values()) {
+            DefaultModuleRevisionResolveState targetRevision = target.getRevision(revision.id);
+            if (revision.selected && !targetRevision.selected) {
+                target.select(targetRevision);
+            }
+        }
+        for (ConfigurationResolveState configuration : source.getConfigurations()) {
+            ConfigurationResolveState targetConfiguration = target.getConfiguration(source, configuration);
+            for (IncomingEdge incomingEdge : configuration.incomingEdges) {
+                targetConfiguration.addIncomingEdge(incomingEdge.replay(source, target));
+            }
+        }
+    }
+
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
+     *
+     * @param inheritedConfigurations The configurations of the root module whose dependencies should not be traversed.
      */
-    private void traverseGraph(ResolveData resolveData, ResolveState resolveState) {
+    private void traverseGraph(ResolveData resolveData, ResolveState resolveState, Set<String> inheritedConfigurations) {
         SetMultimap<DefaultModuleRevisionResolveState, ResolvePath> pendingConflictResolution = LinkedHashMultimap.create();
         SetMultimap<ModuleId, DefaultModuleRevisionResolveState> allVersions = LinkedHashMultimap.create();
         Set<ModuleId> conflicts = new LinkedHashSet<ModuleId>();
 
         List<ResolvePath> queue = new ArrayList<ResolvePath>();
-        resolveState.root.addOutgoingDependencies(new RootPath(), resolveState, queue);
+        resolveState.root.addOutgoingDependencies(new RootPath(), resolveState, queue, inheritedConfigurations);
+        long steps = 0;
 
         while (!queue.isEmpty() || !pendingConflictResolution.isEmpty()) {
             if (!queue.isEmpty()) {
                 ResolvePath path = queue.remove(0);
                 LOGGER.debug("Visiting path {}.", path);
+                steps++;
 
                 try {
                     path.resolveModuleRevisionId(dependencyResolver, resolveState);
@@ -157,6 +236,8 @@ public class DependencyGraphBuilder {
                 }
             }
         }
+
+        instrumentation.traversalSteps(steps);
     }
 
     /**
@@ -179,6 +260,7 @@ public class DependencyGraphBuilder {
         private final Map<ModuleRevisionId, ModuleVersionSelectorResolveState> selectors = new LinkedHashMap<ModuleRevisionId, ModuleVersionSelectorResolveState>();
         private final ConfigurationResolveState root;
         private final DependencyToModuleResolver resolver;
+        private boolean incremental;
 
         public ResolveState(ModuleDescriptor rootModule, String rootConfigurationName, DependencyToModuleResolver resolver) {
             this.resolver = resolver;
@@ -222,6 +304,17 @@ public class DependencyGraphBuilder {
             return configuration;
         }
 
+        /**
+         * Returns the configuration in this state which corresponds to the given configuration from another state. The root
+         * configuration of the other state corresponds to the root configuration of this state.
+         */
+        public ConfigurationResolveState getConfiguration(ResolveState other, ConfigurationResolveState configuration) {
+            if (configuration == other.root) {
+                return root;
+            }
+            return getConfiguration(configuration.descriptor, configuration.configurationName);
+        }
+
         public ModuleVersionSelectorResolveState getSelector(DependencyDescriptor dependencyDescriptor) {
             ModuleRevisionId original = dependencyDescriptor.getDependencyRevisionId();
             ModuleRevisionId selectorId = ModuleRevisionId.newInstance(original.getOrganisation(), original.getName(), original.getRevision());
@@ -301,7 +394,7 @@ public class DependencyGraphBuilder {
         final ModuleDescriptor descriptor;
         final String configurationName;
         final Set<String> heirarchy = new LinkedHashSet<String>();
-        final Set<ResolvePath> incomingPaths = new LinkedHashSet<ResolvePath>();
+        final Set<IncomingEdge> incomingEdges = new LinkedHashSet<IncomingEdge>();
         DefaultResolvedDependency result;
         Set<ResolvedArtifact> artifacts;
 
@@ -319,16 +412,23 @@ public class DependencyGraphBuilder {
             }
         }
 
-        void addIncomingPath(DependencyResolvePath path) {
-            incomingPaths.add(path);
+        void addIncomingEdge(IncomingEdge edge) {
+            incomingEdges.add(edge);
         }
 
         void addOutgoingDependencies(ResolvePath incomingPath, ResolveState resolveState, Collection<? super DependencyResolvePath> queue) {
+            addOutgoingDependencies(incomingPath, resolveState, queue, Collections.<String>emptySet());
+        }
+
+        void addOutgoingDependencies(ResolvePath incomingPath, ResolveState resolveState, Collection<? super DependencyResolvePath> queue, Set<String> inheritedConfigurations) {
             if (incomingPath.canReach(this)) {
                 LOGGER.debug("Skipping {} as it already traverses {}.", incomingPath, this);
                 return;
             }
             for (DependencyDescriptor dependency : moduleRevision.getDependencies()) {
+                if (isInherited(dependency, inheritedConfigurations)) {
+                    continue;
+                }
                 Set<String> targetConfigurations = getTargetConfigurations(dependency);
                 ModuleId targetModuleId = dependency.getDependencyRevisionId().getModuleId();
                 if (!targetConfigurations.isEmpty() && !excludes(targetModuleId) && !incomingPath.excludes(targetModuleId)) {
@@ -339,6 +439,15 @@ public class DependencyGraphBuilder {
             }
         }
 
+        private boolean isInherited(DependencyDescriptor dependencyDescriptor, Set<String> inheritedConfigurations) {
+            for (String moduleConfiguration : dependencyDescriptor.getModuleConfigurations()) {
+                if (inheritedConfigurations.contains(moduleConfiguration)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         private Set<String> getTargetConfigurations(DependencyDescriptor dependencyDescriptor) {
             Set<String> targetConfigurations = new LinkedHashSet<String>();
             for (String moduleConfiguration : dependencyDescriptor.getModuleConfigurations()) {
@@ -398,8 +507,8 @@ public class DependencyGraphBuilder {
         public void attachToParents(ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver resolver, ResolvedConfigurationBuilder result) {
             if (moduleRevision.selected) {
                 LOGGER.debug("Attaching {} to its parents.", this);
-                for (ResolvePath incomingPath : incomingPaths) {
-                    incomingPath.attachToParents(this, resolvedArtifactFactory, resolver, result);
+                for (IncomingEdge incomingEdge : incomingEdges) {
+                    incomingEdge.attachToParents(this, resolvedArtifactFactory, resolver, result);
                 }
             } else {
                 LOGGER.debug("Skipping evicted {}.", this);
@@ -411,9 +520,19 @@ public class DependencyGraphBuilder {
         }
     }
 
-    private static abstract class ResolvePath {
-        public abstract void attachToParents(ConfigurationResolveState childConfiguration, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver resolver, ResolvedConfigurationBuilder result);
+    /**
+     * An edge into a configuration, which attaches the configuration to its parent when assembling the result.
+     */
+    private interface IncomingEdge {
+        void attachToParents(ConfigurationResolveState childConfiguration, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver resolver, ResolvedConfigurationBuilder result);
+
+        /**
+         * Returns an edge which attaches the configuration in the given state corresponding to the source of this edge.
+         */
+        IncomingEdge replay(ResolveState source, ResolveState target);
+    }
 
+    private static abstract class ResolvePath {
         public abstract boolean excludes(ModuleId moduleId);
 
         public abstract boolean canReach(ConfigurationResolveState configuration);
@@ -504,13 +623,49 @@ public class DependencyGraphBuilder {
         }
 
         @Override
-        public void attachToParents(ConfigurationResolveState childConfiguration, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver resolver, ResolvedConfigurationBuilder result) {
-            // Don't need to do anything
+        public boolean isSelected() {
+            return true;
+        }
+    }
+
+    /**
+     * An edge copied from the graph of another configuration. It is not traversed, only attached to its parent when assembling
+     * the result.
+     */
+    private static class ReplayedEdge implements IncomingEdge {
+        final ConfigurationResolveState from;
+        final DependencyDescriptor dependency;
+
+        private ReplayedEdge(ConfigurationResolveState from, DependencyDescriptor dependency) {
+            this.from = from;
+            this.dependency = dependency;
         }
 
         @Override
-        public boolean isSelected() {
-            return true;
+        public String toString() {
+            return String.format("<replayed> | %s -> %s", from, dependency.getDependencyRevisionId());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ReplayedEdge)) {
+                return false;
+            }
+            ReplayedEdge other = (ReplayedEdge) obj;
+            return from == other.from && dependency == other.dependency;
+        }
+
+        @Override
+        public int hashCode() {
+            return from.hashCode() ^ dependency.hashCode();
+        }
+
+        public void attachToParents(ConfigurationResolveState childConfiguration, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver resolver, ResolvedConfigurationBuilder result) {
+            attachToParent(from, dependency, childConfiguration, resolvedArtifactFactory, resolver, result);
+        }
+
+        public IncomingEdge replay(ResolveState source, ResolveState target) {
+            return new ReplayedEdge(target.getConfiguration(source, from), dependency);
         }
     }
 
@@ -600,7 +755,7 @@ public class DependencyGraphBuilder {
         }
     }
 
-    private static class DependencyResolvePath extends ResolvePath {
+    private static class DependencyResolvePath extends ResolvePath implements IncomingEdge {
         final ResolvePath path;
         final ConfigurationResolveState from;
         final Set<String> targetConfigurations;
@@ -676,7 +831,7 @@ public class DependencyGraphBuilder {
                 }
                 ConfigurationResolveState targetConfiguration = resolveState.getConfiguration(targetDescriptor, targetConfigurationName);
                 LOGGER.debug("{} is outgoing to {}.", this, targetConfiguration);
-                targetConfiguration.addIncomingPath(this);
+                targetConfiguration.addIncomingEdge(this);
                 if (from.isTransitive() && dependency.isTransitive()) {
                     targetConfiguration.addOutgoingDependencies(this, resolveState, queue);
                 }
@@ -760,42 +915,12 @@ public class DependencyGraphBuilder {
             return newPath;
         }
 
-        private Set<ResolvedArtifact> getArtifacts(ConfigurationResolveState childConfiguration, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver resolver) {
-            String[] targetConfigurations = from.heirarchy.toArray(new String[from.heirarchy.size()]);
-            DependencyArtifactDescriptor[] dependencyArtifacts = dependency.getDependencyArtifacts(targetConfigurations);
-            if (dependencyArtifacts.length == 0) {
-                return Collections.emptySet();
-            }
-            Set<ResolvedArtifact> artifacts = new LinkedHashSet<ResolvedArtifact>();
-            for (DependencyArtifactDescriptor artifactDescriptor : dependencyArtifacts) {
-                MDArtifact artifact = new MDArtifact(childConfiguration.descriptor, artifactDescriptor.getName(), artifactDescriptor.getType(), artifactDescriptor.getExt(), artifactDescriptor.getUrl(), artifactDescriptor.getQualifiedExtraAttributes());
-                artifacts.add(resolvedArtifactFactory.create(childConfiguration.getResult(), artifact, resolver));
-            }
-            return artifacts;
-        }
-
-        @Override
         public void attachToParents(ConfigurationResolveState childConfiguration, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver resolver, ResolvedConfigurationBuilder result) {
-            DefaultResolvedDependency parent = from.getResult();
-            DefaultResolvedDependency child = childConfiguration.getResult();
-            parent.addChild(child);
-
-            Set<ResolvedArtifact> artifacts = getArtifacts(childConfiguration, resolvedArtifactFactory, resolver);
-            if (!artifacts.isEmpty()) {
-                child.addParentSpecificArtifacts(parent, artifacts);
-            }
-
-            if (artifacts.isEmpty()) {
-                child.addParentSpecificArtifacts(parent, childConfiguration.getArtifacts(resolvedArtifactFactory, resolver));
-            }
-            for (ResolvedArtifact artifact : child.getParentArtifacts(parent)) {
-                result.addArtifact(artifact);
-            }
+            attachToParent(from, dependency, childConfiguration, resolvedArtifactFactory, resolver, result);
+        }
 
-            if (parent == result.getRoot()) {
-                EnhancedDependencyDescriptor enhancedDependencyDescriptor = (EnhancedDependencyDescriptor) dependency;
-                result.addFirstLevelDependency(enhancedDependencyDescriptor.getModuleDependency(), child);
-            }
+        public IncomingEdge replay(ResolveState source, ResolveState target) {
+            return new ReplayedEdge(target.getConfiguration(source, from), dependency);
         }
 
         public boolean isSelected() {
@@ -809,6 +934,56 @@ public class DependencyGraphBuilder {
         }
     }
 
+    private static Set<ResolvedArtifact> getArtifacts(ConfigurationResolveState from, DependencyDescriptor dependency, ConfigurationResolveState childConfiguration, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver resolver) {
+        String[] targetConfigurations = from.heirarchy.toArray(new String[from.heirarchy.size()]);
+        DependencyArtifactDescriptor[] dependencyArtifacts = dependency.getDependencyArtifacts(targetConfigurations);
+        if (dependencyArtifacts.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<ResolvedArtifact> artifacts = new LinkedHashSet<ResolvedArtifact>();
+        for (DependencyArtifactDescriptor artifactDescriptor : dependencyArtifacts) {
+            MDArtifact artifact = new MDArtifact(childConfiguration.descriptor, artifactDescriptor.getName(), artifactDescriptor.getType(), artifactDescriptor.getExt(), artifactDescriptor.getUrl(), artifactDescriptor.getQualifiedExtraAttributes());
+            artifacts.add(resolvedArtifactFactory.create(childConfiguration.getResult(), artifact, resolver));
+        }
+        return artifacts;
+    }
+
+    private static void attachToParent(ConfigurationResolveState from, DependencyDescriptor dependency, ConfigurationResolveState childConfiguration, ResolvedArtifactFactory resolvedArtifactFactory, ArtifactToFileResolver resolver, ResolvedConfigurationBuilder result) {
+        DefaultResolvedDependency parent = from.getResult();
+        DefaultResolvedDependency child = childConfiguration.getResult();
+        parent.addChild(child);
+
+        Set<ResolvedArtifact> artifacts = getArtifacts(from, dependency, childConfiguration, resolvedArtifactFactory, resolver);
+        if (!artifacts.isEmpty()) {
+            child.addParentSpecificArtifacts(parent, artifacts);
+        }
+
+        if (artifacts.isEmpty()) {
+            child.addParentSpecificArtifacts(parent, childConfiguration.getArtifacts(resolvedArtifactFactory, resolver));
+        }
+        for (ResolvedArtifact artifact : child.getParentArtifacts(parent)) {
+            result.addArtifact(artifact);
+        }
+
+        if (parent == result.getRoot()) {
+            EnhancedDependencyDescriptor enhancedDependencyDescriptor = (EnhancedDependencyDescriptor) dependency;
+            result.addFirstLevelDependency(enhancedDependencyDescriptor.getModuleDependency(), child);
+        }
+    }
+
+    /**
+     * The traversal state of a resolved configuration, which can be reused when resolving a configuration which extends it.
+     * Retains only the module versions and the paths between configurations, and none of the state used for traversal.
+     */
+    public static class ResolvedGraph {
+        private final ResolveState resolveState;
+
+        private ResolvedGraph(ResolveState source) {
+            resolveState = new ResolveState(source.root.descriptor, source.root.configurationName, null);
+            replay(source, resolveState);
+        }
+    }
+
     private static class ForcedModuleConflictResolver {
         private final ModuleConflictResolver resolver;
 
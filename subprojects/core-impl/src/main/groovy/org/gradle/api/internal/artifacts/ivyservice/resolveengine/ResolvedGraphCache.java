@@ -0,0 +1,128 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+
+import java.util.*;
+
+/**
+ * Retains the dependency graphs of the configurations of a project which have been resolved, so that a configuration
+ * which extends one of them can reuse its graph rather than traversing it again.
+ */
+public class ResolvedGraphCache {
+    private final Map<Configuration, CachedGraph> graphs = new WeakHashMap<Configuration, CachedGraph>();
+
+    public synchronized void store(ConfigurationInternal configuration, DependencyGraphBuilder.ResolvedGraph graph) {
+        graphs.put(configuration, new CachedGraph(configuration, graph));
+    }
+
+    /**
+     * Locates the graph of a configuration which the given configuration extends, and which is still valid for the given
+     * configuration. Prefers the graph of the configuration with the largest hierarchy, as it leaves the least to traverse.
+     *
+     * @return the graph, or null if there is no such graph.
+     */
+    public synchronized DependencyGraphBuilder.ResolvedGraph findParentGraph(ConfigurationInternal configuration) {
+        CachedGraph best = null;
+        for (Configuration candidate : configuration.getHierarchy()) {
+            if (candidate == configuration) {
+                continue;
+            }
+            CachedGraph cachedGraph = graphs.get(candidate);
+            if (cachedGraph == null || !cachedGraph.canBeReusedFor(candidate, configuration)) {
+                continue;
+            }
+            if (best == null || cachedGraph.hierarchy.size() > best.hierarchy.size()) {
+                best = cachedGraph;
+            }
+        }
+        return best == null ? null : best.graph;
+    }
+
+    private static class CachedGraph {
+        final DependencyGraphBuilder.ResolvedGraph graph;
+        final Set<String> hierarchy;
+        final List<ModuleDependency> dependencies;
+        final List<ExcludeRule> excludeRules;
+        final boolean transitive;
+        final Set<ModuleVersionSelector> forcedModules;
+        final Class<?> conflictResolution;
+
+        private CachedGraph(ConfigurationInternal configuration, DependencyGraphBuilder.ResolvedGraph graph) {
+            this.graph = graph;
+            hierarchy = getNames(configuration.getHierarchy());
+            dependencies = getDependencies(configuration);
+            excludeRules = getExcludeRules(configuration);
+            transitive = configuration.isTransitive();
+            ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+            forcedModules = new HashSet<ModuleVersionSelector>(resolutionStrategy.getForcedModules());
+            conflictResolution = resolutionStrategy.getConflictResolution().getClass();
+        }
+
+        /**
+         * Checks that the graph of this configuration is still up-to-date, and that the given configuration adds nothing which
+         * would change how the graph is traversed: no exclude rules, and the same transitivity, forced modules and conflict
+         * resolution.
+         */
+        boolean canBeReusedFor(Configuration configuration, ConfigurationInternal child) {
+            if (configuration.getState() != Configuration.State.RESOLVED) {
+                return false;
+            }
+            if (!hierarchy.equals(getNames(configuration.getHierarchy()))
+                    || !dependencies.equals(getDependencies(configuration))
+                    || !excludeRules.equals(getExcludeRules(configuration))) {
+                return false;
+            }
+            if (child.isTransitive() != transitive) {
+                return false;
+            }
+            for (Configuration inherited : child.getHierarchy()) {
+                if (!hierarchy.contains(inherited.getName()) && !inherited.getExcludeRules().isEmpty()) {
+                    return false;
+                }
+            }
+            ResolutionStrategyInternal resolutionStrategy = child.getResolutionStrategy();
+            return forcedModules.equals(new HashSet<ModuleVersionSelector>(resolutionStrategy.getForcedModules()))
+                    && conflictResolution.equals(resolutionStrategy.getConflictResolution().getClass());
+        }
+
+        private static List<ModuleDependency> getDependencies(Configuration configuration) {
+            return new ArrayList<ModuleDependency>(configuration.getAllDependencies().withType(ModuleDependency.class));
+        }
+
+        private static List<ExcludeRule> getExcludeRules(Configuration configuration) {
+            List<ExcludeRule> excludeRules = new ArrayList<ExcludeRule>();
+            for (Configuration inherited : configuration.getHierarchy()) {
+                excludeRules.addAll(inherited.getExcludeRules());
+            }
+            return excludeRules;
+        }
+
+        private static Set<String> getNames(Set<Configuration> configurations) {
+            Set<String> names = new LinkedHashSet<String>();
+            for (Configuration configuration : configurations) {
+                names.add(configuration.getName());
+            }
+            return names;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.ivy.plugins.repository.*;
 import org.apache.ivy.util.FileUtil;
 import org.apache.ivy.util.url.ApacheURLLister;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
 import org.gradle.util.GUtil;
 import org.gradle.util.GradleVersion;
 import org.gradle.util.UncheckedException;
@@ -36,6 +37,7 @@ import java.io.*;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
 
@@ -47,6 +49,13 @@ public class CommonsHttpClientBackedRepository extends AbstractRepository {
     private final Map<String, Resource> resources = new HashMap<String, Resource>();
     private final HttpClient client = new HttpClient();
     private final RepositoryCopyProgressListener progress = new RepositoryCopyProgressListener(this);
+    private final RepositoryListingCache.Lister lister = new RepositoryListingCache.Lister() {
+        public List<String> list(String parent) throws IOException {
+            return listAll(parent);
+        }
+    };
+    private RepositoryListingCache listingCache;
+    private DependencyResolutionInstrumentation instrumentation = new DependencyResolutionInstrumentation(false);
 
     public CommonsHttpClientBackedRepository(String username, String password) {
         if (GUtil.isTrue(username)) {
@@ -106,6 +115,9 @@ public class CommonsHttpClientBackedRepository extends AbstractRepository {
         } finally {
             output.close();
         }
+        if (instrumentation.isEnabled()) {
+            instrumentation.repositoryBytes(getRepositoryName(resource.getName()), destination.length());
+        }
     }
 
     @Override
@@ -131,7 +143,11 @@ public class CommonsHttpClientBackedRepository extends AbstractRepository {
         PutMethod method = new PutMethod(destination);
         configureMethod(method);
         method.setRequestEntity(new FileRequestEntity(source));
+        long started = instrumentation.isEnabled() ? System.currentTimeMillis() : 0;
         int result = client.executeMethod(method);
+        if (instrumentation.isEnabled()) {
+            instrumentation.repositoryRequest(getRepositoryName(destination), source.length(), System.currentTimeMillis() - started);
+        }
         if (!wasSuccessful(result)) {
             throw new IOException(String.format("Could not PUT '%s'. Received status code %s from server: %s", destination, result, method.getStatusText()));
         }
@@ -146,10 +162,38 @@ public class CommonsHttpClientBackedRepository extends AbstractRepository {
         });
     }
 
+    public void setInstrumentation(DependencyResolutionInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    public void setListingCache(RepositoryListingCache listingCache) {
+        this.listingCache = listingCache;
+    }
+
+    /**
+     * Starts listing the given parents in the background, when this repository uses a listing cache.
+     */
+    public void prefetchListings(Collection<String> parents) {
+        if (listingCache != null) {
+            listingCache.prefetch(parents, lister);
+        }
+    }
+
     public List list(String parent) throws IOException {
+        if (listingCache != null) {
+            return listingCache.list(parent, lister);
+        }
+        return listAll(parent);
+    }
+
+    private List<String> listAll(String parent) throws IOException {
         // Parse standard directory listing pages served up by Apache
         ApacheURLLister urlLister = new ApacheURLLister();
+        long started = instrumentation.isEnabled() ? System.currentTimeMillis() : 0;
         List<URL> urls = urlLister.listAll(new URL(parent));
+        if (instrumentation.isEnabled()) {
+            instrumentation.repositoryRequest(getRepositoryName(parent), 0, System.currentTimeMillis() - started);
+        }
         if (urls != null) {
             List<String> ret = new ArrayList<String>(urls.size());
             for (URL url : urls) {
@@ -164,6 +208,17 @@ public class CommonsHttpClientBackedRepository extends AbstractRepository {
         return result >= 200 && result < 300;
     }
 
+    private String getRepositoryName(String source) {
+        if (getName() != null) {
+            return getName();
+        }
+        try {
+            return new URL(source).getHost();
+        } catch (MalformedURLException e) {
+            return source;
+        }
+    }
+
     private class LazyResourceInvocationHandler implements InvocationHandler {
         private final String source;
         private final GetMethod method;
@@ -183,7 +238,11 @@ public class CommonsHttpClientBackedRepository extends AbstractRepository {
 
         private Resource init() throws IOException {
             LOGGER.debug("Attempting to get resource {}.", source);
+            long started = instrumentation.isEnabled() ? System.currentTimeMillis() : 0;
             int result = client.executeMethod(method);
+            if (instrumentation.isEnabled()) {
+                instrumentation.repositoryRequest(getRepositoryName(source), 0, System.currentTimeMillis() - started);
+            }
             if (result == 404) {
                 return new MissingResource(source);
             }
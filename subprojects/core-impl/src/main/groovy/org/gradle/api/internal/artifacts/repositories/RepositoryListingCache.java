@@ -0,0 +1,165 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.repositories;
+
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+import org.gradle.util.TimeProvider;
+import org.gradle.util.UncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Caches the directory listings of remote repositories for the duration of a build, so that dynamic versions of the same
+ * module are not listed once for each configuration and project. A listing expires according to the dynamic version policy
+ * of the resolve which requests it. Concurrent requests for the same listing share a single remote request.
+ */
+public class RepositoryListingCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryListingCache.class);
+    private final ConcurrentMap<String, CachedListing> listings = new ConcurrentHashMap<String, CachedListing>();
+    private final ThreadLocal<CachePolicy> cachePolicy = new ThreadLocal<CachePolicy>();
+    private final TimeProvider timeProvider;
+    private final ExecutorFactory executorFactory;
+    private StoppableExecutor executor;
+
+    public RepositoryListingCache(TimeProvider timeProvider, ExecutorFactory executorFactory) {
+        this.timeProvider = timeProvider;
+        this.executorFactory = executorFactory;
+    }
+
+    /**
+     * Specifies the policy used to expire listings requested by the current thread. Listings are not cached for a thread
+     * which has no policy.
+     */
+    public void useCachePolicy(CachePolicy cachePolicy) {
+        this.cachePolicy.set(cachePolicy);
+    }
+
+    /**
+     * Returns the listing of the given parent, using the given lister when the listing is not cached or has expired.
+     */
+    public List<String> list(String parent, Lister lister) throws IOException {
+        CachePolicy policy = cachePolicy.get();
+        if (policy == null) {
+            return lister.list(parent);
+        }
+        CachedListing listing = getListing(parent, lister, policy);
+        listing.run();
+        return listing.getResult();
+    }
+
+    /**
+     * Starts listing the given parents in the background, so that later calls to {@link #list(String, Lister)} do not need
+     * to wait for each listing in turn.
+     */
+    public void prefetch(Collection<String> parents, Lister lister) {
+        CachePolicy policy = cachePolicy.get();
+        if (policy == null || parents.isEmpty()) {
+            return;
+        }
+        for (String parent : parents) {
+            CachedListing listing = getListing(parent, lister, policy);
+            if (!listing.isStarted()) {
+                LOGGER.debug("Prefetching repository listing {}.", parent);
+                getExecutor().execute(listing);
+            }
+        }
+    }
+
+    private CachedListing getListing(String parent, Lister lister, CachePolicy policy) {
+        while (true) {
+            CachedListing listing = listings.get(parent);
+            if (listing != null && !listing.isExpired(policy)) {
+                return listing;
+            }
+            CachedListing newListing = new CachedListing(parent, lister);
+            if (listing == null ? listings.putIfAbsent(parent, newListing) == null : listings.replace(parent, listing, newListing)) {
+                return newListing;
+            }
+        }
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Repository listing");
+        }
+        return executor;
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+
+    /**
+     * Lists the entries of a parent in a repository.
+     */
+    public interface Lister {
+        List<String> list(String parent) throws IOException;
+    }
+
+    private class CachedListing extends FutureTask<List<String>> {
+        private final String parent;
+        private final long timestamp = timeProvider.getCurrentTime();
+        private volatile boolean started;
+
+        private CachedListing(final String parent, final Lister lister) {
+            super(new Callable<List<String>>() {
+                public List<String> call() throws Exception {
+                    return lister.list(parent);
+                }
+            });
+            this.parent = parent;
+        }
+
+        public boolean isStarted() {
+            return started;
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            super.run();
+        }
+
+        public boolean isExpired(CachePolicy policy) {
+            return policy.mustRefreshDynamicVersion(null, timeProvider.getCurrentTime() - timestamp);
+        }
+
+        public List<String> getResult() throws IOException {
+            try {
+                return get();
+            } catch (InterruptedException e) {
+                throw UncheckedException.asUncheckedException(e);
+            } catch (ExecutionException e) {
+                // Don't cache failures
+                listings.remove(parent, this);
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw UncheckedException.asUncheckedException(e.getCause());
+            }
+        }
+    }
+}
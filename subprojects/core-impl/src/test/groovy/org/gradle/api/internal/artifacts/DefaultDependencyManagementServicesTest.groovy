@@ -28,6 +28,7 @@ import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder
 import org.gradle.api.internal.file.FileResolver
 import org.gradle.api.internal.project.ServiceRegistry
 import org.gradle.cache.CacheRepository
+import org.gradle.cache.internal.CrossBuildInMemoryCaches
 import org.gradle.cache.internal.FileLockManager
 import org.gradle.listener.ListenerManager
 import org.gradle.logging.LoggingManagerInternal
@@ -60,6 +61,7 @@ class DefaultDependencyManagementServicesTest extends Specification {
         _ * parent.get(ListenerManager) >> listenerManager
         _ * parent.get(FileLockManager) >> Mock(FileLockManager)
         _ * parent.get(TimeProvider) >> Mock(TimeProvider)
+        _ * parent.get(CrossBuildInMemoryCaches) >> new CrossBuildInMemoryCaches()
     }
 
     def "can create dependency resolution services"() {
@@ -16,6 +16,8 @@
 package org.gradle.api.internal.artifacts.ivyservice
 
 import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation
 import org.gradle.cache.internal.FileLock
 import org.gradle.cache.internal.FileLockManager
 import org.gradle.cache.internal.FileLockManager.LockMode
@@ -27,7 +29,8 @@ class DefaultCacheLockingManagerTest extends Specification {
     @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
     final FileLockManager fileLockManager = Mock()
     final File cacheDir = tmpDir.file("cache-dir")
-    final DefaultCacheLockingManager lockingManager = new DefaultCacheLockingManager(fileLockManager)
+    final DependencyResolutionInstrumentation instrumentation = new DependencyResolutionInstrumentation(true)
+    final DefaultCacheLockingManager lockingManager = new DefaultCacheLockingManager(fileLockManager, instrumentation)
 
     def "executes action and returns result"() {
         Callable<String> action = Mock()
@@ -43,6 +46,117 @@ class DefaultCacheLockingManagerTest extends Specification {
         0 * _._
     }
 
+    def "cannot lock cache when already locked by the current thread"() {
+        Callable<String> action = Mock()
+
+        when:
+        lockingManager.withCacheLock("some operation", action)
+
+        then:
+        IllegalStateException e = thrown()
+        e.message == 'Cannot lock the artifact cache, as it is already locked by this process.'
+
+        and:
+        1 * action.call() >> {
+            lockingManager.withCacheLock("nested operation", Mock(Callable))
+        }
+    }
+
+    def "cache can be locked by multiple threads at the same time"() {
+        Callable<String> action = Mock()
+        def otherResult = null
+
+        when:
+        def result = lockingManager.withCacheLock("some operation", action)
+
+        then:
+        1 * action.call() >> {
+            def thread = new Thread({
+                otherResult = lockingManager.withCacheLock("other operation", { 'other result' } as Callable)
+            })
+            thread.start()
+            thread.join()
+            return 'result'
+        }
+
+        and:
+        result == 'result'
+        otherResult == 'other result'
+    }
+
+    def "thread waits for artifact lock held by another thread"() {
+        Callable<String> action = Mock()
+        FileLock lock = Mock()
+        def events = []
+
+        when:
+        lockingManager.withCacheLock("some operation", action)
+
+        then:
+        2 * fileLockManager.lock(cacheDir, LockMode.Exclusive, "artifact file $cacheDir", "some operation") >> lock
+        1 * action.call() >> {
+            lockingManager.getLockHolder(cacheDir).acquireLock()
+            def thread = new Thread({
+                lockingManager.withCacheLock("other operation", {
+                    lockingManager.getLockHolder(cacheDir).acquireLock()
+                    events << 'acquired by other thread'
+                    lockingManager.getLockHolder(cacheDir).releaseLock()
+                } as Callable)
+            })
+            thread.start()
+            Thread.sleep(200)
+            events << 'released by first thread'
+            lockingManager.getLockHolder(cacheDir).releaseLock()
+            thread.join()
+        }
+        2 * lock.close()
+
+        and:
+        events == ['released by first thread', 'acquired by other thread']
+        instrumentation.lockWaits == 2
+        instrumentation.lockWaitTime >= 100
+    }
+
+    def "other threads can use the cache while a thread waits for a file lock held by another process"() {
+        Callable<String> action = Mock()
+        FileLock lock = Mock()
+        File otherFile = tmpDir.file("other")
+        def fileLockRequested = new CountDownLatch(1)
+        def otherProcessReleased = new CountDownLatch(1)
+        def events = []
+
+        when:
+        lockingManager.withCacheLock("some operation", action)
+
+        then:
+        1 * fileLockManager.lock(otherFile, LockMode.Exclusive, "artifact file $otherFile", "some operation") >> {
+            fileLockRequested.countDown()
+            otherProcessReleased.await()
+            return lock
+        }
+        1 * fileLockManager.lock(cacheDir, LockMode.Exclusive, "artifact file $cacheDir", "some operation") >> lock
+        1 * action.call() >> {
+            def thread = new Thread({
+                lockingManager.withCacheLock("other operation", {
+                    lockingManager.getLockHolder(otherFile).acquireLock()
+                    events << 'acquired lock held by other process'
+                    lockingManager.getLockHolder(otherFile).releaseLock()
+                } as Callable)
+            })
+            thread.start()
+            fileLockRequested.await()
+            lockingManager.getLockHolder(cacheDir).acquireLock()
+            lockingManager.getLockHolder(cacheDir).releaseLock()
+            events << 'used cache while other thread waits'
+            otherProcessReleased.countDown()
+            thread.join()
+        }
+        2 * lock.close()
+
+        and:
+        events == ['used cache while other thread waits', 'acquired lock held by other process']
+    }
+
     def "acquires file lock on first call to acquireLock"() {
         Callable<String> action = Mock()
         FileLock lock = Mock()
@@ -22,8 +22,13 @@ import org.apache.ivy.plugins.resolver.ChainResolver
 import org.apache.ivy.plugins.resolver.DependencyResolver
 import org.apache.ivy.plugins.resolver.IBiblioResolver
 import org.gradle.api.internal.Factory
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.ivyservice.artifactcache.ArtifactCacheAccessTracker
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.ModuleResolutionCache
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleDescriptorCache
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.RepositoryAffinityCache
+import org.gradle.api.internal.artifacts.repositories.RepositoryListingCache
 import org.gradle.logging.ProgressLoggerFactory
 import spock.lang.Specification
 
@@ -35,13 +40,16 @@ class DefaultSettingsConverterTest extends Specification {
     DependencyResolver projectResolver = Mock()
     ResolutionStrategyInternal resolutionStrategy = Mock()
     ModuleResolutionCache dynamicRevisionCache = Mock()
+    ModuleDescriptorCache moduleDescriptorCache = Mock()
+    RepositoryAffinityCache repositoryAffinityCache = Mock()
+    RepositoryListingCache repositoryListingCache = Mock()
 
     File testGradleUserHome = new File('gradleUserHome')
 
     final Factory<IvySettings> ivySettingsFactory = Mock()
     final IvySettings ivySettings = new IvySettings()
 
-    DefaultSettingsConverter converter = new DefaultSettingsConverter(Mock(ProgressLoggerFactory), ivySettingsFactory, dynamicRevisionCache)
+    DefaultSettingsConverter converter = new DefaultSettingsConverter(Mock(ProgressLoggerFactory), ivySettingsFactory, dynamicRevisionCache, moduleDescriptorCache, repositoryAffinityCache, repositoryListingCache, new DependencyResolutionInstrumentation(false), Mock(ArtifactCacheAccessTracker), false)
 
     public void setup() {
         testResolver.name = 'resolver'
@@ -54,6 +62,7 @@ class DefaultSettingsConverterTest extends Specification {
         then:
         1 * ivySettingsFactory.create() >> ivySettings
         1 * resolutionStrategy.getCachePolicy()
+        1 * repositoryListingCache.useCachePolicy(_)
         0 * _._
 
         assert settings.is(ivySettings)
@@ -85,6 +94,7 @@ class DefaultSettingsConverterTest extends Specification {
         then:
         1 * ivySettingsFactory.create() >> ivySettings
         1 * resolutionStrategy.getCachePolicy()
+        1 * repositoryListingCache.useCachePolicy(_)
         0 * _._
 
         assert settings.is(ivySettings)
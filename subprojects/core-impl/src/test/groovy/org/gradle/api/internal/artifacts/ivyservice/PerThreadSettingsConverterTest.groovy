@@ -0,0 +1,56 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.apache.ivy.core.settings.IvySettings
+import org.gradle.api.internal.Factory
+import spock.lang.Specification
+
+class PerThreadSettingsConverterTest extends Specification {
+    final Factory<SettingsConverter> factory = Mock()
+    final PerThreadSettingsConverter converter = new PerThreadSettingsConverter(factory)
+
+    def "reuses converter for the same thread"() {
+        SettingsConverter target = Mock()
+        IvySettings settings = new IvySettings()
+
+        when:
+        def first = converter.convertForPublish([])
+        def second = converter.convertForPublish([])
+
+        then:
+        1 * factory.create() >> target
+        2 * target.convertForPublish([]) >> settings
+        first == settings
+        second == settings
+    }
+
+    def "creates a converter for each thread"() {
+        SettingsConverter target1 = Mock()
+        SettingsConverter target2 = Mock()
+
+        when:
+        converter.convertForPublish([])
+        def thread = new Thread({ converter.convertForPublish([]) })
+        thread.start()
+        thread.join()
+
+        then:
+        2 * factory.create() >>> [target1, target2]
+        1 * target1.convertForPublish([])
+        1 * target2.convertForPublish([])
+    }
+}
@@ -21,11 +21,13 @@ import org.apache.ivy.core.resolve.ResolveEngine
 import org.gradle.api.artifacts.ResolvedArtifact
 import org.gradle.api.artifacts.ResolvedDependency
 import org.gradle.api.internal.artifacts.DefaultResolvedArtifact
+import org.gradle.api.internal.artifacts.ivyservice.artifactcache.ArtifactCacheAccessTracker
 import spock.lang.Specification
 
 class ResolvedArtifactFactoryTest extends Specification {
     final CacheLockingManager lockingManager = Mock()
-    final ResolvedArtifactFactory factory = new ResolvedArtifactFactory(lockingManager)
+    final ArtifactCacheAccessTracker accessTracker = Mock()
+    final ResolvedArtifactFactory factory = new ResolvedArtifactFactory(lockingManager, accessTracker)
 
     def "creates an artifact backed by resolve engine"() {
         Artifact artifact = Mock()
@@ -56,6 +58,39 @@ class ResolvedArtifactFactoryTest extends Specification {
             return action.call()
         }
         1 * resolver.resolve(artifact) >> file
+        1 * accessTracker.recordAccess(file)
+        0 * _._
+    }
+
+    def "resolves files of artifacts while holding cache lock once"() {
+        Artifact artifact1 = Mock()
+        Artifact artifact2 = Mock()
+        ArtifactToFileResolver resolver = Mock()
+        ResolvedDependency resolvedDependency = Mock()
+        File file1 = new File("one.jar")
+        File file2 = new File("two.jar")
+        ResolvedArtifact resolvedArtifact1 = factory.create(resolvedDependency, artifact1, resolver)
+        ResolvedArtifact resolvedArtifact2 = factory.create(resolvedDependency, artifact2, resolver)
+
+        when:
+        factory.resolveFiles([resolvedArtifact1, resolvedArtifact2])
+
+        then:
+        1 * lockingManager.withCacheLock(!null, !null) >> {String displayName, Callable action ->
+            return action.call()
+        }
+        1 * resolver.resolve(artifact1) >> file1
+        1 * resolver.resolve(artifact2) >> file2
+        1 * accessTracker.recordAccess(file1)
+        1 * accessTracker.recordAccess(file2)
+        0 * _._
+
+        when:
+        def files = [resolvedArtifact1.file, resolvedArtifact2.file]
+        factory.resolveFiles([resolvedArtifact1, resolvedArtifact2])
+
+        then:
+        files == [file1, file2]
         0 * _._
     }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.apache.ivy.core.cache.RepositoryCacheManager
+import org.apache.ivy.core.module.descriptor.Artifact
+import org.apache.ivy.core.module.descriptor.DefaultArtifact
+import org.apache.ivy.core.module.descriptor.DefaultDependencyDescriptor
+import org.apache.ivy.core.module.descriptor.DefaultModuleDescriptor
+import org.apache.ivy.core.module.id.ModuleRevisionId
+import org.apache.ivy.core.report.ArtifactDownloadReport
+import org.apache.ivy.core.report.DownloadStatus
+import org.apache.ivy.core.resolve.DownloadOptions
+import org.apache.ivy.core.resolve.ResolvedModuleRevision
+import org.apache.ivy.core.settings.IvySettings
+import org.apache.ivy.plugins.resolver.DependencyResolver
+import org.gradle.api.GradleException
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation
+import org.gradle.api.internal.artifacts.ivyservice.artifactcache.ArtifactCacheAccessTracker
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy
+import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.ModuleResolutionCache
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleDescriptorCache
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.RepositoryAffinityCache
+import spock.lang.Specification
+
+class UserResolverChainTest extends Specification {
+    final ModuleResolutionCache moduleResolutionCache = Mock()
+    final ModuleDescriptorCache moduleDescriptorCache = Mock()
+    final RepositoryAffinityCache repositoryAffinityCache = Mock()
+    final CachePolicy cachePolicy = Mock()
+    final DependencyResolver remoteResolver = Mock()
+    final RepositoryCacheManager remoteCacheManager = Mock()
+    final DependencyResolver localResolver = Mock()
+    final DependencyResolver otherResolver = Mock()
+    final ModuleRevisionId id = ModuleRevisionId.newInstance("group", "module", "1.0")
+    final DefaultDependencyDescriptor dependency = new DefaultDependencyDescriptor(id, false)
+    final DefaultArtifact artifact = new DefaultArtifact(id, null, "module", "jar", "jar")
+    final DependencyResolutionInstrumentation instrumentation = new DependencyResolutionInstrumentation(true)
+    final ArtifactCacheAccessTracker accessTracker = Mock()
+    final UserResolverChain chain = new UserResolverChain(moduleResolutionCache, moduleDescriptorCache, repositoryAffinityCache, instrumentation, accessTracker)
+
+    def setup() {
+        chain.settings = new IvySettings()
+        chain.add(remoteResolver)
+        _ * remoteResolver.repositoryCacheManager >> remoteCacheManager
+        _ * localResolver.repositoryCacheManager >> new LocalFileRepositoryCacheManager("local")
+        _ * otherResolver.repositoryCacheManager >> Mock(RepositoryCacheManager)
+    }
+
+    def "resolves module using remote repository when not in cache"() {
+        def module = module()
+        chain.cachePolicy = cachePolicy
+
+        when:
+        def result = chain.getDependency(dependency, null)
+
+        then:
+        result == module
+        1 * remoteResolver.getDependency(dependency, null) >> module
+    }
+
+    def "records cache lookups"() {
+        def module = module()
+        chain.cachePolicy = cachePolicy
+
+        when:
+        chain.getDependency(dependency, null)
+
+        then:
+        1 * moduleDescriptorCache.getCachedModule(remoteResolver, id) >> null
+        1 * remoteResolver.getDependency(dependency, null) >> module
+
+        and:
+        instrumentation.caches.collect { [it.type, it.hits, it.misses] } == [
+                ['module descriptor', 0, 1],
+                ['module resolution', 0, 1],
+                ['repository metadata', 0, 1]
+        ]
+    }
+
+    def "asks resolver which last supplied module before resolvers declared ahead of it"() {
+        def module = module()
+        chain.add(otherResolver)
+        chain.cachePolicy = cachePolicy
+
+        when:
+        def result = chain.getDependency(dependency, null)
+
+        then:
+        result == module
+        1 * repositoryAffinityCache.getPreferredResolver(dependency.dependencyId, [remoteResolver, otherResolver]) >> otherResolver
+        1 * otherResolver.getDependency(dependency, null) >> module
+        1 * repositoryAffinityCache.recordRequestsAvoided(1)
+        0 * remoteResolver.getDependency(_, _)
+    }
+
+    def "records resolver which supplied module"() {
+        def module = module()
+        chain.add(otherResolver)
+        chain.cachePolicy = cachePolicy
+
+        when:
+        def result = chain.getDependency(dependency, null)
+
+        then:
+        result == module
+        1 * repositoryAffinityCache.getPreferredResolver(dependency.dependencyId, [remoteResolver, otherResolver]) >> null
+        1 * remoteResolver.getDependency(dependency, null) >> null
+        1 * otherResolver.getDependency(dependency, null) >> module
+        1 * repositoryAffinityCache.recordResolver(dependency.dependencyId, otherResolver, [remoteResolver, otherResolver])
+    }
+
+    def "uses declaration order when preferred resolver no longer supplies module"() {
+        def module = module()
+        chain.add(otherResolver)
+        chain.cachePolicy = cachePolicy
+
+        when:
+        def result = chain.getDependency(dependency, null)
+
+        then:
+        result == module
+        1 * repositoryAffinityCache.getPreferredResolver(dependency.dependencyId, [remoteResolver, otherResolver]) >> otherResolver
+        1 * otherResolver.getDependency(dependency, null) >> null
+        1 * remoteResolver.getDependency(dependency, null) >> module
+        1 * repositoryAffinityCache.recordResolver(dependency.dependencyId, remoteResolver, [remoteResolver, otherResolver])
+        0 * repositoryAffinityCache.recordRequestsAvoided(_)
+    }
+
+    def "fails without accessing remote repository when offline and module not in cache"() {
+        chain.offline = true
+        chain.cachePolicy = cachePolicy
+
+        when:
+        chain.getDependency(dependency, null)
+
+        then:
+        ModuleVersionNotFoundException e = thrown()
+        e.message == "No cached version of group:group, module:module, version:1.0 available for offline mode."
+        0 * remoteResolver.getDependency(_, _)
+    }
+
+    def "uses local repository when offline and module not in cache"() {
+        def module = module()
+        chain.add(localResolver)
+        chain.offline = true
+        chain.cachePolicy = cachePolicy
+
+        when:
+        def result = chain.getDependency(dependency, null)
+
+        then:
+        result == module
+        0 * remoteResolver.getDependency(_, _)
+        1 * localResolver.getDependency(dependency, null) >> module
+    }
+
+    def "serves artifact from cache without accessing remote repository when offline"() {
+        def cachedArtifact = new ArtifactDownloadReport(artifact)
+        cachedArtifact.downloadStatus = DownloadStatus.NO
+        chain.offline = true
+        chain.cachePolicy = cachePolicy
+
+        when:
+        def report = chain.download([artifact] as Artifact[], new DownloadOptions())
+
+        then:
+        report.getArtifactReport(artifact) == cachedArtifact
+        1 * remoteCacheManager.download(artifact, !null, !null, !null) >> cachedArtifact
+        0 * remoteResolver.download(_, _)
+    }
+
+    def "fails when offline and artifact not in cache"() {
+        def missingArtifact = new ArtifactDownloadReport(artifact)
+        missingArtifact.downloadStatus = DownloadStatus.FAILED
+        chain.offline = true
+        chain.cachePolicy = cachePolicy
+
+        when:
+        chain.download([artifact] as Artifact[], new DownloadOptions())
+
+        then:
+        GradleException e = thrown()
+        e.message.startsWith("No cached version of artifact")
+        1 * remoteCacheManager.download(artifact, !null, !null, !null) >> missingArtifact
+        0 * remoteResolver.download(_, _)
+    }
+
+    private ResolvedModuleRevision module() {
+        return new ResolvedModuleRevision(remoteResolver, remoteResolver, new DefaultModuleDescriptor(id, "release", null), null)
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.artifactcache
+
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.api.internal.artifacts.ivyservice.DefaultCacheLockingManager
+import org.gradle.cache.internal.FileLock
+import org.gradle.cache.internal.FileLockManager
+import org.gradle.cache.internal.FileLockManager.LockMode
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.gradle.util.TimeProvider
+import org.jfrog.wharf.ivy.lock.LockHolder
+import org.jfrog.wharf.ivy.lock.LockHolderFactory
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+
+class ArtifactCacheCleanerTest extends Specification {
+    static final long DAY = 24 * 60 * 60 * 1000L
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+    final ArtifactCacheMetaData cacheMetaData = Mock()
+    final CacheLockingManager cacheLockingManager = Mock()
+    final LockHolderFactory lockHolderFactory = Mock()
+    final LockHolder lockHolder = Mock()
+    final TimeProvider timeProvider = Mock()
+    final ArtifactCacheAccessTracker accessTracker = Mock()
+    final List<List<File>> links = []
+    final ArtifactCacheCleaner.FileLinker linker = [
+            isSameFile: { File file1, File file2 -> false },
+            link: { File source, File target -> links << [source, target]; true }
+    ] as ArtifactCacheCleaner.FileLinker
+    final long now = 100 * DAY
+
+    def setup() {
+        _ * cacheMetaData.cacheDir >> tmpDir.dir
+        _ * cacheLockingManager.withCacheLock(_, _) >> { String displayName, Callable action -> action.call() }
+        _ * lockHolderFactory.getOrCreateLockHolder(_) >> lockHolder
+        _ * lockHolder.acquireLock() >> true
+        _ * timeProvider.currentTime >> now
+    }
+
+    def "evicts files which have not been used for longer than the maximum age"() {
+        def unused = artifact("org/module/jars/unused-1.0.jar", "unused")
+        def used = artifact("org/module/jars/used-1.0.jar", "used")
+        def cleaner = cleaner(new ArtifactCacheEvictionPolicy(30 * DAY, 0, false))
+
+        when:
+        def result = cleaner.cleanup(accessTracker)
+
+        then:
+        _ * accessTracker.getLastAccess(unused) >> now - 31 * DAY
+        _ * accessTracker.getLastAccess(used) >> now - DAY
+        1 * accessTracker.forget(unused)
+        1 * lockHolder.acquireLock() >> true
+        1 * lockHolder.releaseLock()
+
+        and:
+        !unused.exists()
+        used.exists()
+        result.evictedFiles == 1
+        result.evictedBytes == 6
+    }
+
+    def "does not evict files which have been used since the cleanup started"() {
+        def unused = artifact("org/module/jars/unused-1.0.jar", "unused")
+        def cleaner = cleaner(new ArtifactCacheEvictionPolicy(30 * DAY, 0, false))
+
+        when:
+        def result = cleaner.cleanup(accessTracker)
+
+        then:
+        1 * accessTracker.getLastAccess(unused) >> now - 31 * DAY
+        1 * accessTracker.getLastAccess(unused) >> now
+        0 * accessTracker.forget(_)
+
+        and:
+        unused.exists()
+        result.evictedFiles == 0
+    }
+
+    def "does not evict files which are locked"() {
+        def unused = artifact("org/module/jars/unused-1.0.jar", "unused")
+        def cleaner = cleaner(new ArtifactCacheEvictionPolicy(30 * DAY, 0, false))
+
+        when:
+        def result = cleaner.cleanup(accessTracker)
+
+        then:
+        _ * accessTracker.getLastAccess(unused) >> now - 31 * DAY
+        1 * lockHolder.acquireLock() >> false
+        0 * accessTracker.forget(_)
+
+        and:
+        unused.exists()
+        result.evictedFiles == 0
+    }
+
+    def "uses last modified time for files whose last use is not known"() {
+        def unused = artifact("org/module/jars/unused-1.0.jar", "unused")
+        unused.setLastModified(now - 31 * DAY)
+        def cleaner = cleaner(new ArtifactCacheEvictionPolicy(30 * DAY, 0, false))
+
+        when:
+        def result = cleaner.cleanup(accessTracker)
+
+        then:
+        !unused.exists()
+        result.evictedFiles == 1
+    }
+
+    def "evicts module descriptor along with the files cached for it"() {
+        def descriptor = artifact("org/module/ivy-1.0.xml", "12345")
+        def original = artifact("org/module/ivy-1.0.xml.original", "123")
+        def wharfData = artifact("org/module/wharfdata-1.0.bin", "1")
+        def cleaner = cleaner(new ArtifactCacheEvictionPolicy(30 * DAY, 0, false))
+
+        when:
+        def result = cleaner.cleanup(accessTracker)
+
+        then:
+        _ * accessTracker.getLastAccess(descriptor) >> now - 31 * DAY
+
+        and:
+        !descriptor.exists()
+        !original.exists()
+        !wharfData.exists()
+        result.evictedFiles == 1
+        result.evictedBytes == 9
+    }
+
+    def "evicts least recently used files when the cache is larger than the maximum size"() {
+        def oldest = artifact("org/a/jars/a-1.0.jar", "1234")
+        def older = artifact("org/b/jars/b-1.0.jar", "1234")
+        def newest = artifact("org/c/jars/c-1.0.jar", "1234")
+        def cleaner = cleaner(new ArtifactCacheEvictionPolicy(0, 5, false))
+
+        when:
+        def result = cleaner.cleanup(accessTracker)
+
+        then:
+        _ * accessTracker.getLastAccess(oldest) >> now - 3 * DAY
+        _ * accessTracker.getLastAccess(older) >> now - 2 * DAY
+        _ * accessTracker.getLastAccess(newest) >> now - DAY
+
+        and:
+        !oldest.exists()
+        !older.exists()
+        newest.exists()
+        result.evictedFiles == 2
+        result.evictedBytes == 8
+    }
+
+    def "does not evict files at the top level of the cache"() {
+        def index = artifact("module-metadata.bin", "index")
+        index.setLastModified(now - 31 * DAY)
+        def cleaner = cleaner(new ArtifactCacheEvictionPolicy(30 * DAY, 0, false))
+
+        when:
+        cleaner.cleanup(accessTracker)
+
+        then:
+        index.exists()
+        0 * accessTracker.getLastAccess(_)
+    }
+
+    def "replaces files with identical content by links to a single copy"() {
+        def first = artifact("org/a/jars/a-1.0.jar", "content")
+        def second = artifact("org/b/jars/b-1.0.jar", "content")
+        def different = artifact("org/c/jars/c-1.0.jar", "CONTENT")
+        def cleaner = cleaner(new ArtifactCacheEvictionPolicy(0, 0, true))
+
+        when:
+        def result = cleaner.cleanup(accessTracker)
+
+        then:
+        links.size() == 1
+        links[0] as Set == [first, second] as Set
+        result.deduplicatedFiles == 1
+        result.deduplicatedBytes == 7
+        result.evictedFiles == 0
+    }
+
+    def "evicts and replaces files with links while holding the artifact cache lock"() {
+        def fileLockManager = Mock(FileLockManager)
+        def fileLock = Mock(FileLock)
+        def lockingManager = new DefaultCacheLockingManager(fileLockManager, new DependencyResolutionInstrumentation(false))
+        def unused = artifact("org/module/jars/unused-1.0.jar", "unused")
+        def first = artifact("org/a/jars/a-1.0.jar", "content")
+        def second = artifact("org/b/jars/b-1.0.jar", "content")
+        _ * accessTracker.getLastAccess(unused) >> now - 31 * DAY
+        _ * accessTracker.getLastAccess(_) >> now
+        def cleaner = new ArtifactCacheCleaner(cacheMetaData, lockingManager, lockingManager, timeProvider,
+                new ArtifactCacheEvictionPolicy(30 * DAY, 0, true), linker)
+
+        when:
+        def result = cleaner.cleanup(accessTracker)
+
+        then:
+        2 * fileLockManager.lock(_, LockMode.Exclusive, _, _) >> fileLock
+
+        and:
+        !unused.exists()
+        result.evictedFiles == 1
+        links.size() == 1
+        links[0] as Set == [first, second] as Set
+        result.deduplicatedFiles == 1
+    }
+
+    def "cleanup is due once a day"() {
+        def cleaner = cleaner(new ArtifactCacheEvictionPolicy(0, 0, false))
+
+        expect:
+        cleaner.cleanupDue
+
+        when:
+        cleaner.cleanup(accessTracker)
+
+        then:
+        !cleaner.cleanupDue
+
+        when:
+        tmpDir.file("cache-cleanup.marker").setLastModified(now - 2 * DAY)
+
+        then:
+        cleaner.cleanupDue
+    }
+
+    def "reads eviction policy from properties"() {
+        def properties = new Properties()
+        properties.setProperty(ArtifactCacheEvictionPolicy.MAX_AGE_PROPERTY, "10")
+        properties.setProperty(ArtifactCacheEvictionPolicy.MAX_SIZE_PROPERTY, "2")
+        properties.setProperty(ArtifactCacheEvictionPolicy.DEDUPLICATE_PROPERTY, "false")
+
+        when:
+        def policy = ArtifactCacheEvictionPolicy.fromProperties(properties)
+        def defaults = ArtifactCacheEvictionPolicy.fromProperties(new Properties())
+
+        then:
+        policy.maxAge == 10 * DAY
+        policy.maxSize == 2 * 1024 * 1024
+        !policy.deduplicate
+        policy.enabled
+        defaults.maxAge == 0
+        defaults.maxSize == 0
+        !defaults.deduplicate
+        !defaults.enabled
+    }
+
+    def "ignores invalid limits in properties"() {
+        def properties = new Properties()
+        properties.setProperty(ArtifactCacheEvictionPolicy.MAX_AGE_PROPERTY, "ten")
+        properties.setProperty(ArtifactCacheEvictionPolicy.MAX_SIZE_PROPERTY, "-2")
+
+        when:
+        def policy = ArtifactCacheEvictionPolicy.fromProperties(properties)
+
+        then:
+        policy.maxAge == 0
+        policy.maxSize == 0
+        !policy.enabled
+    }
+
+    def "deduplicates only when enabled"() {
+        def properties = new Properties()
+        properties.setProperty(ArtifactCacheEvictionPolicy.DEDUPLICATE_PROPERTY, "true")
+
+        when:
+        def policy = ArtifactCacheEvictionPolicy.fromProperties(properties)
+
+        then:
+        policy.deduplicate
+        policy.enabled
+        policy.maxAge == 0
+    }
+
+    private ArtifactCacheCleaner cleaner(ArtifactCacheEvictionPolicy policy) {
+        return new ArtifactCacheCleaner(cacheMetaData, cacheLockingManager, lockHolderFactory, timeProvider, policy, linker)
+    }
+
+    private TestFile artifact(String path, String content) {
+        TestFile file = tmpDir.file(path)
+        file.text = content
+        return file
+    }
+}
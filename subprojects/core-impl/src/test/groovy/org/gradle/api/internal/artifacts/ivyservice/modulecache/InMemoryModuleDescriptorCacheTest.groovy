@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.apache.ivy.core.module.descriptor.DefaultModuleDescriptor
+import org.apache.ivy.core.module.id.ModuleRevisionId
+import org.apache.ivy.core.report.MetadataArtifactDownloadReport
+import org.apache.ivy.core.resolve.ResolvedModuleRevision
+import org.apache.ivy.plugins.resolver.IBiblioResolver
+import org.gradle.cache.internal.CrossBuildInMemoryCaches
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class InMemoryModuleDescriptorCacheTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+    final InMemoryModuleDescriptorCache cache = new InMemoryModuleDescriptorCache(new CrossBuildInMemoryCaches())
+    final IBiblioResolver resolver = new IBiblioResolver()
+    final IBiblioResolver otherResolver = new IBiblioResolver()
+    final ModuleRevisionId id = ModuleRevisionId.newInstance("group", "module", "1.0")
+    final DefaultModuleDescriptor descriptor = new DefaultModuleDescriptor(id, "release", null)
+    final File descriptorFile = tmpDir.createFile("ivy.xml")
+
+    def setup() {
+        resolver.name = 'repo'
+        resolver.root = 'http://repo/'
+        otherResolver.name = 'other'
+        otherResolver.root = 'http://other/'
+        descriptorFile.text = "<ivy-module/>"
+    }
+
+    def "returns cached descriptor for the resolver which served it"() {
+        when:
+        cache.cacheModule(resolver, id, module())
+        def cached = cache.getCachedModule(resolver, id)
+
+        then:
+        cached.descriptor.is(descriptor)
+        cached.resolver.is(resolver)
+        cached.report.localFile == descriptorFile
+    }
+
+    def "does not return descriptor cached for another resolver or module"() {
+        when:
+        cache.cacheModule(resolver, id, module())
+
+        then:
+        cache.getCachedModule(otherResolver, id) == null
+        cache.getCachedModule(resolver, ModuleRevisionId.newInstance("group", "module", "2.0")) == null
+    }
+
+    def "discards cached descriptor when descriptor file changes"() {
+        when:
+        cache.cacheModule(resolver, id, module())
+        descriptorFile.text = "<ivy-module version='2.0'/>"
+
+        then:
+        cache.getCachedModule(resolver, id) == null
+    }
+
+    def "discards cached descriptor when descriptor file is removed"() {
+        when:
+        cache.cacheModule(resolver, id, module())
+        descriptorFile.delete()
+
+        then:
+        cache.getCachedModule(resolver, id) == null
+    }
+
+    def "does not cache module without a descriptor file"() {
+        def report = new MetadataArtifactDownloadReport(descriptor.metadataArtifact)
+
+        when:
+        cache.cacheModule(resolver, id, new ResolvedModuleRevision(resolver, resolver, descriptor, report))
+
+        then:
+        cache.getCachedModule(resolver, id) == null
+    }
+
+    private ResolvedModuleRevision module() {
+        def report = new MetadataArtifactDownloadReport(descriptor.metadataArtifact)
+        report.localFile = descriptorFile
+        return new ResolvedModuleRevision(resolver, resolver, descriptor, report)
+    }
+}
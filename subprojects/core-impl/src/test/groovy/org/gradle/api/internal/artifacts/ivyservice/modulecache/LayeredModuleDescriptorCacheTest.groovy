@@ -0,0 +1,65 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.apache.ivy.core.module.id.ModuleRevisionId
+import org.apache.ivy.core.resolve.ResolvedModuleRevision
+import org.apache.ivy.plugins.resolver.DependencyResolver
+import spock.lang.Specification
+
+class LayeredModuleDescriptorCacheTest extends Specification {
+    final ModuleDescriptorCache fastCache = Mock()
+    final ModuleDescriptorCache backingCache = Mock()
+    final DependencyResolver resolver = Mock()
+    final ModuleRevisionId id = ModuleRevisionId.newInstance("group", "module", "1.0")
+    final ResolvedModuleRevision module = new ResolvedModuleRevision(resolver, resolver, null, null)
+    final LayeredModuleDescriptorCache cache = new LayeredModuleDescriptorCache(fastCache, backingCache)
+
+    def "returns module from fast cache without looking in backing cache"() {
+        when:
+        def result = cache.getCachedModule(resolver, id)
+
+        then:
+        result.is(module)
+        1 * fastCache.getCachedModule(resolver, id) >> module
+        0 * backingCache._
+    }
+
+    def "adds module found in backing cache to fast cache"() {
+        when:
+        def result = cache.getCachedModule(resolver, id)
+
+        then:
+        result.is(module)
+        1 * fastCache.getCachedModule(resolver, id) >> null
+        1 * backingCache.getCachedModule(resolver, id) >> module
+        1 * fastCache.cacheModule(resolver, id, module)
+    }
+
+    def "returns null when module is in neither cache"() {
+        expect:
+        cache.getCachedModule(resolver, id) == null
+    }
+
+    def "adds module to both caches"() {
+        when:
+        cache.cacheModule(resolver, id, module)
+
+        then:
+        1 * fastCache.cacheModule(resolver, id, module)
+        1 * backingCache.cacheModule(resolver, id, module)
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.apache.ivy.core.module.descriptor.*
+import org.apache.ivy.core.module.id.ArtifactId
+import org.apache.ivy.core.module.id.ModuleId
+import org.apache.ivy.core.module.id.ModuleRevisionId
+import org.apache.ivy.plugins.matcher.ExactPatternMatcher
+import org.apache.ivy.plugins.matcher.PatternMatcher
+import spock.lang.Specification
+
+class ModuleDescriptorSerializerTest extends Specification {
+    final ModuleDescriptorSerializer serializer = new ModuleDescriptorSerializer()
+    final ModuleRevisionId id = ModuleRevisionId.newInstance("group", "module", "branch", "1.0", [classifier: 'jdk15'])
+    final DefaultModuleDescriptor descriptor = new DefaultModuleDescriptor(id, "release", new Date(1234), false)
+
+    def setup() {
+        descriptor.addConfiguration(new Configuration("compile"))
+        descriptor.addConfiguration(new Configuration("runtime", Configuration.Visibility.PRIVATE, "runtime classpath", ["compile"] as String[], false, null))
+        descriptor.addExtraInfo("description", "some module")
+    }
+
+    def "round trips module and configurations"() {
+        when:
+        def copy = roundTrip(descriptor)
+
+        then:
+        copy.moduleRevisionId == id
+        copy.moduleRevisionId.qualifiedExtraAttributes == [classifier: 'jdk15']
+        copy.status == "release"
+        copy.publicationDate == new Date(1234)
+        copy.extraInfo == [description: 'some module']
+        copy.configurationsNames as List == ["compile", "runtime"]
+
+        def runtime = copy.getConfiguration("runtime")
+        runtime.visibility == Configuration.Visibility.PRIVATE
+        runtime.description == "runtime classpath"
+        runtime.extends as List == ["compile"]
+        !runtime.transitive
+    }
+
+    def "round trips artifacts"() {
+        def artifact = new MDArtifact(descriptor, "module", "jar", "jar", null, [classifier: 'sources'])
+        artifact.addConfiguration("compile")
+        descriptor.addArtifact("compile", artifact)
+
+        when:
+        def copy = roundTrip(descriptor)
+
+        then:
+        def artifacts = copy.getArtifacts("compile")
+        artifacts.length == 1
+        artifacts[0].name == "module"
+        artifacts[0].type == "jar"
+        artifacts[0].ext == "jar"
+        artifacts[0].qualifiedExtraAttributes == [classifier: 'sources']
+        copy.getArtifacts("runtime").length == 0
+    }
+
+    def "round trips dependencies and exclude rules"() {
+        def dependency = new DefaultDependencyDescriptor(descriptor, ModuleRevisionId.newInstance("other", "lib", "1.+"), false, true, false)
+        dependency.addDependencyConfiguration("compile", "default")
+        dependency.addDependencyConfiguration("runtime", "runtime")
+        def dependencyArtifact = new DefaultDependencyArtifactDescriptor(dependency, "lib", "jar", "jar", null, [:])
+        dependencyArtifact.addConfiguration("compile")
+        dependency.addDependencyArtifact("compile", dependencyArtifact)
+        dependency.addExcludeRule("compile", excludeRule("excluded", "compile"))
+        descriptor.addDependency(dependency)
+        descriptor.addExcludeRule(excludeRule("global"))
+
+        when:
+        def copy = roundTrip(descriptor)
+
+        then:
+        copy.dependencies.length == 1
+        def copiedDependency = copy.dependencies[0]
+        copiedDependency.dependencyRevisionId == ModuleRevisionId.newInstance("other", "lib", "1.+")
+        copiedDependency.changing
+        !copiedDependency.transitive
+        !copiedDependency.force
+        copiedDependency.moduleConfigurations as List == ["compile", "runtime"]
+        copiedDependency.getDependencyConfigurations("compile") as List == ["default"]
+        copiedDependency.getDependencyArtifacts("compile")*.name == ["lib"]
+        copiedDependency.getExcludeRules("compile")*.id*.moduleId*.organisation == ["excluded"]
+        copy.allExcludeRules*.id*.moduleId*.organisation == ["global"]
+    }
+
+    def "round trips configuration mappings as declared"() {
+        def dependency = new DefaultDependencyDescriptor(descriptor, ModuleRevisionId.newInstance("other", "lib", "1.0"), false, false, true)
+        mappings.each { moduleConfiguration, dependencyConfigurations ->
+            dependencyConfigurations.each { dependency.addDependencyConfiguration(moduleConfiguration, it) }
+        }
+        descriptor.addDependency(dependency)
+
+        when:
+        def copy = roundTrip(descriptor).dependencies[0]
+
+        then:
+        copy.moduleConfigurations as List == mappings.keySet() as List
+        ["compile", "runtime"].each { moduleConfiguration ->
+            assert copy.getDependencyConfigurations(moduleConfiguration) as List == dependency.getDependencyConfigurations(moduleConfiguration) as List
+            assert copy.getDependencyConfigurations(moduleConfiguration, "other") as List == dependency.getDependencyConfigurations(moduleConfiguration, "other") as List
+        }
+
+        where:
+        mappings << [
+                ["*": ["@"]],
+                ["compile": ["#"]],
+                ["%": ["default"], "compile": ["compile"]],
+                ["runtime": ["runtime(default)"]],
+                ["*": ["master"], "runtime": ["runtime(*)"]]
+        ]
+    }
+
+    def "cannot serialize descriptor with unknown pattern matcher"() {
+        PatternMatcher matcher = Mock()
+        _ * matcher.name >> "custom"
+        descriptor.addExcludeRule(new DefaultExcludeRule(new ArtifactId(new ModuleId("org", "name"), "*", "*", "*"), matcher, [:]))
+
+        expect:
+        !serializer.canSerialize(descriptor)
+    }
+
+    private ExcludeRule excludeRule(String organisation, String... confs) {
+        def rule = new DefaultExcludeRule(new ArtifactId(new ModuleId(organisation, "*"), "*", "*", "*"), ExactPatternMatcher.INSTANCE, [:])
+        confs.each { rule.addConfiguration(it) }
+        return rule
+    }
+
+    private ModuleDescriptor roundTrip(ModuleDescriptor descriptor) {
+        assert serializer.canSerialize(descriptor)
+        def outstr = new ByteArrayOutputStream()
+        serializer.write(outstr, descriptor)
+        return serializer.read(new ByteArrayInputStream(outstr.toByteArray()))
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.apache.ivy.core.module.id.ModuleId
+import org.apache.ivy.plugins.resolver.IBiblioResolver
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.cache.internal.DefaultFileLockManager
+import org.gradle.cache.internal.DefaultProcessMetaDataProvider
+import org.gradle.cache.internal.FileLock
+import org.gradle.cache.internal.FileLockManager
+import org.gradle.os.jna.NativeEnvironment
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class SingleFileBackedRepositoryAffinityCacheTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+    final ArtifactCacheMetaData cacheMetaData = Mock()
+    final CacheLockingManager cacheLockingManager = Mock()
+    final ModuleId moduleId = new ModuleId("group", "module")
+    final IBiblioResolver repo1 = resolver("repo1")
+    final IBiblioResolver repo2 = resolver("repo2")
+    final IBiblioResolver repo3 = resolver("repo3")
+    final SingleFileBackedRepositoryAffinityCache cache = new SingleFileBackedRepositoryAffinityCache(cacheMetaData, cacheLockingManager)
+    FileLock fileLock
+
+    def setup() {
+        _ * cacheMetaData.cacheDir >> tmpDir.dir
+        _ * cacheLockingManager.getCacheMetadataFileLock(_) >> { File file ->
+            fileLock = new DefaultFileLockManager(new DefaultProcessMetaDataProvider(NativeEnvironment.current())).lock(file, FileLockManager.LockMode.Exclusive, "cache")
+            return fileLock
+        }
+    }
+
+    def cleanup() {
+        fileLock?.close()
+    }
+
+    def "prefers resolver which last supplied module"() {
+        when:
+        cache.recordResolver(moduleId, repo2, [repo1, repo2, repo3])
+
+        then:
+        cache.getPreferredResolver(moduleId, [repo1, repo2, repo3]) == repo2
+        cache.getPreferredResolver(moduleId, [repo1, repo2]) == repo2
+        cache.getPreferredResolver(new ModuleId("group", "other"), [repo1, repo2, repo3]) == null
+    }
+
+    def "does not prefer resolver when resolvers declared ahead of it have changed"() {
+        when:
+        cache.recordResolver(moduleId, repo2, [repo1, repo2, repo3])
+
+        then:
+        cache.getPreferredResolver(moduleId, [repo3, repo1, repo2]) == null
+        cache.getPreferredResolver(moduleId, [repo2, repo1]) == null
+        cache.getPreferredResolver(moduleId, [repo1, repo3, repo2]) == null
+        cache.getPreferredResolver(moduleId, [repo1, repo3]) == null
+    }
+
+    private IBiblioResolver resolver(String name) {
+        def resolver = new IBiblioResolver()
+        resolver.name = name
+        resolver.root = "http://${name}.example.com/"
+        resolver.m2compatible = true
+        return resolver
+    }
+}
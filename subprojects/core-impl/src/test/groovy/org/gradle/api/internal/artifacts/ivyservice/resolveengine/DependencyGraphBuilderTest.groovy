@@ -40,6 +40,7 @@ import spock.lang.Specification
 import org.gradle.api.internal.artifacts.ivyservice.*
 import org.apache.ivy.core.module.descriptor.DefaultArtifact
 import org.gradle.api.internal.artifacts.DefaultResolvedArtifact
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation
 import org.gradle.api.artifacts.ModuleVersionIdentifier
 import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
 import org.gradle.api.artifacts.ResolveException
@@ -55,7 +56,9 @@ class DependencyGraphBuilderTest extends Specification {
     final ArtifactToFileResolver artifactResolver = Mock()
     final VersionMatcher versionMatcher = Mock()
     final DefaultModuleDescriptor root = revision('root')
-    final DependencyGraphBuilder builder = new DependencyGraphBuilder(moduleDescriptorConverter, resolvedArtifactFactory, artifactResolver, dependencyResolver, conflictResolver)
+    final DependencyResolutionInstrumentation instrumentation = new DependencyResolutionInstrumentation(true)
+    final ResolvedGraphCache graphCache = Mock()
+    final DependencyGraphBuilder builder = new DependencyGraphBuilder(moduleDescriptorConverter, resolvedArtifactFactory, artifactResolver, dependencyResolver, conflictResolver, instrumentation)
 
     def setup() {
         config(root, 'root', 'default')
@@ -84,6 +87,24 @@ class DependencyGraphBuilderTest extends Specification {
         modules(result) == ids(a, b, c)
     }
 
+    def "records the number of paths visited while traversing the graph"() {
+        given:
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        traverses root, a
+        traverses root, b
+        traverses a, c
+        doesNotResolve b, c
+
+        when:
+        def result = builder.resolve(configuration, resolveData)
+        result.rethrowFailure()
+
+        then:
+        instrumentation.traversalSteps == 4
+    }
+
     def "does not resolve a given dynamic module selector more than once"() {
         given:
         def a = revision("a")
@@ -607,6 +628,104 @@ class DependencyGraphBuilderTest extends Specification {
         modules(result) == ids(selected, c)
     }
 
+    def "reuses graph of parent configuration when resolving a configuration which extends it"() {
+        given:
+        def compile = rootConfiguration('compile')
+        def runtime = rootConfiguration('runtime', 'compile')
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        traverses root, a, from: 'compile'
+        traverses a, b
+        traverses root, c, from: 'runtime'
+        DependencyGraphBuilder.ResolvedGraph graph = null
+
+        when:
+        def compileResult = builder.resolve(compile, resolveData, graphCache)
+        compileResult.rethrowFailure()
+
+        then:
+        1 * graphCache.findParentGraph(compile) >> null
+        1 * graphCache.store(compile, _) >> { graph = it[1] }
+        modules(compileResult) == ids(a, b)
+
+        when:
+        def runtimeResult = builder.resolve(runtime, resolveData, graphCache)
+        runtimeResult.rethrowFailure()
+
+        then:
+        1 * graphCache.findParentGraph(runtime) >> graph
+        1 * graphCache.store(runtime, !null)
+        modules(runtimeResult) == ids(a, b, c)
+        artifacts(runtimeResult) == ids(a, b, c)
+        firstLevel(runtimeResult) == ids(a, c)
+
+        and:
+        instrumentation.traversalSteps == 3
+        instrumentation.fullResolves == 1
+        instrumentation.incrementalResolves == 1
+    }
+
+    def "resolves from scratch when a configuration brings in another version of a module in the parent graph"() {
+        given:
+        def compile = rootConfiguration('compile')
+        def runtime = rootConfiguration('runtime', 'compile')
+        def selected = revision('a', '1.2')
+        def evicted = revision('a', '1.1')
+        def b = revision("b")
+        traverses root, evicted, from: 'compile', times: 2
+        traverses root, b, from: 'runtime', times: 2
+        traverses b, selected, times: 2
+        DependencyGraphBuilder.ResolvedGraph graph = null
+
+        when:
+        builder.resolve(compile, resolveData, graphCache).rethrowFailure()
+
+        then:
+        1 * graphCache.store(compile, _) >> { graph = it[1] }
+
+        when:
+        def runtimeResult = builder.resolve(runtime, resolveData, graphCache)
+        runtimeResult.rethrowFailure()
+
+        then:
+        1 * graphCache.findParentGraph(runtime) >> graph
+        1 * conflictResolver.select({ it*.revision as Set == ['1.1', '1.2'] as Set }, _) >> { candidates, root -> candidates.find { it.revision == '1.2' } }
+        modules(runtimeResult) == ids(selected, b)
+        firstLevel(runtimeResult) == ids(selected, b)
+
+        and:
+        instrumentation.fullResolves == 2
+        instrumentation.incrementalResolves == 0
+    }
+
+    def "reuses graph of parent configuration when a configuration brings in the version of a module selected by the parent graph"() {
+        given:
+        def compile = rootConfiguration('compile')
+        def runtime = rootConfiguration('runtime', 'compile')
+        def a = revision("a")
+        def b = revision("b")
+        traverses root, a, from: 'compile'
+        traverses root, b, from: 'runtime'
+        traverses b, a
+        DependencyGraphBuilder.ResolvedGraph graph = null
+
+        when:
+        builder.resolve(compile, resolveData, graphCache).rethrowFailure()
+
+        then:
+        1 * graphCache.store(compile, _) >> { graph = it[1] }
+
+        when:
+        def runtimeResult = builder.resolve(runtime, resolveData, graphCache)
+        runtimeResult.rethrowFailure()
+
+        then:
+        1 * graphCache.findParentGraph(runtime) >> graph
+        modules(runtimeResult) == ids(a, b)
+        instrumentation.incrementalResolves == 1
+    }
+
     def revision(String name, String revision = '1.0') {
         DefaultModuleDescriptor descriptor = new DefaultModuleDescriptor(new ModuleRevisionId(new ModuleId("group", name), revision), "release", new Date())
         config(descriptor, 'default')
@@ -614,6 +733,13 @@ class DependencyGraphBuilderTest extends Specification {
         return descriptor
     }
 
+    def rootConfiguration(String name, String... extendsFrom) {
+        config(root, name, extendsFrom)
+        ConfigurationInternal rootConfiguration = Mock()
+        _ * rootConfiguration.name >> name
+        return rootConfiguration
+    }
+
     def config(DefaultModuleDescriptor descriptor, String name, String... extendsFrom) {
         def configuration = new Configuration(name, Configuration.Visibility.PUBLIC, null, extendsFrom, true, null)
         descriptor.addConfiguration(configuration)
@@ -622,7 +748,7 @@ class DependencyGraphBuilderTest extends Specification {
 
     def traverses(Map<String, ?> args = [:], DefaultModuleDescriptor from, DefaultModuleDescriptor to) {
         def resolver = dependsOn(args, from, to)
-        1 * resolver.descriptor >> to
+        (args.times ?: 1) * resolver.descriptor >> to
     }
 
     def doesNotResolve(Map<String, ?> args = [:], DefaultModuleDescriptor from, DefaultModuleDescriptor to) {
@@ -644,10 +770,11 @@ class DependencyGraphBuilderTest extends Specification {
         ModuleDependency moduleDependency = Mock()
         def dependencyId = args.revision ? new ModuleRevisionId(to.moduleRevisionId.moduleId, args.revision) : to.moduleRevisionId
         def transitive = args.transitive == null || args.transitive
+        def fromConfiguration = args.from ?: "default"
         def descriptor = new EnhancedDependencyDescriptor(moduleDependency, from, dependencyId, false, false, transitive)
-        descriptor.addDependencyConfiguration("default", "default")
+        descriptor.addDependencyConfiguration(fromConfiguration, "default")
         if (args.exclude) {
-            descriptor.addExcludeRule("default", new DefaultExcludeRule(new ArtifactId(
+            descriptor.addExcludeRule(fromConfiguration, new DefaultExcludeRule(new ArtifactId(
                     args.exclude.moduleRevisionId.moduleId, PatternMatcher.ANY_EXPRESSION,
                     PatternMatcher.ANY_EXPRESSION,
                     PatternMatcher.ANY_EXPRESSION),
@@ -656,7 +783,7 @@ class DependencyGraphBuilderTest extends Specification {
         from.addDependency(descriptor)
 
         ModuleVersionResolver resolver = Mock()
-        (0..1) * dependencyResolver.create(descriptor) >> resolver
+        (0..(args.times ?: 1)) * dependencyResolver.create(descriptor) >> resolver
         _ * resolver.id >> to.moduleRevisionId
         return resolver
     }
@@ -677,6 +804,10 @@ class DependencyGraphBuilderTest extends Specification {
         return result
     }
 
+    def firstLevel(LenientConfiguration config) {
+        return config.getFirstLevelModuleDependencies({true} as Spec).collect { it.module.id } as Set
+    }
+
     def artifacts(LenientConfiguration config) {
         return config.resolvedArtifacts.collect { it.moduleVersion.id } as Set
     }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine
+
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.ExcludeRule
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.internal.DefaultDomainObjectSet
+import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.configurations.conflicts.LatestConflictResolution
+import org.gradle.api.internal.artifacts.configurations.conflicts.StrictConflictResolution
+import spock.lang.Specification
+
+class ResolvedGraphCacheTest extends Specification {
+    final ResolvedGraphCache cache = new ResolvedGraphCache()
+    final DependencyGraphBuilder.ResolvedGraph compileGraph = Mock()
+    ConfigurationInternal compile
+    ConfigurationInternal runtime
+
+    def setup() {
+        compile = configuration('compile', dependencies: [Mock(ModuleDependency)])
+        runtime = configuration('runtime', compile)
+    }
+
+    def "finds graph of a resolved configuration which the configuration extends"() {
+        when:
+        cache.store(compile, compileGraph)
+
+        then:
+        cache.findParentGraph(runtime) == compileGraph
+        cache.findParentGraph(compile) == null
+    }
+
+    def "prefers graph of the configuration with the largest hierarchy"() {
+        def runtimeGraph = Mock(DependencyGraphBuilder.ResolvedGraph)
+        def testRuntime = configuration('testRuntime', runtime)
+
+        when:
+        cache.store(compile, compileGraph)
+        cache.store(runtime, runtimeGraph)
+
+        then:
+        cache.findParentGraph(testRuntime) == runtimeGraph
+    }
+
+    def "does not reuse graph of a configuration which is no longer resolved"() {
+        cache.store(compile, compileGraph)
+
+        when:
+        def graph = cache.findParentGraph(runtime)
+
+        then:
+        _ * compile.state >> Configuration.State.RESOLVED_WITH_FAILURES
+        graph == null
+    }
+
+    def "does not reuse graph of a configuration whose dependencies have changed"() {
+        cache.store(compile, compileGraph)
+        compile.allDependencies.withType(ModuleDependency).add(Mock(ModuleDependency))
+
+        expect:
+        cache.findParentGraph(runtime) == null
+    }
+
+    def "does not reuse graph when the configuration declares exclude rules"() {
+        def excludes = configuration('excludes', compile, excludeRules: [Mock(ExcludeRule)])
+
+        when:
+        cache.store(compile, compileGraph)
+
+        then:
+        cache.findParentGraph(excludes) == null
+    }
+
+    def "does not reuse graph when the configuration has a different transitivity"() {
+        def nonTransitive = configuration('nonTransitive', compile, transitive: false)
+
+        when:
+        cache.store(compile, compileGraph)
+
+        then:
+        cache.findParentGraph(nonTransitive) == null
+    }
+
+    def "does not reuse graph when the configuration forces different modules"() {
+        def forced = configuration('forced', compile, forcedModules: [new DefaultModuleVersionSelector('group', 'a', '1.0')])
+
+        when:
+        cache.store(compile, compileGraph)
+
+        then:
+        cache.findParentGraph(forced) == null
+    }
+
+    def "does not reuse graph when the configuration uses a different conflict resolution"() {
+        def strict = configuration('strict', compile, conflictResolution: new StrictConflictResolution())
+
+        when:
+        cache.store(compile, compileGraph)
+
+        then:
+        cache.findParentGraph(strict) == null
+    }
+
+    private ConfigurationInternal configuration(Map<String, ?> args = [:], String name, ConfigurationInternal... extendsFrom) {
+        ConfigurationInternal configuration = Mock()
+        DependencySet dependencySet = Mock()
+        ResolutionStrategyInternal resolutionStrategy = Mock()
+        def moduleDependencies = new DefaultDomainObjectSet<ModuleDependency>(ModuleDependency, args.dependencies ?: [])
+        def hierarchy = [configuration] as LinkedHashSet
+        extendsFrom.each { hierarchy.addAll(it.hierarchy) }
+        _ * configuration.name >> name
+        _ * configuration.hierarchy >> hierarchy
+        _ * configuration.state >> Configuration.State.RESOLVED
+        _ * configuration.transitive >> (args.transitive == null || args.transitive)
+        _ * configuration.excludeRules >> ((args.excludeRules ?: []) as Set)
+        _ * configuration.allDependencies >> dependencySet
+        _ * configuration.resolutionStrategy >> resolutionStrategy
+        _ * dependencySet.withType(ModuleDependency) >> moduleDependencies
+        _ * resolutionStrategy.forcedModules >> ((args.forcedModules ?: []) as Set)
+        _ * resolutionStrategy.conflictResolution >> (args.conflictResolution ?: new LatestConflictResolution())
+        return configuration
+    }
+}
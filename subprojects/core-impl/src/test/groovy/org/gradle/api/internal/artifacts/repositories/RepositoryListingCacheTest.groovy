@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.repositories
+
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy
+import org.gradle.util.ConcurrentSpecification
+import org.gradle.util.TimeProvider
+
+class RepositoryListingCacheTest extends ConcurrentSpecification {
+    final TimeProvider timeProvider = Mock()
+    final CachePolicy cachePolicy = Mock()
+    final RepositoryListingCache.Lister lister = Mock()
+    final RepositoryListingCache cache = new RepositoryListingCache(timeProvider, executorFactory)
+
+    def "lists parent when listing is not cached"() {
+        cache.useCachePolicy(cachePolicy)
+
+        when:
+        def result = cache.list("http://repo/org/module/", lister)
+
+        then:
+        result == ["1.0", "1.1"]
+        1 * lister.list("http://repo/org/module/") >> ["1.0", "1.1"]
+    }
+
+    def "reuses listing until cache policy expires it"() {
+        cache.useCachePolicy(cachePolicy)
+        _ * timeProvider.currentTime >>> [1000L, 1500L, 3000L, 3000L]
+
+        when:
+        cache.list("http://repo/org/module/", lister)
+        def second = cache.list("http://repo/org/module/", lister)
+
+        then:
+        second == ["1.0"]
+        1 * lister.list("http://repo/org/module/") >> ["1.0"]
+        1 * cachePolicy.mustRefreshDynamicVersion(null, 500) >> false
+
+        when:
+        def third = cache.list("http://repo/org/module/", lister)
+
+        then:
+        third == ["1.0", "1.1"]
+        1 * cachePolicy.mustRefreshDynamicVersion(null, 2000) >> true
+        1 * lister.list("http://repo/org/module/") >> ["1.0", "1.1"]
+    }
+
+    def "does not cache listing when thread has no cache policy"() {
+        when:
+        cache.list("http://repo/org/module/", lister)
+        cache.list("http://repo/org/module/", lister)
+
+        then:
+        2 * lister.list("http://repo/org/module/") >> ["1.0"]
+    }
+
+    def "does not cache failed listing"() {
+        cache.useCachePolicy(cachePolicy)
+
+        when:
+        cache.list("http://repo/org/module/", lister)
+
+        then:
+        IOException e = thrown()
+        1 * lister.list("http://repo/org/module/") >> { throw new IOException("broken") }
+
+        when:
+        def result = cache.list("http://repo/org/module/", lister)
+
+        then:
+        result == ["1.0"]
+        1 * lister.list("http://repo/org/module/") >> ["1.0"]
+    }
+
+    def "prefetched listing is used by later request"() {
+        cache.useCachePolicy(cachePolicy)
+
+        when:
+        cache.prefetch(["http://repo/org/a/", "http://repo/org/b/"], lister)
+        def a = cache.list("http://repo/org/a/", lister)
+        def b = cache.list("http://repo/org/b/", lister)
+        cache.stop()
+
+        then:
+        a == ["1.0"]
+        b == ["2.0"]
+        1 * lister.list("http://repo/org/a/") >> ["1.0"]
+        1 * lister.list("http://repo/org/b/") >> ["2.0"]
+    }
+}
@@ -82,6 +82,8 @@ public class StartParameter {
     private boolean colorOutput = true;
     private boolean profile;
     private boolean continueOnFailure;
+    private boolean parallelResolve;
+    private boolean offline;
     private File projectCacheDir;
 
     /**
@@ -147,6 +149,8 @@ public class StartParameter {
         startParameter.profile = profile;
         startParameter.projectCacheDir = projectCacheDir;
         startParameter.continueOnFailure = continueOnFailure;
+        startParameter.parallelResolve = parallelResolve;
+        startParameter.offline = offline;
         return startParameter;
     }
 
@@ -165,6 +169,8 @@ public class StartParameter {
         startParameter.colorOutput = colorOutput;
         startParameter.profile = profile;
         startParameter.continueOnFailure = continueOnFailure;
+        startParameter.parallelResolve = parallelResolve;
+        startParameter.offline = offline;
         return startParameter;
     }
 
@@ -532,6 +538,38 @@ public class StartParameter {
         this.continueOnFailure = continueOnFailure;
     }
 
+    /**
+     * Specifies whether the configurations required by the scheduled tasks should be resolved in parallel before
+     * task execution starts. The default is false.
+     */
+    public boolean isParallelResolve() {
+        return parallelResolve;
+    }
+
+    /**
+     * Specifies whether the configurations required by the scheduled tasks should be resolved in parallel before
+     * task execution starts. The default is false.
+     */
+    public void setParallelResolve(boolean parallelResolve) {
+        this.parallelResolve = parallelResolve;
+    }
+
+    /**
+     * Specifies whether dependencies should be resolved using only the contents of the dependency cache, without
+     * accessing any remote repository. The default is false.
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Specifies whether dependencies should be resolved using only the contents of the dependency cache, without
+     * accessing any remote repository. The default is false.
+     */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
     @Override
     public String toString() {
         return "StartParameter{"
@@ -553,6 +591,8 @@ public class StartParameter {
                 + ", dryRun=" + dryRun
                 + ", noOpt=" + noOpt
                 + ", profile=" + profile
+                + ", parallelResolve=" + parallelResolve
+                + ", offline=" + offline
                 + '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects fine-grained statistics about dependency resolution, for the profile report. When disabled, every recording
+ * method returns immediately, and callers are expected to check {@link #isEnabled()} before doing any work to measure
+ * something, such as reading the clock.
+ */
+public class DependencyResolutionInstrumentation {
+    /**
+     * The upper bounds, in milliseconds, of the repository request latency histogram buckets. The last bucket is unbounded.
+     */
+    public static final long[] LATENCY_BUCKETS = {10, 50, 100, 250, 500, 1000, 5000};
+
+    private final boolean enabled;
+    private final ConcurrentMap<String, RepositoryStatistics> repositories = new ConcurrentHashMap<String, RepositoryStatistics>();
+    private final ConcurrentMap<String, CacheStatistics> caches = new ConcurrentHashMap<String, CacheStatistics>();
+    private final AtomicLong traversalSteps = new AtomicLong();
+    private final AtomicLong fullResolves = new AtomicLong();
+    private final AtomicLong incrementalResolves = new AtomicLong();
+    private final AtomicLong lockWaits = new AtomicLong();
+    private final AtomicLong lockWaitTime = new AtomicLong();
+
+    public DependencyResolutionInstrumentation(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records a request made to a remote repository.
+     *
+     * @param repository The name of the repository.
+     * @param bytes The number of bytes transferred.
+     * @param latency The time in milliseconds taken for the repository to respond.
+     */
+    public void repositoryRequest(String repository, long bytes, long latency) {
+        if (!enabled) {
+            return;
+        }
+        getRepository(repository).request(bytes, latency);
+    }
+
+    /**
+     * Records bytes transferred from a remote repository, separately from the request which produced them.
+     */
+    public void repositoryBytes(String repository, long bytes) {
+        if (!enabled) {
+            return;
+        }
+        getRepository(repository).bytes.addAndGet(bytes);
+    }
+
+    public void cacheHit(String cacheType) {
+        if (!enabled) {
+            return;
+        }
+        getCache(cacheType).hits.incrementAndGet();
+    }
+
+    public void cacheMiss(String cacheType) {
+        if (!enabled) {
+            return;
+        }
+        getCache(cacheType).misses.incrementAndGet();
+    }
+
+    /**
+     * Records the number of steps taken while traversing a dependency graph.
+     */
+    public void traversalSteps(long steps) {
+        if (!enabled) {
+            return;
+        }
+        traversalSteps.addAndGet(steps);
+    }
+
+    /**
+     * Records the resolution of a configuration.
+     *
+     * @param incremental true if the configuration was resolved by reusing the graph of a configuration it extends.
+     */
+    public void configurationResolved(boolean incremental) {
+        if (!enabled) {
+            return;
+        }
+        if (incremental) {
+            incrementalResolves.incrementAndGet();
+        } else {
+            fullResolves.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records time in milliseconds spent waiting to acquire a lock on the artifact cache.
+     */
+    public void lockWait(long time) {
+        if (!enabled) {
+            return;
+        }
+        lockWaits.incrementAndGet();
+        lockWaitTime.addAndGet(time);
+    }
+
+    /**
+     * Returns the statistics for each repository, ordered by name.
+     */
+    public List<RepositoryStatistics> getRepositories() {
+        return new ArrayList<RepositoryStatistics>(new TreeMap<String, RepositoryStatistics>(repositories).values());
+    }
+
+    /**
+     * Returns the statistics for each cache type, ordered by type.
+     */
+    public List<CacheStatistics> getCaches() {
+        return new ArrayList<CacheStatistics>(new TreeMap<String, CacheStatistics>(caches).values());
+    }
+
+    public long getTraversalSteps() {
+        return traversalSteps.get();
+    }
+
+    public long getFullResolves() {
+        return fullResolves.get();
+    }
+
+    public long getIncrementalResolves() {
+        return incrementalResolves.get();
+    }
+
+    public long getLockWaits() {
+        return lockWaits.get();
+    }
+
+    public long getLockWaitTime() {
+        return lockWaitTime.get();
+    }
+
+    private RepositoryStatistics getRepository(String repository) {
+        RepositoryStatistics statistics = repositories.get(repository);
+        if (statistics == null) {
+            repositories.putIfAbsent(repository, new RepositoryStatistics(repository));
+            statistics = repositories.get(repository);
+        }
+        return statistics;
+    }
+
+    private CacheStatistics getCache(String cacheType) {
+        CacheStatistics statistics = caches.get(cacheType);
+        if (statistics == null) {
+            caches.putIfAbsent(cacheType, new CacheStatistics(cacheType));
+            statistics = caches.get(cacheType);
+        }
+        return statistics;
+    }
+
+    public static class RepositoryStatistics {
+        private final String name;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+
+        private RepositoryStatistics(String name) {
+            this.name = name;
+        }
+
+        private void request(long bytes, long latency) {
+            requests.incrementAndGet();
+            this.bytes.addAndGet(bytes);
+            totalLatency.addAndGet(latency);
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS.length && latency >= LATENCY_BUCKETS[bucket]) {
+                bucket++;
+            }
+            latencyHistogram.incrementAndGet(bucket);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        public long getTotalLatency() {
+            return totalLatency.get();
+        }
+
+        /**
+         * Returns the number of requests which fell into each bucket of {@link #LATENCY_BUCKETS}, plus one for slower requests.
+         */
+        public long[] getLatencyHistogram() {
+            long[] histogram = new long[latencyHistogram.length()];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = latencyHistogram.get(i);
+            }
+            return histogram;
+        }
+    }
+
+    public static class CacheStatistics {
+        private final String type;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        private CacheStatistics(String type) {
+            this.type = type;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts;
+
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ProjectDependency;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.execution.TaskExecutionGraphListener;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.file.collections.DefaultFileCollectionResolveContext;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+import org.gradle.util.Clock;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the configurations required by the scheduled tasks up front, once the task graph is known. Configurations are
+ * partitioned into groups of projects which are connected by project dependencies. Each group is resolved sequentially,
+ * and independent groups are resolved concurrently. Any configuration which fails to resolve here is left unresolved, so
+ * that the failure is reported when the task which requires it pulls on it.
+ */
+public class ParallelConfigurationResolver implements TaskExecutionGraphListener {
+    private static final Logger LOGGER = Logging.getLogger(ParallelConfigurationResolver.class);
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
+
+    public ParallelConfigurationResolver(ExecutorFactory executorFactory) {
+        this(executorFactory, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelConfigurationResolver(ExecutorFactory executorFactory, int maxThreads) {
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
+    }
+
+    public void graphPopulated(TaskExecutionGraph graph) {
+        Map<Project, Set<Configuration>> configurations = findRequiredConfigurations(graph.getAllTasks());
+        List<List<Configuration>> groups = groupIndependentConfigurations(configurations);
+        if (groups.size() < 2) {
+            LOGGER.debug("Skipping parallel resolve, as there are no independent configurations to resolve.");
+            return;
+        }
+        resolve(groups);
+    }
+
+    Map<Project, Set<Configuration>> findRequiredConfigurations(Collection<? extends Task> tasks) {
+        Map<Project, Set<Configuration>> configurations = new LinkedHashMap<Project, Set<Configuration>>();
+        for (Task task : tasks) {
+            DefaultFileCollectionResolveContext context = new DefaultFileCollectionResolveContext();
+            context.add(task.getInputs().getFiles());
+            for (FileCollection fileCollection : context.resolveAsFileCollections()) {
+                if (!(fileCollection instanceof Configuration)) {
+                    continue;
+                }
+                Configuration configuration = (Configuration) fileCollection;
+                if (configuration.getState() != Configuration.State.UNRESOLVED) {
+                    continue;
+                }
+                Set<Configuration> projectConfigurations = configurations.get(task.getProject());
+                if (projectConfigurations == null) {
+                    projectConfigurations = new LinkedHashSet<Configuration>();
+                    configurations.put(task.getProject(), projectConfigurations);
+                }
+                projectConfigurations.add(configuration);
+            }
+        }
+        return configurations;
+    }
+
+    List<List<Configuration>> groupIndependentConfigurations(Map<Project, Set<Configuration>> configurations) {
+        Map<Project, Project> groupOwners = new HashMap<Project, Project>();
+        for (Map.Entry<Project, Set<Configuration>> entry : configurations.entrySet()) {
+            for (Configuration configuration : entry.getValue()) {
+                for (ProjectDependency dependency : configuration.getAllDependencies().withType(ProjectDependency.class)) {
+                    union(groupOwners, entry.getKey(), dependency.getDependencyProject());
+                }
+            }
+        }
+
+        Map<Project, List<Configuration>> groups = new LinkedHashMap<Project, List<Configuration>>();
+        for (Map.Entry<Project, Set<Configuration>> entry : configurations.entrySet()) {
+            Project owner = find(groupOwners, entry.getKey());
+            List<Configuration> group = groups.get(owner);
+            if (group == null) {
+                group = new ArrayList<Configuration>();
+                groups.put(owner, group);
+            }
+            group.addAll(entry.getValue());
+        }
+        return new ArrayList<List<Configuration>>(groups.values());
+    }
+
+    private void union(Map<Project, Project> owners, Project a, Project b) {
+        Project ownerA = find(owners, a);
+        Project ownerB = find(owners, b);
+        if (ownerA != ownerB) {
+            owners.put(ownerB, ownerA);
+        }
+    }
+
+    private Project find(Map<Project, Project> owners, Project project) {
+        Project owner = project;
+        while (owners.containsKey(owner)) {
+            owner = owners.get(owner);
+        }
+        if (owner != project) {
+            owners.put(project, owner);
+        }
+        return owner;
+    }
+
+    private void resolve(List<List<Configuration>> groups) {
+        final Queue<List<Configuration>> queue = new ConcurrentLinkedQueue<List<Configuration>>(groups);
+        final AtomicLong sequentialTime = new AtomicLong();
+        final AtomicInteger resolved = new AtomicInteger();
+        int threads = Math.min(maxThreads, groups.size());
+
+        LOGGER.info("Resolving configurations for {} independent project groups using {} threads.", groups.size(), threads);
+        Clock clock = new Clock();
+        StoppableExecutor executor = executorFactory.create("Resolve configurations");
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        List<Configuration> group;
+                        while ((group = queue.poll()) != null) {
+                            for (Configuration configuration : group) {
+                                Clock resolveClock = new Clock();
+                                if (resolve(configuration)) {
+                                    resolved.incrementAndGet();
+                                }
+                                sequentialTime.addAndGet(resolveClock.getTimeInMs());
+                            }
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.stop();
+        }
+
+        long elapsed = clock.getTimeInMs();
+        long saved = Math.max(0, sequentialTime.get() - elapsed);
+        LOGGER.lifecycle(String.format("Resolved %s configurations in parallel in %s (%s when resolved sequentially), saving %s.",
+                resolved.get(), formatTime(elapsed), formatTime(sequentialTime.get()), formatTime(saved)));
+    }
+
+    private boolean resolve(Configuration configuration) {
+        try {
+            configuration.getResolvedConfiguration();
+            return true;
+        } catch (Exception e) {
+            LOGGER.debug(String.format("Could not resolve %s up front. Will resolve on demand.", configuration), e);
+            return false;
+        }
+    }
+
+    private static String formatTime(long timeInMs) {
+        return String.format("%.3f secs", timeInMs / 1000.0);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.util.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * A snapshot of the contents of a classpath. The class files in each classpath directory are tracked
+ * by class name and content hash, so that the classes which have changed between two snapshots can be determined.
+ * All other classpath entries, such as jars and resource files, are tracked by path, size and modification time.
+ */
+public class ClasspathSnapshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClasspathSnapshot.class);
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private static final String FILE_PREFIX = "file:";
+    private final Map<String, String> entries;
+
+    private ClasspathSnapshot(Map<String, String> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Takes a snapshot of the given classpath.
+     */
+    public static ClasspathSnapshot take(Iterable<File> classpath) {
+        Map<String, String> entries = new HashMap<String, String>();
+        for (File file : classpath) {
+            if (file.isDirectory()) {
+                visitDirectory(file, "", entries);
+            } else if (file.isFile()) {
+                entries.put(FILE_PREFIX + file.getAbsolutePath(), file.length() + "," + file.lastModified());
+            }
+        }
+        return new ClasspathSnapshot(entries);
+    }
+
+    private static void visitDirectory(File dir, String packagePrefix, Map<String, String> entries) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                visitDirectory(file, packagePrefix + file.getName() + ".", entries);
+            } else if (file.getName().endsWith(CLASS_FILE_EXTENSION)) {
+                String className = packagePrefix + file.getName().substring(0, file.getName().length() - CLASS_FILE_EXTENSION.length());
+                entries.put(className, new BigInteger(1, HashUtil.createHash(file)).toString(32));
+            } else {
+                entries.put(FILE_PREFIX + file.getAbsolutePath(), new BigInteger(1, HashUtil.createHash(file)).toString(32));
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot from the given file. Returns null if the file does not exist or cannot be read.
+     */
+    public static ClasspathSnapshot load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug(String.format("Could not read classpath snapshot from %s. Ignoring.", file), e);
+            return null;
+        }
+        Map<String, String> entries = new HashMap<String, String>();
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            entries.put(entry.getKey().toString(), entry.getValue().toString());
+        }
+        return new ClasspathSnapshot(entries);
+    }
+
+    public void save(File file) {
+        Properties properties = new Properties();
+        properties.putAll(entries);
+        try {
+            file.getParentFile().mkdirs();
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                properties.store(outputStream, null);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write classpath snapshot to %s.", file), e);
+        }
+    }
+
+    /**
+     * Returns the names of the classes which have been added, removed or changed since the given snapshot was taken.
+     * Returns null when something other than the class files in the classpath directories has changed, in which case
+     * any class may be affected.
+     */
+    public Set<String> getChangedClasses(ClasspathSnapshot previous) {
+        Set<String> changed = new HashSet<String>();
+        Set<String> names = new HashSet<String>(entries.keySet());
+        names.addAll(previous.entries.keySet());
+        for (String name : names) {
+            String value = entries.get(name);
+            if (value != null && value.equals(previous.entries.get(name))) {
+                continue;
+            }
+            if (name.startsWith(FILE_PREFIX)) {
+                return null;
+            }
+            changed.add(name);
+        }
+        return changed;
+    }
+}
@@ -34,6 +34,7 @@ import org.gradle.messaging.remote.MessagingServer;
 import org.gradle.messaging.remote.internal.MessagingServices;
 import org.gradle.os.*;
 import org.gradle.os.jna.NativeEnvironment;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.util.ClassLoaderFactory;
 import org.gradle.util.DefaultClassLoaderFactory;
 
@@ -89,6 +90,10 @@ public class GlobalServicesRegistry extends DefaultServiceRegistry {
         return get(MessagingServices.class).get(MessagingServer.class);
     }
 
+    protected WorkerProcessPool createWorkerProcessPool() {
+        return new WorkerProcessPool(Runtime.getRuntime().availableProcessors(), 50);
+    }
+
     protected ClassGenerator createClassGenerator() {
         return new AsmBackedClassGenerator();
     }
@@ -104,4 +109,8 @@ public class GlobalServicesRegistry extends DefaultServiceRegistry {
     protected FileLockManager createFileLockManager() {
         return new DefaultFileLockManager(new DefaultProcessMetaDataProvider(get(ProcessEnvironment.class)));
     }
+
+    protected CrossBuildInMemoryCaches createCrossBuildInMemoryCaches() {
+        return new CrossBuildInMemoryCaches();
+    }
 }
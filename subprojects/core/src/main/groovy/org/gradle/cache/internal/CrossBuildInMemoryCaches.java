@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal;
+
+import com.google.common.collect.MapMaker;
+import org.gradle.messaging.concurrent.CompositeStoppable;
+import org.gradle.messaging.concurrent.Stoppable;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the in-memory caches which are shared by all builds run by this process, so that a long lived process such as
+ * the daemon can reuse state between builds. Caches are looked up by name. When stopped, all caches are cleared and
+ * any cached values which are {@link Closeable} are closed.
+ */
+public class CrossBuildInMemoryCaches implements Stoppable {
+    private final Map<String, Map<?, ?>> caches = new HashMap<String, Map<?, ?>>();
+
+    /**
+     * Returns the cache with the given name, whose values are evicted when the heap runs low. The cache is thread-safe.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> ConcurrentMap<K, V> getSoftValueCache(String name) {
+        synchronized (caches) {
+            ConcurrentMap<K, V> cache = (ConcurrentMap<K, V>) caches.get(name);
+            if (cache == null) {
+                cache = new MapMaker().softValues().makeMap();
+                caches.put(name, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Returns the cache with the given name, which holds at most the given number of entries, evicting the least
+     * recently used entry when full. Evicted values which are {@link Closeable} are closed. The caller must synchronize
+     * on the cache when using it.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getLruCache(String name, final int maxSize) {
+        synchronized (caches) {
+            Map<K, V> cache = (Map<K, V>) caches.get(name);
+            if (cache == null) {
+                cache = new LinkedHashMap<K, V>(maxSize, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                        if (size() <= maxSize) {
+                            return false;
+                        }
+                        close(Collections.singleton(eldest.getValue()));
+                        return true;
+                    }
+                };
+                caches.put(name, cache);
+            }
+            return cache;
+        }
+    }
+
+    public void stop() {
+        synchronized (caches) {
+            for (Map<?, ?> cache : caches.values()) {
+                synchronized (cache) {
+                    List<Object> values = new ArrayList<Object>(cache.values());
+                    cache.clear();
+                    close(values);
+                }
+            }
+            caches.clear();
+        }
+    }
+
+    private static void close(Collection<?> values) {
+        List<Closeable> closeables = new ArrayList<Closeable>();
+        for (Object value : values) {
+            if (value instanceof Closeable) {
+                closeables.add((Closeable) value);
+            }
+        }
+        new CompositeStoppable().addCloseables(closeables).stop();
+    }
+}
@@ -66,6 +66,8 @@ public class DefaultCommandLineConverter extends AbstractCommandLineConverter<St
     private static final String EXCLUDE_TASK = "x";
     private static final String PROFILE = "profile";
     private static final String CONTINUE = "continue";
+    private static final String PARALLEL_RESOLVE = "parallel-resolve";
+    private static final String OFFLINE = "offline";
     private static final String PROJECT_CACHE_DIR = "project-cache-dir";
 
     private static BiMap<String, StartParameter.ShowStacktrace> showStacktraceMap = HashBiMap.create();
@@ -106,6 +108,8 @@ public class DefaultCommandLineConverter extends AbstractCommandLineConverter<St
         parser.option(EXCLUDE_TASK, "exclude-task").hasArguments().hasDescription("Specify a task to be excluded from execution.");
         parser.option(PROFILE).hasDescription("Profiles build execution time and generates a report in the <build_dir>/reports/profile directory.");
         parser.option(CONTINUE).hasDescription("Continues task execution after a task failure. [experimental]");
+        parser.option(PARALLEL_RESOLVE).hasDescription("Resolves the configurations required by the scheduled tasks in parallel before task execution starts. [experimental]");
+        parser.option(OFFLINE).hasDescription("Resolves dependencies using only the dependency cache, without accessing remote repositories. [experimental]");
     }
 
     @Override
@@ -218,6 +222,14 @@ public class DefaultCommandLineConverter extends AbstractCommandLineConverter<St
         if (options.hasOption(CONTINUE)) {
             startParameter.setContinueOnFailure(true);
         }
+
+        if (options.hasOption(PARALLEL_RESOLVE)) {
+            startParameter.setParallelResolve(true);
+        }
+
+        if (options.hasOption(OFFLINE)) {
+            startParameter.setOffline(true);
+        }
         
         return startParameter;
     }
@@ -18,6 +18,8 @@ package org.gradle.initialization;
 
 import org.gradle.*;
 import org.gradle.api.internal.ExceptionAnalyser;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
+import org.gradle.api.internal.artifacts.ParallelConfigurationResolver;
 import org.gradle.api.internal.project.GlobalServicesRegistry;
 import org.gradle.api.internal.project.ServiceRegistry;
 import org.gradle.api.internal.project.TopLevelBuildServiceRegistry;
@@ -32,6 +34,7 @@ import org.gradle.listener.ListenerManager;
 import org.gradle.logging.LoggingManagerInternal;
 import org.gradle.logging.ProgressLoggerFactory;
 import org.gradle.logging.StyledTextOutputFactory;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.profile.ProfileListener;
 import org.gradle.util.WrapUtil;
 
@@ -117,7 +120,10 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
         listenerManager.addListener(new BuildCleanupListener(serviceRegistry));
 
         if (startParameter.isProfile()) {
-            listenerManager.addListener(new ProfileListener(requestMetaData.getBuildTimeClock().getStartTime()));
+            listenerManager.addListener(new ProfileListener(requestMetaData.getBuildTimeClock().getStartTime(), serviceRegistry.get(DependencyResolutionInstrumentation.class)));
+        }
+        if (startParameter.isParallelResolve()) {
+            listenerManager.addListener(new ParallelConfigurationResolver(serviceRegistry.get(ExecutorFactory.class)));
         }
 
         DefaultGradle gradle = new DefaultGradle(
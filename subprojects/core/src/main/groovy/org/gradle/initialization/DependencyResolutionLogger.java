@@ -22,21 +22,22 @@ import org.gradle.logging.ProgressLoggerFactory;
 
 public class DependencyResolutionLogger implements DependencyResolutionListener {
     private final ProgressLoggerFactory loggerFactory;
-    private ProgressLogger logger;
+    private final ThreadLocal<ProgressLogger> logger = new ThreadLocal<ProgressLogger>();
 
     public DependencyResolutionLogger(ProgressLoggerFactory loggerFactory) {
         this.loggerFactory = loggerFactory;
     }
 
     public void beforeResolve(ResolvableDependencies dependencies) {
-        logger = loggerFactory.newOperation(DependencyResolutionLogger.class);
-        logger.setDescription(String.format("Resolving %s", dependencies));
-        logger.setShortDescription(String.format("Resolving %s", dependencies));
-        logger.started();
+        ProgressLogger progressLogger = loggerFactory.newOperation(DependencyResolutionLogger.class);
+        progressLogger.setDescription(String.format("Resolving %s", dependencies));
+        progressLogger.setShortDescription(String.format("Resolving %s", dependencies));
+        progressLogger.started();
+        logger.set(progressLogger);
     }
 
     public void afterResolve(ResolvableDependencies dependencies) {
-        logger.completed();
-        logger = null;
+        logger.get().completed();
+        logger.remove();
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.logging.internal;
+
+import org.gradle.api.logging.StandardOutputListener;
+import org.gradle.logging.StandardOutputCapture;
+import org.gradle.logging.StandardOutputRedirector;
+
+import java.io.PrintStream;
+
+/**
+ * A {@link StandardOutputRedirector} which can be used by several threads at the same time. Each thread redirects its
+ * own output to the destinations it has set. Threads started by a thread inherit its destinations at the time they are
+ * created. Output from a thread which has no destination is discarded.
+ *
+ * <p>Calls to {@link #start()} and {@link #stop()} are counted, so that System.out and System.err are redirected by the
+ * first call to {@link #start()} and restored by the matching last call to {@link #stop()}. Each call to {@link
+ * #stop()} flushes any partial line written by the calling thread and clears the destinations of the calling
+ * thread.</p>
+ */
+public class PerThreadStandardOutputRedirector implements StandardOutputRedirector {
+    private final StandardOutputRedirector redirector;
+    private final InheritableThreadLocal<StandardOutputListener> stdOutDestination = new InheritableThreadLocal<StandardOutputListener>();
+    private final InheritableThreadLocal<StandardOutputListener> stdErrDestination = new InheritableThreadLocal<StandardOutputListener>();
+    private final Object lock = new Object();
+    private int starts;
+    private PrintStream redirectedStdOut;
+    private PrintStream redirectedStdErr;
+
+    public PerThreadStandardOutputRedirector(StandardOutputRedirector redirector) {
+        this.redirector = redirector;
+    }
+
+    public void redirectStandardOutputTo(StandardOutputListener stdOutDestination) {
+        this.stdOutDestination.set(stdOutDestination);
+    }
+
+    public void redirectStandardErrorTo(StandardOutputListener stdErrDestination) {
+        this.stdErrDestination.set(stdErrDestination);
+    }
+
+    public StandardOutputCapture start() {
+        synchronized (lock) {
+            if (starts == 0) {
+                redirector.redirectStandardOutputTo(new DispatchAction(stdOutDestination));
+                redirector.redirectStandardErrorTo(new DispatchAction(stdErrDestination));
+                redirector.start();
+                redirectedStdOut = System.out;
+                redirectedStdErr = System.err;
+            }
+            starts++;
+        }
+        return this;
+    }
+
+    public StandardOutputCapture stop() {
+        try {
+            synchronized (lock) {
+                if (starts == 0) {
+                    return this;
+                }
+                starts--;
+                if (starts == 0) {
+                    redirectedStdOut = null;
+                    redirectedStdErr = null;
+                    redirector.stop();
+                } else {
+                    redirectedStdOut.flush();
+                    redirectedStdErr.flush();
+                }
+            }
+        } finally {
+            stdOutDestination.remove();
+            stdErrDestination.remove();
+        }
+        return this;
+    }
+
+    private static class DispatchAction implements StandardOutputListener {
+        private final ThreadLocal<StandardOutputListener> destination;
+
+        private DispatchAction(ThreadLocal<StandardOutputListener> destination) {
+            this.destination = destination;
+        }
+
+        public void onOutput(CharSequence output) {
+            StandardOutputListener listener = destination.get();
+            if (listener != null) {
+                listener.onOutput(output);
+            }
+        }
+    }
+}
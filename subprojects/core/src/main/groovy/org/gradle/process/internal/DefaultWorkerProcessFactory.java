@@ -45,15 +45,27 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
     private final ClassPathRegistry classPathRegistry;
     private final FileResolver resolver;
     private final IdGenerator<?> idGenerator;
+    private final WorkerProcessPool workerProcessPool;
 
     public DefaultWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server,
                                        ClassPathRegistry classPathRegistry, FileResolver resolver,
                                        IdGenerator<?> idGenerator) {
+        this(workerLogLevel, server, classPathRegistry, resolver, idGenerator, null);
+    }
+
+    /**
+     * @param workerProcessPool The pool to use for reusable worker processes, or null if worker processes should never
+     * be reused.
+     */
+    public DefaultWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server,
+                                       ClassPathRegistry classPathRegistry, FileResolver resolver,
+                                       IdGenerator<?> idGenerator, WorkerProcessPool workerProcessPool) {
         this.workerLogLevel = workerLogLevel;
         this.server = server;
         this.classPathRegistry = classPathRegistry;
         this.resolver = resolver;
         this.idGenerator = idGenerator;
+        this.workerProcessPool = workerProcessPool;
     }
 
     public WorkerProcessBuilder create() {
@@ -74,7 +86,14 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
             }
 
             final DefaultWorkerProcess workerProcess = new DefaultWorkerProcess(120, TimeUnit.SECONDS);
-            Address localAddress = server.accept(workerProcess.getConnectAction());
+            WorkerProcessPool.Session session = null;
+            Address localAddress;
+            if (isReusable() && workerProcessPool != null) {
+                session = workerProcessPool.createSession();
+                localAddress = server.accept(session.getConnectAction(workerProcess.getConnectAction()));
+            } else {
+                localAddress = server.accept(workerProcess.getConnectAction());
+            }
 
             // Build configuration for GradleWorkerMain
             List<URL> implementationClassPath = ClasspathUtil.getClasspath(getWorker().getClass().getClassLoader());
@@ -82,15 +101,14 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
             String displayName = String.format("Gradle Worker %s", id);
 
             WorkerFactory workerFactory;
-            if (isLoadApplicationInSystemClassLoader()) {
+            if (isLoadApplicationInSystemClassLoader() && session == null) {
                 workerFactory = new ApplicationClassesInSystemClassLoaderWorkerFactory(id, displayName, this,
                         implementationClassPath, localAddress, classPathRegistry);
             } else {
                 workerFactory = new ApplicationClassesInIsolatedClassLoaderWorkerFactory(id, displayName, this,
-                        implementationClassPath, localAddress, classPathRegistry);
+                        implementationClassPath, localAddress, classPathRegistry, session != null);
             }
             Callable<?> workerMain = workerFactory.create();
-            byte[] config = GUtil.serialize(workerMain);
 
             LOGGER.debug("Creating {}", displayName);
             LOGGER.debug("Using application classpath {}", getApplicationClasspath());
@@ -98,11 +116,14 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
 
             JavaExecHandleBuilder javaCommand = getJavaCommand();
             javaCommand.classpath(workerFactory.getSystemClasspath());
-            javaCommand.setStandardInput(new ByteArrayInputStream(config));
             javaCommand.setDisplayName(displayName);
-            ExecHandle execHandle = javaCommand.build();
-
-            workerProcess.setExecHandle(execHandle);
+            if (session != null) {
+                session.configure(javaCommand, workerMain);
+                workerProcess.setExecHandle(session);
+            } else {
+                javaCommand.setStandardInput(new ByteArrayInputStream(GUtil.serialize(workerMain)));
+                workerProcess.setExecHandle(javaCommand.build());
+            }
 
             return workerProcess;
         }
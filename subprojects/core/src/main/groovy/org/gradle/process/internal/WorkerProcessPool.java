@@ -0,0 +1,482 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.process.internal;
+
+import org.gradle.api.Action;
+import org.gradle.listener.ListenerBroadcast;
+import org.gradle.messaging.concurrent.Stoppable;
+import org.gradle.messaging.remote.ConnectEvent;
+import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.ExecResult;
+import org.gradle.process.internal.child.WorkerActionListener;
+import org.gradle.util.UncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps reusable worker processes alive once their worker action has completed, so that they can execute the worker
+ * action of a later worker process which uses the same Java command.
+ *
+ * <p>Each use of a pooled process is represented by a {@link Session}, which stands in for the {@link ExecHandle} of
+ * the worker process. The worker action is written to the standard input of the pooled process when the session starts,
+ * and the session finishes when the worker reports that the action has completed.</p>
+ *
+ * <p>A process is reused only by a worker process with the same command-line, working directory and environment. A
+ * process is discarded once it has executed the maximum number of worker actions, or when its committed heap has grown
+ * beyond three quarters of its maximum heap size. At most the given number of idle processes are kept.</p>
+ */
+public class WorkerProcessPool implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerProcessPool.class);
+    private final int maxIdle;
+    private final int maxUses;
+    private final AtomicInteger counter = new AtomicInteger();
+    private final Object lock = new Object();
+    private final LinkedList<PooledProcess> idle = new LinkedList<PooledProcess>();
+    private boolean stopped;
+
+    /**
+     * @param maxIdle The maximum number of idle processes to keep.
+     * @param maxUses The maximum number of worker actions a process executes before it is discarded.
+     */
+    public WorkerProcessPool(int maxIdle, int maxUses) {
+        this.maxIdle = maxIdle;
+        this.maxUses = maxUses;
+    }
+
+    public Session createSession() {
+        return new Session();
+    }
+
+    /**
+     * Discards all idle processes.
+     */
+    public void stop() {
+        List<PooledProcess> processes;
+        synchronized (lock) {
+            stopped = true;
+            processes = new ArrayList<PooledProcess>(idle);
+            idle.clear();
+        }
+        for (PooledProcess process : processes) {
+            process.discard();
+        }
+        for (PooledProcess process : processes) {
+            process.execHandle.waitForFinish();
+        }
+    }
+
+    private PooledProcess acquire(List<Object> key) {
+        synchronized (lock) {
+            for (Iterator<PooledProcess> iterator = idle.iterator(); iterator.hasNext();) {
+                PooledProcess process = iterator.next();
+                if (process.key.equals(key)) {
+                    iterator.remove();
+                    return process;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void release(PooledProcess process, long committedHeap, long maxHeap) {
+        PooledProcess discard = null;
+        synchronized (lock) {
+            if (stopped || process.uses >= maxUses || committedHeap > maxHeap / 4 * 3) {
+                discard = process;
+            } else {
+                idle.addFirst(process);
+                if (idle.size() > maxIdle) {
+                    discard = idle.removeLast();
+                }
+            }
+        }
+        if (discard != null) {
+            discard.discard();
+        }
+    }
+
+    private void finished(PooledProcess process) {
+        synchronized (lock) {
+            idle.remove(process);
+        }
+    }
+
+    /**
+     * A single use of a pooled process.
+     */
+    public class Session implements ExecHandle, WorkerActionListener {
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+        private final ListenerBroadcast<ExecHandleListener> broadcast = new ListenerBroadcast<ExecHandleListener>(ExecHandleListener.class);
+        private JavaExecHandleBuilder javaCommand;
+        private Callable<?> workerMain;
+        private PooledProcess process;
+        private ExecHandleState state = ExecHandleState.INIT;
+        private ExecResult result;
+
+        /**
+         * Returns an action which registers this session to be notified when the worker action completes, then passes
+         * the connection on to the given action.
+         */
+        public Action<ConnectEvent<ObjectConnection>> getConnectAction(final Action<ConnectEvent<ObjectConnection>> action) {
+            return new Action<ConnectEvent<ObjectConnection>>() {
+                public void execute(ConnectEvent<ObjectConnection> event) {
+                    event.getConnection().addIncoming(WorkerActionListener.class, Session.this);
+                    action.execute(event);
+                }
+            };
+        }
+
+        /**
+         * Specifies the Java command to start a process with, if there is no idle process for it, and the worker action
+         * to execute.
+         */
+        public void configure(JavaExecHandleBuilder javaCommand, Callable<?> workerMain) {
+            this.javaCommand = javaCommand;
+            this.workerMain = workerMain;
+            broadcast.addAll(javaCommand.getListeners());
+        }
+
+        public File getDirectory() {
+            return javaCommand.getWorkingDir();
+        }
+
+        public String getCommand() {
+            return javaCommand.getExecutable();
+        }
+
+        public List<String> getArguments() {
+            return javaCommand.getAllArguments();
+        }
+
+        public Map<String, String> getEnvironment() {
+            return javaCommand.getActualEnvironment();
+        }
+
+        public ExecHandle start() {
+            List<Object> key = Arrays.<Object>asList(javaCommand.getCommandLine(), javaCommand.getWorkingDir(), javaCommand.getActualEnvironment());
+            PooledProcess process = acquire(key);
+            if (process == null) {
+                process = new PooledProcess(key, javaCommand);
+                LOGGER.debug("Starting {}.", process);
+            } else {
+                LOGGER.debug("Reusing {} for {}.", process, javaCommand.getDisplayName());
+            }
+            lock.lock();
+            try {
+                this.process = process;
+                state = ExecHandleState.STARTED;
+            } finally {
+                lock.unlock();
+            }
+            process.execute(this, workerMain);
+            broadcast.getSource().executionStarted(this);
+            return this;
+        }
+
+        public ExecHandleState getState() {
+            lock.lock();
+            try {
+                return state;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void abort() {
+            PooledProcess process;
+            lock.lock();
+            try {
+                process = this.process;
+            } finally {
+                lock.unlock();
+            }
+            if (process != null) {
+                process.execHandle.abort();
+            }
+        }
+
+        public ExecResult waitForFinish() {
+            lock.lock();
+            try {
+                while (result == null) {
+                    condition.await();
+                }
+                return result;
+            } catch (InterruptedException e) {
+                throw UncheckedException.asUncheckedException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void addListener(ExecHandleListener listener) {
+            broadcast.add(listener);
+        }
+
+        public void removeListener(ExecHandleListener listener) {
+            broadcast.remove(listener);
+        }
+
+        public void actionCompleted(long committedHeap, long maxHeap) {
+            PooledProcess process = this.process;
+            if (finish(ExecHandleState.SUCCEEDED, new SessionResult())) {
+                process.sessionFinished(this);
+                release(process, committedHeap, maxHeap);
+                broadcast.getSource().executionFinished(this, result);
+            }
+        }
+
+        private void processFinished(ExecResult processResult) {
+            if (finish(processResult.getExitValue() == 0 ? ExecHandleState.SUCCEEDED : ExecHandleState.FAILED, processResult)) {
+                broadcast.getSource().executionFinished(this, processResult);
+            }
+        }
+
+        private boolean finish(ExecHandleState state, ExecResult result) {
+            lock.lock();
+            try {
+                if (this.result != null) {
+                    return false;
+                }
+                this.state = state;
+                this.result = result;
+                condition.signalAll();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return javaCommand.getDisplayName();
+        }
+    }
+
+    private class PooledProcess implements ExecHandleListener {
+        private final List<Object> key;
+        private final String displayName = String.format("Gradle Worker Process %s", counter.incrementAndGet());
+        private final StandardInput standardInput = new StandardInput();
+        private final ObjectOutputStream outstr;
+        private final ExecHandle execHandle;
+        private int uses;
+        private Session session;
+        private ExecResult result;
+
+        private PooledProcess(List<Object> key, JavaExecHandleBuilder javaCommand) {
+            this.key = key;
+            try {
+                outstr = new ObjectOutputStream(standardInput.getWriter());
+            } catch (IOException e) {
+                throw UncheckedException.asUncheckedException(e);
+            }
+            // Output is forwarded to the current System.out and System.err, which may change between builds
+            execHandle = new DefaultExecHandle(displayName, javaCommand.getWorkingDir(), javaCommand.getExecutable(),
+                    javaCommand.getAllArguments(), javaCommand.getActualEnvironment(), new SystemOutput(false),
+                    new SystemOutput(true), standardInput, Collections.<ExecHandleListener>singletonList(this));
+            execHandle.start();
+        }
+
+        void execute(Session session, Callable<?> workerMain) {
+            ExecResult result;
+            synchronized (this) {
+                uses++;
+                this.session = session;
+                result = this.result;
+                if (result == null) {
+                    try {
+                        outstr.writeObject(workerMain);
+                        outstr.flush();
+                        outstr.reset();
+                    } catch (IOException e) {
+                        throw UncheckedException.asUncheckedException(e);
+                    }
+                }
+            }
+            if (result != null) {
+                session.processFinished(result);
+            }
+        }
+
+        synchronized void sessionFinished(Session session) {
+            if (this.session == session) {
+                this.session = null;
+            }
+        }
+
+        void discard() {
+            LOGGER.debug("Stopping {}.", this);
+            standardInput.close();
+        }
+
+        public void executionStarted(ExecHandle execHandle) {
+        }
+
+        public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+            Session session;
+            synchronized (this) {
+                result = execResult;
+                session = this.session;
+                this.session = null;
+            }
+            finished(this);
+            if (session != null) {
+                session.processFinished(execResult);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /**
+     * The standard input of a pooled process. Blocks until more worker actions are written, or the process is
+     * discarded.
+     */
+    private static class StandardInput extends InputStream {
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+        private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+        private int pos;
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int nread = read(buffer, 0, 1);
+            return nread < 0 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            lock.lock();
+            try {
+                while (chunks.isEmpty() && !closed) {
+                    condition.await();
+                }
+                if (chunks.isEmpty()) {
+                    return -1;
+                }
+                byte[] chunk = chunks.getFirst();
+                int count = Math.min(length, chunk.length - pos);
+                System.arraycopy(chunk, pos, buffer, offset, count);
+                pos += count;
+                if (pos == chunk.length) {
+                    chunks.removeFirst();
+                    pos = 0;
+                }
+                return count;
+            } catch (InterruptedException e) {
+                throw UncheckedException.asUncheckedException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                closed = true;
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        OutputStream getWriter() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    if (length == 0) {
+                        return;
+                    }
+                    byte[] chunk = new byte[length];
+                    System.arraycopy(buffer, offset, chunk, 0, length);
+                    lock.lock();
+                    try {
+                        chunks.add(chunk);
+                        condition.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            };
+        }
+    }
+
+    private static class SystemOutput extends OutputStream {
+        private final boolean error;
+
+        private SystemOutput(boolean error) {
+            this.error = error;
+        }
+
+        private PrintStream getTarget() {
+            return error ? System.err : System.out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            getTarget().write(b);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            getTarget().write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            getTarget().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static class SessionResult implements ExecResult {
+        public int getExitValue() {
+            return 0;
+        }
+
+        public ExecResult assertNormalExitValue() throws ExecException {
+            return this;
+        }
+
+        public ExecResult rethrowFailure() throws ExecException {
+            return this;
+        }
+    }
+}
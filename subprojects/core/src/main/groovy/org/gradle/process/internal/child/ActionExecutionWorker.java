@@ -38,13 +38,24 @@ public class ActionExecutionWorker implements Action<WorkerContext>, Serializabl
     private final Object workerId;
     private final String displayName;
     private final Address serverAddress;
+    private final boolean reusable;
 
     public ActionExecutionWorker(Action<WorkerProcessContext> action, Object workerId, String displayName,
                                  Address serverAddress) {
+        this(action, workerId, displayName, serverAddress, false);
+    }
+
+    /**
+     * @param reusable When true, the worker notifies the server via a {@link WorkerActionListener} once the action has
+     * completed.
+     */
+    public ActionExecutionWorker(Action<WorkerProcessContext> action, Object workerId, String displayName,
+                                 Address serverAddress, boolean reusable) {
         this.action = action;
         this.workerId = workerId;
         this.displayName = displayName;
         this.serverAddress = serverAddress;
+        this.reusable = reusable;
     }
 
     public void execute(final WorkerContext workerContext) {
@@ -79,6 +90,10 @@ public class ActionExecutionWorker implements Action<WorkerContext>, Serializabl
                 Thread.currentThread().setContextClassLoader(contextClassLoader);
             }
             LOGGER.debug("Completed {}.", displayName);
+            if (reusable) {
+                Runtime runtime = Runtime.getRuntime();
+                clientConnection.addOutgoing(WorkerActionListener.class).actionCompleted(runtime.totalMemory(), runtime.maxMemory());
+            }
         } finally {
             LOGGER.debug("Stopping client connection.");
             messagingServices.stop();
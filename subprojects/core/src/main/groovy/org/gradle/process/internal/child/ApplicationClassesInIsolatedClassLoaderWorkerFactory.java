@@ -56,16 +56,27 @@ public class ApplicationClassesInIsolatedClassLoaderWorkerFactory implements Wor
     private final Collection<URL> implementationClassPath;
     private final Address serverAddress;
     private final ClassPathRegistry classPathRegistry;
+    private final boolean reusable;
 
     public ApplicationClassesInIsolatedClassLoaderWorkerFactory(Object workerId, String displayName, WorkerProcessBuilder processBuilder,
                                             Collection<URL> implementationClassPath, Address serverAddress,
                                             ClassPathRegistry classPathRegistry) {
+        this(workerId, displayName, processBuilder, implementationClassPath, serverAddress, classPathRegistry, false);
+    }
+
+    /**
+     * @param reusable Whether the worker process may be reused once the worker action has completed.
+     */
+    public ApplicationClassesInIsolatedClassLoaderWorkerFactory(Object workerId, String displayName, WorkerProcessBuilder processBuilder,
+                                            Collection<URL> implementationClassPath, Address serverAddress,
+                                            ClassPathRegistry classPathRegistry, boolean reusable) {
         this.workerId = workerId;
         this.displayName = displayName;
         this.processBuilder = processBuilder;
         this.implementationClassPath = implementationClassPath;
         this.serverAddress = serverAddress;
         this.classPathRegistry = classPathRegistry;
+        this.reusable = reusable;
     }
 
     public Collection<File> getSystemClasspath() {
@@ -75,7 +86,7 @@ public class ApplicationClassesInIsolatedClassLoaderWorkerFactory implements Wor
     public Callable<?> create() {
         List<URL> applicationClassPath = GFileUtils.toURLs(processBuilder.getApplicationClasspath());
         ActionExecutionWorker injectedWorker = new ActionExecutionWorker(processBuilder.getWorker(), workerId,
-                displayName, serverAddress);
+                displayName, serverAddress, reusable);
         ImplementationClassLoaderWorker worker = new ImplementationClassLoaderWorker(processBuilder.getLogLevel(),
                 processBuilder.getSharedPackages(), implementationClassPath, injectedWorker);
         return new IsolatedApplicationClassLoaderWorker(applicationClassPath, worker);
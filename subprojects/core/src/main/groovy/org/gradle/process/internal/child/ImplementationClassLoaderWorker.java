@@ -76,7 +76,12 @@ public class ImplementationClassLoaderWorker implements Action<WorkerContext>, S
         } catch (Exception e) {
             throw UncheckedException.asUncheckedException(e);
         }
-        action.execute(workerContext);
+        try {
+            action.execute(workerContext);
+        } finally {
+            // A reused worker process starts logging again for its next action
+            loggingManager.stop();
+        }
     }
 
     LoggingManagerInternal createLoggingManager() {
@@ -22,10 +22,12 @@ import org.gradle.util.DefaultClassLoaderFactory;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.Collection;
+import java.util.Properties;
 import java.util.concurrent.Callable;
 
 /**
- * <p>A worker which loads the application classes in an isolated ClassLoader.</p>
+ * <p>A worker which loads the application classes in an isolated ClassLoader. Restores the system properties once the
+ * worker has completed, so that a reused worker process is not affected by previous workers.</p>
  */
 public class IsolatedApplicationClassLoaderWorker implements Callable<Void>, Serializable {
     private final Action<WorkerContext> worker;
@@ -45,7 +47,12 @@ public class IsolatedApplicationClassLoaderWorker implements Callable<Void>, Ser
             }
         };
 
-        worker.execute(context);
+        Properties systemProperties = (Properties) System.getProperties().clone();
+        try {
+            worker.execute(context);
+        } finally {
+            System.setProperties(systemProperties);
+        }
 
         return null;
     }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.process.internal.child;
+
+/**
+ * Notified by a reusable worker process when its worker action has completed, so that the process can be given
+ * another worker action.
+ */
+public interface WorkerActionListener {
+    /**
+     * Called when the worker action has completed. Does not block.
+     *
+     * @param committedHeap The heap size, in bytes, committed by the worker process.
+     * @param maxHeap The maximum heap size, in bytes, of the worker process.
+     */
+    void actionCompleted(long committedHeap, long maxHeap);
+}
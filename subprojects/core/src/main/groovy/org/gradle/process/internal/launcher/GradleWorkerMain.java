@@ -16,18 +16,29 @@
 
 package org.gradle.process.internal.launcher;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.ObjectInputStream;
 import java.util.concurrent.Callable;
 
 /**
- * The main entry point for a worker process. Reads a serialized Callable from stdin, and executes it.
+ * The main entry point for a worker process. Reads serialized Callables from stdin, and executes each in turn until the
+ * end of stdin is reached. A reusable worker process is given a further Callable each time it is reused.
  */
 public class GradleWorkerMain {
     public void run() throws Exception {
-        // Read the main action from stdin and execute it
+        // Read the main actions from stdin and execute them. The actions do not get to see stdin
         ObjectInputStream instr = new ObjectInputStream(System.in);
-        Callable<?> main = (Callable<?>) instr.readObject();
-        main.call();
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        while (true) {
+            Callable<?> main;
+            try {
+                main = (Callable<?>) instr.readObject();
+            } catch (EOFException e) {
+                return;
+            }
+            main.call();
+        }
     }
 
     public static void main(String[] args) {
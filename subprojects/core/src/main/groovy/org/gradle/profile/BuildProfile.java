@@ -17,6 +17,7 @@ package org.gradle.profile;
 
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.ResolvableDependencies;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
 import org.gradle.api.invocation.Gradle;
 
 import java.util.ArrayList;
@@ -49,6 +50,7 @@ public class BuildProfile {
     private long projectsLoaded;
     private long projectsEvaluated;
     private long buildFinished;
+    private DependencyResolutionInstrumentation dependencyResolutionInstrumentation;
 
     public BuildProfile(Gradle gradle) {
         this.gradle = gradle;
@@ -110,7 +112,7 @@ public class BuildProfile {
         return new CompositeOperation<Operation>(operations);
     }
 
-    public DependencyResolveProfile getDependencySetProfile(ResolvableDependencies dependencySet) {
+    public synchronized DependencyResolveProfile getDependencySetProfile(ResolvableDependencies dependencySet) {
         DependencyResolveProfile profile = dependencySets.get(dependencySet.getPath());
         if (profile == null) {
             profile = new DependencyResolveProfile(dependencySet);
@@ -123,6 +125,18 @@ public class BuildProfile {
         return new CompositeOperation<DependencyResolveProfile>(dependencySets.values());
     }
 
+    /**
+     * Get the detailed statistics collected while resolving dependencies, or null when these were not collected.
+     * @return
+     */
+    public DependencyResolutionInstrumentation getDependencyResolutionInstrumentation() {
+        return dependencyResolutionInstrumentation;
+    }
+
+    public void setDependencyResolutionInstrumentation(DependencyResolutionInstrumentation dependencyResolutionInstrumentation) {
+        this.dependencyResolutionInstrumentation = dependencyResolutionInstrumentation;
+    }
+
     /**
      * Should be set with a time as soon as possible after startup.
      * @param profilingStarted
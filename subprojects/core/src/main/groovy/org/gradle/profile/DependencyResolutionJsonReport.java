@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.profile;
+
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
+import org.gradle.reporting.TextReportRenderer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+/**
+ * Writes the statistics collected while resolving dependencies as a JSON document, for consumption by other tools.
+ */
+public class DependencyResolutionJsonReport extends TextReportRenderer<DependencyResolutionInstrumentation> {
+    @Override
+    protected void writeTo(DependencyResolutionInstrumentation model, Writer out) throws IOException {
+        out.write("{\n");
+        out.write("  \"repositories\": [");
+        Iterator<DependencyResolutionInstrumentation.RepositoryStatistics> repositories = model.getRepositories().iterator();
+        while (repositories.hasNext()) {
+            DependencyResolutionInstrumentation.RepositoryStatistics repository = repositories.next();
+            out.write("\n    {\"name\": ");
+            writeString(repository.getName(), out);
+            out.write(String.format(", \"requests\": %d, \"bytes\": %d, \"totalLatencyMs\": %d, \"latencyHistogram\": [",
+                    repository.getRequests(), repository.getBytes(), repository.getTotalLatency()));
+            long[] histogram = repository.getLatencyHistogram();
+            for (int i = 0; i < histogram.length; i++) {
+                if (i > 0) {
+                    out.write(", ");
+                }
+                String upperBound = i < DependencyResolutionInstrumentation.LATENCY_BUCKETS.length ? String.valueOf(DependencyResolutionInstrumentation.LATENCY_BUCKETS[i]) : "null";
+                out.write(String.format("{\"lessThanMs\": %s, \"count\": %d}", upperBound, histogram[i]));
+            }
+            out.write("]}");
+            if (repositories.hasNext()) {
+                out.write(",");
+            }
+        }
+        out.write("\n  ],\n");
+        out.write("  \"caches\": [");
+        Iterator<DependencyResolutionInstrumentation.CacheStatistics> caches = model.getCaches().iterator();
+        while (caches.hasNext()) {
+            DependencyResolutionInstrumentation.CacheStatistics cache = caches.next();
+            out.write("\n    {\"type\": ");
+            writeString(cache.getType(), out);
+            out.write(String.format(", \"hits\": %d, \"misses\": %d}", cache.getHits(), cache.getMisses()));
+            if (caches.hasNext()) {
+                out.write(",");
+            }
+        }
+        out.write("\n  ],\n");
+        out.write(String.format("  \"graphTraversalSteps\": %d,\n", model.getTraversalSteps()));
+        out.write(String.format("  \"fullResolves\": %d,\n", model.getFullResolves()));
+        out.write(String.format("  \"incrementalResolves\": %d,\n", model.getIncrementalResolves()));
+        out.write(String.format("  \"lockWaits\": %d,\n", model.getLockWaits()));
+        out.write(String.format("  \"lockWaitTimeMs\": %d\n", model.getLockWaitTime()));
+        out.write("}\n");
+    }
+
+    private void writeString(String value, Writer out) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                out.write('\\');
+                out.write(ch);
+            } else if (ch < 0x20) {
+                out.write(String.format("\\u%04x", (int) ch));
+            } else {
+                out.write(ch);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -23,6 +23,7 @@ import org.gradle.api.ProjectState;
 import org.gradle.api.Task;
 import org.gradle.api.artifacts.DependencyResolutionListener;
 import org.gradle.api.artifacts.ResolvableDependencies;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
 import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.initialization.Settings;
 import org.gradle.api.invocation.Gradle;
@@ -36,14 +37,17 @@ public class ProfileListener implements BuildListener, ProjectEvaluationListener
     private BuildProfile buildProfile;
     private static final SimpleDateFormat FILE_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss");
     private long profileStarted;
+    private final DependencyResolutionInstrumentation dependencyResolutionInstrumentation;
 
-    public ProfileListener(long profileStarted) {
+    public ProfileListener(long profileStarted, DependencyResolutionInstrumentation dependencyResolutionInstrumentation) {
         this.profileStarted = profileStarted;
+        this.dependencyResolutionInstrumentation = dependencyResolutionInstrumentation;
     }
 
     // BuildListener
     public void buildStarted(Gradle gradle) {
         buildProfile = new BuildProfile(gradle);
+        buildProfile.setDependencyResolutionInstrumentation(dependencyResolutionInstrumentation);
         buildProfile.setBuildStarted(System.currentTimeMillis());
         buildProfile.setProfilingStarted(profileStarted);
     }
@@ -64,8 +68,10 @@ public class ProfileListener implements BuildListener, ProjectEvaluationListener
         buildProfile.setBuildFinished(System.currentTimeMillis());
 
         ProfileReportRenderer renderer = new ProfileReportRenderer();
-        File file = new File(result.getGradle().getRootProject().getBuildDir(), "reports/profile/profile-" + FILE_DATE_FORMAT.format(new Date(profileStarted)) + ".html");
-        renderer.writeTo(buildProfile, file);
+        File reportDir = new File(result.getGradle().getRootProject().getBuildDir(), "reports/profile");
+        String baseName = "profile-" + FILE_DATE_FORMAT.format(new Date(profileStarted));
+        renderer.writeTo(buildProfile, new File(reportDir, baseName + ".html"));
+        new DependencyResolutionJsonReport().writeTo(dependencyResolutionInstrumentation, new File(reportDir, baseName + "-dependencies.json"));
     }
 
     // ProjectEvaluationListener
@@ -58,6 +58,8 @@ class StartParameterTest {
         testObj.logLevel = LogLevel.WARN
         testObj.colorOutput = false
         testObj.continueOnFailure = true
+        testObj.parallelResolve = true
+        testObj.offline = true
 
         StartParameter startParameter = testObj.newInstance()
         assertEquals(testObj, startParameter)
@@ -80,6 +82,8 @@ class StartParameterTest {
         assertThat(parameter.defaultProjectSelector, reflectionEquals(new DefaultProjectSpec(parameter.currentDir)))
         assertFalse(parameter.dryRun)
         assertFalse(parameter.continueOnFailure)
+        assertFalse(parameter.parallelResolve)
+        assertFalse(parameter.offline)
     }
 
     @Test public void testDefaultWithGradleUserHomeSystemProp() {
@@ -199,6 +203,8 @@ class StartParameterTest {
         parameter.defaultProjectSelector = [:] as ProjectSpec
         parameter.dryRun = true
         parameter.continueOnFailure = true
+        parameter.parallelResolve = true
+        parameter.offline = true
 
         StartParameter newParameter = parameter.newBuild();
 
@@ -209,6 +215,8 @@ class StartParameterTest {
         assertThat(newParameter.logLevel, equalTo(parameter.logLevel));
         assertThat(newParameter.colorOutput, equalTo(parameter.colorOutput));
         assertThat(newParameter.continueOnFailure, equalTo(parameter.continueOnFailure))
+        assertThat(newParameter.parallelResolve, equalTo(parameter.parallelResolve))
+        assertThat(newParameter.offline, equalTo(parameter.offline))
 
         assertThat(newParameter.buildFile, nullValue())
         assertThat(newParameter.taskNames, isEmpty())
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts
+
+import spock.lang.Specification
+
+class DependencyResolutionInstrumentationTest extends Specification {
+    final DependencyResolutionInstrumentation instrumentation = new DependencyResolutionInstrumentation(true)
+
+    def "records requests, bytes and latency per repository"() {
+        when:
+        instrumentation.repositoryRequest("b", 0, 5)
+        instrumentation.repositoryRequest("a", 100, 75)
+        instrumentation.repositoryRequest("a", 50, 20000)
+        instrumentation.repositoryBytes("a", 1000)
+
+        then:
+        instrumentation.repositories.collect { it.name } == ["a", "b"]
+
+        def a = instrumentation.repositories[0]
+        a.requests == 2
+        a.bytes == 1150
+        a.totalLatency == 20075
+        a.latencyHistogram as List == [0, 0, 1, 0, 0, 0, 0, 1]
+
+        def b = instrumentation.repositories[1]
+        b.requests == 1
+        b.latencyHistogram as List == [1, 0, 0, 0, 0, 0, 0, 0]
+    }
+
+    def "records cache hits and misses per cache type"() {
+        when:
+        instrumentation.cacheHit("module")
+        instrumentation.cacheHit("module")
+        instrumentation.cacheMiss("module")
+        instrumentation.cacheMiss("artifact")
+
+        then:
+        instrumentation.caches.collect { [it.type, it.hits, it.misses] } == [["artifact", 0, 1], ["module", 2, 1]]
+    }
+
+    def "records full and incremental resolves"() {
+        when:
+        instrumentation.configurationResolved(false)
+        instrumentation.configurationResolved(true)
+        instrumentation.configurationResolved(true)
+
+        then:
+        instrumentation.fullResolves == 1
+        instrumentation.incrementalResolves == 2
+    }
+
+    def "records traversal steps and lock waits"() {
+        when:
+        instrumentation.traversalSteps(12)
+        instrumentation.traversalSteps(3)
+        instrumentation.lockWait(10)
+        instrumentation.lockWait(5)
+
+        then:
+        instrumentation.traversalSteps == 15
+        instrumentation.lockWaits == 2
+        instrumentation.lockWaitTime == 15
+    }
+
+    def "records nothing when disabled"() {
+        def disabled = new DependencyResolutionInstrumentation(false)
+
+        when:
+        disabled.repositoryRequest("a", 100, 10)
+        disabled.cacheHit("module")
+        disabled.traversalSteps(4)
+        disabled.lockWait(10)
+        disabled.configurationResolved(true)
+
+        then:
+        !disabled.enabled
+        disabled.repositories.empty
+        disabled.caches.empty
+        disabled.traversalSteps == 0
+        disabled.lockWaits == 0
+        disabled.incrementalResolves == 0
+    }
+}
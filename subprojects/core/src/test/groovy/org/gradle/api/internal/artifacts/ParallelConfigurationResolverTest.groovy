@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts
+
+import org.gradle.api.Project
+import org.gradle.api.Task
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.ProjectDependency
+import org.gradle.api.execution.TaskExecutionGraph
+import org.gradle.api.internal.DefaultDomainObjectSet
+import org.gradle.api.tasks.TaskInputs
+import org.gradle.util.ConcurrentSpecification
+
+class ParallelConfigurationResolverTest extends ConcurrentSpecification {
+    final TaskExecutionGraph graph = Mock()
+    final ParallelConfigurationResolver resolver = new ParallelConfigurationResolver(executorFactory, 4)
+
+    def "finds unresolved configurations used as task inputs"() {
+        def project = Mock(Project)
+        def compile = configuration()
+        def resolved = configuration(Configuration.State.RESOLVED)
+        def task1 = task(project, compile)
+        def task2 = task(project, resolved)
+
+        expect:
+        resolver.findRequiredConfigurations([task1, task2]) == [(project): [compile] as Set]
+    }
+
+    def "groups configurations of projects connected by project dependencies"() {
+        def projectA = Mock(Project)
+        def projectB = Mock(Project)
+        def projectC = Mock(Project)
+        def a = configuration(Configuration.State.UNRESOLVED, projectB)
+        def b = configuration()
+        def c = configuration()
+
+        when:
+        def groups = resolver.groupIndependentConfigurations([(projectA): [a] as Set, (projectB): [b] as Set, (projectC): [c] as Set])
+
+        then:
+        groups as Set == [[a, b], [c]] as Set
+    }
+
+    def "resolves independent configurations when task graph is ready"() {
+        def projectA = Mock(Project)
+        def projectB = Mock(Project)
+        def a = configuration()
+        def b = configuration()
+        def taskA = task(projectA, a)
+        def taskB = task(projectB, b)
+
+        when:
+        resolver.graphPopulated(graph)
+
+        then:
+        _ * graph.allTasks >> [taskA, taskB]
+        1 * a.resolvedConfiguration
+        1 * b.resolvedConfiguration
+    }
+
+    def "does nothing when there are no independent configurations"() {
+        def project = Mock(Project)
+        def a = configuration()
+        def task = task(project, a)
+
+        when:
+        resolver.graphPopulated(graph)
+
+        then:
+        _ * graph.allTasks >> [task]
+        0 * a.resolvedConfiguration
+    }
+
+    def "ignores configurations which fail to resolve"() {
+        def projectA = Mock(Project)
+        def projectB = Mock(Project)
+        def a = configuration()
+        def b = configuration()
+        def taskA = task(projectA, a)
+        def taskB = task(projectB, b)
+
+        when:
+        resolver.graphPopulated(graph)
+
+        then:
+        _ * graph.allTasks >> [taskA, taskB]
+        1 * a.resolvedConfiguration >> { throw new RuntimeException("broken") }
+        1 * b.resolvedConfiguration
+    }
+
+    private Task task(Project project, Configuration configuration) {
+        TaskInputs inputs = Mock()
+        Task task = Mock()
+        _ * task.project >> project
+        _ * task.inputs >> inputs
+        _ * inputs.files >> configuration
+        return task
+    }
+
+    private Configuration configuration(Configuration.State state = Configuration.State.UNRESOLVED, Project... dependsOn) {
+        Configuration configuration = Mock()
+        DependencySet dependencies = Mock()
+        def projectDependencies = dependsOn.collect { Project target ->
+            ProjectDependency dependency = Mock()
+            _ * dependency.dependencyProject >> target
+            dependency
+        }
+        _ * configuration.state >> state
+        _ * configuration.allDependencies >> dependencies
+        _ * dependencies.withType(ProjectDependency) >> new DefaultDomainObjectSet<ProjectDependency>(ProjectDependency, projectDependencies)
+        return configuration
+    }
+}
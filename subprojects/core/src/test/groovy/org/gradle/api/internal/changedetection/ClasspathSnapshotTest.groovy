@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection
+
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+class ClasspathSnapshotTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestFile classesDir = tmpDir.createDir("classes")
+    final TestFile jar = tmpDir.file("lib.jar")
+    final List<File> classpath = [classesDir, jar, tmpDir.file("missing")]
+
+    def setup() {
+        classesDir.file("org/gradle/SomeClass.class").write("some class")
+        classesDir.file("org/gradle/SomeClass\$Inner.class").write("inner class")
+        classesDir.file("Other.class").write("other class")
+        classesDir.file("org/gradle/resource.txt").write("resource")
+        jar.write("jar")
+    }
+
+    def "no classes have changed when classpath is unchanged"() {
+        def previous = ClasspathSnapshot.take(classpath)
+
+        expect:
+        ClasspathSnapshot.take(classpath).getChangedClasses(previous).empty
+    }
+
+    def "reports added, removed and changed classes by name"() {
+        def previous = ClasspathSnapshot.take(classpath)
+
+        when:
+        classesDir.file("org/gradle/SomeClass\$Inner.class").write("changed")
+        classesDir.file("Other.class").delete()
+        classesDir.file("org/gradle/sub/NewClass.class").write("new class")
+
+        then:
+        ClasspathSnapshot.take(classpath).getChangedClasses(previous) == ["org.gradle.SomeClass\$Inner", "Other", "org.gradle.sub.NewClass"] as Set
+    }
+
+    def "classes which are rewritten with the same content have not changed"() {
+        def previous = ClasspathSnapshot.take(classpath)
+
+        when:
+        classesDir.file("org/gradle/SomeClass.class").delete()
+        classesDir.file("org/gradle/SomeClass.class").write("some class")
+
+        then:
+        ClasspathSnapshot.take(classpath).getChangedClasses(previous).empty
+    }
+
+    def "any class may have changed when resource or jar changes"() {
+        def previous = ClasspathSnapshot.take(classpath)
+
+        when:
+        change.call(this)
+
+        then:
+        ClasspathSnapshot.take(classpath).getChangedClasses(previous) == null
+
+        where:
+        change << [
+                { it.classesDir.file("org/gradle/resource.txt").write("changed") },
+                { it.jar.write("changed jar") },
+                { it.jar.delete() }
+        ]
+    }
+
+    def "persists snapshot"() {
+        def file = tmpDir.file("state/snapshot.properties")
+        ClasspathSnapshot.take(classpath).save(file)
+
+        when:
+        classesDir.file("Other.class").write("changed")
+
+        then:
+        ClasspathSnapshot.take(classpath).getChangedClasses(ClasspathSnapshot.load(file)) == ["Other"] as Set
+    }
+
+    def "loads nothing when file does not exist"() {
+        expect:
+        ClasspathSnapshot.load(tmpDir.file("missing.properties")) == null
+    }
+}
@@ -22,6 +22,7 @@ import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.classpath.PluginModuleRegistry;
 import org.gradle.cache.internal.CacheFactory;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
 import org.gradle.cache.internal.DefaultCacheFactory;
 import org.gradle.cache.internal.DefaultFileLockManager;
 import org.gradle.cache.internal.FileLockManager;
@@ -36,6 +37,7 @@ import org.gradle.logging.ProgressLoggerFactory;
 import org.gradle.logging.internal.DefaultLoggingManagerFactory;
 import org.gradle.logging.internal.DefaultProgressLoggerFactory;
 import org.gradle.messaging.remote.MessagingServer;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.util.ClassLoaderFactory;
 import org.gradle.util.DefaultClassLoaderFactory;
 import org.junit.Test;
@@ -107,6 +109,11 @@ public class GlobalServicesRegistryTest {
         assertThat(registry.get(MessagingServer.class), instanceOf(MessagingServer.class));
     }
 
+    @Test
+    public void providesAWorkerProcessPool() {
+        assertThat(registry.get(WorkerProcessPool.class), instanceOf(WorkerProcessPool.class));
+    }
+
     @Test
     public void providesAClassGenerator() {
         assertThat(registry.get(ClassGenerator.class), instanceOf(AsmBackedClassGenerator.class));
@@ -121,4 +128,9 @@ public class GlobalServicesRegistryTest {
     public void providesAFileLockManager() {
         assertThat(registry.get(FileLockManager.class), instanceOf(DefaultFileLockManager.class));
     }
+
+    @Test
+    public void providesCrossBuildInMemoryCaches() {
+        assertThat(registry.get(CrossBuildInMemoryCaches.class), instanceOf(CrossBuildInMemoryCaches.class));
+    }
 }
@@ -18,6 +18,7 @@ package org.gradle.api.internal.project;
 
 import org.gradle.StartParameter;
 import org.gradle.api.internal.*;
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.classpath.PluginModuleRegistry;
@@ -41,6 +42,7 @@ import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.messaging.remote.MessagingServer;
 import org.gradle.process.internal.DefaultWorkerProcessFactory;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.util.ClassLoaderFactory;
 import org.gradle.util.JUnit4GroovyMockery;
 import org.gradle.util.MultiParentClassLoader;
@@ -54,6 +56,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -181,6 +184,7 @@ public class TopLevelBuildServiceRegistryTest {
     @Test
     public void providesAWorkerProcessFactory() {
         expectParentServiceLocated(MessagingServer.class);
+        expectParentServiceLocated(WorkerProcessPool.class);
         allowGetCoreImplClassLoader();
 
         assertThat(registry.getFactory(WorkerProcessBuilder.class), instanceOf(DefaultWorkerProcessFactory.class));
@@ -210,6 +214,13 @@ public class TopLevelBuildServiceRegistryTest {
         assertThat(registry.get(ExecutorFactory.class), sameInstance(registry.get(ExecutorFactory.class)));
     }
 
+    @Test
+    public void providesADependencyResolutionInstrumentation() {
+        assertThat(registry.get(DependencyResolutionInstrumentation.class), instanceOf(DependencyResolutionInstrumentation.class));
+        assertThat(registry.get(DependencyResolutionInstrumentation.class), sameInstance(registry.get(DependencyResolutionInstrumentation.class)));
+        assertFalse(registry.get(DependencyResolutionInstrumentation.class).isEnabled());
+    }
+
     @Test
     public void providesABuildConfigurer() {
         assertThat(registry.get(BuildConfigurer.class), instanceOf(DefaultBuildConfigurer.class));
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal
+
+import spock.lang.Specification
+
+class CrossBuildInMemoryCachesTest extends Specification {
+    final CrossBuildInMemoryCaches caches = new CrossBuildInMemoryCaches()
+
+    def "returns same cache for a given name"() {
+        expect:
+        caches.getSoftValueCache("a").is(caches.getSoftValueCache("a"))
+        !caches.getSoftValueCache("a").is(caches.getSoftValueCache("b"))
+        caches.getLruCache("c", 2).is(caches.getLruCache("c", 2))
+    }
+
+    def "lru cache evicts and closes least recently used entry"() {
+        Closeable first = Mock()
+        Closeable second = Mock()
+        Map<String, Object> cache = caches.getLruCache("cache", 1)
+
+        when:
+        cache.put("first", first)
+        cache.put("second", second)
+
+        then:
+        1 * first.close()
+        0 * second.close()
+        cache.keySet() == ["second"] as Set
+    }
+
+    def "stop clears caches and closes cached values"() {
+        Closeable value = Mock()
+        caches.getLruCache("lru", 10).put("key", value)
+        caches.getSoftValueCache("soft").put("key", "value")
+
+        when:
+        caches.stop()
+
+        then:
+        1 * value.close()
+        caches.getLruCache("lru", 10).isEmpty()
+        caches.getSoftValueCache("soft").isEmpty()
+    }
+}
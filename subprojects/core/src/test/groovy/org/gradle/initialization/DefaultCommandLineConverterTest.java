@@ -70,6 +70,8 @@ public class DefaultCommandLineConverterTest {
 
     private final DefaultCommandLineConverter commandLineConverter = new DefaultCommandLineConverter();
     private boolean expectedContinue;
+    private boolean expectedParallelResolve;
+    private boolean expectedOffline;
 
     @Test
     public void withoutAnyOptions() {
@@ -100,6 +102,8 @@ public class DefaultCommandLineConverterTest {
         assertEquals(expectedInitScripts, startParameter.getInitScripts());
         assertEquals(expectedProfile, startParameter.isProfile());
         assertEquals(expectedContinue, startParameter.isContinueOnFailure());
+        assertEquals(expectedParallelResolve, startParameter.isParallelResolve());
+        assertEquals(expectedOffline, startParameter.isOffline());
         assertEquals(expectedProjectCacheDir, startParameter.getProjectCacheDir());
     }
 
@@ -363,6 +367,18 @@ public class DefaultCommandLineConverterTest {
         checkConversion("--continue");
     }
 
+    @Test
+    public void withParallelResolve() {
+        expectedParallelResolve = true;
+        checkConversion("--parallel-resolve");
+    }
+
+    @Test
+    public void withOffline() {
+        expectedOffline = true;
+        checkConversion("--offline");
+    }
+
     @Test(expected = CommandLineArgumentException.class)
     public void withUnknownOption() {
         checkConversion("--unknown");
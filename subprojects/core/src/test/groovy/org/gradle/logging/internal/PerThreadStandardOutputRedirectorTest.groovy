@@ -0,0 +1,142 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.logging.internal
+
+import org.gradle.api.logging.StandardOutputListener
+import org.gradle.util.RedirectStdOutAndErr
+import org.gradle.util.SystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+
+class PerThreadStandardOutputRedirectorTest extends Specification {
+    private static final String EOL = SystemProperties.lineSeparator
+
+    @Rule public final RedirectStdOutAndErr outputs = new RedirectStdOutAndErr()
+    private final PerThreadStandardOutputRedirector redirector = new PerThreadStandardOutputRedirector(new DefaultStandardOutputRedirector())
+    private final StandardOutputListener stdOutListener = Mock()
+    private final StandardOutputListener stdErrListener = Mock()
+    private final StandardOutputListener otherStdOutListener = Mock()
+
+    def startAndStopRedirectsStdOutAndStdErr() {
+        when:
+        redirector.redirectStandardOutputTo(stdOutListener)
+        redirector.redirectStandardErrorTo(stdErrListener)
+        redirector.start()
+        System.out.println('this is stdout')
+        System.err.println('this is stderr')
+        redirector.stop()
+
+        then:
+        1 * stdOutListener.onOutput('this is stdout' + EOL)
+        1 * stdErrListener.onOutput('this is stderr' + EOL)
+        0 * _._
+        System.out == outputs.stdOutPrintStream
+        System.err == outputs.stdErrPrintStream
+    }
+
+    def routesOutputOfEachThreadToItsOwnDestination() {
+        when:
+        redirector.redirectStandardOutputTo(stdOutListener)
+        redirector.start()
+        runInThread {
+            redirector.redirectStandardOutputTo(otherStdOutListener)
+            redirector.start()
+            System.out.println('from other thread')
+            redirector.stop()
+        }
+        System.out.println('from this thread')
+        redirector.stop()
+
+        then:
+        1 * otherStdOutListener.onOutput('from other thread' + EOL)
+        1 * stdOutListener.onOutput('from this thread' + EOL)
+        0 * _._
+    }
+
+    def threadInheritsDestinationOfThreadWhichCreatedIt() {
+        when:
+        redirector.redirectStandardOutputTo(stdOutListener)
+        redirector.start()
+        runInThread {
+            System.out.println('from child thread')
+        }
+        redirector.stop()
+
+        then:
+        1 * stdOutListener.onOutput('from child thread' + EOL)
+        0 * _._
+    }
+
+    def restoresSystemOutAndErrOnlyWhenLastThreadStops() {
+        when:
+        redirector.redirectStandardOutputTo(stdOutListener)
+        redirector.start()
+        runInThread {
+            redirector.redirectStandardOutputTo(otherStdOutListener)
+            redirector.start()
+            System.out.print('partial line')
+            redirector.stop()
+        }
+
+        then:
+        1 * otherStdOutListener.onOutput('partial line')
+        0 * _._
+        System.out != outputs.stdOutPrintStream
+
+        when:
+        redirector.stop()
+
+        then:
+        System.out == outputs.stdOutPrintStream
+        System.err == outputs.stdErrPrintStream
+    }
+
+    def discardsOutputFromThreadAfterItStops() {
+        when:
+        redirector.redirectStandardOutputTo(stdOutListener)
+        redirector.start()
+        runInThread {
+            redirector.start()
+            redirector.stop()
+            System.out.println('discarded')
+        }
+        redirector.stop()
+
+        then:
+        0 * _._
+    }
+
+    def canStartAgainAfterStopping() {
+        when:
+        redirector.redirectStandardOutputTo(stdOutListener)
+        redirector.start()
+        redirector.stop()
+        redirector.redirectStandardOutputTo(otherStdOutListener)
+        redirector.start()
+        System.out.println('this is stdout')
+        redirector.stop()
+
+        then:
+        1 * otherStdOutListener.onOutput('this is stdout' + EOL)
+        0 * _._
+    }
+
+    private void runInThread(Closure cl) {
+        Thread thread = new Thread(cl as Runnable)
+        thread.start()
+        thread.join()
+    }
+}
@@ -82,6 +82,36 @@ public class ActionExecutionWorkerTest {
         assertThat(collector.get().getDisplayName(), equalTo("<display name>"));
     }
 
+    @Test
+    public void notifiesServerWhenActionCompletesInReusableWorker() throws Exception {
+        final WorkerActionListener listener = context.mock(WorkerActionListener.class);
+        ActionExecutionWorker reusableMain = new ActionExecutionWorker(action, 12, "<display name>", serverAddress, true) {
+            @Override
+            MessagingServices createClient() {
+                return messagingServices;
+            }
+        };
+
+        context.checking(new Expectations() {{
+            allowing(messagingServices).get(MessagingClient.class);
+            will(returnValue(client));
+
+            one(client).getConnection(serverAddress);
+            will(returnValue(connection));
+
+            one(action).execute(with(notNullValue(WorkerProcessContext.class)));
+
+            one(connection).addOutgoing(WorkerActionListener.class);
+            will(returnValue(listener));
+
+            one(listener).actionCompleted(with(greaterThan(0L)), with(greaterThan(0L)));
+
+            one(messagingServices).stop();
+        }});
+
+        reusableMain.execute(workerContext);
+    }
+
     @Test
     public void cleansUpWhenActionThrowsException() throws Exception {
         final RuntimeException failure = new RuntimeException();
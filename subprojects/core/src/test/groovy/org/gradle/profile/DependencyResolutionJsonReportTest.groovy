@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.profile
+
+import org.gradle.api.internal.artifacts.DependencyResolutionInstrumentation
+import spock.lang.Specification
+
+class DependencyResolutionJsonReportTest extends Specification {
+    final DependencyResolutionInstrumentation instrumentation = new DependencyResolutionInstrumentation(true)
+    final DependencyResolutionJsonReport report = new DependencyResolutionJsonReport()
+
+    def "writes statistics as json"() {
+        given:
+        instrumentation.repositoryRequest('repo "1"', 100, 20)
+        instrumentation.cacheHit("artifact")
+        instrumentation.traversalSteps(7)
+        instrumentation.configurationResolved(false)
+        instrumentation.configurationResolved(true)
+        instrumentation.configurationResolved(true)
+        instrumentation.lockWait(3)
+
+        when:
+        def writer = new StringWriter()
+        report.writeTo(instrumentation, writer)
+
+        then:
+        writer.toString() == '''{
+  "repositories": [
+    {"name": "repo \\"1\\"", "requests": 1, "bytes": 100, "totalLatencyMs": 20, "latencyHistogram": [{"lessThanMs": 10, "count": 0}, {"lessThanMs": 50, "count": 1}, {"lessThanMs": 100, "count": 0}, {"lessThanMs": 250, "count": 0}, {"lessThanMs": 500, "count": 0}, {"lessThanMs": 1000, "count": 0}, {"lessThanMs": 5000, "count": 0}, {"lessThanMs": null, "count": 0}]}
+  ],
+  "caches": [
+    {"type": "artifact", "hits": 1, "misses": 0}
+  ],
+  "graphTraversalSteps": 7,
+  "fullResolves": 1,
+  "incrementalResolves": 2,
+  "lockWaits": 1,
+  "lockWaitTimeMs": 3
+}
+'''
+    }
+}
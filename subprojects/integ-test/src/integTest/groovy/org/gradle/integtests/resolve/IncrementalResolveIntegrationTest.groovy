@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.integtests.resolve
+
+import org.gradle.integtests.fixtures.MavenRepository
+import org.gradle.integtests.fixtures.internal.AbstractIntegrationSpec
+
+class IncrementalResolveIntegrationTest extends AbstractIntegrationSpec {
+    def "configurations which extend a resolved configuration resolve to the same result as when resolved from scratch"() {
+        def repo = new MavenRepository(file('repo'))
+        repo.module('org', 'foo', '1.0').publish()
+        repo.module('org', 'foo', '1.1').publish()
+        repo.module('org', 'bar', '1.0').dependsOn('foo').publish()
+        repo.module('org', 'baz', '1.0').dependsOn('org', 'foo', '1.1').publish()
+        repo.module('org', 'qux', '1.0').publish()
+
+        settingsFile << "include 'api', 'impl'"
+        buildFile << """
+allprojects {
+    apply plugin: 'java'
+    repositories { maven { url '${repo.uri}' } }
+}
+project(':api') {
+    dependencies {
+        compile 'org:foo:1.0'
+    }
+}
+project(':impl') {
+    dependencies {
+        compile project(':api')
+        runtime 'org:bar:1.0'
+        testCompile 'org:qux:1.0'
+        testRuntime 'org:baz:1.0'
+    }
+    task checkResolve(dependsOn: configurations.compile) << {
+        assert configurations.compile.collect { it.name } as Set == ['api.jar', 'foo-1.0.jar'] as Set
+        assert configurations.runtime.collect { it.name } as Set == ['api.jar', 'foo-1.0.jar', 'bar-1.0.jar'] as Set
+        assert configurations.testCompile.collect { it.name } as Set == ['api.jar', 'foo-1.0.jar', 'qux-1.0.jar'] as Set
+        assert configurations.testRuntime.collect { it.name } as Set == ['api.jar', 'foo-1.1.jar', 'bar-1.0.jar', 'qux-1.0.jar', 'baz-1.0.jar'] as Set
+    }
+}
+"""
+
+        when:
+        executer.withArguments("--profile")
+        run 'impl:checkResolve'
+
+        then:
+        def report = file('build/reports/profile').listFiles().find { it.name ==~ /profile-.+-dependencies.json/ }
+        report.text.contains('"incrementalResolves": 2,')
+    }
+
+    def "reusing the graph of a resolved configuration traverses fewer dependencies than resolving from scratch"() {
+        def repo = new MavenRepository(file('repo'))
+        repo.module('org', 'lib5', '1.0').publish()
+        repo.module('org', 'lib4', '1.0').dependsOn('lib5').publish()
+        repo.module('org', 'lib3', '1.0').dependsOn('lib4').publish()
+        repo.module('org', 'lib2', '1.0').dependsOn('lib3').publish()
+        repo.module('org', 'lib1', '1.0').dependsOn('lib2').publish()
+        repo.module('org', 'test', '1.0').publish()
+
+        buildFile << """
+apply plugin: 'java'
+repositories { maven { url '${repo.uri}' } }
+dependencies {
+    runtime 'org:lib1:1.0'
+    testRuntime 'org:test:1.0'
+}
+task resolve << {
+    configurationsToResolve.split(',').each { configurations[it].files }
+}
+"""
+
+        when:
+        def testRuntimeFromScratch = traversalSteps('testRuntime')
+        def runtimeFromScratch = traversalSteps('runtime')
+        def runtimeThenTestRuntime = traversalSteps('runtime,testRuntime')
+
+        then:
+        runtimeThenTestRuntime - runtimeFromScratch < testRuntimeFromScratch
+    }
+
+    private long traversalSteps(String configurations) {
+        file('build/reports/profile').deleteDir()
+        executer.withArguments("--profile", "-PconfigurationsToResolve=${configurations}")
+        run 'resolve'
+        def report = file('build/reports/profile').listFiles().find { it.name ==~ /profile-.+-dependencies.json/ }
+        return (report.text =~ /"graphTraversalSteps": (\d+)/)[0][1] as long
+    }
+}
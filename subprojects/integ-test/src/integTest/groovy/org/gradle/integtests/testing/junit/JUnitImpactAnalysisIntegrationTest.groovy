@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.integtests.testing.junit
+
+import org.gradle.integtests.fixtures.internal.AbstractIntegrationSpec
+
+class JUnitImpactAnalysisIntegrationTest extends AbstractIntegrationSpec {
+    def setup() {
+        buildFile << """
+apply plugin: 'java'
+repositories { mavenCentral() }
+dependencies { testCompile 'junit:junit:4.7' }
+"""
+        file('src/main/java/org/gradle/Calculator.java') << """
+package org.gradle;
+public class Calculator {
+    public int add(int a, int b) { return a + b; }
+}
+"""
+        file('src/main/java/org/gradle/Greeter.java') << """
+package org.gradle;
+public class Greeter {
+    public String greet(String name) { return "Hello " + name; }
+}
+"""
+        file('src/test/java/org/gradle/CalculatorTest.java') << """
+package org.gradle;
+public class CalculatorTest {
+    @org.junit.Test public void adds() {
+        org.junit.Assert.assertEquals(3, new Calculator().add(1, 2));
+    }
+}
+"""
+        file('src/test/java/org/gradle/GreeterTest.java') << """
+package org.gradle;
+public class GreeterTest {
+    @org.junit.Test public void greets() {
+        org.junit.Assert.assertEquals("Hello world", new Greeter().greet("world"));
+    }
+}
+"""
+    }
+
+    def "executes only test classes affected by changed classes"() {
+        when:
+        executer.withArguments("-Dorg.gradle.test.impactAnalysis=true")
+        run 'test'
+
+        then:
+        executedTestClasses() == ['org.gradle.CalculatorTest', 'org.gradle.GreeterTest'] as Set
+
+        when:
+        file('build/test-results').deleteDir()
+        file('src/main/java/org/gradle/Greeter.java').text = """
+package org.gradle;
+public class Greeter {
+    public String greet(String name) { return "Hello " + name.trim(); }
+}
+"""
+        executer.withArguments("-Dorg.gradle.test.impactAnalysis=true")
+        run 'test'
+
+        then:
+        executedTestClasses() == ['org.gradle.GreeterTest'] as Set
+    }
+
+    def "executes test class again while it fails"() {
+        file('src/main/java/org/gradle/Calculator.java').text = """
+package org.gradle;
+public class Calculator {
+    public int add(int a, int b) { return a - b; }
+}
+"""
+
+        when:
+        executer.withArguments("-Dorg.gradle.test.impactAnalysis=true")
+        runAndFail 'test'
+        file('build/test-results').deleteDir()
+        file('src/main/java/org/gradle/Greeter.java').text = """
+package org.gradle;
+public class Greeter {
+    public String greet(String name) { return "Hello " + name.trim(); }
+}
+"""
+        executer.withArguments("-Dorg.gradle.test.impactAnalysis=true")
+        runAndFail 'test'
+
+        then:
+        executedTestClasses() == ['org.gradle.CalculatorTest', 'org.gradle.GreeterTest'] as Set
+    }
+
+    def executedTestClasses() {
+        return file('build/test-results').list().findAll { it.endsWith('.xml') }.collect { it - 'TEST-' - '.xml' } as Set
+    }
+}
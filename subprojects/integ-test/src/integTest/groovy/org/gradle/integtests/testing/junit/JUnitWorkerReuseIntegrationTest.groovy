@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.integtests.testing.junit
+
+import org.gradle.integtests.fixtures.internal.AbstractIntegrationSpec
+
+class JUnitWorkerReuseIntegrationTest extends AbstractIntegrationSpec {
+    def "test task reuses worker process of earlier test task with same fork options"() {
+        buildFile << """
+apply plugin: 'java'
+repositories { mavenCentral() }
+dependencies { testCompile 'junit:junit:4.7' }
+task otherTest(type: Test, dependsOn: testClasses) {
+    testClassesDir = sourceSets.test.output.classesDir
+    classpath = sourceSets.test.runtimeClasspath
+    testResultsDir = file('build/other-test-results')
+    testReportDir = file('build/reports/other-tests')
+}
+"""
+        file('src/test/java/org/gradle/SomeTest.java') << """
+package org.gradle;
+public class SomeTest {
+    @org.junit.Test public void ok() {
+        org.junit.Assert.assertNull(System.getProperty("some.test.property"));
+        System.setProperty("some.test.property", "value");
+        System.out.println("VM NAME = " + java.lang.management.ManagementFactory.getRuntimeMXBean().getName());
+    }
+}
+"""
+
+        when:
+        executer.withArguments("-Dorg.gradle.test.reuseWorkers=true")
+        run 'test', 'otherTest'
+
+        then:
+        def results1 = file('build/test-results/TEST-org.gradle.SomeTest.xml')
+        def results2 = file('build/other-test-results/TEST-org.gradle.SomeTest.xml')
+        def vmName1 = vmName(results1)
+        def vmName2 = vmName(results2)
+        vmName1 != null
+        vmName2 != null
+        vmName1 == vmName2
+    }
+
+    def vmName(File results) {
+        return results.readLines().find { it.contains('VM NAME = ') }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.EmptyFileVisitor;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.util.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Decides whether a compilation can be skipped because none of its inputs have changed, other than the
+ * implementation of the classes in the compile classpath. The classpath is compared using the fingerprints calculated
+ * by {@link ClasspathApiFingerprinter}, the source files by content hash, and the class files in the destination
+ * directory by size and modification time.
+ */
+public class ApiCompileAvoidance {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ApiCompileAvoidance.class);
+    private static final String COMPILE_KEY = "compileKey";
+    private static final String SOURCE_PREFIX = "source:";
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final String OUTPUT_PREFIX = "output:";
+    private final File stateFile;
+    private final ClasspathApiFingerprinter fingerprinter;
+    private Map<String, String> inputs;
+
+    /**
+     * @param stateFile The file to record the inputs and outputs of the previous compilation in.
+     */
+    public ApiCompileAvoidance(File stateFile, ClasspathApiFingerprinter fingerprinter) {
+        this.stateFile = stateFile;
+        this.fingerprinter = fingerprinter;
+    }
+
+    /**
+     * Returns true when the given compilation would produce the same class files as the previous one. Otherwise,
+     * discards the state of the previous compilation.
+     */
+    public boolean isUpToDate(FileCollection source, File destinationDir, Iterable<File> classpath, String compileKey) {
+        inputs = snapshotInputs(source, classpath, compileKey);
+        Map<String, String> previous = load();
+        stateFile.delete();
+        if (previous == null) {
+            return false;
+        }
+        Map<String, String> current = new HashMap<String, String>(inputs);
+        current.putAll(snapshotOutputs(destinationDir));
+        if (!current.equals(previous)) {
+            return false;
+        }
+        LOGGER.info("Skipping compilation as only the implementation of the compile classpath has changed.");
+        save(current);
+        return true;
+    }
+
+    /**
+     * Records the compilation which has just completed, for comparison by the next compilation.
+     */
+    public void compiled(File destinationDir) {
+        Map<String, String> state = new HashMap<String, String>(inputs);
+        state.putAll(snapshotOutputs(destinationDir));
+        save(state);
+    }
+
+    private Map<String, String> snapshotInputs(FileCollection source, Iterable<File> classpath, String compileKey) {
+        final Map<String, String> snapshot = new HashMap<String, String>();
+        snapshot.put(COMPILE_KEY, compileKey);
+        source.getAsFileTree().visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                snapshot.put(SOURCE_PREFIX + fileDetails.getFile().getAbsolutePath(),
+                        new BigInteger(1, HashUtil.createHash(fileDetails.getFile())).toString(32));
+            }
+        });
+        int index = 0;
+        for (Map.Entry<String, String> entry : fingerprinter.fingerprint(classpath).entrySet()) {
+            snapshot.put(CLASSPATH_PREFIX + index++, entry.getKey() + "," + entry.getValue());
+        }
+        return snapshot;
+    }
+
+    private Map<String, String> snapshotOutputs(File destinationDir) {
+        Map<String, String> snapshot = new HashMap<String, String>();
+        visitOutputs(destinationDir, snapshot);
+        return snapshot;
+    }
+
+    private void visitOutputs(File dir, Map<String, String> snapshot) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                visitOutputs(file, snapshot);
+            } else {
+                snapshot.put(OUTPUT_PREFIX + file.getAbsolutePath(), file.length() + "," + file.lastModified());
+            }
+        }
+    }
+
+    private Map<String, String> load() {
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(stateFile));
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug(String.format("Could not read previous compilation from %s. Ignoring.", stateFile), e);
+            return null;
+        }
+        Map<String, String> state = new HashMap<String, String>();
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            state.put(entry.getKey().toString(), entry.getValue().toString());
+        }
+        return state;
+    }
+
+    private void save(Map<String, String> state) {
+        Properties properties = new Properties();
+        properties.putAll(state);
+        try {
+            stateFile.getParentFile().mkdirs();
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(stateFile));
+            try {
+                properties.store(outputStream, null);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write previous compilation to %s.", stateFile), e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.tools.javac.JavaAwareCompilationUnit;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles Groovy and Java source files by driving the Groovy {@link CompilationUnit} directly. When there are Java
+ * source files, Java stubs are generated for the Groovy source files, and the Java source files are compiled against
+ * the stubs using javac, in-process.
+ *
+ * <p>This class is loaded by {@link InProcessGroovyCompiler} into a ClassLoader containing the version of Groovy to
+ * compile with, so it must not reference anything other than the JDK and Groovy, and must only use the Groovy API
+ * which is common to all supported versions of Groovy.</p>
+ */
+public class ApiGroovyCompiler {
+    /**
+     * Compiles the given source files. Returns null when the compilation succeeds, or the error report of the compiler
+     * when it fails.
+     *
+     * @param spec The compilation to perform. See {@link InProcessGroovyCompiler} for the entries.
+     */
+    @SuppressWarnings("unchecked")
+    public static String compile(Map<String, Object> spec) {
+        List<File> sourceFiles = (List<File>) spec.get("sourceFiles");
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.setTargetDirectory((File) spec.get("destinationDir"));
+        configuration.setClasspathList((List<String>) spec.get("classpath"));
+        configuration.setVerbose((Boolean) spec.get("verbose"));
+        if (spec.get("encoding") != null) {
+            configuration.setSourceEncoding((String) spec.get("encoding"));
+        }
+
+        boolean jointCompilation = false;
+        for (File file : sourceFiles) {
+            if (file.getName().endsWith(".java")) {
+                jointCompilation = true;
+                break;
+            }
+        }
+        if (jointCompilation) {
+            Map<String, Object> jointCompilationOptions = new HashMap<String, Object>();
+            jointCompilationOptions.put("stubDir", spec.get("stubDir"));
+            jointCompilationOptions.put("flags", spec.get("javacFlags"));
+            jointCompilationOptions.put("namedValues", spec.get("javacNamedValues"));
+            configuration.setJointCompilationOptions(jointCompilationOptions);
+        }
+
+        GroovyClassLoader classLoader = new GroovyClassLoader(CompilationUnit.class.getClassLoader(), configuration);
+        CompilationUnit unit = jointCompilation ? new JavaAwareCompilationUnit(configuration, classLoader)
+                : new CompilationUnit(configuration, null, classLoader);
+        unit.addSources(sourceFiles.toArray(new File[sourceFiles.size()]));
+        try {
+            unit.compile();
+        } catch (CompilationFailedException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+}
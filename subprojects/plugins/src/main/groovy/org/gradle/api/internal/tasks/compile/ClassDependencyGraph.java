@@ -0,0 +1,176 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import org.gradle.api.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The result of compiling a set of source files: for each class, the source file it was compiled from and the classes
+ * it references; and for each source file, a hash of its content. Classes are identified by their internal name.
+ */
+public class ClassDependencyGraph implements Serializable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassDependencyGraph.class);
+    private final String compileKey;
+    private final Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+    private final Map<String, String> sourceHashes = new HashMap<String, String>();
+
+    /**
+     * @param compileKey Identifies the compiler settings used to produce the classes.
+     */
+    public ClassDependencyGraph(String compileKey) {
+        this.compileKey = compileKey;
+    }
+
+    /**
+     * Reads a graph from the given file. Returns null if the file does not exist or cannot be read.
+     */
+    public static ClassDependencyGraph load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            ObjectInputStream inputStream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                return (ClassDependencyGraph) inputStream.readObject();
+            } finally {
+                inputStream.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug(String.format("Could not read class dependency graph from %s. Ignoring.", file), e);
+            return null;
+        }
+    }
+
+    public void save(File file) {
+        try {
+            file.getParentFile().mkdirs();
+            ObjectOutputStream outputStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                outputStream.writeObject(this);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write class dependency graph to %s.", file), e);
+        }
+    }
+
+    public String getCompileKey() {
+        return compileKey;
+    }
+
+    public void addClass(String className, String sourcePath, Collection<String> dependencies, boolean declaresConstants) {
+        classes.put(className, new ClassInfo(sourcePath, new HashSet<String>(dependencies), declaresConstants));
+    }
+
+    public Set<String> getClasses() {
+        return classes.keySet();
+    }
+
+    public boolean declaresConstants(String className) {
+        ClassInfo info = classes.get(className);
+        return info != null && info.declaresConstants;
+    }
+
+    /**
+     * Returns the classes compiled from the given source files.
+     */
+    public Set<String> getClassesForSources(Collection<String> sourcePaths) {
+        Set<String> result = new HashSet<String>();
+        for (Map.Entry<String, ClassInfo> entry : classes.entrySet()) {
+            if (sourcePaths.contains(entry.getValue().sourcePath)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the source files of the given classes.
+     */
+    public Set<String> getSourcesForClasses(Collection<String> classNames) {
+        Set<String> result = new HashSet<String>();
+        for (String className : classNames) {
+            ClassInfo info = classes.get(className);
+            if (info != null) {
+                result.add(info.sourcePath);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the classes which reference any of the given classes, directly or indirectly.
+     */
+    public Set<String> getDependents(Collection<String> classNames) {
+        Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, ClassInfo> entry : classes.entrySet()) {
+            for (String dependency : entry.getValue().dependencies) {
+                Set<String> classDependents = dependents.get(dependency);
+                if (classDependents == null) {
+                    classDependents = new HashSet<String>();
+                    dependents.put(dependency, classDependents);
+                }
+                classDependents.add(entry.getKey());
+            }
+        }
+
+        Set<String> result = new HashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>(classNames);
+        while (!queue.isEmpty()) {
+            Set<String> classDependents = dependents.get(queue.removeFirst());
+            if (classDependents == null) {
+                continue;
+            }
+            for (String dependent : classDependents) {
+                if (result.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        return result;
+    }
+
+    public void removeClasses(Collection<String> classNames) {
+        classes.keySet().removeAll(classNames);
+    }
+
+    public Map<String, String> getSourceHashes() {
+        return sourceHashes;
+    }
+
+    public void setSourceHashes(Map<String, String> sourceHashes) {
+        this.sourceHashes.clear();
+        this.sourceHashes.putAll(sourceHashes);
+    }
+
+    private static class ClassInfo implements Serializable {
+        private final String sourcePath;
+        private final Set<String> dependencies;
+        private final boolean declaresConstants;
+
+        private ClassInfo(String sourcePath, Set<String> dependencies, boolean declaresConstants) {
+            this.sourcePath = sourcePath;
+            this.dependencies = dependencies;
+            this.declaresConstants = declaresConstants;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.UncheckedIOException;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.EmptyVisitor;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.commons.RemappingClassAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Extracts from a class file the information needed to recompile classes selectively: the name of the class, the
+ * source file it was compiled from, the classes it references, and whether it declares compile-time constants which
+ * other classes may have inlined.
+ */
+public class ClassFileAnalyzer {
+    private final Set<String> dependencies = new HashSet<String>();
+    private String className;
+    private String sourceFile;
+    private boolean declaresConstants;
+
+    private ClassFileAnalyzer() {
+    }
+
+    public static ClassFileAnalyzer analyze(File classFile) {
+        ClassFileAnalyzer analyzer = new ClassFileAnalyzer();
+        try {
+            ClassReader reader = new ClassReader(FileUtils.readFileToByteArray(classFile));
+            reader.accept(new RemappingClassAdapter(analyzer.new HeaderVisitor(), analyzer.new DependencyCollector()),
+                    ClassReader.SKIP_FRAMES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read class file %s.", classFile), e);
+        }
+        analyzer.dependencies.remove(analyzer.className);
+        return analyzer;
+    }
+
+    /**
+     * Returns the internal name of the class, for example 'org/gradle/Person$Address'.
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns the path of the source file of the class, relative to its source directory, or null when the class file
+     * does not record its source file.
+     */
+    public String getSourcePath() {
+        if (sourceFile == null) {
+            return null;
+        }
+        return className.substring(0, className.lastIndexOf('/') + 1) + sourceFile;
+    }
+
+    /**
+     * Returns the internal names of the classes referenced by the class.
+     */
+    public Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Returns true if the class declares a non-private field whose constant value may have been inlined by the compiler
+     * into the classes which use it.
+     */
+    public boolean isDeclaresConstants() {
+        return declaresConstants;
+    }
+
+    private class HeaderVisitor extends EmptyVisitor {
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = name;
+        }
+
+        @Override
+        public void visitSource(String source, String debug) {
+            sourceFile = source;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if (value != null && (access & Opcodes.ACC_PRIVATE) == 0) {
+                declaresConstants = true;
+            }
+            return super.visitField(access, name, desc, signature, value);
+        }
+    }
+
+    private class DependencyCollector extends Remapper {
+        @Override
+        public String map(String typeName) {
+            dependencies.add(typeName);
+            return typeName;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
+import org.gradle.util.HashUtil;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.EmptyVisitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Calculates a fingerprint of the API of each entry of a compile classpath. The fingerprint covers the names of the
+ * classes, the signatures of their non-private members, the values of their constants and their annotations, and the
+ * contents of any resources. It does not change when only the implementation of a method changes.
+ *
+ * <p>The fingerprints of jars are cached by content hash in a {@link CrossBuildInMemoryCaches} cache, so that a jar
+ * is analyzed only once by a build daemon.</p>
+ */
+public class ClasspathApiFingerprinter {
+    private static final int MAX_CACHED_JARS = 1000;
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private static final int IGNORED_ACCESS = Opcodes.ACC_SUPER | Opcodes.ACC_SYNCHRONIZED | Opcodes.ACC_NATIVE | Opcodes.ACC_STRICT;
+    private final Map<String, String> jarFingerprints;
+
+    public ClasspathApiFingerprinter(CrossBuildInMemoryCaches caches) {
+        jarFingerprints = caches.getLruCache(ClasspathApiFingerprinter.class.getName(), MAX_CACHED_JARS);
+    }
+
+    /**
+     * Returns the fingerprint of each of the given classpath entries, keyed by absolute path, in classpath order.
+     */
+    public Map<String, String> fingerprint(Iterable<File> classpath) {
+        Map<String, String> fingerprints = new LinkedHashMap<String, String>();
+        for (File file : classpath) {
+            fingerprints.put(file.getAbsolutePath(), fingerprint(file));
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Returns the fingerprint of the given jar or classes directory.
+     */
+    public String fingerprint(File classpathEntry) {
+        if (classpathEntry.isDirectory()) {
+            SortedMap<String, String> entries = new TreeMap<String, String>();
+            visitDirectory(classpathEntry, "", entries);
+            return hash(entries);
+        }
+        if (!classpathEntry.isFile()) {
+            return "missing";
+        }
+
+        String contentHash = new BigInteger(1, HashUtil.createHash(classpathEntry)).toString(32);
+        synchronized (jarFingerprints) {
+            String fingerprint = jarFingerprints.get(contentHash);
+            if (fingerprint != null) {
+                return fingerprint;
+            }
+        }
+        String fingerprint = fingerprintJar(classpathEntry);
+        synchronized (jarFingerprints) {
+            jarFingerprints.put(contentHash, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private void visitDirectory(File dir, String prefix, Map<String, String> entries) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                visitDirectory(file, name + "/", entries);
+            } else if (name.endsWith(CLASS_FILE_EXTENSION)) {
+                try {
+                    addClass(name, FileUtils.readFileToByteArray(file), entries);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(String.format("Could not read class file %s.", file), e);
+                }
+            } else {
+                entries.put(name, new BigInteger(1, HashUtil.createHash(file)).toString(32));
+            }
+        }
+    }
+
+    private String fingerprintJar(File jar) {
+        SortedMap<String, String> entries = new TreeMap<String, String>();
+        try {
+            ZipFile zipFile = new ZipFile(jar);
+            try {
+                Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry entry = zipEntries.nextElement();
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    if (entry.getName().endsWith(CLASS_FILE_EXTENSION)) {
+                        InputStream inputStream = zipFile.getInputStream(entry);
+                        try {
+                            addClass(entry.getName(), IOUtils.toByteArray(inputStream), entries);
+                        } finally {
+                            inputStream.close();
+                        }
+                    } else {
+                        entries.put(entry.getName(), String.valueOf(entry.getCrc()));
+                    }
+                }
+            } finally {
+                zipFile.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read jar %s.", jar), e);
+        }
+        return hash(entries);
+    }
+
+    private void addClass(String path, byte[] classFile, Map<String, String> entries) {
+        ApiCollector collector = new ApiCollector();
+        new ClassReader(classFile).accept(collector, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        if (collector.isApi()) {
+            entries.put(path, collector.getApi());
+        }
+    }
+
+    private String hash(SortedMap<String, String> entries) {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            builder.append(entry.getKey()).append('\n').append(entry.getValue()).append('\n');
+        }
+        return HashUtil.createHash(builder.toString());
+    }
+
+    /**
+     * Collects the parts of a class which other classes can compile against. Local and anonymous classes, private
+     * and synthetic members, and method bodies are ignored.
+     */
+    private static class ApiCollector extends EmptyVisitor {
+        private final StringBuilder header = new StringBuilder();
+        private final List<String> members = new ArrayList<String>();
+        private StringBuilder current = header;
+        private boolean api = true;
+
+        public boolean isApi() {
+            return api;
+        }
+
+        public String getApi() {
+            Collections.sort(members);
+            StringBuilder builder = new StringBuilder(header);
+            for (String member : members) {
+                builder.append('\n').append(member);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            if ((access & Opcodes.ACC_SYNTHETIC) != 0) {
+                api = false;
+            }
+            header.append(access & ~IGNORED_ACCESS).append(' ').append(name).append(' ').append(signature).append(' ')
+                    .append(superName).append(' ').append(Arrays.toString(interfaces));
+        }
+
+        @Override
+        public void visitOuterClass(String owner, String name, String desc) {
+            // Only local and anonymous classes have an enclosing method attribute
+            api = false;
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            current.append(" @").append(desc).append('(');
+            return new AnnotationCollector(current);
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+            current.append(" @").append(parameter).append(':').append(desc).append('(');
+            return new AnnotationCollector(current);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotationDefault() {
+            current.append(" default(");
+            return new AnnotationCollector(current);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if (!isApi(access)) {
+                return null;
+            }
+            startMember().append("field ").append(access & ~IGNORED_ACCESS).append(' ').append(name).append(' ')
+                    .append(desc).append(' ').append(signature).append(' ').append(value);
+            return this;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if (!isApi(access)) {
+                return null;
+            }
+            startMember().append("method ").append(access & ~IGNORED_ACCESS).append(' ').append(name).append(' ')
+                    .append(desc).append(' ').append(signature).append(' ').append(Arrays.toString(exceptions));
+            return this;
+        }
+
+        @Override
+        public void visitEnd() {
+            if (current != header) {
+                members.add(current.toString());
+                current = header;
+            }
+        }
+
+        private StringBuilder startMember() {
+            visitEnd();
+            current = new StringBuilder();
+            return current;
+        }
+
+        private boolean isApi(int access) {
+            return (access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) == 0;
+        }
+    }
+
+    private static class AnnotationCollector extends EmptyVisitor {
+        private final StringBuilder builder;
+
+        private AnnotationCollector(StringBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            builder.append(name).append('=');
+            if (value != null && value.getClass().isArray()) {
+                builder.append(toString(value));
+            } else {
+                builder.append(value);
+            }
+            builder.append(',');
+        }
+
+        @Override
+        public void visitEnum(String name, String desc, String value) {
+            builder.append(name).append('=').append(desc).append('.').append(value).append(',');
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String desc) {
+            builder.append(name).append("=@").append(desc).append('(');
+            return new AnnotationCollector(builder);
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            builder.append(name).append("=(");
+            return new AnnotationCollector(builder);
+        }
+
+        @Override
+        public void visitEnd() {
+            builder.append(')');
+        }
+
+        private static String toString(Object array) {
+            List<Object> values = new ArrayList<Object>();
+            for (int i = 0; i < java.lang.reflect.Array.getLength(array); i++) {
+                values.add(java.lang.reflect.Array.get(array, i));
+            }
+            return values.toString();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.ClassPathRegistry;
+import org.gradle.api.internal.Factory;
+import org.gradle.api.internal.project.IsolatedAntBuilder;
+import org.gradle.api.tasks.WorkResult;
+import org.gradle.api.tasks.compile.CompileOptions;
+import org.gradle.api.tasks.compile.GroovyCompileOptions;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
+import org.gradle.util.ClassLoaderFactory;
+
+import java.io.File;
+
+/**
+ * Compiles Groovy and Java source using {@link InProcessGroovyCompiler} when it is enabled and can handle the compile
+ * options, and using {@link AntGroovyCompiler} otherwise. The in-process compiler is enabled by setting the {@link
+ * #IN_PROCESS_PROPERTY} system property to true.
+ */
+public class DefaultGroovyCompiler implements GroovyJavaJointCompiler {
+    public static final String IN_PROCESS_PROPERTY = "org.gradle.compile.groovy.inProcess";
+    private final AntGroovyCompiler antCompiler;
+    private final ClassLoaderFactory classLoaderFactory;
+    private final Factory<File> tempDirFactory;
+    private final CrossBuildInMemoryCaches caches;
+    private FileCollection source;
+    private File destinationDir;
+    private Iterable<File> classpath;
+    private Iterable<File> groovyClasspath;
+    private String sourceCompatibility;
+    private String targetCompatibility;
+
+    /**
+     * @param tempDirFactory Provides a directory for the in-process compiler to generate Java stubs into.
+     * @param caches Holds the ClassLoaders of the in-process compiler between builds.
+     */
+    public DefaultGroovyCompiler(IsolatedAntBuilder antBuilder, ClassPathRegistry classPathRegistry,
+                                 ClassLoaderFactory classLoaderFactory, Factory<File> tempDirFactory,
+                                 CrossBuildInMemoryCaches caches) {
+        antCompiler = new AntGroovyCompiler(antBuilder, classPathRegistry);
+        this.classLoaderFactory = classLoaderFactory;
+        this.tempDirFactory = tempDirFactory;
+        this.caches = caches;
+    }
+
+    public GroovyCompileOptions getGroovyCompileOptions() {
+        return antCompiler.getGroovyCompileOptions();
+    }
+
+    public CompileOptions getCompileOptions() {
+        return antCompiler.getCompileOptions();
+    }
+
+    public void setSource(FileCollection source) {
+        this.source = source;
+    }
+
+    public void setDestinationDir(File destinationDir) {
+        this.destinationDir = destinationDir;
+    }
+
+    public void setClasspath(Iterable<File> classpath) {
+        this.classpath = classpath;
+    }
+
+    public void setGroovyClasspath(Iterable<File> classpath) {
+        this.groovyClasspath = classpath;
+    }
+
+    public void setSourceCompatibility(String sourceCompatibility) {
+        this.sourceCompatibility = sourceCompatibility;
+    }
+
+    public void setTargetCompatibility(String targetCompatibility) {
+        this.targetCompatibility = targetCompatibility;
+    }
+
+    public WorkResult execute() {
+        GroovyJavaJointCompiler compiler = selectCompiler();
+        compiler.setSource(source);
+        compiler.setDestinationDir(destinationDir);
+        compiler.setClasspath(classpath);
+        compiler.setGroovyClasspath(groovyClasspath);
+        compiler.setSourceCompatibility(sourceCompatibility);
+        compiler.setTargetCompatibility(targetCompatibility);
+        return compiler.execute();
+    }
+
+    private GroovyJavaJointCompiler selectCompiler() {
+        if (Boolean.getBoolean(IN_PROCESS_PROPERTY) && InProcessGroovyCompiler.canCompile(getGroovyCompileOptions(), getCompileOptions())) {
+            InProcessGroovyCompiler compiler = new InProcessGroovyCompiler(classLoaderFactory, tempDirFactory, caches);
+            compiler.setGroovyCompileOptions(getGroovyCompileOptions());
+            compiler.setCompileOptions(getCompileOptions());
+            return compiler;
+        }
+        return antCompiler;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import org.gradle.api.AntBuilder;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.Factory;
+import org.gradle.api.tasks.WorkResult;
+import org.gradle.api.tasks.compile.CompileOptions;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
+
+import java.io.File;
+
+/**
+ * Compiles Java source using {@link InProcessJavaCompiler} when it is enabled and can handle the compile options, and
+ * using {@link AntJavaCompiler} otherwise. The in-process compiler is enabled by setting the {@link
+ * #IN_PROCESS_PROPERTY} system property to true.
+ */
+public class DefaultJavaCompiler implements JavaCompiler {
+    public static final String IN_PROCESS_PROPERTY = "org.gradle.compile.java.inProcess";
+    private final AntJavaCompiler antCompiler;
+    private final CrossBuildInMemoryCaches caches;
+    private FileCollection source;
+    private File destinationDir;
+    private Iterable<File> classpath;
+    private File dependencyCacheDir;
+    private String sourceCompatibility;
+    private String targetCompatibility;
+
+    public DefaultJavaCompiler(Factory<AntBuilder> antBuilderFactory, CrossBuildInMemoryCaches caches) {
+        antCompiler = new AntJavaCompiler(antBuilderFactory);
+        this.caches = caches;
+    }
+
+    public CompileOptions getCompileOptions() {
+        return antCompiler.getCompileOptions();
+    }
+
+    public void setSource(FileCollection source) {
+        this.source = source;
+    }
+
+    public void setDestinationDir(File destinationDir) {
+        this.destinationDir = destinationDir;
+    }
+
+    public void setClasspath(Iterable<File> classpath) {
+        this.classpath = classpath;
+    }
+
+    public void setDependencyCacheDir(File dir) {
+        this.dependencyCacheDir = dir;
+    }
+
+    public void setSourceCompatibility(String sourceCompatibility) {
+        this.sourceCompatibility = sourceCompatibility;
+    }
+
+    public void setTargetCompatibility(String targetCompatibility) {
+        this.targetCompatibility = targetCompatibility;
+    }
+
+    public WorkResult execute() {
+        JavaCompiler compiler = selectCompiler();
+        compiler.setSource(source);
+        compiler.setDestinationDir(destinationDir);
+        compiler.setClasspath(classpath);
+        compiler.setDependencyCacheDir(dependencyCacheDir);
+        compiler.setSourceCompatibility(sourceCompatibility);
+        compiler.setTargetCompatibility(targetCompatibility);
+        return compiler.execute();
+    }
+
+    private JavaCompiler selectCompiler() {
+        if (Boolean.getBoolean(IN_PROCESS_PROPERTY) && isJavaxToolsAvailable() && InProcessJavaCompiler.canCompile(getCompileOptions())) {
+            InProcessJavaCompiler compiler = new InProcessJavaCompiler(caches);
+            compiler.setCompileOptions(getCompileOptions());
+            return compiler;
+        }
+        return antCompiler;
+    }
+
+    private static boolean isJavaxToolsAvailable() {
+        try {
+            Class.forName("javax.tools.ToolProvider");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
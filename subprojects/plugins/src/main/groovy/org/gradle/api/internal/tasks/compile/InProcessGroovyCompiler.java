@@ -0,0 +1,284 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.Factory;
+import org.gradle.api.tasks.WorkResult;
+import org.gradle.api.tasks.compile.CompileOptions;
+import org.gradle.api.tasks.compile.GroovyCompileOptions;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
+import org.gradle.util.ClassLoaderFactory;
+import org.gradle.util.ClasspathUtil;
+import org.gradle.util.GUtil;
+import org.gradle.util.Jvm;
+import org.gradle.util.UncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+
+/**
+ * A {@link GroovyJavaJointCompiler} which compiles in the current JVM, by driving the Groovy compiler API directly
+ * using {@link ApiGroovyCompiler}. Java source files are compiled jointly, against Java stubs generated for the Groovy
+ * source files into a temporary directory.
+ *
+ * <p>The ClassLoader containing the version of Groovy to compile with is kept in a {@link CrossBuildInMemoryCaches}
+ * cache, keyed by the Groovy classpath. This means that, in a long lived process, the Groovy compiler is already loaded and warmed up
+ * when compiling further modules with the same version of Groovy. Use {@link #canCompile(GroovyCompileOptions,
+ * CompileOptions)} to check whether the options can be handled in-process. The Groovy fork options are ignored.</p>
+ */
+public class InProcessGroovyCompiler implements GroovyJavaJointCompiler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InProcessGroovyCompiler.class);
+    private static final int MAX_CACHED_CLASS_LOADERS = 8;
+    private final Map<List<File>, ClassLoader> classLoaders;
+    private final ClassLoaderFactory classLoaderFactory;
+    private final Factory<File> tempDirFactory;
+    private FileCollection source;
+    private File destinationDir;
+    private Iterable<File> classpath;
+    private Iterable<File> groovyClasspath;
+    private String sourceCompatibility;
+    private String targetCompatibility;
+    private GroovyCompileOptions groovyCompileOptions = new GroovyCompileOptions();
+    private CompileOptions compileOptions = new CompileOptions();
+
+    /**
+     * @param tempDirFactory Provides a directory to generate the Java stubs into.
+     */
+    public InProcessGroovyCompiler(ClassLoaderFactory classLoaderFactory, Factory<File> tempDirFactory, CrossBuildInMemoryCaches caches) {
+        this.classLoaderFactory = classLoaderFactory;
+        this.tempDirFactory = tempDirFactory;
+        classLoaders = caches.getLruCache(InProcessGroovyCompiler.class.getName(), MAX_CACHED_CLASS_LOADERS);
+    }
+
+    /**
+     * Returns true if the given options can be handled in-process. Including the Java runtime, forking the Java
+     * compiler and using a custom Java compiler are left to {@link AntGroovyCompiler}.
+     */
+    public static boolean canCompile(GroovyCompileOptions groovyOptions, CompileOptions options) {
+        return !groovyOptions.isIncludeJavaRuntime() && !options.isFork() && options.getCompiler() == null;
+    }
+
+    public GroovyCompileOptions getGroovyCompileOptions() {
+        return groovyCompileOptions;
+    }
+
+    public void setGroovyCompileOptions(GroovyCompileOptions groovyCompileOptions) {
+        this.groovyCompileOptions = groovyCompileOptions;
+    }
+
+    public CompileOptions getCompileOptions() {
+        return compileOptions;
+    }
+
+    public void setCompileOptions(CompileOptions compileOptions) {
+        this.compileOptions = compileOptions;
+    }
+
+    public void setSource(FileCollection source) {
+        this.source = source;
+    }
+
+    public void setDestinationDir(File destinationDir) {
+        this.destinationDir = destinationDir;
+    }
+
+    public void setClasspath(Iterable<File> classpath) {
+        this.classpath = classpath;
+    }
+
+    public void setGroovyClasspath(Iterable<File> classpath) {
+        this.groovyClasspath = classpath;
+    }
+
+    public void setSourceCompatibility(String sourceCompatibility) {
+        this.sourceCompatibility = sourceCompatibility;
+    }
+
+    public void setTargetCompatibility(String targetCompatibility) {
+        this.targetCompatibility = targetCompatibility;
+    }
+
+    public WorkResult execute() {
+        List<File> sourceFiles = new ArrayList<File>();
+        for (File file : source) {
+            if (file.getName().endsWith(".groovy") || file.getName().endsWith(".java")) {
+                sourceFiles.add(file);
+            }
+        }
+        final boolean didWork = !sourceFiles.isEmpty();
+        if (didWork) {
+            compile(sourceFiles);
+        }
+        return new WorkResult() {
+            public boolean getDidWork() {
+                return didWork;
+            }
+        };
+    }
+
+    private void compile(List<File> sourceFiles) {
+        if (groovyCompileOptions.isListFiles()) {
+            for (File sourceFile : sourceFiles) {
+                LOGGER.info("    {}", sourceFile);
+            }
+        }
+
+        File stubDir = new File(tempDirFactory.create(), "groovy-java-stubs");
+        FileUtils.deleteQuietly(stubDir);
+        stubDir.mkdirs();
+
+        Map<String, Object> spec = new HashMap<String, Object>();
+        spec.put("sourceFiles", sourceFiles);
+        spec.put("destinationDir", destinationDir);
+        spec.put("classpath", toPaths(classpath));
+        spec.put("verbose", groovyCompileOptions.isVerbose());
+        spec.put("encoding", groovyCompileOptions.getEncoding());
+        spec.put("stubDir", stubDir);
+        addJavacOptions(spec);
+
+        ClassLoader groovyLoader = getGroovyLoader();
+        ClassLoader originalLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(groovyLoader.getParent());
+        String errors;
+        try {
+            Method compileMethod = groovyLoader.loadClass(ApiGroovyCompiler.class.getName()).getMethod("compile", Map.class);
+            errors = (String) compileMethod.invoke(null, spec);
+        } catch (InvocationTargetException e) {
+            throw UncheckedException.asUncheckedException(e.getCause());
+        } catch (Exception e) {
+            throw UncheckedException.asUncheckedException(e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalLoader);
+            FileUtils.deleteQuietly(stubDir);
+        }
+
+        if (errors != null) {
+            LOGGER.error(errors);
+            if (groovyCompileOptions.isFailOnError()) {
+                throw new GradleException("Compile failed; see the compiler error output for details.");
+            }
+        }
+    }
+
+    /**
+     * Adds the options for the Java compilation, in the format used by the Groovy joint compilation options: flags
+     * and named values, without their leading dash.
+     */
+    private void addJavacOptions(Map<String, Object> spec) {
+        List<String> flags = new ArrayList<String>();
+        List<String> namedValues = new ArrayList<String>();
+        if (sourceCompatibility != null) {
+            namedValues.add("source");
+            namedValues.add(sourceCompatibility);
+        }
+        if (targetCompatibility != null) {
+            namedValues.add("target");
+            namedValues.add(targetCompatibility);
+        }
+        if (compileOptions.getEncoding() != null) {
+            namedValues.add("encoding");
+            namedValues.add(compileOptions.getEncoding());
+        }
+        List<String> javaClasspath = toPaths(classpath);
+        javaClasspath.addAll(toPaths(groovyClasspath));
+        namedValues.add("classpath");
+        namedValues.add(GUtil.join(javaClasspath, File.pathSeparator));
+
+        if (compileOptions.isDebug()) {
+            String debugLevel = compileOptions.getDebugOptions().getDebugLevel();
+            flags.add(debugLevel != null ? "g:" + debugLevel : "g");
+        } else {
+            flags.add("g:none");
+        }
+        if (!compileOptions.isWarnings()) {
+            flags.add("nowarn");
+        }
+        if (compileOptions.isDeprecation()) {
+            flags.add("deprecation");
+        }
+        List<String> args = new ArrayList<String>();
+        for (Object arg : compileOptions.getCompilerArgs()) {
+            args.add(arg.toString());
+        }
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (!arg.startsWith("-")) {
+                LOGGER.warn("Ignoring Java compiler argument '{}' in Groovy joint compilation.", arg);
+            } else if (i + 1 < args.size() && !args.get(i + 1).startsWith("-")) {
+                namedValues.add(arg.substring(1));
+                namedValues.add(args.get(++i));
+            } else {
+                flags.add(arg.substring(1));
+            }
+        }
+
+        spec.put("javacFlags", flags.toArray(new String[flags.size()]));
+        spec.put("javacNamedValues", namedValues.toArray(new String[namedValues.size()]));
+    }
+
+    /**
+     * Returns a ClassLoader which can load {@link ApiGroovyCompiler}, and whose parent contains only the Groovy
+     * classpath and the JDK tools.
+     */
+    private ClassLoader getGroovyLoader() {
+        List<File> groovyFiles = new ArrayList<File>();
+        for (File file : groovyClasspath) {
+            groovyFiles.add(file);
+        }
+        // Need tools.jar for joint compilation
+        File toolsJar = Jvm.current().getToolsJar();
+        if (toolsJar != null) {
+            groovyFiles.add(toolsJar);
+        }
+
+        synchronized (classLoaders) {
+            ClassLoader loader = classLoaders.get(groovyFiles);
+            if (loader == null) {
+                try {
+                    List<URL> groovyUrls = new ArrayList<URL>();
+                    for (File file : groovyFiles) {
+                        groovyUrls.add(file.toURI().toURL());
+                    }
+                    ClassLoader isolatedLoader = classLoaderFactory.createIsolatedClassLoader(groovyUrls);
+                    URL compilerUrl = ClasspathUtil.getClasspathForClass(ApiGroovyCompiler.class).toURI().toURL();
+                    loader = new URLClassLoader(new URL[]{compilerUrl}, isolatedLoader);
+                } catch (MalformedURLException e) {
+                    throw UncheckedException.asUncheckedException(e);
+                }
+                classLoaders.put(groovyFiles, loader);
+            }
+            return loader;
+        }
+    }
+
+    private static List<String> toPaths(Iterable<File> files) {
+        List<String> paths = new ArrayList<String>();
+        for (File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        return paths;
+    }
+}
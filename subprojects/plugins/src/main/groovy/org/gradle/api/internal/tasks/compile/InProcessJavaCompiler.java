@@ -0,0 +1,249 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.WorkResult;
+import org.gradle.api.tasks.compile.CompileOptions;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
+import org.gradle.util.UncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * A {@link JavaCompiler} which runs the JDK compiler in the current JVM using the javax.tools API, forwarding the
+ * compiler diagnostics to the Gradle logging system.
+ *
+ * <p>The file managers used by the compiler are kept in a {@link CrossBuildInMemoryCaches} cache, keyed by the
+ * classpath and the options which affect how files are located and read. This means that, in a long lived process,
+ * the compiler and the file manager are already loaded and warmed up when compiling modules which share a classpath.
+ * A file manager is discarded when any Jar on its classpath changes, and closed when it is evicted from the cache or
+ * the caches are stopped.</p>
+ *
+ * <p>Requires Java 6 or later, a JDK, and options which can be handled in-process. Use {@link #canCompile(CompileOptions)}
+ * to check the latter two, and do not load this class at all on Java 5.</p>
+ */
+public class InProcessJavaCompiler implements JavaCompiler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InProcessJavaCompiler.class);
+    private static final int MAX_CACHED_FILE_MANAGERS = 16;
+    private final Map<List<Object>, StandardJavaFileManager> fileManagers;
+    private FileCollection source;
+    private File destinationDir;
+    private Iterable<File> classpath;
+    private String sourceCompatibility;
+    private String targetCompatibility;
+    private CompileOptions compileOptions = new CompileOptions();
+
+    public InProcessJavaCompiler(CrossBuildInMemoryCaches caches) {
+        fileManagers = caches.getLruCache(InProcessJavaCompiler.class.getName(), MAX_CACHED_FILE_MANAGERS);
+    }
+
+    /**
+     * Returns true if the JDK compiler is available in this JVM, and the given options can be handled in-process.
+     * Forking, a custom compiler, Ant's depend task and the Java runtime classpath are left to {@link AntJavaCompiler}.
+     */
+    public static boolean canCompile(CompileOptions options) {
+        if (options.isFork() || options.getCompiler() != null || options.isUseDepend() || options.isIncludeJavaRuntime()) {
+            return false;
+        }
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    public CompileOptions getCompileOptions() {
+        return compileOptions;
+    }
+
+    public void setCompileOptions(CompileOptions compileOptions) {
+        this.compileOptions = compileOptions;
+    }
+
+    public void setSource(FileCollection source) {
+        this.source = source;
+    }
+
+    public void setDestinationDir(File destinationDir) {
+        this.destinationDir = destinationDir;
+    }
+
+    public void setClasspath(Iterable<File> classpath) {
+        this.classpath = classpath;
+    }
+
+    public void setSourceCompatibility(String sourceCompatibility) {
+        this.sourceCompatibility = sourceCompatibility;
+    }
+
+    public void setTargetCompatibility(String targetCompatibility) {
+        this.targetCompatibility = targetCompatibility;
+    }
+
+    public void setDependencyCacheDir(File dir) {
+        // don't care
+    }
+
+    public WorkResult execute() {
+        List<File> sourceFiles = new ArrayList<File>();
+        for (File file : source) {
+            if (file.getName().endsWith(".java")) {
+                sourceFiles.add(file);
+            }
+        }
+        final boolean didWork = !sourceFiles.isEmpty();
+        if (didWork) {
+            compile(sourceFiles);
+        }
+        return new WorkResult() {
+            public boolean getDidWork() {
+                return didWork;
+            }
+        };
+    }
+
+    private void compile(List<File> sourceFiles) {
+        javax.tools.JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> options = createOptions();
+        LOGGER.debug("Compiling {} source files in-process with the following options {}", sourceFiles.size(), options);
+        if (compileOptions.isListFiles()) {
+            for (File sourceFile : sourceFiles) {
+                LOGGER.info("    {}", sourceFile);
+            }
+        }
+
+        StandardJavaFileManager fileManager = getFileManager(compiler);
+        boolean success;
+        synchronized (fileManager) {
+            try {
+                fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(destinationDir));
+                fileManager.setLocation(StandardLocation.SOURCE_PATH, Collections.<File>emptyList());
+                Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(sourceFiles);
+                success = compiler.getTask(null, fileManager, new LoggingDiagnosticListener(), options, null, compilationUnits).call();
+            } catch (IOException e) {
+                throw UncheckedException.asUncheckedException(e);
+            } finally {
+                try {
+                    fileManager.flush();
+                } catch (IOException e) {
+                    LOGGER.debug("Could not flush the compiler file manager.", e);
+                }
+            }
+        }
+        if (!success && compileOptions.isFailOnError()) {
+            throw new GradleException("Compile failed; see the compiler error output for details.");
+        }
+    }
+
+    private List<String> createOptions() {
+        List<String> options = new ArrayList<String>();
+        if (sourceCompatibility != null) {
+            options.add("-source");
+            options.add(sourceCompatibility);
+        }
+        if (targetCompatibility != null) {
+            options.add("-target");
+            options.add(targetCompatibility);
+        }
+        if (compileOptions.isDebug()) {
+            String debugLevel = compileOptions.getDebugOptions().getDebugLevel();
+            options.add(debugLevel != null ? "-g:" + debugLevel : "-g");
+        } else {
+            options.add("-g:none");
+        }
+        if (!compileOptions.isWarnings()) {
+            options.add("-nowarn");
+        }
+        if (compileOptions.isDeprecation()) {
+            options.add("-deprecation");
+        }
+        if (compileOptions.isVerbose()) {
+            options.add("-verbose");
+        }
+        for (Object arg : compileOptions.getCompilerArgs()) {
+            options.add(arg.toString());
+        }
+        return options;
+    }
+
+    private StandardJavaFileManager getFileManager(javax.tools.JavaCompiler compiler) {
+        List<File> classpathFiles = new ArrayList<File>();
+        List<Object> key = new ArrayList<Object>();
+        for (File file : classpath) {
+            classpathFiles.add(file);
+            key.add(file);
+            if (file.isFile()) {
+                key.add(file.length());
+                key.add(file.lastModified());
+            }
+        }
+        key.add(compileOptions.getEncoding());
+        key.add(compileOptions.getBootClasspath());
+        key.add(compileOptions.getExtensionDirs());
+
+        synchronized (fileManagers) {
+            StandardJavaFileManager fileManager = fileManagers.get(key);
+            if (fileManager == null) {
+                Charset charset = compileOptions.getEncoding() == null ? null : Charset.forName(compileOptions.getEncoding());
+                fileManager = compiler.getStandardFileManager(null, null, charset);
+                try {
+                    fileManager.setLocation(StandardLocation.CLASS_PATH, classpathFiles);
+                    if (compileOptions.getBootClasspath() != null) {
+                        fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, toFiles(compileOptions.getBootClasspath()));
+                    }
+                } catch (IOException e) {
+                    throw UncheckedException.asUncheckedException(e);
+                }
+                if (compileOptions.getExtensionDirs() != null) {
+                    fileManager.handleOption("-extdirs", Collections.singleton(compileOptions.getExtensionDirs()).iterator());
+                }
+                fileManagers.put(key, fileManager);
+            }
+            return fileManager;
+        }
+    }
+
+    private static List<File> toFiles(String path) {
+        List<File> files = new ArrayList<File>();
+        for (String element : path.split(File.pathSeparator)) {
+            if (element.length() > 0) {
+                files.add(new File(element));
+            }
+        }
+        return files;
+    }
+
+    private static class LoggingDiagnosticListener implements DiagnosticListener<JavaFileObject> {
+        public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+            switch (diagnostic.getKind()) {
+                case ERROR:
+                    LOGGER.error(diagnostic.toString());
+                    break;
+                case WARNING:
+                case MANDATORY_WARNING:
+                case NOTE:
+                    LOGGER.warn(diagnostic.toString());
+                    break;
+                default:
+                    LOGGER.info(diagnostic.toString());
+            }
+        }
+    }
+}
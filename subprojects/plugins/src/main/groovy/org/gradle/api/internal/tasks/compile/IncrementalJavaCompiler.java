@@ -18,19 +18,71 @@ package org.gradle.api.internal.tasks.compile;
 import org.gradle.api.AntBuilder;
 import org.gradle.api.internal.Factory;
 import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.tasks.WorkResult;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
 
 import java.io.File;
 
+/**
+ * Deletes stale classes before compiling. When the {@link #SELECTIVE_PROPERTY} system property is set to true, and
+ * Ant's depend task is not used, only the source files affected by a change are recompiled. See {@link
+ * SelectiveJavaCompiler}. When the {@link #API_CLASSPATH_PROPERTY} system property is set to true, compilation is
+ * skipped when only the implementation of the classes in the compile classpath has changed. See {@link
+ * ApiCompileAvoidance}.
+ */
 public class IncrementalJavaCompiler extends IncrementalJavaSourceCompiler<JavaCompiler> implements JavaCompiler {
+    public static final String SELECTIVE_PROPERTY = "org.gradle.compile.java.selective";
+    public static final String API_CLASSPATH_PROPERTY = "org.gradle.compile.java.apiClasspath";
     private final Factory<AntBuilder> antBuilderFactory;
     private final TaskOutputsInternal taskOutputs;
+    private final Factory<File> stateDirFactory;
+    private final CrossBuildInMemoryCaches caches;
     private File dependencyCacheDir;
 
+    /**
+     * @param stateDirFactory Provides the directory in which to keep state between compilations.
+     * @param caches Holds the fingerprints of the jars in the compile classpath between builds.
+     */
     public IncrementalJavaCompiler(JavaCompiler compiler, Factory<AntBuilder> antBuilderFactory,
-                                    TaskOutputsInternal taskOutputs) {
+                                    TaskOutputsInternal taskOutputs, Factory<File> stateDirFactory,
+                                    CrossBuildInMemoryCaches caches) {
         super(compiler);
         this.antBuilderFactory = antBuilderFactory;
         this.taskOutputs = taskOutputs;
+        this.stateDirFactory = stateDirFactory;
+        this.caches = caches;
+    }
+
+    @Override
+    public WorkResult execute() {
+        if (!Boolean.getBoolean(API_CLASSPATH_PROPERTY)) {
+            return compile();
+        }
+        ApiCompileAvoidance avoidance = new ApiCompileAvoidance(new File(stateDirFactory.create(), "previousCompilation.properties"),
+                new ClasspathApiFingerprinter(caches));
+        if (avoidance.isUpToDate(getSource(), getDestinationDir(), getClasspath(), getCompileKey())) {
+            return new WorkResult() {
+                public boolean getDidWork() {
+                    return false;
+                }
+            };
+        }
+        WorkResult result = compile();
+        avoidance.compiled(getDestinationDir());
+        return result;
+    }
+
+    private WorkResult compile() {
+        if (!Boolean.getBoolean(SELECTIVE_PROPERTY) || getCompileOptions().isUseDepend()) {
+            return super.execute();
+        }
+        SelectiveJavaCompiler compiler = new SelectiveJavaCompiler(getCompiler(), createConfiguredCleaner(), stateDirFactory.create());
+        return compiler.execute(getSource(), getDestinationDir(), getClasspath(), getCompileKey());
+    }
+
+    private String getCompileKey() {
+        return String.format("source=%s, target=%s, options=%s, args=%s", getSourceCompatibility(), getTargetCompatibility(),
+                getCompileOptions().optionMap(), getCompileOptions().getCompilerArgs());
     }
 
     public void setDependencyCacheDir(File dir) {
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import org.gradle.api.file.EmptyFileVisitor;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.internal.changedetection.ClasspathSnapshot;
+import org.gradle.api.internal.file.collections.SimpleFileCollection;
+import org.gradle.api.tasks.WorkResult;
+import org.gradle.util.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Recompiles only the source files affected by a change, using the {@link ClassDependencyGraph} recorded by the
+ * previous compilation. The source files which have changed are recompiled, along with the source files of all the
+ * classes which reference the classes compiled from them, directly or indirectly. The classes compiled from source
+ * files which have been removed are deleted.
+ *
+ * <p>All source files are compiled when the previous result cannot safely be reused: when there is no graph from the
+ * previous compilation, the compile settings or the classpath have changed, a source file has been added, a class
+ * file from the previous compilation is missing, or a changed class declares constants which may have been inlined
+ * into other classes.</p>
+ */
+public class SelectiveJavaCompiler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectiveJavaCompiler.class);
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private final JavaSourceCompiler compiler;
+    private final StaleClassCleaner cleaner;
+    private final File graphFile;
+    private final File classpathFile;
+
+    /**
+     * @param compiler The compiler to use for the source files which need to be compiled.
+     * @param cleaner Removes all previous output before a full compilation.
+     * @param stateDir The directory to keep the dependency graph in between compilations.
+     */
+    public SelectiveJavaCompiler(JavaSourceCompiler compiler, StaleClassCleaner cleaner, File stateDir) {
+        this.compiler = compiler;
+        this.cleaner = cleaner;
+        graphFile = new File(stateDir, "classDependencies.bin");
+        classpathFile = new File(stateDir, "compileClasspath.properties");
+    }
+
+    /**
+     * @param compileKey Identifies the compiler settings. All source files are recompiled when it changes.
+     */
+    public WorkResult execute(FileCollection source, File destinationDir, Iterable<File> classpath, String compileKey) {
+        Map<String, File> sourceFiles = getSourceFiles(source);
+        Map<String, String> sourceHashes = new HashMap<String, String>();
+        for (Map.Entry<String, File> entry : sourceFiles.entrySet()) {
+            sourceHashes.put(entry.getKey(), new BigInteger(1, HashUtil.createHash(entry.getValue())).toString(32));
+        }
+        ClasspathSnapshot classpathSnapshot = ClasspathSnapshot.take(classpath);
+
+        // Discard the previous graph until this compilation succeeds
+        ClassDependencyGraph graph = ClassDependencyGraph.load(graphFile);
+        graphFile.delete();
+
+        Set<String> sourcesToCompile = graph == null ? null : selectSources(graph, compileKey, sourceHashes, classpathSnapshot, destinationDir);
+        WorkResult result;
+        if (sourcesToCompile == null) {
+            graph = new ClassDependencyGraph(compileKey);
+            result = compileAll(source, classpath);
+        } else {
+            result = compile(graph, sourcesToCompile, sourceFiles, sourceHashes.keySet(), destinationDir, classpath);
+        }
+
+        graph.setSourceHashes(sourceHashes);
+        if (addNewClasses(graph, destinationDir, sourceFiles.keySet())) {
+            graph.save(graphFile);
+            classpathSnapshot.save(classpathFile);
+        }
+        return result;
+    }
+
+    private Map<String, File> getSourceFiles(FileCollection source) {
+        final Map<String, File> sourceFiles = new HashMap<String, File>();
+        source.getAsFileTree().visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                if (fileDetails.getName().endsWith(".java")) {
+                    sourceFiles.put(fileDetails.getRelativePath().getPathString(), fileDetails.getFile());
+                }
+            }
+        });
+        return sourceFiles;
+    }
+
+    /**
+     * Returns the source files to recompile, or null when all source files need to be compiled.
+     */
+    private Set<String> selectSources(ClassDependencyGraph graph, String compileKey, Map<String, String> sourceHashes,
+                                      ClasspathSnapshot classpathSnapshot, File destinationDir) {
+        if (!compileKey.equals(graph.getCompileKey())) {
+            LOGGER.info("Compile settings have changed. Compiling all source files.");
+            return null;
+        }
+        ClasspathSnapshot previousClasspath = ClasspathSnapshot.load(classpathFile);
+        if (previousClasspath == null) {
+            return null;
+        }
+        Set<String> changedClasspathClasses = classpathSnapshot.getChangedClasses(previousClasspath);
+        if (changedClasspathClasses == null || !changedClasspathClasses.isEmpty()) {
+            LOGGER.info("Compile classpath has changed. Compiling all source files.");
+            return null;
+        }
+        for (String className : graph.getClasses()) {
+            if (!new File(destinationDir, className + CLASS_FILE_EXTENSION).isFile()) {
+                LOGGER.info("Class file for {} is missing. Compiling all source files.", className);
+                return null;
+            }
+        }
+
+        Map<String, String> previousHashes = graph.getSourceHashes();
+        Set<String> changed = new HashSet<String>();
+        for (Map.Entry<String, String> entry : sourceHashes.entrySet()) {
+            String previousHash = previousHashes.get(entry.getKey());
+            if (previousHash == null) {
+                LOGGER.info("Source file {} has been added. Compiling all source files.", entry.getKey());
+                return null;
+            }
+            if (!previousHash.equals(entry.getValue())) {
+                changed.add(entry.getKey());
+            }
+        }
+        Set<String> changedAndRemoved = new HashSet<String>(previousHashes.keySet());
+        changedAndRemoved.removeAll(sourceHashes.keySet());
+        changedAndRemoved.addAll(changed);
+
+        Set<String> staleClasses = graph.getClassesForSources(changedAndRemoved);
+        for (String className : staleClasses) {
+            if (graph.declaresConstants(className)) {
+                LOGGER.info("Changed class {} declares constants. Compiling all source files.", className);
+                return null;
+            }
+        }
+
+        Set<String> sourcesToCompile = graph.getSourcesForClasses(graph.getDependents(staleClasses));
+        sourcesToCompile.addAll(changed);
+        sourcesToCompile.retainAll(sourceHashes.keySet());
+        return sourcesToCompile;
+    }
+
+    private WorkResult compileAll(FileCollection source, Iterable<File> classpath) {
+        cleaner.execute();
+        compiler.setSource(source);
+        compiler.setClasspath(classpath);
+        return compiler.execute();
+    }
+
+    private WorkResult compile(ClassDependencyGraph graph, Set<String> sourcesToCompile, Map<String, File> sourceFiles,
+                               Set<String> currentSources, File destinationDir, Iterable<File> classpath) {
+        Set<String> staleSources = new HashSet<String>(graph.getSourceHashes().keySet());
+        staleSources.removeAll(currentSources);
+        staleSources.addAll(sourcesToCompile);
+        Set<String> staleClasses = graph.getClassesForSources(staleSources);
+        for (String className : staleClasses) {
+            new File(destinationDir, className + CLASS_FILE_EXTENSION).delete();
+        }
+        graph.removeClasses(staleClasses);
+
+        final boolean deletedClasses = !staleClasses.isEmpty();
+        if (sourcesToCompile.isEmpty()) {
+            return new WorkResult() {
+                public boolean getDidWork() {
+                    return deletedClasses;
+                }
+            };
+        }
+
+        LOGGER.info("Compiling {} of {} source files.", sourcesToCompile.size(), sourceFiles.size());
+        List<File> files = new ArrayList<File>();
+        for (String sourcePath : sourcesToCompile) {
+            files.add(sourceFiles.get(sourcePath));
+        }
+        List<File> compileClasspath = new ArrayList<File>();
+        compileClasspath.add(destinationDir);
+        for (File file : classpath) {
+            compileClasspath.add(file);
+        }
+        compiler.setSource(new SimpleFileCollection(files));
+        compiler.setClasspath(compileClasspath);
+        return compiler.execute();
+    }
+
+    /**
+     * Adds the class files in the destination directory which are not in the graph. Returns false when a class file
+     * cannot be mapped to its source file, in which case the graph is incomplete.
+     */
+    private boolean addNewClasses(ClassDependencyGraph graph, File destinationDir, Set<String> sourcePaths) {
+        List<File> classFiles = new ArrayList<File>();
+        findClassFiles(destinationDir, classFiles);
+        String prefix = destinationDir.getAbsolutePath() + File.separator;
+        for (File classFile : classFiles) {
+            String relativePath = classFile.getAbsolutePath().substring(prefix.length());
+            String className = relativePath.substring(0, relativePath.length() - CLASS_FILE_EXTENSION.length()).replace(File.separatorChar, '/');
+            if (graph.getClasses().contains(className)) {
+                continue;
+            }
+            ClassFileAnalyzer analyzer = ClassFileAnalyzer.analyze(classFile);
+            String sourcePath = analyzer.getSourcePath();
+            if (sourcePath == null) {
+                LOGGER.info("Class file {} does not record its source file. Cannot compile selectively.", classFile);
+                return false;
+            }
+            if (!sourcePaths.contains(sourcePath)) {
+                // Not compiled from this source set
+                continue;
+            }
+            graph.addClass(className, sourcePath, analyzer.getDependencies(), analyzer.isDeclaresConstants());
+        }
+        return true;
+    }
+
+    private void findClassFiles(File dir, List<File> classFiles) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                findClassFiles(file, classFiles);
+            } else if (file.getName().endsWith(CLASS_FILE_EXTENSION)) {
+                classFiles.add(file);
+            }
+        }
+    }
+}
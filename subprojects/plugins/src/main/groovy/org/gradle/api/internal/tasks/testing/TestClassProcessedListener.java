@@ -0,0 +1,29 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing;
+
+/**
+ * Receives notification as a {@link TestClassProcessor} finishes with the test classes given to it.
+ */
+public interface TestClassProcessedListener {
+    /**
+     * Called when the processor has finished with the given test class, either because the class has been executed or
+     * because it can no longer be executed. Does not block.
+     *
+     * @param testClass The test class.
+     */
+    void testClassProcessed(TestClassRunInfo testClass);
+}
@@ -16,7 +16,7 @@
 
 package org.gradle.api.internal.tasks.testing.detection;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.file.FileCollection;
@@ -25,13 +25,16 @@ import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
 import java.util.*;
 
 /**
+ * Detects test classes by inspecting class files and, where required, their super classes. Class files may be
+ * processed concurrently from multiple threads. When a {@link TestClassDetectionCache} is provided, the details of
+ * each class file are looked up using a hash of its contents, and the class file is only parsed when it has changed.
+ *
  * @author Tom Eyckmans
  */
 public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor> implements TestFrameworkDetector {
@@ -42,15 +45,22 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     private final FileCollection testClasspath;
     private List<File> testClassDirectories;
     private final ClassFileExtractionManager classFileExtractionManager;
+    private final TestClassDetectionCache detectionCache;
     private final Map<File, Boolean> superClasses;
-    private TestClassProcessor testClassProcessor;
+    private volatile TestClassProcessor testClassProcessor;
     private final List<String> knownTestCaseClassNames;
 
     protected AbstractTestFrameworkDetector(File testClassesDirectory, FileCollection testClasspath, ClassFileExtractionManager classFileExtractionManager) {
+        this(testClassesDirectory, testClasspath, classFileExtractionManager, null);
+    }
+
+    protected AbstractTestFrameworkDetector(File testClassesDirectory, FileCollection testClasspath, ClassFileExtractionManager classFileExtractionManager,
+                                            TestClassDetectionCache detectionCache) {
         this.testClassesDirectory = testClassesDirectory;
         this.testClasspath = testClasspath;
         this.classFileExtractionManager = classFileExtractionManager;
-        this.superClasses = new HashMap<File, Boolean>();
+        this.detectionCache = detectionCache;
+        this.superClasses = Collections.synchronizedMap(new HashMap<File, Boolean>());
         this.knownTestCaseClassNames = new ArrayList<String>();
         addKnownTestCaseClassNames(TEST_CASE, GROOVY_TEST_CASE);
     }
@@ -81,7 +91,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         }
     }
 
-    private void prepareClasspath() {
+    private synchronized void prepareClasspath() {
         if (testClassDirectories != null) {
             return;
         }
@@ -102,20 +112,33 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     protected TestClassVisitor classVisitor(final File testClassFile) {
         final TestClassVisitor classVisitor = createClassVisitor();
 
-        InputStream classStream = null;
         try {
-            classStream = new BufferedInputStream(new FileInputStream(testClassFile));
-            final ClassReader classReader = new ClassReader(classStream);
+            byte[] classContent = FileUtils.readFileToByteArray(testClassFile);
+            String hash = null;
+            if (detectionCache != null) {
+                hash = hash(classContent);
+                TestClassVisitor cachedVisitor = detectionCache.get(hash, this);
+                if (cachedVisitor != null) {
+                    return cachedVisitor;
+                }
+            }
+            final ClassReader classReader = new ClassReader(classContent);
             classReader.accept(classVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+            if (hash != null) {
+                detectionCache.put(hash, classVisitor);
+            }
         } catch (Throwable e) {
             throw new GradleException("failed to read class file " + testClassFile.getAbsolutePath(), e);
-        } finally {
-            IOUtils.closeQuietly(classStream);
         }
 
         return classVisitor;
     }
 
+    private static String hash(byte[] content) throws Exception {
+        MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+        return new BigInteger(1, messageDigest.digest(content)).toString(32);
+    }
+
     public boolean processTestClass(File testClassFile) {
         return processTestClass(testClassFile, false);
     }
@@ -152,6 +175,15 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
 
     public void startDetection(TestClassProcessor testClassProcessor) {
         this.testClassProcessor = testClassProcessor;
+        if (detectionCache != null) {
+            detectionCache.load();
+        }
+    }
+
+    public void stopDetection() {
+        if (detectionCache != null) {
+            detectionCache.save();
+        }
     }
 
     public void addKnownTestCaseClassNames(String... knownTestCaseClassNames) {
@@ -22,25 +22,46 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+import org.gradle.util.UncheckedException;
 
 import java.io.File;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * The default test class scanner depending on the availability of a test framework detecter a detection or filename
  * scan is performed to find test classes.
  *
+ * <p>When an {@link ExecutorFactory} is provided, the detection scan inspects the class files using multiple threads.
+ * The candidate class files are visited on the calling thread and handed to the scanning threads as they are found,
+ * and each detected test class is passed to the test class processor as soon as it is found. Calls to the test class
+ * processor are serialized.</p>
+ *
  * @author Tom Eyckmans
  */
 public class DefaultTestClassScanner implements Runnable {
+    private static final File END_OF_FILES = new File("");
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null, 1);
+    }
+
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, ExecutorFactory executorFactory, int maxThreads) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
     }
 
     public void run() {
@@ -52,12 +73,59 @@ public class DefaultTestClassScanner implements Runnable {
     }
 
     private void detectionScan() {
-        testFrameworkDetector.startDetection(testClassProcessor);
-        candidateClassFiles.visit(new ClassFileVisitor() {
-            public void visitClassFile(FileVisitDetails fileDetails) {
-                testFrameworkDetector.processTestClass(fileDetails.getFile());
+        if (executorFactory == null || maxThreads < 2) {
+            testFrameworkDetector.startDetection(testClassProcessor);
+            try {
+                candidateClassFiles.visit(new ClassFileVisitor() {
+                    public void visitClassFile(FileVisitDetails fileDetails) {
+                        testFrameworkDetector.processTestClass(fileDetails.getFile());
+                    }
+                });
+            } finally {
+                testFrameworkDetector.stopDetection();
             }
-        });
+        } else {
+            parallelDetectionScan();
+        }
+    }
+
+    private void parallelDetectionScan() {
+        testFrameworkDetector.startDetection(new SynchronizedTestClassProcessor(testClassProcessor));
+        final BlockingQueue<File> queue = new LinkedBlockingQueue<File>();
+        StoppableExecutor executor = executorFactory.create("Detect test classes");
+        try {
+            for (int i = 0; i < maxThreads; i++) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            File classFile;
+                            while ((classFile = queue.take()) != END_OF_FILES) {
+                                testFrameworkDetector.processTestClass(classFile);
+                            }
+                        } catch (InterruptedException e) {
+                            throw UncheckedException.asUncheckedException(e);
+                        }
+                    }
+                });
+            }
+            try {
+                candidateClassFiles.visit(new ClassFileVisitor() {
+                    public void visitClassFile(FileVisitDetails fileDetails) {
+                        queue.add(fileDetails.getFile());
+                    }
+                });
+            } finally {
+                for (int i = 0; i < maxThreads; i++) {
+                    queue.add(END_OF_FILES);
+                }
+            }
+        } finally {
+            try {
+                executor.stop();
+            } finally {
+                testFrameworkDetector.stopDetection();
+            }
+        }
     }
 
     private void filenameScan() {
@@ -81,4 +149,24 @@ public class DefaultTestClassScanner implements Runnable {
 
         public abstract void visitClassFile(FileVisitDetails fileDetails);
     }
+
+    private static class SynchronizedTestClassProcessor implements TestClassProcessor {
+        private final TestClassProcessor processor;
+
+        private SynchronizedTestClassProcessor(TestClassProcessor processor) {
+            this.processor = processor;
+        }
+
+        public synchronized void startProcessing(TestResultProcessor resultProcessor) {
+            processor.startProcessing(resultProcessor);
+        }
+
+        public synchronized void processTestClass(TestClassRunInfo testClass) {
+            processor.processTestClass(testClass);
+        }
+
+        public synchronized void stop() {
+            processor.stop();
+        }
+    }
 }
@@ -16,62 +16,155 @@
 
 package org.gradle.api.internal.tasks.testing.detection;
 
+import org.gradle.api.Action;
+import org.gradle.api.Transformer;
 import org.gradle.api.file.FileTree;
 import org.gradle.api.internal.Factory;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultStore;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultStoreWriter;
+import org.gradle.api.internal.tasks.testing.processors.DependencyRecordingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.processors.ImpactAnalysisTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.processors.PrioritisingTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.processors.TestClassDependencies;
+import org.gradle.api.internal.tasks.testing.processors.TestClassHistory;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
+import org.gradle.api.internal.tasks.testing.processors.TruncateTestOutputTestResultProcessor;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
 import org.gradle.api.tasks.testing.Test;
+import org.gradle.listener.ListenerBroadcast;
 import org.gradle.messaging.actor.ActorFactory;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.process.internal.WorkerProcessBuilder;
 import org.gradle.util.TrueTimeProvider;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The default test class scanner factory.
  *
  * @author Tom Eyckmans
  */
 public class DefaultTestExecuter implements TestExecuter {
+    /**
+     * When set to true, test worker processes are kept alive once a Test task has finished with them and reused by
+     * later Test tasks with the same fork options. The test classes of a reused worker are loaded in an isolated
+     * ClassLoader rather than the system ClassLoader. Not used when forkEvery is set.
+     */
+    public static final String REUSE_WORKERS_PROPERTY = "org.gradle.test.reuseWorkers";
+    /**
+     * When set to true, the classes used by each test class are recorded, and only those test classes affected by the
+     * classes which have changed since the previous run are executed. Only supported for JUnit, when test classes are
+     * executed one at a time in each test process.
+     */
+    public static final String IMPACT_ANALYSIS_PROPERTY = "org.gradle.test.impactAnalysis";
+    /**
+     * The maximum number of consecutive runs which may skip unaffected test classes before all test classes are
+     * executed again. Defaults to 10.
+     */
+    public static final String FULL_RUN_EVERY_PROPERTY = "org.gradle.test.impactAnalysis.fullRunEvery";
+    /**
+     * When set to true, the test classes are executed once all of them have been detected, those which failed in the
+     * previous run first, then the remaining ones longest first. Otherwise, each test class is executed as soon as it is
+     * detected.
+     */
+    public static final String PRIORITISE_PROPERTY = "org.gradle.test.prioritise";
     private final Factory<WorkerProcessBuilder> workerFactory;
     private final ActorFactory actorFactor;
+    private final ExecutorFactory executorFactory;
 
-    public DefaultTestExecuter(Factory<WorkerProcessBuilder> workerFactory, ActorFactory actorFactor) {
+    public DefaultTestExecuter(Factory<WorkerProcessBuilder> workerFactory, ActorFactory actorFactor, ExecutorFactory executorFactory) {
         this.workerFactory = workerFactory;
         this.actorFactor = actorFactor;
+        this.executorFactory = executorFactory;
     }
 
     public void execute(final Test testTask, TestResultProcessor testResultProcessor) {
         final TestFramework testFramework = testTask.getTestFramework();
-        final WorkerTestClassProcessorFactory testInstanceFactory = testFramework.getProcessorFactory();
-        final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
-            public TestClassProcessor create() {
-                return new ForkingTestClassProcessor(workerFactory, testInstanceFactory, testTask,
-                        testTask.getClasspath(), testFramework.getWorkerConfigurationAction());
-            }
-        };
-        Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
-            public TestClassProcessor create() {
+        boolean impactAnalysis = Boolean.getBoolean(IMPACT_ANALYSIS_PROPERTY) && testFramework instanceof JUnitTestFramework
+                && testTask.getMaxThreadsPerFork() == 1;
+        File dependenciesDir = new File(testTask.getTemporaryDir(), "testClassDependencies");
+        final WorkerTestClassProcessorFactory testInstanceFactory = impactAnalysis
+                ? new DependencyRecordingTestClassProcessor.Factory(testFramework.getProcessorFactory(), getClassesDirs(testTask), dependenciesDir)
+                : testFramework.getProcessorFactory();
+        final Action<WorkerProcessBuilder> workerConfigurationAction = getWorkerConfigurationAction(testTask);
+        Transformer<TestClassProcessor, TestClassProcessedListener> reforkingProcessorFactory = new Transformer<TestClassProcessor, TestClassProcessedListener>() {
+            public TestClassProcessor transform(final TestClassProcessedListener listener) {
+                Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
+                    public TestClassProcessor create() {
+                        return new ForkingTestClassProcessor(workerFactory, testInstanceFactory, testTask,
+                                testTask.getClasspath(), workerConfigurationAction, listener);
+                    }
+                };
                 return new RestartEveryNTestClassProcessor(forkingProcessorFactory, testTask.getForkEvery());
             }
         };
 
         TestClassProcessor processor = new MaxNParallelTestClassProcessor(testTask.getMaxParallelForks(),
                 reforkingProcessorFactory, actorFactor);
+        TestClassHistory history = new TestClassHistory(new File(testTask.getTemporaryDir(), "testClassHistory.properties"));
+        processor = new PrioritisingTestClassProcessor(processor, history, testTask.getMaxParallelForks(), new TrueTimeProvider(),
+                Boolean.getBoolean(PRIORITISE_PROPERTY));
+        if (impactAnalysis) {
+            processor = new ImpactAnalysisTestClassProcessor(processor, testTask.getClasspath(), new TestClassDependencies(dependenciesDir), history,
+                    testTask.getTemporaryDir(), Integer.getInteger(FULL_RUN_EVERY_PROPERTY, 10));
+        }
 
         final FileTree testClassFiles = testTask.getCandidateClassFiles();
 
         Runnable detector;
         if (testTask.isScanForTestClasses()) {
             TestFrameworkDetector testFrameworkDetector = testTask.getTestFramework().getDetector();
-            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
+            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor, executorFactory,
+                    Runtime.getRuntime().availableProcessors());
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
         }
-        new TestMainAction(detector, processor, testResultProcessor, new TrueTimeProvider()).run();
+        TestResultStoreWriter resultStoreWriter = new TestResultStore(testTask.getTestResultsDir()).createWriter();
+        ListenerBroadcast<TestResultProcessor> resultProcessors = new ListenerBroadcast<TestResultProcessor>(TestResultProcessor.class);
+        resultProcessors.add(resultStoreWriter);
+        resultProcessors.add(testResultProcessor);
+        TestResultProcessor resultProcessor = resultProcessors.getSource();
+        Long maxOutputPerTest = testTask.getMaxOutputPerTest();
+        if (maxOutputPerTest != null) {
+            resultProcessor = new TruncateTestOutputTestResultProcessor(resultProcessor, maxOutputPerTest);
+        }
+        try {
+            new TestMainAction(detector, processor, resultProcessor, new TrueTimeProvider()).run();
+        } finally {
+            resultStoreWriter.close();
+        }
+    }
+
+    private List<File> getClassesDirs(Test testTask) {
+        List<File> classesDirs = new ArrayList<File>();
+        for (File file : testTask.getClasspath()) {
+            if (file.isDirectory()) {
+                classesDirs.add(file);
+            }
+        }
+        return classesDirs;
+    }
+
+    private Action<WorkerProcessBuilder> getWorkerConfigurationAction(Test testTask) {
+        final Action<WorkerProcessBuilder> action = testTask.getTestFramework().getWorkerConfigurationAction();
+        if (!Boolean.getBoolean(REUSE_WORKERS_PROPERTY) || testTask.getForkEvery() != 0) {
+            return action;
+        }
+        return new Action<WorkerProcessBuilder>() {
+            public void execute(WorkerProcessBuilder workerProcessBuilder) {
+                action.execute(workerProcessBuilder);
+                workerProcessBuilder.setReusable(true);
+            }
+        };
     }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.detection;
+
+import org.gradle.api.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The details of each scanned class file which test detection needs, keyed by a hash of the class file contents.
+ * Persisted to a properties file between runs, so that unchanged class files do not need to be parsed again. Only
+ * the entries used since the cache was loaded are written back. This class is thread-safe.
+ */
+public class TestClassDetectionCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestClassDetectionCache.class);
+    private static final String TEST = "test";
+    private static final String ABSTRACT = "abstract";
+    private final File file;
+    private final Map<String, ClassDetails> entries = new HashMap<String, ClassDetails>();
+    private final Map<String, ClassDetails> used = new HashMap<String, ClassDetails>();
+
+    public TestClassDetectionCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the cache from the backing file, if it exists. Entries which cannot be parsed are discarded.
+     */
+    public synchronized void load() {
+        entries.clear();
+        used.clear();
+        if (!file.isFile()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug(String.format("Could not read test class detection cache from %s. Ignoring.", file), e);
+            return;
+        }
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            String[] values = entry.getValue().toString().split(",", -1);
+            if (values.length != 3 || values[0].length() == 0) {
+                LOGGER.debug("Discarding invalid test class detection cache entry {}.", entry.getKey());
+                continue;
+            }
+            boolean test = values[2].contains(TEST);
+            boolean isAbstract = values[2].contains(ABSTRACT);
+            String superClassName = values[1].length() == 0 ? null : values[1];
+            entries.put(entry.getKey().toString(), new ClassDetails(values[0], superClassName, test, isAbstract));
+        }
+    }
+
+    public synchronized void save() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, ClassDetails> entry : used.entrySet()) {
+            ClassDetails details = entry.getValue();
+            StringBuilder flags = new StringBuilder();
+            if (details.test) {
+                flags.append(TEST);
+            }
+            if (details.isAbstract) {
+                flags.append(' ').append(ABSTRACT);
+            }
+            properties.setProperty(entry.getKey(), String.format("%s,%s,%s", details.className,
+                    details.superClassName == null ? "" : details.superClassName, flags.toString().trim()));
+        }
+        try {
+            file.getParentFile().mkdirs();
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                properties.store(outputStream, null);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write test class detection cache to %s.", file), e);
+        }
+    }
+
+    /**
+     * Returns a visitor holding the cached details of the class file with the given hash, or null if the class file
+     * is not in the cache.
+     */
+    public synchronized TestClassVisitor get(String hash, TestFrameworkDetector detector) {
+        ClassDetails details = entries.get(hash);
+        if (details == null) {
+            return null;
+        }
+        used.put(hash, details);
+        return new CachedTestClassVisitor(detector, details);
+    }
+
+    /**
+     * Records the details collected by the given visitor for the class file with the given hash.
+     */
+    public synchronized void put(String hash, TestClassVisitor classVisitor) {
+        ClassDetails details = new ClassDetails(classVisitor.getClassName(), classVisitor.getSuperClassName(),
+                classVisitor.isTest(), classVisitor.isAbstract());
+        entries.put(hash, details);
+        used.put(hash, details);
+    }
+
+    private static class ClassDetails {
+        private final String className;
+        private final String superClassName;
+        private final boolean test;
+        private final boolean isAbstract;
+
+        private ClassDetails(String className, String superClassName, boolean test, boolean isAbstract) {
+            this.className = className;
+            this.superClassName = superClassName;
+            this.test = test;
+            this.isAbstract = isAbstract;
+        }
+    }
+
+    private static class CachedTestClassVisitor extends TestClassVisitor {
+        private final ClassDetails details;
+
+        private CachedTestClassVisitor(TestFrameworkDetector detector, ClassDetails details) {
+            super(detector);
+            this.details = details;
+        }
+
+        public String getClassName() {
+            return details.className;
+        }
+
+        public boolean isTest() {
+            return details.test;
+        }
+
+        public boolean isAbstract() {
+            return details.isAbstract;
+        }
+
+        public String getSuperClassName() {
+            return details.superClassName;
+        }
+    }
+}
@@ -25,5 +25,11 @@ import java.io.File;
 public interface TestFrameworkDetector {
     void startDetection(TestClassProcessor testClassProcessor);
 
+    /**
+     * Inspects the given class file and passes it to the test class processor if it is a test class. May be called
+     * concurrently from multiple threads between {@link #startDetection} and {@link #stopDetection}.
+     */
     boolean processTestClass(File testClassFile);
+
+    void stopDetection();
 }
@@ -27,25 +27,26 @@ import org.junit.runner.notification.RunListener;
 import org.junit.runner.notification.RunNotifier;
 
 public class JUnitTestClassExecuter {
-    private final ClassLoader applicationClassLoader;
     private final RunListener listener;
     private final TestResultProcessor resultProcessor;
     private final IdGenerator<?> idGenerator;
     private final TimeProvider timeProvider;
 
-    public JUnitTestClassExecuter(ClassLoader applicationClassLoader, RunListener listener, TestResultProcessor resultProcessor, IdGenerator<?> idGenerator, TimeProvider timeProvider) {
-        this.applicationClassLoader = applicationClassLoader;
+    public JUnitTestClassExecuter(RunListener listener, TestResultProcessor resultProcessor, IdGenerator<?> idGenerator, TimeProvider timeProvider) {
         this.listener = listener;
         this.resultProcessor = resultProcessor;
         this.idGenerator = idGenerator;
         this.timeProvider = timeProvider;
     }
 
-    public void execute(String testClassName) {
+    /**
+     * Executes the given test class, loading it using the given ClassLoader.
+     */
+    public void execute(String testClassName, ClassLoader classLoader) {
         TestDescriptorInternal testInternal = new DefaultTestClassDescriptor(idGenerator.generateId(), testClassName);
         resultProcessor.started(testInternal, new TestStartEvent(timeProvider.getCurrentTime()));
 
-        Runner runner = createTest(testClassName);
+        Runner runner = createTest(testClassName, classLoader);
         RunNotifier notifier = new RunNotifier();
         notifier.addListener(listener);
         runner.run(notifier);
@@ -53,9 +54,9 @@ public class JUnitTestClassExecuter {
         resultProcessor.completed(testInternal.getId(), new TestCompleteEvent(timeProvider.getCurrentTime()));
     }
 
-    private Runner createTest(String testClassName) {
+    private Runner createTest(String testClassName, ClassLoader classLoader) {
         try {
-            Class<?> testClass = Class.forName(testClassName, true, applicationClassLoader);
+            Class<?> testClass = Class.forName(testClassName, true, classLoader);
             return Request.aClass(testClass).getRunner();
         } catch (Throwable e) {
             return new BrokenTest(Description.createSuiteDescription(String.format("initializationError(%s)", testClassName)), e);
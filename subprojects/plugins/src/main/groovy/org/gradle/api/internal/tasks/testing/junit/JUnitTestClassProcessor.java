@@ -21,48 +21,102 @@ import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.processors.CaptureTestOutputTestResultProcessor;
 import org.gradle.api.internal.tasks.testing.results.AttachParentTestResultProcessor;
-import org.gradle.listener.ListenerBroadcast;
 import org.gradle.logging.StandardOutputRedirector;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
 import org.gradle.util.IdGenerator;
 import org.gradle.util.TimeProvider;
 import org.gradle.util.TrueTimeProvider;
+import org.gradle.util.UncheckedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+/**
+ * Executes JUnit test classes. By default, each test class is executed synchronously. When more than one thread is
+ * requested, each test class is instead executed on a thread from a pool of that size, so that several test classes
+ * execute concurrently. {@link #processTestClass(TestClassRunInfo)} then blocks until a thread is available, and
+ * {@link #stop()} blocks until all test classes have executed.
+ *
+ * <p>Each thread uses its own chain of result processors, so that the tests it executes are attached to the correct
+ * test class. The output redirector must route the output of each thread separately when more than one thread is
+ * used.</p>
+ */
 public class JUnitTestClassProcessor implements TestClassProcessor {
     private static final Logger LOGGER = LoggerFactory.getLogger(JUnitTestClassProcessor.class);
-    private final File testResultsDir;
     private final IdGenerator<?> idGenerator;
     private final StandardOutputRedirector outputRedirector;
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
     private final TimeProvider timeProvider = new TrueTimeProvider();
-    private JUnitTestClassExecuter executer;
+    private BlockingQueue<JUnitTestClassExecuter> executers;
+    private StoppableExecutor executor;
+
+    public JUnitTestClassProcessor(IdGenerator<?> idGenerator, StandardOutputRedirector standardOutputRedirector) {
+        this(idGenerator, standardOutputRedirector, null, 1);
+    }
 
-    public JUnitTestClassProcessor(File testResultsDir, IdGenerator<?> idGenerator,
-                                   StandardOutputRedirector standardOutputRedirector) {
-        this.testResultsDir = testResultsDir;
+    public JUnitTestClassProcessor(IdGenerator<?> idGenerator, StandardOutputRedirector standardOutputRedirector,
+                                   ExecutorFactory executorFactory, int maxThreads) {
         this.idGenerator = idGenerator;
         this.outputRedirector = standardOutputRedirector;
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
-        ClassLoader applicationClassLoader = Thread.currentThread().getContextClassLoader();
-        ListenerBroadcast<TestResultProcessor> processors = new ListenerBroadcast<TestResultProcessor>(
-                TestResultProcessor.class);
-        processors.add(new JUnitXmlReportGenerator(testResultsDir));
-        processors.add(resultProcessor);
-        TestResultProcessor resultProcessorChain = new AttachParentTestResultProcessor(new CaptureTestOutputTestResultProcessor(processors.getSource(), outputRedirector));
+        executers = new ArrayBlockingQueue<JUnitTestClassExecuter>(maxThreads);
+        for (int i = 0; i < maxThreads; i++) {
+            executers.add(createExecuter(resultProcessor));
+        }
+        if (maxThreads > 1) {
+            executor = executorFactory.create("Test class executer");
+        }
+    }
+
+    private JUnitTestClassExecuter createExecuter(TestResultProcessor resultProcessor) {
+        TestResultProcessor resultProcessorChain = new AttachParentTestResultProcessor(new CaptureTestOutputTestResultProcessor(resultProcessor, outputRedirector));
         JUnitTestResultProcessorAdapter listener = new JUnitTestResultProcessorAdapter(resultProcessorChain,
                 timeProvider, idGenerator);
-        executer = new JUnitTestClassExecuter(applicationClassLoader, listener, resultProcessorChain, idGenerator, timeProvider);
+        return new JUnitTestClassExecuter(listener, resultProcessorChain, idGenerator, timeProvider);
     }
 
     public void processTestClass(TestClassRunInfo testClass) {
-        LOGGER.debug("Executing test {}", testClass.getTestClassName());
-        executer.execute(testClass.getTestClassName());
+        final String testClassName = testClass.getTestClassName();
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (executor == null) {
+            LOGGER.debug("Executing test {}", testClassName);
+            executers.peek().execute(testClassName, classLoader);
+            return;
+        }
+
+        final JUnitTestClassExecuter executer;
+        try {
+            executer = executers.take();
+        } catch (InterruptedException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+        executor.execute(new Runnable() {
+            public void run() {
+                LOGGER.debug("Executing test {}", testClassName);
+                Thread thread = Thread.currentThread();
+                ClassLoader previous = thread.getContextClassLoader();
+                thread.setContextClassLoader(classLoader);
+                try {
+                    executer.execute(testClassName, classLoader);
+                } finally {
+                    thread.setContextClassLoader(previous);
+                    executers.add(executer);
+                }
+            }
+        });
     }
 
     public void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
     }
 }
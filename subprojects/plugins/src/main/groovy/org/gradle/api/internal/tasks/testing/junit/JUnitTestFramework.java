@@ -22,10 +22,14 @@ import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.api.internal.tasks.testing.detection.ClassFileExtractionManager;
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionCache;
 import org.gradle.api.internal.tasks.testing.junit.report.DefaultTestReport;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultStore;
 import org.gradle.api.internal.tasks.testing.junit.report.TestReporter;
 import org.gradle.api.tasks.testing.Test;
 import org.gradle.api.tasks.testing.junit.JUnitOptions;
+import org.gradle.logging.internal.PerThreadStandardOutputRedirector;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.process.internal.WorkerProcessBuilder;
 import org.gradle.util.IdGenerator;
 
@@ -41,16 +45,16 @@ public class JUnitTestFramework implements TestFramework {
     private JUnitDetector detector;
     private final Test testTask;
 
-    public JUnitTestFramework(Test testTask) {
+    public JUnitTestFramework(Test testTask, ExecutorFactory executorFactory) {
         this.testTask = testTask;
-        reporter = new DefaultTestReport();
+        reporter = new DefaultTestReport(executorFactory);
         options = new JUnitOptions();
-        detector = new JUnitDetector(testTask.getTestClassesDir(), testTask.getClasspath(), new ClassFileExtractionManager(testTask.getTemporaryDir()));
+        detector = new JUnitDetector(testTask.getTestClassesDir(), testTask.getClasspath(), new ClassFileExtractionManager(testTask.getTemporaryDir()),
+                new TestClassDetectionCache(new File(testTask.getTemporaryDir(), "junitDetection.properties")));
     }
 
     public WorkerTestClassProcessorFactory getProcessorFactory() {
-        final File testResultsDir = testTask.getTestResultsDir();
-        return new TestClassProcessorFactoryImpl(testResultsDir);
+        return new TestClassProcessorFactoryImpl(testTask.getMaxThreadsPerFork());
     }
 
     public Action<WorkerProcessBuilder> getWorkerConfigurationAction() {
@@ -64,11 +68,13 @@ public class JUnitTestFramework implements TestFramework {
     }
 
     public void report() {
+        File testResultsDir = testTask.getTestResultsDir();
+        new JUnitXmlReportGenerator(testResultsDir, new TestResultStore(testResultsDir)).generate();
         if (!testTask.isTestReport()) {
             return;
         }
         reporter.setTestReportDir(testTask.getTestReportDir());
-        reporter.setTestResultsDir(testTask.getTestResultsDir());
+        reporter.setTestResultsDir(testResultsDir);
         reporter.generateReport();
     }
 
@@ -93,14 +99,18 @@ public class JUnitTestFramework implements TestFramework {
     }
 
     private static class TestClassProcessorFactoryImpl implements WorkerTestClassProcessorFactory, Serializable {
-        private final File testResultsDir;
+        private final int maxThreads;
 
-        public TestClassProcessorFactoryImpl(File testResultsDir) {
-            this.testResultsDir = testResultsDir;
+        public TestClassProcessorFactoryImpl(int maxThreads) {
+            this.maxThreads = maxThreads;
         }
 
         public TestClassProcessor create(ServiceRegistry serviceRegistry) {
-            return new JUnitTestClassProcessor(testResultsDir, serviceRegistry.get(IdGenerator.class), new JULRedirector());
+            if (maxThreads > 1) {
+                return new JUnitTestClassProcessor(serviceRegistry.get(IdGenerator.class), new PerThreadStandardOutputRedirector(new JULRedirector()),
+                        serviceRegistry.get(ExecutorFactory.class), maxThreads);
+            }
+            return new JUnitTestClassProcessor(serviceRegistry.get(IdGenerator.class), new JULRedirector());
         }
     }
 }
@@ -13,147 +13,116 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.gradle.api.internal.tasks.testing.junit;
 
 import org.apache.tools.ant.util.DOMElementWriter;
 import org.apache.tools.ant.util.DateUtils;
+import org.gradle.api.Action;
 import org.gradle.api.GradleException;
-import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
-import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor;
-import org.gradle.api.internal.tasks.testing.results.TestState;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestFailureResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultStore;
 import org.gradle.api.tasks.testing.TestOutputEvent;
 import org.gradle.api.tasks.testing.TestResult;
-import org.gradle.util.UncheckedException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.EnumMap;
-import java.util.Map;
+import java.util.List;
 
-public class JUnitXmlReportGenerator extends StateTrackingTestResultProcessor {
+/**
+ * Writes a JUnit XML report file for each test class in a {@link TestResultStore}. The report files are streamed to
+ * disk, and the output of each test class is copied from the store, so that the memory used does not depend on the
+ * number of tests or the amount of output they generate.
+ */
+public class JUnitXmlReportGenerator {
+    private static final String ENCODING = "UTF-8";
     private final File testResultsDir;
-    private final DocumentBuilder documentBuilder;
+    private final TestResultStore resultStore;
     private final String hostName;
-    private Document testSuiteReport;
-    private TestState testSuite;
-    private Element rootElement;
-    private Map<TestOutputEvent.Destination, StringBuilder> outputs
-            = new EnumMap<TestOutputEvent.Destination, StringBuilder>(TestOutputEvent.Destination.class);
+    private final DOMElementWriter encoder = new DOMElementWriter();
 
-    public JUnitXmlReportGenerator(File testResultsDir) {
+    public JUnitXmlReportGenerator(File testResultsDir, TestResultStore resultStore) {
         this.testResultsDir = testResultsDir;
-        try {
-            documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (Exception e) {
-            throw UncheckedException.asUncheckedException(e);
-        }
+        this.resultStore = resultStore;
         hostName = getHostname();
     }
 
-    public void output(Object testId, TestOutputEvent event) {
-        outputs.get(event.getDestination()).append(event.getMessage());
-    }
-
-    @Override
-    protected void started(TestState state) {
-        TestDescriptorInternal test = state.test;
-        if (test.getName().equals(test.getClassName())) {
-            testSuiteReport = documentBuilder.newDocument();
-            rootElement = testSuiteReport.createElement("testsuite");
-            testSuiteReport.appendChild(rootElement);
-            // Add an empty properties element for compatibility
-            rootElement.appendChild(testSuiteReport.createElement("properties"));
-            outputs.put(TestOutputEvent.Destination.StdOut, new StringBuilder());
-            outputs.put(TestOutputEvent.Destination.StdErr, new StringBuilder());
-            testSuite = state;
-        }
+    public void generate() {
+        resultStore.visitClasses(new Action<TestClassResult>() {
+            public void execute(TestClassResult classResult) {
+                generate(classResult);
+            }
+        });
     }
 
-    @Override
-    protected void completed(TestState state) {
-        String testClassName = state.test.getClassName();
-        Element element;
-        if (!state.equals(testSuite)) {
-            element = testSuiteReport.createElement(state.resultType == TestResult.ResultType.SKIPPED ? "ignored-testcase" : "testcase");
-            element.setAttribute("name", state.test.getName());
-            element.setAttribute("classname", testClassName);
-            rootElement.appendChild(element);
-        } else {
-            element = rootElement;
-            rootElement.setAttribute("name", testClassName);
-            rootElement.setAttribute("tests", String.valueOf(state.testCount));
-            rootElement.setAttribute("failures", String.valueOf(state.failedCount));
-            rootElement.setAttribute("errors", "0");
-            rootElement.setAttribute("timestamp", DateUtils.format(state.getStartTime(), DateUtils.ISO8601_DATETIME_PATTERN));
-            rootElement.setAttribute("hostname", hostName);
-            Element stdoutElement = testSuiteReport.createElement("system-out");
-            stdoutElement.appendChild(testSuiteReport.createCDATASection(outputs.get(TestOutputEvent.Destination.StdOut)
-                    .toString()));
-            rootElement.appendChild(stdoutElement);
-            Element stderrElement = testSuiteReport.createElement("system-err");
-            stderrElement.appendChild(testSuiteReport.createCDATASection(outputs.get(TestOutputEvent.Destination.StdErr)
-                    .toString()));
-            rootElement.appendChild(stderrElement);
-        }
-
-        element.setAttribute("time", String.valueOf(state.getExecutionTime() / 1000.0));
-        for (Throwable failure : state.failures) {
-            Element failureElement = testSuiteReport.createElement("failure");
-            element.appendChild(failureElement);
-            failureElement.setAttribute("message", failureMessage(failure));
-            failureElement.setAttribute("type", failure.getClass().getName());
-            failureElement.appendChild(testSuiteReport.createTextNode(stackTrace(failure)));
-        }
-
-        if (state.equals(testSuite)) {
-            File reportFile = new File(testResultsDir, "TEST-" + testClassName + ".xml");
+    private void generate(TestClassResult classResult) {
+        File reportFile = new File(testResultsDir, "TEST-" + classResult.getClassName() + ".xml");
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), ENCODING));
             try {
-                OutputStream outstr = new BufferedOutputStream(new FileOutputStream(reportFile));
-                try {
-                    new DOMElementWriter(true).write(rootElement, outstr);
-                } finally {
-                    outstr.close();
+                writer.write("<?xml version=\"1.0\" encoding=\"" + ENCODING + "\"?>\n");
+                writer.write("<testsuite");
+                writeAttribute(writer, "name", classResult.getClassName());
+                writeAttribute(writer, "tests", String.valueOf(classResult.getTestCount()));
+                writeAttribute(writer, "failures", String.valueOf(classResult.getFailureCount()));
+                writeAttribute(writer, "errors", "0");
+                writeAttribute(writer, "timestamp", DateUtils.format(classResult.getStartTime(), DateUtils.ISO8601_DATETIME_PATTERN));
+                writeAttribute(writer, "hostname", hostName);
+                writeAttribute(writer, "time", String.valueOf(classResult.getDuration() / 1000.0));
+                writer.write(">\n");
+                // Add an empty properties element for compatibility
+                writer.write("  <properties/>\n");
+                for (TestMethodResult result : classResult.getResults()) {
+                    writeTestCase(writer, result);
                 }
-            } catch (IOException e) {
-                throw new GradleException(String.format("Could not write test report file '%s'.", reportFile), e);
+                writer.write("  <system-out><![CDATA[");
+                resultStore.writeOutput(classResult.getClassName(), TestOutputEvent.Destination.StdOut, new CDataWriter(writer));
+                writer.write("]]></system-out>\n");
+                writer.write("  <system-err><![CDATA[");
+                resultStore.writeOutput(classResult.getClassName(), TestOutputEvent.Destination.StdErr, new CDataWriter(writer));
+                writer.write("]]></system-err>\n");
+                writeFailures(writer, classResult.getFailures(), "  ");
+                writer.write("</testsuite>\n");
+            } finally {
+                writer.close();
             }
-
-            testSuite = null;
-            outputs.clear();
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not write test report file '%s'.", reportFile), e);
         }
     }
 
-    private String stackTrace(Throwable throwable) {
-        try {
-            StringWriter stringWriter = new StringWriter();
-            PrintWriter writer = new PrintWriter(stringWriter);
-            throwable.printStackTrace(writer);
-            writer.close();
-            return stringWriter.toString();
-        } catch (Throwable t) {
-            StringWriter stringWriter = new StringWriter();
-            PrintWriter writer = new PrintWriter(stringWriter);
-            t.printStackTrace(writer);
-            writer.close();
-            return stringWriter.toString();
+    private void writeTestCase(Writer writer, TestMethodResult result) throws IOException {
+        String elementName = result.getResultType() == TestResult.ResultType.SKIPPED ? "ignored-testcase" : "testcase";
+        writer.write("  <" + elementName);
+        writeAttribute(writer, "name", result.getName());
+        writeAttribute(writer, "classname", result.getClassName());
+        writeAttribute(writer, "time", String.valueOf(result.getDuration() / 1000.0));
+        if (result.getFailures().isEmpty()) {
+            writer.write("/>\n");
+        } else {
+            writer.write(">\n");
+            writeFailures(writer, result.getFailures(), "    ");
+            writer.write("  </" + elementName + ">\n");
         }
     }
 
-    private String failureMessage(Throwable throwable) {
-        try {
-            return throwable.toString();
-        } catch (Throwable t) {
-            return String.format("Could not determine failure message for exception of type %s: %s",
-                    throwable.getClass().getName(), t);
+    private void writeFailures(Writer writer, List<TestFailureResult> failures, String indent) throws IOException {
+        for (TestFailureResult failure : failures) {
+            writer.write(indent + "<failure");
+            writeAttribute(writer, "message", failure.getMessage());
+            writeAttribute(writer, "type", failure.getExceptionType());
+            writer.write(">");
+            writer.write(encoder.encode(failure.getStackTrace()));
+            writer.write("</failure>\n");
         }
     }
 
+    private void writeAttribute(Writer writer, String name, String value) throws IOException {
+        writer.write(" " + name + "=\"" + encoder.encode(value) + "\"");
+    }
+
     private String getHostname() {
         try {
             return InetAddress.getLocalHost().getHostName();
@@ -161,4 +130,47 @@ public class JUnitXmlReportGenerator extends StateTrackingTestResultProcessor {
             return "localhost";
         }
     }
+
+    /**
+     * Writes CDATA content to the target writer. Characters which are not legal in XML are dropped and any CDATA end
+     * marker is split across two CDATA sections.
+     */
+    private class CDataWriter extends Writer {
+        private final Writer target;
+        private int brackets;
+
+        private CDataWriter(Writer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            int start = offset;
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                char ch = buffer[i];
+                if (!encoder.isLegalCharacter(ch)) {
+                    target.write(buffer, start, i - start);
+                    start = i + 1;
+                    continue;
+                }
+                if (ch == '>' && brackets >= 2) {
+                    target.write(buffer, start, i - start);
+                    start = i + 1;
+                    target.write("]]><![CDATA[>");
+                }
+                brackets = ch == ']' ? brackets + 1 : 0;
+            }
+            target.write(buffer, start, end - start);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
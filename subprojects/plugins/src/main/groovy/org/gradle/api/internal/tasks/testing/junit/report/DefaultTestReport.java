@@ -15,29 +15,42 @@
  */
 package org.gradle.api.internal.tasks.testing.junit.report;
 
+import org.gradle.api.Action;
 import org.gradle.api.GradleException;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestFailureResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultStore;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
 import org.gradle.reporting.HtmlReportRenderer;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
+import org.gradle.util.UncheckedException;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.math.BigDecimal;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Generates the HTML test report from the {@link TestResultStore} in the test results directory.
+ *
+ * <p>Only the summary of each test is kept in memory. The test output and failure stack traces are loaded from the
+ * store for each test class, when its page is rendered. The package and class pages are rendered by multiple threads,
+ * so that the memory used depends on the number of threads rather than on the size of the results.</p>
+ */
 public class DefaultTestReport implements TestReporter {
-    private final HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
     private File resultDir;
     private File reportDir;
 
-    public DefaultTestReport() {
-        htmlRenderer.requireResource(getClass().getResource("/org/gradle/reporting/report.js"));
-        htmlRenderer.requireResource(getClass().getResource("/org/gradle/reporting/base-style.css"));
-        htmlRenderer.requireResource(getClass().getResource("/org/gradle/reporting/css3-pie-1.0beta3.htc"));
-        htmlRenderer.requireResource(getClass().getResource("style.css"));
+    public DefaultTestReport(ExecutorFactory executorFactory) {
+        this(executorFactory, Runtime.getRuntime().availableProcessors());
+    }
+
+    public DefaultTestReport(ExecutorFactory executorFactory, int maxThreads) {
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
     }
 
     public void setTestResultsDir(File resultDir) {
@@ -49,83 +62,130 @@ public class DefaultTestReport implements TestReporter {
     }
 
     public void generateReport() {
-        AllTestResults model = loadModel();
-        generateFiles(model);
+        TestResultStore resultStore = new TestResultStore(resultDir);
+        AllTestResults model = new AllTestResults();
+        Map<String, Set<String>> testClasses = loadModel(resultStore, model);
+        generateFiles(model, resultStore, testClasses);
     }
 
-    private AllTestResults loadModel() {
+    /**
+     * Loads the summary of each test into the given model. Returns the names of the test classes which contain results
+     * for each class.
+     */
+    private Map<String, Set<String>> loadModel(TestResultStore resultStore, final AllTestResults model) {
+        final Map<String, Set<String>> testClasses = new HashMap<String, Set<String>>();
+        resultStore.visitClasses(new Action<TestClassResult>() {
+            public void execute(TestClassResult classResult) {
+                for (TestMethodResult result : classResult.getResults()) {
+                    addTest(model, result, false);
+                    recordTestClass(result.getClassName(), classResult.getClassName());
+                }
+                model.addTestClass(classResult.getClassName());
+                recordTestClass(classResult.getClassName(), classResult.getClassName());
+            }
+
+            private void recordTestClass(String className, String testClassName) {
+                Set<String> classes = testClasses.get(className);
+                if (classes == null) {
+                    classes = new LinkedHashSet<String>();
+                    testClasses.put(className, classes);
+                }
+                classes.add(testClassName);
+            }
+        });
+        return testClasses;
+    }
+
+    private ClassTestResults loadClassDetails(TestResultStore resultStore, String className, Set<String> testClasses) {
         AllTestResults model = new AllTestResults();
-        if (resultDir.exists()) {
-            for (File file : resultDir.listFiles()) {
-                if (file.getName().startsWith("TEST-") && file.getName().endsWith(".xml")) {
-                    mergeFromFile(file, model);
+        ClassTestResults classResults = model.addTestClass(className);
+        for (String testClassName : testClasses) {
+            TestClassResult classResult = resultStore.getClassResult(testClassName);
+            if (classResult == null) {
+                continue;
+            }
+            for (TestMethodResult result : classResult.getResults()) {
+                if (result.getClassName().equals(className)) {
+                    addTest(model, result, true);
                 }
             }
         }
-        return model;
+        if (testClasses.contains(className)) {
+            StringWriter output = new StringWriter();
+            StringWriter error = new StringWriter();
+            resultStore.writeOutput(className, output, error);
+            classResults.addStandardOutput(output.toString());
+            classResults.addStandardError(error.toString());
+        }
+        return classResults;
     }
 
-    private void mergeFromFile(File file, AllTestResults model) {
+    private void addTest(AllTestResults model, TestMethodResult result, boolean includeStackTraces) {
+        TestResult testResult = model.addTest(result.getClassName(), result.getName(), result.getDuration());
+        if (result.getResultType() == org.gradle.api.tasks.testing.TestResult.ResultType.SKIPPED) {
+            testResult.ignored();
+        }
+        for (TestFailureResult failure : result.getFailures()) {
+            testResult.addFailure(failure.getMessage(), includeStackTraces ? failure.getStackTrace() : "");
+        }
+    }
+
+    private void generateFiles(AllTestResults model, final TestResultStore resultStore, final Map<String, Set<String>> testClasses) {
         try {
-            InputStream inputStream = new FileInputStream(file);
-            Document document;
-            try {
-                document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(inputStream));
-            } finally {
-                inputStream.close();
+            generatePage(createHtmlRenderer(), model, new OverviewPageRenderer(), new File(reportDir, "index.html"));
+
+            final Queue<CompositeTestResults> pages = new ConcurrentLinkedQueue<CompositeTestResults>();
+            for (PackageTestResults packageResults : model.getPackages()) {
+                pages.add(packageResults);
+                pages.addAll(packageResults.getClasses());
             }
-            NodeList testCases = document.getElementsByTagName("testcase");
-            for (int i = 0; i < testCases.getLength(); i++) {
-                Element testCase = (Element) testCases.item(i);
-                String className = testCase.getAttribute("classname");
-                String testName = testCase.getAttribute("name");
-                LocaleSafeDecimalFormat format = new LocaleSafeDecimalFormat();
-                BigDecimal duration = format.parse(testCase.getAttribute("time"));
-                duration = duration.multiply(BigDecimal.valueOf(1000));
-                NodeList failures = testCase.getElementsByTagName("failure");
-                TestResult testResult = model.addTest(className, testName, duration.longValue());
-                for (int j = 0; j < failures.getLength(); j++) {
-                    Element failure = (Element) failures.item(j);
-                    testResult.addFailure(failure.getAttribute("message"), failure.getTextContent());
+            StoppableExecutor executor = executorFactory.create("Generate test report");
+            try {
+                for (int i = 0; i < Math.min(maxThreads, pages.size()); i++) {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            HtmlReportRenderer htmlRenderer = createHtmlRenderer();
+                            CompositeTestResults results;
+                            while ((results = pages.poll()) != null) {
+                                generatePage(htmlRenderer, results, resultStore, testClasses);
+                            }
+                        }
+                    });
                 }
-            }
-            NodeList ignoredTestCases = document.getElementsByTagName("ignored-testcase");
-            for (int i = 0; i < ignoredTestCases.getLength(); i++) {
-                Element testCase = (Element) ignoredTestCases.item(i);
-                String className = testCase.getAttribute("classname");
-                String testName = testCase.getAttribute("name");
-                model.addTest(className, testName, 0).ignored();
-            }
-            String suiteClassName = document.getDocumentElement().getAttribute("name");
-            ClassTestResults suiteResults = model.addTestClass(suiteClassName);
-            NodeList stdOutElements = document.getElementsByTagName("system-out");
-            for (int i = 0; i < stdOutElements.getLength(); i++) {
-                suiteResults.addStandardOutput(stdOutElements.item(i).getTextContent());
-            }
-            NodeList stdErrElements = document.getElementsByTagName("system-err");
-            for (int i = 0; i < stdErrElements.getLength(); i++) {
-                suiteResults.addStandardError(stdErrElements.item(i).getTextContent());
+            } finally {
+                executor.stop();
             }
         } catch (Exception e) {
-            throw new GradleException(String.format("Could not load test results from '%s'.", file), e);
+            throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir), e);
         }
     }
 
-    private void generateFiles(AllTestResults model) {
+    private void generatePage(HtmlReportRenderer htmlRenderer, CompositeTestResults results, TestResultStore resultStore,
+                              Map<String, Set<String>> testClasses) {
         try {
-            generatePage(model, new OverviewPageRenderer(), new File(reportDir, "index.html"));
-            for (PackageTestResults packageResults : model.getPackages()) {
-                generatePage(packageResults, new PackagePageRenderer(), new File(reportDir, packageResults.getName() + ".html"));
-                for (ClassTestResults classResults : packageResults.getClasses()) {
-                    generatePage(classResults, new ClassPageRenderer(), new File(reportDir, classResults.getName() + ".html"));
-                }
+            if (results instanceof PackageTestResults) {
+                PackageTestResults packageResults = (PackageTestResults) results;
+                generatePage(htmlRenderer, packageResults, new PackagePageRenderer(), new File(reportDir, packageResults.getName() + ".html"));
+            } else {
+                ClassTestResults classResults = (ClassTestResults) results;
+                ClassTestResults details = loadClassDetails(resultStore, classResults.getName(), testClasses.get(classResults.getName()));
+                generatePage(htmlRenderer, details, new ClassPageRenderer(), new File(reportDir, classResults.getName() + ".html"));
             }
         } catch (Exception e) {
-            throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir), e);
+            throw UncheckedException.asUncheckedException(e);
         }
     }
 
-    private <T extends CompositeTestResults> void generatePage(T model, PageRenderer<T> renderer, File outputFile) throws Exception {
+    private <T extends CompositeTestResults> void generatePage(HtmlReportRenderer htmlRenderer, T model, PageRenderer<T> renderer, File outputFile) throws Exception {
         htmlRenderer.renderer(renderer).writeTo(model, outputFile);
     }
+
+    private HtmlReportRenderer createHtmlRenderer() {
+        HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
+        htmlRenderer.requireResource(getClass().getResource("/org/gradle/reporting/report.js"));
+        htmlRenderer.requireResource(getClass().getResource("/org/gradle/reporting/base-style.css"));
+        htmlRenderer.requireResource(getClass().getResource("/org/gradle/reporting/css3-pie-1.0beta3.htc"));
+        htmlRenderer.requireResource(getClass().getResource("style.css"));
+        return htmlRenderer;
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.gradle.api.tasks.testing.TestResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The results of a test class, as recorded in the {@link TestResultStore}. Does not include the output of the test
+ * class, which is available from {@link TestResultStore#writeOutput}.
+ */
+public class TestClassResult {
+    private final String className;
+    private final long startTime;
+    private final long duration;
+    private final List<TestMethodResult> results = new ArrayList<TestMethodResult>();
+    private final List<TestFailureResult> failures = new ArrayList<TestFailureResult>();
+
+    public TestClassResult(String className, long startTime, long duration) {
+        this.className = className;
+        this.startTime = startTime;
+        this.duration = duration;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the results of the tests executed as part of this test class, in the order they completed.
+     */
+    public List<TestMethodResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the failures of the test class itself, such as a failure in a class level set up method.
+     */
+    public List<TestFailureResult> getFailures() {
+        return failures;
+    }
+
+    public int getTestCount() {
+        return results.size();
+    }
+
+    public int getFailureCount() {
+        int count = 0;
+        for (TestMethodResult result : results) {
+            if (result.getResultType() == TestResult.ResultType.FAILURE) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
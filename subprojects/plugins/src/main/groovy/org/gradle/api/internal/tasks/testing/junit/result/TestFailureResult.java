@@ -0,0 +1,43 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+/**
+ * A failure of a test or test class, as recorded in the {@link TestResultStore}.
+ */
+public class TestFailureResult {
+    private final String message;
+    private final String exceptionType;
+    private final String stackTrace;
+
+    public TestFailureResult(String message, String exceptionType, String stackTrace) {
+        this.message = message;
+        this.exceptionType = exceptionType;
+        this.stackTrace = stackTrace;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getExceptionType() {
+        return exceptionType;
+    }
+
+    public String getStackTrace() {
+        return stackTrace;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.gradle.api.tasks.testing.TestResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of a single test, as recorded in the {@link TestResultStore}.
+ */
+public class TestMethodResult {
+    private final String className;
+    private final String name;
+    private final TestResult.ResultType resultType;
+    private final long duration;
+    private final List<TestFailureResult> failures = new ArrayList<TestFailureResult>();
+
+    public TestMethodResult(String className, String name, TestResult.ResultType resultType, long duration) {
+        this.className = className;
+        this.name = name;
+        this.resultType = resultType;
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the name of the class which contains the test. This is not necessarily the test class which the test
+     * was executed as part of.
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TestResult.ResultType getResultType() {
+        return resultType;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public List<TestFailureResult> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * An append-only binary store of the results of a test run, which the test reports are generated from. Consists of
+ * three files:
+ *
+ * <ul>
+ * <li>The results file, which contains a record for each test class, appended when the test class completes.</li>
+ * <li>The output file, which contains a record for each output event, appended as the output is generated. Each
+ * record refers to the first output record of the same test class, which identifies the test class it belongs to.</li>
+ * <li>The index file, written once the test run is complete, which contains the location of the record and the first
+ * and last output records of each test class.</li>
+ * </ul>
+ *
+ * <p>The output of a test class is read forwards from its first output record to its last, skipping the records of
+ * any other test classes which executed at the same time. No more than one output record is held in memory.</p>
+ *
+ * <p>Reading from the store is thread-safe.</p>
+ */
+public class TestResultStore {
+    static final long NO_OUTPUT = -1;
+    // The offset of the first output record of the test class, the destination and the length of the message
+    static final int OUTPUT_RECORD_HEADER_SIZE = 8 + 1 + 4;
+    private final File resultsFile;
+    private final File outputFile;
+    private final File indexFile;
+    private List<IndexEntry> index;
+    private Map<String, IndexEntry> indexByClassName;
+
+    /**
+     * Creates a store in the given test results directory.
+     */
+    public TestResultStore(File testResultsDir) {
+        File dir = new File(testResultsDir, "binary");
+        resultsFile = new File(dir, "results.bin");
+        outputFile = new File(dir, "output.bin");
+        indexFile = new File(dir, "results.idx");
+    }
+
+    /**
+     * Creates a writer which replaces the current contents of this store. The writer must be closed once the test
+     * run is complete.
+     */
+    public TestResultStoreWriter createWriter() {
+        resetIndex();
+        return new TestResultStoreWriter(resultsFile, outputFile, indexFile);
+    }
+
+    /**
+     * Visits the results of each test class, in the order they completed.
+     */
+    public void visitClasses(Action<? super TestClassResult> visitor) {
+        List<IndexEntry> entries = getIndex();
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(resultsFile)));
+            try {
+                for (int i = 0; i < entries.size(); i++) {
+                    visitor.execute(readClassResult(inputStream));
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read test results from '%s'.", resultsFile), e);
+        }
+    }
+
+    /**
+     * Returns the results of the given test class, or null if the test class has no results.
+     */
+    public TestClassResult getClassResult(String className) {
+        IndexEntry entry = getIndexEntry(className);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            FileInputStream inputStream = new FileInputStream(resultsFile);
+            try {
+                inputStream.getChannel().position(entry.resultsOffset);
+                return readClassResult(new DataInputStream(new BufferedInputStream(inputStream)));
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read test results from '%s'.", resultsFile), e);
+        }
+    }
+
+    /**
+     * Writes the output generated by the given test class to the given destination to the given writer.
+     */
+    public void writeOutput(String className, TestOutputEvent.Destination destination, Writer writer) {
+        if (destination == TestOutputEvent.Destination.StdOut) {
+            writeOutput(className, writer, null);
+        } else {
+            writeOutput(className, null, writer);
+        }
+    }
+
+    /**
+     * Writes the standard output and standard error generated by the given test class to the given writers, in a
+     * single pass over the output of the test class. Output to a destination whose writer is null is skipped.
+     */
+    public void writeOutput(String className, Writer stdout, Writer stderr) {
+        IndexEntry entry = getIndexEntry(className);
+        if (entry == null || entry.firstOutputOffset == NO_OUTPUT) {
+            return;
+        }
+        try {
+            FileInputStream fileStream = new FileInputStream(outputFile);
+            try {
+                fileStream.getChannel().position(entry.firstOutputOffset);
+                DataInputStream inputStream = new DataInputStream(new BufferedInputStream(fileStream));
+                byte[] buffer = new byte[0];
+                for (long offset = entry.firstOutputOffset; offset <= entry.lastOutputOffset;) {
+                    long classOffset = inputStream.readLong();
+                    TestOutputEvent.Destination destination = TestOutputEvent.Destination.values()[inputStream.readByte()];
+                    int length = inputStream.readInt();
+                    offset += OUTPUT_RECORD_HEADER_SIZE + length;
+                    Writer writer = destination == TestOutputEvent.Destination.StdOut ? stdout : stderr;
+                    if (classOffset != entry.firstOutputOffset || writer == null) {
+                        skipFully(inputStream, length);
+                        continue;
+                    }
+                    if (buffer.length < length) {
+                        buffer = new byte[length];
+                    }
+                    inputStream.readFully(buffer, 0, length);
+                    writer.write(new String(buffer, 0, length, "UTF-8"));
+                }
+            } finally {
+                fileStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read test output from '%s'.", outputFile), e);
+        }
+    }
+
+    private static void skipFully(DataInputStream inputStream, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = inputStream.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private TestClassResult readClassResult(DataInputStream inputStream) throws IOException {
+        TestClassResult classResult = new TestClassResult(readString(inputStream), inputStream.readLong(), inputStream.readLong());
+        readFailures(inputStream, classResult.getFailures());
+        int resultCount = inputStream.readInt();
+        for (int i = 0; i < resultCount; i++) {
+            TestMethodResult result = new TestMethodResult(readString(inputStream), readString(inputStream),
+                    TestResult.ResultType.values()[inputStream.readByte()], inputStream.readLong());
+            readFailures(inputStream, result.getFailures());
+            classResult.getResults().add(result);
+        }
+        return classResult;
+    }
+
+    private void readFailures(DataInputStream inputStream, List<TestFailureResult> failures) throws IOException {
+        int failureCount = inputStream.readInt();
+        for (int i = 0; i < failureCount; i++) {
+            failures.add(new TestFailureResult(readString(inputStream), readString(inputStream), readString(inputStream)));
+        }
+    }
+
+    static void writeString(DataOutput outputStream, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static String readString(DataInput inputStream) throws IOException {
+        byte[] bytes = new byte[inputStream.readInt()];
+        inputStream.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private IndexEntry getIndexEntry(String className) {
+        getIndex();
+        synchronized (this) {
+            return indexByClassName.get(className);
+        }
+    }
+
+    private synchronized List<IndexEntry> getIndex() {
+        if (index != null) {
+            return index;
+        }
+        index = new ArrayList<IndexEntry>();
+        indexByClassName = new HashMap<String, IndexEntry>();
+        if (!indexFile.isFile()) {
+            return index;
+        }
+        try {
+            DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                int count = inputStream.readInt();
+                for (int i = 0; i < count; i++) {
+                    IndexEntry entry = new IndexEntry(readString(inputStream), inputStream.readLong(), inputStream.readLong(),
+                            inputStream.readLong());
+                    index.add(entry);
+                    indexByClassName.put(entry.className, entry);
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read test results index from '%s'.", indexFile), e);
+        }
+        return index;
+    }
+
+    private synchronized void resetIndex() {
+        index = null;
+        indexByClassName = null;
+    }
+
+    static class IndexEntry {
+        final String className;
+        final long resultsOffset;
+        final long firstOutputOffset;
+        final long lastOutputOffset;
+
+        IndexEntry(String className, long resultsOffset, long firstOutputOffset, long lastOutputOffset) {
+            this.className = className;
+            this.resultsOffset = resultsOffset;
+            this.firstOutputOffset = firstOutputOffset;
+            this.lastOutputOffset = lastOutputOffset;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor;
+import org.gradle.api.internal.tasks.testing.results.TestState;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Appends the results of a test run to a {@link TestResultStore} as they are received. The results of each test
+ * class are kept in memory until the test class completes. The output of each test class is written as it is
+ * received.
+ */
+public class TestResultStoreWriter extends StateTrackingTestResultProcessor {
+    private final File resultsFile;
+    private final File outputFile;
+    private final File indexFile;
+    private final CountingOutputStream resultsCounter;
+    private final DataOutputStream resultsOutput;
+    private final CountingOutputStream outputCounter;
+    private final DataOutputStream outputOutput;
+    private final Map<Object, ClassRecord> executingClasses = new HashMap<Object, ClassRecord>();
+    private final List<TestResultStore.IndexEntry> index = new ArrayList<TestResultStore.IndexEntry>();
+
+    TestResultStoreWriter(File resultsFile, File outputFile, File indexFile) {
+        this.resultsFile = resultsFile;
+        this.outputFile = outputFile;
+        this.indexFile = indexFile;
+        indexFile.delete();
+        resultsFile.getParentFile().mkdirs();
+        try {
+            resultsCounter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(resultsFile)));
+            resultsOutput = new DataOutputStream(resultsCounter);
+            outputCounter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
+            outputOutput = new DataOutputStream(outputCounter);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not create test results file '%s'.", resultsFile), e);
+        }
+    }
+
+    @Override
+    public synchronized void started(TestDescriptorInternal test, TestStartEvent event) {
+        super.started(test, event);
+    }
+
+    @Override
+    public synchronized void completed(Object testId, TestCompleteEvent event) {
+        super.completed(testId, event);
+    }
+
+    @Override
+    public synchronized void failure(Object testId, Throwable result) {
+        super.failure(testId, result);
+    }
+
+    @Override
+    public synchronized void output(Object testId, TestOutputEvent event) {
+        TestState state = getTestStateFor(testId);
+        if (state == null) {
+            return;
+        }
+        ClassRecord classRecord = findClass(state.test);
+        if (classRecord == null) {
+            return;
+        }
+        long offset = outputCounter.getByteCount();
+        if (classRecord.firstOutputOffset == TestResultStore.NO_OUTPUT) {
+            classRecord.firstOutputOffset = offset;
+        }
+        try {
+            outputOutput.writeLong(classRecord.firstOutputOffset);
+            outputOutput.writeByte(event.getDestination().ordinal());
+            TestResultStore.writeString(outputOutput, event.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write test output to '%s'.", outputFile), e);
+        }
+        classRecord.lastOutputOffset = offset;
+    }
+
+    @Override
+    protected void started(TestState state) {
+        TestDescriptorInternal test = state.test;
+        if (test.getName().equals(test.getClassName())) {
+            executingClasses.put(test.getId(), new ClassRecord(test.getClassName()));
+        }
+    }
+
+    @Override
+    protected void completed(TestState state) {
+        ClassRecord classRecord = executingClasses.remove(state.test.getId());
+        if (classRecord != null) {
+            TestClassResult classResult = new TestClassResult(classRecord.className, state.getStartTime(), state.getExecutionTime());
+            classResult.getResults().addAll(classRecord.results);
+            addFailures(state, classResult.getFailures());
+            writeClassResult(classResult, classRecord.firstOutputOffset, classRecord.lastOutputOffset);
+        } else if (!state.test.isComposite()) {
+            classRecord = findClass(state.test);
+            if (classRecord != null) {
+                TestMethodResult result = new TestMethodResult(state.test.getClassName(), state.test.getName(),
+                        state.resultType, state.getExecutionTime());
+                addFailures(state, result.getFailures());
+                classRecord.results.add(result);
+            }
+        }
+    }
+
+    /**
+     * Completes the test run, writing the index of the store.
+     */
+    public synchronized void close() {
+        try {
+            resultsOutput.close();
+            outputOutput.close();
+            DataOutputStream indexOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+            try {
+                indexOutput.writeInt(index.size());
+                for (TestResultStore.IndexEntry entry : index) {
+                    TestResultStore.writeString(indexOutput, entry.className);
+                    indexOutput.writeLong(entry.resultsOffset);
+                    indexOutput.writeLong(entry.firstOutputOffset);
+                    indexOutput.writeLong(entry.lastOutputOffset);
+                }
+            } finally {
+                indexOutput.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write test results index to '%s'.", indexFile), e);
+        }
+    }
+
+    private ClassRecord findClass(TestDescriptorInternal test) {
+        for (TestDescriptorInternal current = test; current != null; current = (TestDescriptorInternal) current.getParent()) {
+            ClassRecord classRecord = executingClasses.get(current.getId());
+            if (classRecord != null) {
+                return classRecord;
+            }
+        }
+        return null;
+    }
+
+    private void writeClassResult(TestClassResult classResult, long firstOutputOffset, long lastOutputOffset) {
+        long offset = resultsCounter.getByteCount();
+        try {
+            TestResultStore.writeString(resultsOutput, classResult.getClassName());
+            resultsOutput.writeLong(classResult.getStartTime());
+            resultsOutput.writeLong(classResult.getDuration());
+            writeFailures(classResult.getFailures());
+            resultsOutput.writeInt(classResult.getResults().size());
+            for (TestMethodResult result : classResult.getResults()) {
+                TestResultStore.writeString(resultsOutput, result.getClassName());
+                TestResultStore.writeString(resultsOutput, result.getName());
+                resultsOutput.writeByte(result.getResultType().ordinal());
+                resultsOutput.writeLong(result.getDuration());
+                writeFailures(result.getFailures());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write test results to '%s'.", resultsFile), e);
+        }
+        index.add(new TestResultStore.IndexEntry(classResult.getClassName(), offset, firstOutputOffset, lastOutputOffset));
+    }
+
+    private void writeFailures(List<TestFailureResult> failures) throws IOException {
+        resultsOutput.writeInt(failures.size());
+        for (TestFailureResult failure : failures) {
+            TestResultStore.writeString(resultsOutput, failure.getMessage());
+            TestResultStore.writeString(resultsOutput, failure.getExceptionType());
+            TestResultStore.writeString(resultsOutput, failure.getStackTrace());
+        }
+    }
+
+    private void addFailures(TestState state, List<TestFailureResult> failures) {
+        for (Throwable failure : state.failures) {
+            failures.add(new TestFailureResult(failureMessage(failure), failure.getClass().getName(), stackTrace(failure)));
+        }
+    }
+
+    private String stackTrace(Throwable throwable) {
+        try {
+            StringWriter stringWriter = new StringWriter();
+            PrintWriter writer = new PrintWriter(stringWriter);
+            throwable.printStackTrace(writer);
+            writer.close();
+            return stringWriter.toString();
+        } catch (Throwable t) {
+            StringWriter stringWriter = new StringWriter();
+            PrintWriter writer = new PrintWriter(stringWriter);
+            t.printStackTrace(writer);
+            writer.close();
+            return stringWriter.toString();
+        }
+    }
+
+    private String failureMessage(Throwable throwable) {
+        try {
+            return throwable.toString();
+        } catch (Throwable t) {
+            return String.format("Could not determine failure message for exception of type %s: %s",
+                    throwable.getClass().getName(), t);
+        }
+    }
+
+    private static class ClassRecord {
+        private final String className;
+        private final List<TestMethodResult> results = new ArrayList<TestMethodResult>();
+        private long firstOutputOffset = TestResultStore.NO_OUTPUT;
+        private long lastOutputOffset = TestResultStore.NO_OUTPUT;
+
+        private ClassRecord(String className) {
+            this.className = className;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.project.ServiceRegistry;
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.util.UncheckedException;
+
+import java.io.File;
+import java.io.Serializable;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+
+/**
+ * Records the classes used by each test class. Each test class is loaded in a fresh ClassLoader, set as the context
+ * ClassLoader while the class executes, which loads the classes of the given classpath directories itself rather than
+ * delegating to its parent. The classes loaded by this ClassLoader are recorded in a {@link TestClassDependencies}
+ * once the test class has executed.
+ *
+ * <p>Requires that the target processor executes each test class synchronously, using the context ClassLoader.</p>
+ */
+public class DependencyRecordingTestClassProcessor implements TestClassProcessor {
+    private final TestClassProcessor processor;
+    private final URL[] classesDirs;
+    private final TestClassDependencies dependencies;
+
+    public DependencyRecordingTestClassProcessor(TestClassProcessor processor, Collection<File> classesDirs, TestClassDependencies dependencies) {
+        this.processor = processor;
+        this.dependencies = dependencies;
+        this.classesDirs = new URL[classesDirs.size()];
+        int i = 0;
+        for (File classesDir : classesDirs) {
+            try {
+                this.classesDirs[i++] = classesDir.toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw UncheckedException.asUncheckedException(e);
+            }
+        }
+    }
+
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        processor.startProcessing(resultProcessor);
+    }
+
+    public void processTestClass(TestClassRunInfo testClass) {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        RecordingClassLoader classLoader = new RecordingClassLoader(classesDirs, previous);
+        thread.setContextClassLoader(classLoader);
+        try {
+            processor.processTestClass(testClass);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+        dependencies.put(testClass.getTestClassName(), classLoader.getLoadedClasses());
+    }
+
+    public void stop() {
+        processor.stop();
+    }
+
+    private static class RecordingClassLoader extends URLClassLoader {
+        private final Set<String> loadedClasses = new TreeSet<String>();
+
+        private RecordingClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            Class<?> type = findLoadedClass(name);
+            if (type == null) {
+                try {
+                    type = findClass(name);
+                } catch (ClassNotFoundException e) {
+                    return super.loadClass(name, resolve);
+                }
+                loadedClasses.add(name);
+            }
+            if (resolve) {
+                resolveClass(type);
+            }
+            return type;
+        }
+
+        public synchronized Set<String> getLoadedClasses() {
+            return new TreeSet<String>(loadedClasses);
+        }
+    }
+
+    /**
+     * Decorates the processors created by a {@link WorkerTestClassProcessorFactory} in the worker process.
+     */
+    public static class Factory implements WorkerTestClassProcessorFactory, Serializable {
+        private final WorkerTestClassProcessorFactory factory;
+        private final List<File> classesDirs;
+        private final File dependenciesDir;
+
+        public Factory(WorkerTestClassProcessorFactory factory, Collection<File> classesDirs, File dependenciesDir) {
+            this.factory = factory;
+            this.classesDirs = new ArrayList<File>(classesDirs);
+            this.dependenciesDir = dependenciesDir;
+        }
+
+        public TestClassProcessor create(ServiceRegistry serviceRegistry) {
+            return new DependencyRecordingTestClassProcessor(factory.create(serviceRegistry), classesDirs,
+                    new TestClassDependencies(dependenciesDir));
+        }
+    }
+}
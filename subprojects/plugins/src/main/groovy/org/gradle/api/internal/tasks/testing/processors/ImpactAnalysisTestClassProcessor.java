@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.changedetection.ClasspathSnapshot;
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Executes only those test classes which may be affected by the classes which have changed since the previous run.
+ * A test class is executed when it uses one of the changed classes, when the classes it uses have not been recorded,
+ * or when it failed or was not executed in its most recent run. All test classes are executed when something other
+ * than a class file in a classpath directory has changed, when there is no snapshot of the classpath from a previous
+ * run, and after a given number of consecutive runs which skipped test classes.
+ *
+ * <p>The classes used by each test class are expected to be recorded in the given {@link TestClassDependencies} as
+ * test classes execute, for example by {@link DependencyRecordingTestClassProcessor}. The history is expected to be
+ * loaded by the target processor when processing starts.</p>
+ */
+public class ImpactAnalysisTestClassProcessor implements TestClassProcessor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImpactAnalysisTestClassProcessor.class);
+    private static final String SELECTIVE_RUNS = "selectiveRuns";
+    private final TestClassProcessor processor;
+    private final Iterable<File> classpath;
+    private final TestClassDependencies dependencies;
+    private final TestClassHistory history;
+    private final File stateDir;
+    private final int fullRunEvery;
+    private ClasspathSnapshot snapshot;
+    private Set<String> changedClasses;
+    private int selectiveRuns;
+    private int skipped;
+    private int executed;
+
+    /**
+     * @param fullRunEvery The maximum number of consecutive runs which may skip test classes.
+     */
+    public ImpactAnalysisTestClassProcessor(TestClassProcessor processor, Iterable<File> classpath, TestClassDependencies dependencies,
+                                            TestClassHistory history, File stateDir, int fullRunEvery) {
+        this.processor = processor;
+        this.classpath = classpath;
+        this.dependencies = dependencies;
+        this.history = history;
+        this.stateDir = stateDir;
+        this.fullRunEvery = fullRunEvery;
+    }
+
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        processor.startProcessing(resultProcessor);
+        snapshot = ClasspathSnapshot.take(classpath);
+        ClasspathSnapshot previous = ClasspathSnapshot.load(getSnapshotFile());
+        selectiveRuns = loadSelectiveRuns();
+        if (previous == null) {
+            LOGGER.info("Executing all test classes, as there is no classpath snapshot from a previous run.");
+        } else if (selectiveRuns >= fullRunEvery) {
+            LOGGER.info("Executing all test classes, as the previous {} runs only executed affected test classes.", selectiveRuns);
+        } else {
+            changedClasses = snapshot.getChangedClasses(previous);
+            if (changedClasses == null) {
+                LOGGER.info("Executing all test classes, as the classpath has changed.");
+            } else {
+                LOGGER.info("Executing test classes affected by {} changed classes.", changedClasses.size());
+            }
+        }
+    }
+
+    public void processTestClass(TestClassRunInfo testClass) {
+        if (changedClasses != null && !isAffected(testClass.getTestClassName())) {
+            LOGGER.debug("Skipping test class {}, as it is not affected by the changed classes.", testClass.getTestClassName());
+            skipped++;
+            return;
+        }
+        executed++;
+        processor.processTestClass(testClass);
+    }
+
+    private boolean isAffected(String testClassName) {
+        if (history.getExecutionTime(testClassName) == null || history.isFailed(testClassName)) {
+            return true;
+        }
+        Set<String> usedClasses = dependencies.get(testClassName);
+        if (usedClasses == null) {
+            return true;
+        }
+        for (String changedClass : changedClasses) {
+            if (usedClasses.contains(changedClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void stop() {
+        processor.stop();
+        snapshot.save(getSnapshotFile());
+        saveSelectiveRuns(skipped > 0 ? selectiveRuns + 1 : 0);
+        if (changedClasses != null) {
+            LOGGER.info("Executed {} affected test classes, skipped {} test classes.", executed, skipped);
+        }
+    }
+
+    private File getSnapshotFile() {
+        return new File(stateDir, "classpathSnapshot.properties");
+    }
+
+    private File getStateFile() {
+        return new File(stateDir, "impactAnalysis.properties");
+    }
+
+    private int loadSelectiveRuns() {
+        File file = getStateFile();
+        if (!file.isFile()) {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            return Integer.parseInt(properties.getProperty(SELECTIVE_RUNS, "0"));
+        } catch (Exception e) {
+            LOGGER.debug(String.format("Could not read impact analysis state from %s. Ignoring.", file), e);
+            return 0;
+        }
+    }
+
+    private void saveSelectiveRuns(int selectiveRuns) {
+        File file = getStateFile();
+        Properties properties = new Properties();
+        properties.setProperty(SELECTIVE_RUNS, String.valueOf(selectiveRuns));
+        try {
+            file.getParentFile().mkdirs();
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                properties.store(outputStream, null);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write impact analysis state to %s.", file), e);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010 the original author or authors.
+ * Copyright 2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -13,10 +13,10 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.gradle.api.internal.tasks.testing.processors;
 
-import org.gradle.api.internal.Factory;
+import org.gradle.api.Transformer;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
@@ -25,25 +25,43 @@ import org.gradle.messaging.actor.ActorFactory;
 import org.gradle.messaging.concurrent.CompositeStoppable;
 import org.gradle.messaging.dispatch.DispatchException;
 import org.gradle.util.UncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * Manages a set of parallel TestClassProcessors. Test classes are queued and handed out on demand: a processor is given
+ * the next test class each time it finishes with one of the classes given to it, so that processors which run quick
+ * test classes are given more of them than processors which are busy with slow ones.
+ *
+ * <p>To hide the latency between a processor finishing a test class and being notified of this, each processor is
+ * given up to {@link #MAX_IN_FLIGHT} test classes at a time.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
+    static final int MAX_IN_FLIGHT = 2;
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaxNParallelTestClassProcessor.class);
     private final int maxProcessors;
-    private final Factory<TestClassProcessor> factory;
+    private final Transformer<TestClassProcessor, TestClassProcessedListener> factory;
     private final ActorFactory actorFactory;
+    private final Lock lock = new ReentrantLock();
+    private final Condition queueEmpty = lock.newCondition();
+    private final LinkedList<TestClassRunInfo> queue = new LinkedList<TestClassRunInfo>();
+    private final List<Fork> forks = new ArrayList<Fork>();
     private TestResultProcessor resultProcessor;
-    private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
     private Actor resultProcessorActor;
 
-    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+    /**
+     * @param factory Creates a processor which notifies the given listener as it finishes with each test class.
+     */
+    public MaxNParallelTestClassProcessor(int maxProcessors, Transformer<TestClassProcessor, TestClassProcessedListener> factory, ActorFactory actorFactory) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
@@ -55,26 +73,99 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     }
 
     public void processTestClass(TestClassRunInfo testClass) {
-        TestClassProcessor processor;
-        if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
-        } else {
-            processor = processors.get(pos);
-            pos = (pos + 1) % processors.size();
+        lock.lock();
+        try {
+            queue.add(testClass);
+            dispatch();
+        } finally {
+            lock.unlock();
         }
-        processor.processTestClass(testClass);
     }
 
     public void stop() {
+        lock.lock();
+        try {
+            while (!queue.isEmpty()) {
+                queueEmpty.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.asUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+
         try {
             new CompositeStoppable(processors).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
             throw UncheckedException.asUncheckedException(e.getCause());
         }
+
+        if (LOGGER.isDebugEnabled()) {
+            for (int i = 0; i < forks.size(); i++) {
+                LOGGER.debug("Test class processor {} was given {} test classes.", i + 1, forks.get(i).dispatched);
+            }
+        }
+    }
+
+    /**
+     * Hands out queued test classes to idle processors, starting new processors as required. Must be called while
+     * holding the lock.
+     */
+    private void dispatch() {
+        while (!queue.isEmpty()) {
+            Fork fork = selectFork();
+            if (fork == null) {
+                return;
+            }
+            fork.inFlight++;
+            fork.dispatched++;
+            fork.processor.processTestClass(queue.removeFirst());
+        }
+        queueEmpty.signalAll();
+    }
+
+    private Fork selectFork() {
+        Fork leastBusy = null;
+        for (Fork fork : forks) {
+            if (leastBusy == null || fork.inFlight < leastBusy.inFlight) {
+                leastBusy = fork;
+            }
+        }
+        if ((leastBusy == null || leastBusy.inFlight > 0) && forks.size() < maxProcessors) {
+            return startFork();
+        }
+        if (leastBusy.inFlight < MAX_IN_FLIGHT) {
+            return leastBusy;
+        }
+        return null;
+    }
+
+    private Fork startFork() {
+        Fork fork = new Fork();
+        TestClassProcessor processor = factory.transform(fork);
+        Actor actor = actorFactory.createActor(processor);
+        processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        fork.processor = processor;
+        forks.add(fork);
+        return fork;
+    }
+
+    private class Fork implements TestClassProcessedListener {
+        private TestClassProcessor processor;
+        private int inFlight;
+        private int dispatched;
+
+        public void testClassProcessed(TestClassRunInfo testClass) {
+            lock.lock();
+            try {
+                inFlight--;
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.util.TimeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * When enabled and there is a history of previous runs, holds back test classes until all of them have been detected,
+ * then forwards them to the target processor ordered using the outcome of previous runs: classes which failed last time
+ * first, for quick feedback, followed by the remaining classes longest first, so that the target processors finish at
+ * roughly the same time. Classes without history are assumed to take the average time of those with history. Otherwise,
+ * forwards each test class as soon as it is detected.
+ *
+ * <p>Records the execution time and outcome of each test class executed, and updates the history when processing is
+ * complete.</p>
+ */
+public class PrioritisingTestClassProcessor implements TestClassProcessor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrioritisingTestClassProcessor.class);
+    private final TestClassProcessor processor;
+    private final TestClassHistory history;
+    private final int maxProcessors;
+    private final TimeProvider timeProvider;
+    private final boolean prioritise;
+    private final List<TestClassRunInfo> testClasses = new ArrayList<TestClassRunInfo>();
+    private boolean holdBack;
+
+    /**
+     * @param maxProcessors The number of test classes the target processor executes in parallel. Used to estimate
+     * the execution time.
+     * @param prioritise Whether to order the test classes using the history. When false, only records the history.
+     */
+    public PrioritisingTestClassProcessor(TestClassProcessor processor, TestClassHistory history, int maxProcessors, TimeProvider timeProvider,
+                                          boolean prioritise) {
+        this.processor = processor;
+        this.history = history;
+        this.maxProcessors = maxProcessors;
+        this.timeProvider = timeProvider;
+        this.prioritise = prioritise;
+    }
+
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        history.load();
+        holdBack = prioritise && !history.isEmpty();
+        processor.startProcessing(new HistoryRecordingTestResultProcessor(resultProcessor));
+    }
+
+    public void processTestClass(TestClassRunInfo testClass) {
+        if (holdBack) {
+            testClasses.add(testClass);
+        } else {
+            processor.processTestClass(testClass);
+        }
+    }
+
+    public void stop() {
+        long start = timeProvider.getCurrentTime();
+        long estimate = -1;
+        try {
+            if (holdBack) {
+                sort(testClasses);
+                estimate = estimateExecutionTime(testClasses);
+                LOGGER.info("Executing {} test classes, estimated execution time {}ms.", testClasses.size(), estimate);
+                for (TestClassRunInfo testClass : testClasses) {
+                    processor.processTestClass(testClass);
+                }
+            }
+        } finally {
+            try {
+                processor.stop();
+            } finally {
+                history.save();
+            }
+        }
+        if (estimate >= 0) {
+            LOGGER.info("Executed {} test classes in {}ms, estimated execution time {}ms.", new Object[]{testClasses.size(), timeProvider.getCurrentTime() - start, estimate});
+        }
+    }
+
+    private void sort(List<TestClassRunInfo> testClasses) {
+        final long defaultExecutionTime = getAverageExecutionTime(testClasses);
+        Collections.sort(testClasses, new Comparator<TestClassRunInfo>() {
+            public int compare(TestClassRunInfo o1, TestClassRunInfo o2) {
+                boolean failed1 = history.isFailed(o1.getTestClassName());
+                boolean failed2 = history.isFailed(o2.getTestClassName());
+                if (failed1 != failed2) {
+                    return failed1 ? -1 : 1;
+                }
+                long time1 = getExecutionTime(o1, defaultExecutionTime);
+                long time2 = getExecutionTime(o2, defaultExecutionTime);
+                return time1 > time2 ? -1 : time1 < time2 ? 1 : 0;
+            }
+        });
+    }
+
+    /**
+     * Estimates the time taken to execute the given test classes in order, when each class is given to whichever
+     * processor becomes free first.
+     */
+    private long estimateExecutionTime(List<TestClassRunInfo> testClasses) {
+        long defaultExecutionTime = getAverageExecutionTime(testClasses);
+        PriorityQueue<Long> processors = new PriorityQueue<Long>();
+        for (int i = 0; i < Math.min(maxProcessors, testClasses.size()); i++) {
+            processors.add(0L);
+        }
+        long total = 0;
+        for (TestClassRunInfo testClass : testClasses) {
+            long finish = processors.remove() + getExecutionTime(testClass, defaultExecutionTime);
+            processors.add(finish);
+            total = Math.max(total, finish);
+        }
+        return total;
+    }
+
+    private long getAverageExecutionTime(List<TestClassRunInfo> testClasses) {
+        long total = 0;
+        int count = 0;
+        for (TestClassRunInfo testClass : testClasses) {
+            Long executionTime = history.getExecutionTime(testClass.getTestClassName());
+            if (executionTime != null) {
+                total += executionTime;
+                count++;
+            }
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    private long getExecutionTime(TestClassRunInfo testClass, long defaultExecutionTime) {
+        Long executionTime = history.getExecutionTime(testClass.getTestClassName());
+        return executionTime == null ? defaultExecutionTime : executionTime;
+    }
+
+    /**
+     * Records the execution time and outcome of each test class in the history.
+     */
+    private class HistoryRecordingTestResultProcessor implements TestResultProcessor {
+        private final TestResultProcessor resultProcessor;
+        private final Map<Object, Object> parents = new HashMap<Object, Object>();
+        private final Map<Object, TestClassExecution> testClassExecutions = new HashMap<Object, TestClassExecution>();
+
+        private HistoryRecordingTestResultProcessor(TestResultProcessor resultProcessor) {
+            this.resultProcessor = resultProcessor;
+        }
+
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            if (event.getParentId() != null) {
+                parents.put(test.getId(), event.getParentId());
+            }
+            if (test.isComposite() && test.getClassName() != null) {
+                testClassExecutions.put(test.getId(), new TestClassExecution(test.getClassName(), event.getStartTime()));
+            }
+            resultProcessor.started(test, event);
+        }
+
+        public void completed(Object testId, TestCompleteEvent event) {
+            if (event.getResultType() == TestResult.ResultType.FAILURE) {
+                testFailed(testId);
+            }
+            parents.remove(testId);
+            TestClassExecution execution = testClassExecutions.remove(testId);
+            if (execution != null) {
+                history.testClassExecuted(execution.className, event.getEndTime() - execution.startTime, execution.failed);
+            }
+            resultProcessor.completed(testId, event);
+        }
+
+        public void output(Object testId, TestOutputEvent event) {
+            resultProcessor.output(testId, event);
+        }
+
+        public void failure(Object testId, Throwable result) {
+            testFailed(testId);
+            resultProcessor.failure(testId, result);
+        }
+
+        private void testFailed(Object testId) {
+            for (Object id = testId; id != null; id = parents.get(id)) {
+                TestClassExecution execution = testClassExecutions.get(id);
+                if (execution != null) {
+                    execution.failed = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static class TestClassExecution {
+        private final String className;
+        private final long startTime;
+        private boolean failed;
+
+        private TestClassExecution(String className, long startTime) {
+            this.className = className;
+            this.startTime = startTime;
+        }
+    }
+}
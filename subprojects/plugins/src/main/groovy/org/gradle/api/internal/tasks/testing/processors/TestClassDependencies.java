@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The classes used by each test class, as of the most recent execution of that class. Stored as one file per test
+ * class, so that the classes used by a test class can be recorded by the worker process which executes it.
+ */
+public class TestClassDependencies {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestClassDependencies.class);
+    private final File dir;
+
+    public TestClassDependencies(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the names of the classes used by the given test class, or null if they have not been recorded.
+     */
+    public Set<String> get(String testClassName) {
+        File file = getFile(testClassName);
+        if (!file.isFile()) {
+            return null;
+        }
+        Set<String> classNames = new HashSet<String>();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    classNames.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug(String.format("Could not read dependencies of test class %s from %s. Ignoring.", testClassName, file), e);
+            return null;
+        }
+        return classNames;
+    }
+
+    public void put(String testClassName, Collection<String> classNames) {
+        File file = getFile(testClassName);
+        try {
+            dir.mkdirs();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            try {
+                for (String className : classNames) {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write dependencies of test class %s to %s.", testClassName, file), e);
+        }
+    }
+
+    private File getFile(String testClassName) {
+        return new File(dir, testClassName + ".classes");
+    }
+}
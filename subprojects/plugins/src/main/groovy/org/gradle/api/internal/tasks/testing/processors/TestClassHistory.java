@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The execution time and outcome of each test class, as of the most recent execution of that class. Persisted to a
+ * properties file between runs.
+ */
+public class TestClassHistory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestClassHistory.class);
+    private static final String FAILED = ",failed";
+    private final File file;
+    private final Map<String, Execution> executions = new HashMap<String, Execution>();
+
+    public TestClassHistory(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the history from the backing file, if it exists. Entries which cannot be parsed are discarded.
+     */
+    public void load() {
+        executions.clear();
+        if (!file.isFile()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug(String.format("Could not read test class history from %s. Ignoring.", file), e);
+            return;
+        }
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            String className = entry.getKey().toString();
+            String value = entry.getValue().toString();
+            boolean failed = value.endsWith(FAILED);
+            if (failed) {
+                value = value.substring(0, value.length() - FAILED.length());
+            }
+            try {
+                executions.put(className, new Execution(Long.parseLong(value), failed));
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Discarding invalid history entry for test class {}.", className);
+            }
+        }
+    }
+
+    public void save() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Execution> entry : executions.entrySet()) {
+            Execution execution = entry.getValue();
+            properties.setProperty(entry.getKey(), execution.failed ? execution.executionTime + FAILED : String.valueOf(execution.executionTime));
+        }
+        try {
+            file.getParentFile().mkdirs();
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                properties.store(outputStream, null);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write test class history to %s.", file), e);
+        }
+    }
+
+    public boolean isEmpty() {
+        return executions.isEmpty();
+    }
+
+    /**
+     * Returns the execution time in milliseconds of the most recent execution of the given test class, or null if the
+     * class has not been executed.
+     */
+    public Long getExecutionTime(String className) {
+        Execution execution = executions.get(className);
+        return execution == null ? null : execution.executionTime;
+    }
+
+    /**
+     * Returns true if the most recent execution of the given test class failed.
+     */
+    public boolean isFailed(String className) {
+        Execution execution = executions.get(className);
+        return execution != null && execution.failed;
+    }
+
+    public void testClassExecuted(String className, long executionTime, boolean failed) {
+        executions.put(className, new Execution(executionTime, failed));
+    }
+
+    private static class Execution {
+        private final long executionTime;
+        private final boolean failed;
+
+        private Execution(long executionTime, boolean failed) {
+            this.executionTime = executionTime;
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link TestResultProcessor} which limits the amount of output forwarded for each test. Once a test has written
+ * more than the limit, the remainder of its output is replaced with a truncation marker. Output written by a test
+ * class outside its test methods is limited separately from the output of its test methods.
+ */
+public class TruncateTestOutputTestResultProcessor implements TestResultProcessor {
+    private final TestResultProcessor processor;
+    private final long maxOutputPerTest;
+    private final Map<Object, Long> outputWritten = new HashMap<Object, Long>();
+
+    /**
+     * @param maxOutputPerTest The maximum number of characters of output to forward for each test.
+     */
+    public TruncateTestOutputTestResultProcessor(TestResultProcessor processor, long maxOutputPerTest) {
+        this.processor = processor;
+        this.maxOutputPerTest = maxOutputPerTest;
+    }
+
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        synchronized (outputWritten) {
+            outputWritten.put(test.getId(), 0L);
+        }
+        processor.started(test, event);
+    }
+
+    public void completed(Object testId, TestCompleteEvent event) {
+        synchronized (outputWritten) {
+            outputWritten.remove(testId);
+        }
+        processor.completed(testId, event);
+    }
+
+    public void failure(Object testId, Throwable result) {
+        processor.failure(testId, result);
+    }
+
+    public void output(Object testId, TestOutputEvent event) {
+        String message = event.getMessage();
+        long written;
+        synchronized (outputWritten) {
+            Long previous = outputWritten.get(testId);
+            written = previous == null ? 0 : previous;
+            outputWritten.put(testId, written + message.length());
+        }
+        if (written > maxOutputPerTest) {
+            return;
+        }
+        if (written + message.length() <= maxOutputPerTest) {
+            processor.output(testId, event);
+            return;
+        }
+        String retained = message.substring(0, (int) (maxOutputPerTest - written));
+        processor.output(testId, new DefaultTestOutputEvent(event.getDestination(), String.format(
+                "%s%n[Output truncated: more than %d characters of output were written.]%n", retained, maxOutputPerTest)));
+    }
+}
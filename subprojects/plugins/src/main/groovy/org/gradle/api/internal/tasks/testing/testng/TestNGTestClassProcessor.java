@@ -32,6 +32,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Collects the test classes and executes them using TestNG when stopped. When more than one thread is requested, TestNG
+ * executes the test classes in parallel using that many threads. The output redirector must then route the output of
+ * each thread separately.
+ */
 public class TestNGTestClassProcessor implements TestClassProcessor {
     private final List<Class<?>> testClasses = new ArrayList<Class<?>>();
     private final File testReportDir;
@@ -39,15 +44,21 @@ public class TestNGTestClassProcessor implements TestClassProcessor {
     private final List<File> suiteFiles;
     private final IdGenerator<?> idGenerator;
     private final StandardOutputRedirector outputRedirector;
+    private final int maxThreads;
     private TestNGTestResultProcessorAdapter testResultProcessor;
     private ClassLoader applicationClassLoader;
 
     public TestNGTestClassProcessor(File testReportDir, TestNGOptions options, List<File> suiteFiles, IdGenerator<?> idGenerator, StandardOutputRedirector outputRedirector) {
+        this(testReportDir, options, suiteFiles, idGenerator, outputRedirector, 1);
+    }
+
+    public TestNGTestClassProcessor(File testReportDir, TestNGOptions options, List<File> suiteFiles, IdGenerator<?> idGenerator, StandardOutputRedirector outputRedirector, int maxThreads) {
         this.testReportDir = testReportDir;
         this.options = options;
         this.suiteFiles = suiteFiles;
         this.idGenerator = idGenerator;
         this.outputRedirector = outputRedirector;
+        this.maxThreads = maxThreads;
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
@@ -77,6 +88,10 @@ public class TestNGTestClassProcessor implements TestClassProcessor {
         testNg.setVerbose(0);
         testNg.setGroups(GUtil.join(options.getIncludeGroups(), ","));
         testNg.setExcludedGroups(GUtil.join(options.getExcludeGroups(), ","));
+        if (maxThreads > 1) {
+            testNg.setParallel("classes");
+            testNg.setThreadCount(maxThreads);
+        }
         for (String listenerClass : options.getListeners()) {
             try {
                 testNg.addListener(applicationClassLoader.loadClass(listenerClass).newInstance());
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.Stoppable;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+import org.gradle.util.UncheckedException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects test events into batches, which are forwarded to a {@link RemoteTestResultProcessor}. A batch is forwarded
+ * when it reaches the maximum size, when its first event has waited for the maximum delay, and when {@link #flush()}
+ * is called, for example once a test class has been executed.
+ */
+public class BatchingTestResultProcessor implements TestResultProcessor, Stoppable {
+    private final RemoteTestResultProcessor target;
+    private final int maxBatchSize;
+    private final long maxDelay;
+    private final TestEventEncoder encoder = new TestEventEncoder();
+    private final Lock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+    private final StoppableExecutor executor;
+    private boolean stopped;
+
+    /**
+     * @param maxBatchSize The size in bytes at which a batch is forwarded.
+     * @param maxDelay The maximum time in milliseconds an event is held before it is forwarded.
+     */
+    public BatchingTestResultProcessor(RemoteTestResultProcessor target, ExecutorFactory executorFactory, int maxBatchSize, long maxDelay) {
+        this.target = target;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        executor = executorFactory.create("Flush test events");
+        executor.execute(new Runnable() {
+            public void run() {
+                flushPeriodically();
+            }
+        });
+    }
+
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        lock.lock();
+        try {
+            encoder.started(test, event);
+            eventAdded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void completed(Object testId, TestCompleteEvent event) {
+        lock.lock();
+        try {
+            encoder.completed(testId, event);
+            eventAdded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void output(Object testId, TestOutputEvent event) {
+        lock.lock();
+        try {
+            encoder.output(testId, event);
+            eventAdded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void failure(Object testId, Throwable result) {
+        lock.lock();
+        try {
+            encoder.failure(testId, result);
+            eventAdded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forwards any pending events.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            doFlush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forwards any pending events, and stops forwarding events periodically.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            doFlush();
+            stopped = true;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        executor.stop();
+    }
+
+    private void eventAdded() {
+        if (encoder.getSize() >= maxBatchSize) {
+            doFlush();
+        } else if (encoder.getEventCount() == 1) {
+            condition.signalAll();
+        }
+    }
+
+    private void doFlush() {
+        if (encoder.getEventCount() > 0) {
+            target.process(encoder.takeBatch());
+        }
+    }
+
+    private void flushPeriodically() {
+        lock.lock();
+        try {
+            while (!stopped) {
+                if (encoder.getEventCount() == 0) {
+                    condition.await();
+                } else {
+                    condition.await(maxDelay, TimeUnit.MILLISECONDS);
+                    doFlush();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.asUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010 the original author or authors.
+ * Copyright 2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -13,20 +13,26 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.Action;
 import org.gradle.api.internal.Factory;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.process.ExecResult;
 import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.ExecHandle;
+import org.gradle.process.internal.ExecHandleListener;
 import org.gradle.process.internal.WorkerProcess;
 import org.gradle.process.internal.WorkerProcessBuilder;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 public class ForkingTestClassProcessor implements TestClassProcessor {
     private final Factory<WorkerProcessBuilder> workerFactory;
@@ -34,16 +40,25 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final JavaForkOptions options;
     private final Iterable<File> classPath;
     private final Action<WorkerProcessBuilder> buildConfigAction;
+    private final TestClassProcessedListener listener;
+    private final Object lock = new Object();
+    private final List<TestClassRunInfo> inFlight = new ArrayList<TestClassRunInfo>();
+    private boolean workerFinished;
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
     private TestResultProcessor resultProcessor;
 
-    public ForkingTestClassProcessor(Factory<WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction) {
+    /**
+     * @param listener Notified as the worker process finishes with each test class given to this processor. Every
+     * test class is reported exactly once, including those which were lost because the worker process exited.
+     */
+    public ForkingTestClassProcessor(Factory<WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, TestClassProcessedListener listener) {
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
         this.options = options;
         this.classPath = classPath;
         this.buildConfigAction = buildConfigAction;
+        this.listener = listener;
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
@@ -51,30 +66,94 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     }
 
     public void processTestClass(TestClassRunInfo testClass) {
-        if (remoteProcessor == null) {
-            WorkerProcessBuilder builder = workerFactory.create();
-            builder.applicationClasspath(classPath);
-            builder.setLoadApplicationInSystemClassLoader(true);
-            builder.worker(new TestWorker(processorFactory));
-            options.copyTo(builder.getJavaCommand());
-            buildConfigAction.execute(builder);
-            
-            workerProcess = builder.build();
-            workerProcess.start();
-
-            workerProcess.getConnection().addIncoming(TestResultProcessor.class, resultProcessor);
-            remoteProcessor = workerProcess.getConnection().addOutgoing(RemoteTestClassProcessor.class);
-
-            remoteProcessor.startProcessing();
+        try {
+            if (remoteProcessor == null) {
+                startWorker();
+            }
+            synchronized (lock) {
+                if (!workerFinished) {
+                    remoteProcessor.processTestClass(testClass);
+                    inFlight.add(testClass);
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            listener.testClassProcessed(testClass);
+            throw e;
         }
 
-        remoteProcessor.processTestClass(testClass);
+        // The worker has gone away, so the test class will never be executed
+        listener.testClassProcessed(testClass);
+    }
+
+    private void startWorker() {
+        WorkerProcessBuilder builder = workerFactory.create();
+        builder.applicationClasspath(classPath);
+        builder.setLoadApplicationInSystemClassLoader(true);
+        builder.worker(new TestWorker(processorFactory));
+        options.copyTo(builder.getJavaCommand());
+        builder.getJavaCommand().listener(new WorkerFinishedListener());
+        buildConfigAction.execute(builder);
+
+        workerProcess = builder.build();
+        workerProcess.start();
+
+        workerProcess.getConnection().addIncoming(RemoteTestResultProcessor.class, new TestEventDecoder(resultProcessor));
+        workerProcess.getConnection().addIncoming(TestClassProcessedListener.class, new WorkerProgressListener());
+        remoteProcessor = workerProcess.getConnection().addOutgoing(RemoteTestClassProcessor.class);
+
+        remoteProcessor.startProcessing();
     }
 
     public void stop() {
         if (remoteProcessor != null) {
-            remoteProcessor.stop();
-            workerProcess.waitForStop();
+            try {
+                remoteProcessor.stop();
+                workerProcess.waitForStop();
+            } finally {
+                releaseInFlightTestClasses();
+            }
+        }
+    }
+
+    private void releaseInFlightTestClasses() {
+        List<TestClassRunInfo> released;
+        synchronized (lock) {
+            workerFinished = true;
+            released = new ArrayList<TestClassRunInfo>(inFlight);
+            inFlight.clear();
+        }
+        for (TestClassRunInfo testClass : released) {
+            listener.testClassProcessed(testClass);
+        }
+    }
+
+    private class WorkerProgressListener implements TestClassProcessedListener {
+        public void testClassProcessed(TestClassRunInfo testClass) {
+            // The worker sends back a copy of the test class, so match on name
+            TestClassRunInfo processed = null;
+            synchronized (lock) {
+                for (Iterator<TestClassRunInfo> iterator = inFlight.iterator(); iterator.hasNext();) {
+                    TestClassRunInfo candidate = iterator.next();
+                    if (candidate.getTestClassName().equals(testClass.getTestClassName())) {
+                        processed = candidate;
+                        iterator.remove();
+                        break;
+                    }
+                }
+            }
+            if (processed != null) {
+                listener.testClassProcessed(processed);
+            }
+        }
+    }
+
+    private class WorkerFinishedListener implements ExecHandleListener {
+        public void executionStarted(ExecHandle execHandle) {
+        }
+
+        public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+            releaseInFlightTestClasses();
         }
     }
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A sequence of test events in the compact encoding written by {@link TestEventEncoder}. Objects which have no compact
+ * encoding, such as failures and unknown test ids, are carried alongside the encoded events and referred to by index.
+ */
+public class TestEventBatch implements Serializable {
+    private final byte[] events;
+    private final List<Object> objects;
+
+    public TestEventBatch(byte[] events, List<Object> objects) {
+        this.events = events;
+        this.objects = objects;
+    }
+
+    public byte[] getEvents() {
+        return events;
+    }
+
+    public List<Object> getObjects() {
+        return objects;
+    }
+}
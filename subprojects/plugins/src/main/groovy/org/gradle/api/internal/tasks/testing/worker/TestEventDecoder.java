@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.util.UncheckedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.gradle.api.internal.tasks.testing.worker.TestEventEncoder.*;
+
+/**
+ * Decodes the batches of test events written by a {@link TestEventEncoder}, and forwards the events to a {@link
+ * TestResultProcessor}. Batches must be received in the order they were taken from the encoder.
+ */
+public class TestEventDecoder implements RemoteTestResultProcessor {
+    private final TestResultProcessor processor;
+    private final Map<Integer, Object> ids = new HashMap<Integer, Object>();
+    private final List<String> classNames = new ArrayList<String>();
+    private int nextId;
+
+    public TestEventDecoder(TestResultProcessor processor) {
+        this.processor = processor;
+    }
+
+    public void process(TestEventBatch batch) {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(batch.getEvents()));
+        List<Object> objects = batch.getObjects();
+        try {
+            while (input.available() > 0) {
+                byte type = input.readByte();
+                switch (type) {
+                    case STARTED:
+                        TestDescriptorInternal test = readDescriptor(input, objects);
+                        long startTime = input.readLong();
+                        Object parentId = input.readBoolean() ? readId(input, objects) : null;
+                        processor.started(test, new TestStartEvent(startTime, parentId));
+                        break;
+                    case COMPLETED:
+                        int handle = input.readInt();
+                        Object testId = handle == NEW ? readNewId(input, objects) : ids.get(handle);
+                        long endTime = input.readLong();
+                        byte resultType = input.readByte();
+                        ids.remove(handle == NEW ? nextId - 1 : handle);
+                        processor.completed(testId, new TestCompleteEvent(endTime, resultType < 0 ? null : TestResult.ResultType.values()[resultType]));
+                        break;
+                    case OUTPUT:
+                        testId = readId(input, objects);
+                        TestOutputEvent.Destination destination = TestOutputEvent.Destination.values()[input.readByte()];
+                        processor.output(testId, new DefaultTestOutputEvent(destination, readString(input)));
+                        break;
+                    case FAILURE:
+                        testId = readId(input, objects);
+                        processor.failure(testId, (Throwable) objects.get(input.readInt()));
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unexpected test event type %s received.", type));
+                }
+            }
+        } catch (IOException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+    }
+
+    private TestDescriptorInternal readDescriptor(DataInputStream input, List<Object> objects) throws IOException {
+        byte type = input.readByte();
+        Object id = readId(input, objects);
+        switch (type) {
+            case TEST_DESCRIPTOR:
+                return new DefaultTestDescriptor(id, readClassName(input), readString(input));
+            case TEST_METHOD_DESCRIPTOR:
+                return new DefaultTestMethodDescriptor(id, readClassName(input), readString(input));
+            case TEST_CLASS_DESCRIPTOR:
+                return new DefaultTestClassDescriptor(id, readClassName(input));
+            case TEST_SUITE_DESCRIPTOR:
+                return new DefaultTestSuiteDescriptor(id, readString(input));
+            case OTHER_DESCRIPTOR:
+                return (TestDescriptorInternal) objects.get(input.readInt());
+            default:
+                throw new IllegalArgumentException(String.format("Unexpected test descriptor type %s received.", type));
+        }
+    }
+
+    private Object readId(DataInputStream input, List<Object> objects) throws IOException {
+        int handle = input.readInt();
+        if (handle == NEW) {
+            return readNewId(input, objects);
+        }
+        return ids.get(handle);
+    }
+
+    private Object readNewId(DataInputStream input, List<Object> objects) throws IOException {
+        Object id = objects.get(input.readInt());
+        ids.put(nextId++, id);
+        return id;
+    }
+
+    private String readClassName(DataInputStream input) throws IOException {
+        int index = input.readInt();
+        if (index != NEW) {
+            return classNames.get(index);
+        }
+        String className = readString(input);
+        classNames.add(className);
+        return className;
+    }
+
+    private String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
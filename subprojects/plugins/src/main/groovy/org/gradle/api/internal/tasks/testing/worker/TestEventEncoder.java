@@ -0,0 +1,193 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.util.UncheckedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes test events into {@link TestEventBatch} instances, to be decoded by a {@link TestEventDecoder}. The default
+ * descriptor types and the start, complete and output events are written as primitive values, rather than serialized
+ * objects. Each test id is sent once, when first used, and referred to by a small handle until the test completes.
+ * Test class names are sent once and referred to by index after that. Batches must be decoded in the order they
+ * were taken.
+ *
+ * <p>Not thread-safe.</p>
+ */
+public class TestEventEncoder implements TestResultProcessor {
+    static final byte STARTED = 1;
+    static final byte COMPLETED = 2;
+    static final byte OUTPUT = 3;
+    static final byte FAILURE = 4;
+    static final byte TEST_DESCRIPTOR = 1;
+    static final byte TEST_METHOD_DESCRIPTOR = 2;
+    static final byte TEST_CLASS_DESCRIPTOR = 3;
+    static final byte TEST_SUITE_DESCRIPTOR = 4;
+    static final byte OTHER_DESCRIPTOR = 5;
+    static final int NEW = -1;
+    private final Map<Object, Integer> ids = new HashMap<Object, Integer>();
+    private final Map<String, Integer> classNames = new HashMap<String, Integer>();
+    private int nextId;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private DataOutputStream output = new DataOutputStream(buffer);
+    private List<Object> objects = new ArrayList<Object>();
+    private int eventCount;
+
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        try {
+            output.writeByte(STARTED);
+            writeDescriptor(test);
+            output.writeLong(event.getStartTime());
+            output.writeBoolean(event.getParentId() != null);
+            if (event.getParentId() != null) {
+                writeId(event.getParentId());
+            }
+        } catch (IOException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+        eventCount++;
+    }
+
+    public void completed(Object testId, TestCompleteEvent event) {
+        try {
+            output.writeByte(COMPLETED);
+            writeId(testId);
+            output.writeLong(event.getEndTime());
+            output.writeByte(event.getResultType() == null ? -1 : event.getResultType().ordinal());
+        } catch (IOException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+        ids.remove(testId);
+        eventCount++;
+    }
+
+    public void output(Object testId, TestOutputEvent event) {
+        try {
+            output.writeByte(OUTPUT);
+            writeId(testId);
+            output.writeByte(event.getDestination().ordinal());
+            writeString(event.getMessage());
+        } catch (IOException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+        eventCount++;
+    }
+
+    public void failure(Object testId, Throwable result) {
+        try {
+            output.writeByte(FAILURE);
+            writeId(testId);
+            writeObject(result);
+        } catch (IOException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+        eventCount++;
+    }
+
+    /**
+     * Returns the number of events written since the last batch was taken.
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the approximate size in bytes of the events written since the last batch was taken.
+     */
+    public int getSize() {
+        return output.size();
+    }
+
+    /**
+     * Returns the events written since the last batch was taken, and starts a new batch.
+     */
+    public TestEventBatch takeBatch() {
+        TestEventBatch batch = new TestEventBatch(buffer.toByteArray(), objects);
+        buffer = new ByteArrayOutputStream();
+        output = new DataOutputStream(buffer);
+        objects = new ArrayList<Object>();
+        eventCount = 0;
+        return batch;
+    }
+
+    private void writeDescriptor(TestDescriptorInternal test) throws IOException {
+        Class<?> type = test.getClass();
+        if (type == DefaultTestDescriptor.class || type == DefaultTestMethodDescriptor.class) {
+            output.writeByte(type == DefaultTestDescriptor.class ? TEST_DESCRIPTOR : TEST_METHOD_DESCRIPTOR);
+            writeId(test.getId());
+            writeClassName(test.getClassName());
+            writeString(test.getName());
+        } else if (type == DefaultTestClassDescriptor.class) {
+            output.writeByte(TEST_CLASS_DESCRIPTOR);
+            writeId(test.getId());
+            writeClassName(test.getClassName());
+        } else if (type == DefaultTestSuiteDescriptor.class) {
+            output.writeByte(TEST_SUITE_DESCRIPTOR);
+            writeId(test.getId());
+            writeString(test.getName());
+        } else {
+            output.writeByte(OTHER_DESCRIPTOR);
+            writeId(test.getId());
+            writeObject(test);
+        }
+    }
+
+    private void writeId(Object id) throws IOException {
+        Integer handle = ids.get(id);
+        if (handle != null) {
+            output.writeInt(handle);
+            return;
+        }
+        ids.put(id, nextId++);
+        output.writeInt(NEW);
+        writeObject(id);
+    }
+
+    private void writeClassName(String className) throws IOException {
+        Integer index = classNames.get(className);
+        if (index != null) {
+            output.writeInt(index);
+            return;
+        }
+        classNames.put(className, classNames.size());
+        output.writeInt(NEW);
+        writeString(className);
+    }
+
+    private void writeObject(Object object) throws IOException {
+        output.writeInt(objects.size());
+        objects.add(object);
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
@@ -18,11 +18,13 @@ package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.Action;
 import org.gradle.api.internal.project.DefaultServiceRegistry;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
-import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.listener.ContextClassLoaderProxy;
+import org.gradle.messaging.concurrent.DefaultExecutorFactory;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.messaging.remote.ObjectConnection;
 import org.gradle.process.internal.WorkerProcessContext;
 import org.gradle.util.*;
@@ -35,10 +37,14 @@ import java.util.concurrent.CountDownLatch;
 public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClassProcessor, Serializable {
     private static final Logger LOGGER = LoggerFactory.getLogger(TestWorker.class);
     public static final String WORKER_ID_SYS_PROPERTY = "org.gradle.test.worker";
+    private static final int MAX_BATCH_SIZE = 64 * 1024;
+    private static final long MAX_BATCH_DELAY = 100;
     private final WorkerTestClassProcessorFactory factory;
     private CountDownLatch completed;
     private TestClassProcessor processor;
-    private TestResultProcessor resultProcessor;
+    private DefaultExecutorFactory executorFactory;
+    private BatchingTestResultProcessor resultProcessor;
+    private TestClassProcessedListener progressListener;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
         this.factory = factory;
@@ -56,8 +62,11 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         IdGenerator<Object> idGenerator = new CompositeIdGenerator(workerProcessContext.getWorkerId(),
                 new LongIdGenerator());
 
+        executorFactory = new DefaultExecutorFactory();
+
         DefaultServiceRegistry testServices = new DefaultServiceRegistry();
         testServices.add(IdGenerator.class, idGenerator);
+        testServices.add(ExecutorFactory.class, executorFactory);
         TestClassProcessor targetProcessor = factory.create(testServices);
 
         targetProcessor = new WorkerTestClassProcessor(targetProcessor, idGenerator.generateId(),
@@ -66,7 +75,9 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
                 TestClassProcessor.class, targetProcessor, workerProcessContext.getApplicationClassLoader());
         processor = proxy.getSource();
 
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        this.resultProcessor = new BatchingTestResultProcessor(serverConnection.addOutgoing(RemoteTestResultProcessor.class),
+                executorFactory, MAX_BATCH_SIZE, MAX_BATCH_DELAY);
+        this.progressListener = serverConnection.addOutgoing(TestClassProcessedListener.class);
 
         serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
 
@@ -83,14 +94,24 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
     }
 
     public void processTestClass(TestClassRunInfo testClass) {
-        processor.processTestClass(testClass);
+        try {
+            processor.processTestClass(testClass);
+        } finally {
+            resultProcessor.flush();
+            progressListener.testClassProcessed(testClass);
+        }
     }
 
     public void stop() {
         try {
             processor.stop();
         } finally {
-            completed.countDown();
+            try {
+                resultProcessor.stop();
+                executorFactory.stop();
+            } finally {
+                completed.countDown();
+            }
         }
     }
 }
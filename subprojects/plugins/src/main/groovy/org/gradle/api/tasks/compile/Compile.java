@@ -18,13 +18,14 @@ package org.gradle.api.tasks.compile;
 
 import org.gradle.api.AntBuilder;
 import org.gradle.api.internal.Factory;
-import org.gradle.api.internal.tasks.compile.AntJavaCompiler;
+import org.gradle.api.internal.tasks.compile.DefaultJavaCompiler;
 import org.gradle.api.internal.tasks.compile.IncrementalJavaCompiler;
 import org.gradle.api.internal.tasks.compile.JavaCompiler;
 import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.WorkResult;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
 
 import java.io.File;
 
@@ -41,7 +42,14 @@ public class Compile extends AbstractCompile {
 
     public Compile() {
         Factory<AntBuilder> antBuilderFactory = getServices().getFactory(AntBuilder.class);
-        javaCompiler = new IncrementalJavaCompiler(new AntJavaCompiler(antBuilderFactory), antBuilderFactory, getOutputs());
+        CrossBuildInMemoryCaches caches = getServices().get(CrossBuildInMemoryCaches.class);
+        Factory<File> stateDirFactory = new Factory<File>() {
+            public File create() {
+                return getTemporaryDir();
+            }
+        };
+        javaCompiler = new IncrementalJavaCompiler(new DefaultJavaCompiler(antBuilderFactory, caches), antBuilderFactory, getOutputs(),
+                stateDirFactory, caches);
     }
 
     @TaskAction
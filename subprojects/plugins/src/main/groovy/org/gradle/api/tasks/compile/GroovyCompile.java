@@ -19,13 +19,16 @@ package org.gradle.api.tasks.compile;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.ClassPathRegistry;
+import org.gradle.api.internal.Factory;
 import org.gradle.api.internal.project.IsolatedAntBuilder;
-import org.gradle.api.internal.tasks.compile.AntGroovyCompiler;
+import org.gradle.api.internal.tasks.compile.DefaultGroovyCompiler;
 import org.gradle.api.internal.tasks.compile.GroovyJavaJointCompiler;
 import org.gradle.api.internal.tasks.compile.IncrementalGroovyCompiler;
 import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.WorkResult;
+import org.gradle.cache.internal.CrossBuildInMemoryCaches;
+import org.gradle.util.ClassLoaderFactory;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -45,7 +48,15 @@ public class GroovyCompile extends AbstractCompile {
     public GroovyCompile() {
         IsolatedAntBuilder antBuilder = getServices().get(IsolatedAntBuilder.class);
         ClassPathRegistry classPathRegistry = getServices().get(ClassPathRegistry.class);
-        compiler = new IncrementalGroovyCompiler(new AntGroovyCompiler(antBuilder, classPathRegistry), getOutputs());
+        ClassLoaderFactory classLoaderFactory = getServices().get(ClassLoaderFactory.class);
+        CrossBuildInMemoryCaches caches = getServices().get(CrossBuildInMemoryCaches.class);
+        Factory<File> tempDirFactory = new Factory<File>() {
+            public File create() {
+                return getTemporaryDir();
+            }
+        };
+        compiler = new IncrementalGroovyCompiler(new DefaultGroovyCompiler(antBuilder, classPathRegistry, classLoaderFactory,
+                tempDirFactory, caches), getOutputs());
     }
 
     protected void compile() {
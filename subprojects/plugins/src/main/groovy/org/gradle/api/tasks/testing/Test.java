@@ -42,6 +42,7 @@ import org.gradle.listener.ListenerBroadcast;
 import org.gradle.listener.ListenerManager;
 import org.gradle.logging.ProgressLoggerFactory;
 import org.gradle.messaging.actor.ActorFactory;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.process.ProcessForkOptions;
 import org.gradle.process.internal.DefaultJavaForkOptions;
@@ -103,6 +104,8 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
     private boolean scanForTestClasses = true;
     private long forkEvery;
     private int maxParallelForks = 1;
+    private int maxThreadsPerFork = 1;
+    private Long maxOutputPerTest;
     private ListenerBroadcast<TestListener> testListenerBroadcaster;
     private final ListenerBroadcast<TestOutputListener> testOutputListenerBroadcaster;
     private final TestLogging testLogging = new DefaultTestLogging();
@@ -112,7 +115,7 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
                 TestListener.class);
         testOutputListenerBroadcaster = getServices().get(ListenerManager.class).createAnonymousBroadcaster(TestOutputListener.class);
         this.testExecuter = new DefaultTestExecuter(getServices().getFactory(WorkerProcessBuilder.class), getServices().get(
-                ActorFactory.class));
+                ActorFactory.class), getServices().get(ExecutorFactory.class));
         options = new DefaultJavaForkOptions(getServices().get(FileResolver.class));
         options.setEnableAssertions(true);
     }
@@ -742,7 +745,7 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
      * of type {@link org.gradle.api.tasks.testing.junit.JUnitOptions}.
      */
     public void useJUnit(Closure testFrameworkConfigure) {
-        useTestFramework(new JUnitTestFramework(this), testFrameworkConfigure);
+        useTestFramework(new JUnitTestFramework(this, getServices().get(ExecutorFactory.class)), testFrameworkConfigure);
     }
 
     /**
@@ -865,6 +868,55 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         this.maxParallelForks = maxParallelForks;
     }
 
+    /**
+     * Returns the maximum number of test classes to execute concurrently in each forked test process. The default
+     * value is 1 (test classes are executed one at a time).
+     *
+     * @return The maximum number of threads used to execute test classes in each forked test process.
+     */
+    public int getMaxThreadsPerFork() {
+        return maxThreadsPerFork;
+    }
+
+    /**
+     * Sets the maximum number of test classes to execute concurrently in each forked test process. This allows tests
+     * to be executed in parallel without starting additional test processes, but requires that the tests can safely
+     * be executed concurrently in the same JVM. The output of each test is still captured separately. Set to 1 to
+     * execute test classes one at a time.
+     *
+     * @param maxThreadsPerFork The maximum number of threads used to execute test classes in each forked test process.
+     */
+    public void setMaxThreadsPerFork(int maxThreadsPerFork) {
+        if (maxThreadsPerFork < 1) {
+            throw new IllegalArgumentException("Cannot set maxThreadsPerFork to a value less than 1.");
+        }
+        this.maxThreadsPerFork = maxThreadsPerFork;
+    }
+
+    /**
+     * Returns the maximum number of characters of output to keep for each test. Output beyond this limit is not
+     * included in the test results or logged, and is replaced with a truncation marker. The default value is null
+     * (output is not limited).
+     *
+     * @return The maximum number of characters of output to keep for each test. May be null.
+     */
+    @Input @Optional
+    public Long getMaxOutputPerTest() {
+        return maxOutputPerTest;
+    }
+
+    /**
+     * Sets the maximum number of characters of output to keep for each test. Set to null to keep all output.
+     *
+     * @param maxOutputPerTest The maximum number of characters of output to keep for each test. May be null.
+     */
+    public void setMaxOutputPerTest(Long maxOutputPerTest) {
+        if (maxOutputPerTest != null && maxOutputPerTest < 0) {
+            throw new IllegalArgumentException("Cannot set maxOutputPerTest to a value less than 0.");
+        }
+        this.maxOutputPerTest = maxOutputPerTest;
+    }
+
     /**
      * Returns the classes files to scan for test classes.
      *
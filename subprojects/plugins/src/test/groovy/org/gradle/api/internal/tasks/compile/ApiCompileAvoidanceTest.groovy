@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.api.internal.project.DefaultProject
+import org.gradle.util.HelperUtil
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+class ApiCompileAvoidanceTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    private final DefaultProject project = HelperUtil.createRootProject(tmpDir.file('project'))
+    private final TestFile srcDir = tmpDir.file('src')
+    private final TestFile destDir = tmpDir.createDir('classes')
+    private final TestFile classpathDir = tmpDir.createDir('lib')
+    private final TestFile stateFile = tmpDir.file('state/previousCompilation.properties')
+    private String fingerprint = 'api'
+    private final ClasspathApiFingerprinter fingerprinter = Mock()
+
+    def setup() {
+        _ * fingerprinter.fingerprint(_ as Iterable) >> { [(classpathDir.absolutePath): fingerprint] }
+        srcDir.file('A.java') << 'class A { }'
+        destDir.file('A.class') << 'class file'
+    }
+
+    def isNotUpToDateWhenThereIsNoPreviousCompilation() {
+        expect:
+        !isUpToDate()
+    }
+
+    def isUpToDateWhenNothingHasChangedOrOnlyTheImplementationOfTheClasspathHasChanged() {
+        compiled()
+
+        expect:
+        isUpToDate()
+        isUpToDate()
+    }
+
+    def isNotUpToDateWhenTheClasspathApiHasChanged() {
+        compiled()
+        fingerprint = 'changed'
+
+        expect:
+        !isUpToDate()
+    }
+
+    def isNotUpToDateWhenSourceFileHasChanged() {
+        compiled()
+        srcDir.file('A.java').text = 'class A { int a; }'
+
+        expect:
+        !isUpToDate()
+    }
+
+    def isNotUpToDateWhenCompileSettingsHaveChanged() {
+        compiled()
+
+        expect:
+        !avoidance().isUpToDate(project.fileTree(srcDir), destDir, [classpathDir], 'other')
+    }
+
+    def isNotUpToDateWhenClassFileHasBeenRemoved() {
+        compiled()
+        destDir.file('A.class').delete()
+
+        expect:
+        !isUpToDate()
+    }
+
+    def discardsPreviousCompilationWhenNotUpToDate() {
+        compiled()
+        fingerprint = 'changed'
+        isUpToDate()
+        fingerprint = 'api'
+
+        expect:
+        !isUpToDate()
+    }
+
+    private void compiled() {
+        ApiCompileAvoidance avoidance = avoidance()
+        assert !avoidance.isUpToDate(project.fileTree(srcDir), destDir, [classpathDir], 'key')
+        avoidance.compiled(destDir)
+    }
+
+    private boolean isUpToDate() {
+        return avoidance().isUpToDate(project.fileTree(srcDir), destDir, [classpathDir], 'key')
+    }
+
+    private ApiCompileAvoidance avoidance() {
+        return new ApiCompileAvoidance(stateFile, fingerprinter)
+    }
+}
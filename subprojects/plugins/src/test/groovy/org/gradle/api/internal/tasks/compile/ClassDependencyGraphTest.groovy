@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class ClassDependencyGraphTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    private final ClassDependencyGraph graph = new ClassDependencyGraph('key')
+
+    def setup() {
+        graph.addClass('a/A', 'a/A.java', ['a/B', 'java/lang/Object'], false)
+        graph.addClass('a/A$Inner', 'a/A.java', ['a/A'], false)
+        graph.addClass('a/B', 'a/B.java', ['a/C'], true)
+        graph.addClass('a/C', 'a/C.java', [], false)
+        graph.addClass('a/D', 'a/D.java', [], false)
+    }
+
+    def mapsBetweenSourceFilesAndClasses() {
+        expect:
+        graph.getClassesForSources(['a/A.java']) == ['a/A', 'a/A$Inner'] as Set
+        graph.getSourcesForClasses(['a/A$Inner', 'a/B']) == ['a/A.java', 'a/B.java'] as Set
+    }
+
+    def findsTransitiveDependents() {
+        expect:
+        graph.getDependents(['a/C']) == ['a/A', 'a/A$Inner', 'a/B'] as Set
+        graph.getDependents(['a/D']).isEmpty()
+    }
+
+    def removesClasses() {
+        when:
+        graph.removeClasses(['a/B'])
+
+        then:
+        graph.classes == ['a/A', 'a/A$Inner', 'a/C', 'a/D'] as Set
+        graph.getDependents(['a/C']).isEmpty()
+    }
+
+    def canSaveAndLoad() {
+        File file = tmpDir.file('graph.bin')
+        graph.sourceHashes = ['a/A.java': '123']
+
+        when:
+        graph.save(file)
+        def loaded = ClassDependencyGraph.load(file)
+
+        then:
+        loaded.compileKey == 'key'
+        loaded.classes == graph.classes
+        loaded.declaresConstants('a/B')
+        !loaded.declaresConstants('a/C')
+        loaded.sourceHashes == ['a/A.java': '123']
+        loaded.getDependents(['a/C']) == ['a/A', 'a/A$Inner', 'a/B'] as Set
+    }
+
+    def loadReturnsNullWhenFileDoesNotExist() {
+        expect:
+        ClassDependencyGraph.load(tmpDir.file('missing.bin')) == null
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.api.internal.project.DefaultProject
+import org.gradle.cache.internal.CrossBuildInMemoryCaches
+import org.gradle.util.HelperUtil
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+class ClasspathApiFingerprinterTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    private final DefaultProject project = HelperUtil.createRootProject(tmpDir.file('project'))
+    private final CrossBuildInMemoryCaches caches = new CrossBuildInMemoryCaches()
+    private final InProcessJavaCompiler compiler = new InProcessJavaCompiler(caches)
+    private final ClasspathApiFingerprinter fingerprinter = new ClasspathApiFingerprinter(caches)
+
+    def cleanup() {
+        caches.stop()
+    }
+
+    def fingerprintIsNotAffectedByChangesToMethodBodiesOrPrivateMembers() {
+        expect:
+        fingerprint('public class A { public int get() { return 1; } }') == fingerprint('public class A { private int value; public int get() { return value + 2; } }')
+        fingerprint('public class A { void run() { } }') == fingerprint('public class A { void run() { new Runnable() { public void run() { } }.run(); } }')
+    }
+
+    def fingerprintIsAffectedByChangesToTheApi() {
+        expect:
+        fingerprint('public class A { public int get() { return 1; } }') != fingerprint('public class A { public long get() { return 1; } }')
+        fingerprint('public class A { }') != fingerprint('public class A implements java.io.Serializable { }')
+        fingerprint('public class A { public static final int X = 1; }') != fingerprint('public class A { public static final int X = 2; }')
+        fingerprint('public class A { }') != fingerprint('@Deprecated public class A { }')
+        fingerprint('public class A { }') != fingerprint('class A { }')
+    }
+
+    def jarFingerprintIsNotAffectedByChangesToMethodBodies() {
+        expect:
+        fingerprintJar('public class A { public int get() { return 1; } }') == fingerprintJar('public class A { public int get() { return 2; } }')
+        fingerprintJar('public class A { public int get() { return 1; } }') != fingerprintJar('public class A { public int get(int a) { return 1; } }')
+    }
+
+    def fingerprintIncludesResources() {
+        TestFile dir = compile('public class A { }')
+        String original = fingerprinter.fingerprint(dir)
+
+        when:
+        dir.file('resource.txt') << 'content'
+
+        then:
+        fingerprinter.fingerprint(dir) != original
+    }
+
+    private String fingerprint(String source) {
+        return fingerprinter.fingerprint(compile(source))
+    }
+
+    private String fingerprintJar(String source) {
+        TestFile jar = tmpDir.file("jars/${UUID.randomUUID()}.jar")
+        compile(source).zipTo(jar)
+        return fingerprinter.fingerprint(jar)
+    }
+
+    private TestFile compile(String source) {
+        String name = UUID.randomUUID().toString()
+        TestFile srcDir = tmpDir.file("src/$name")
+        TestFile destDir = tmpDir.createDir("classes/$name")
+        srcDir.file('A.java') << source
+        compiler.source = project.fileTree(srcDir)
+        compiler.destinationDir = destDir
+        compiler.classpath = []
+        compiler.execute()
+        return destDir
+    }
+}
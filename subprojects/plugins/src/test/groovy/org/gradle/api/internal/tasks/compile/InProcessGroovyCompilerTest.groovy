@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.api.GradleException
+import org.gradle.api.internal.Factory
+import org.gradle.api.internal.project.DefaultProject
+import org.gradle.cache.internal.CrossBuildInMemoryCaches
+import org.gradle.util.ClasspathUtil
+import org.gradle.util.DefaultClassLoaderFactory
+import org.gradle.util.HelperUtil
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+class InProcessGroovyCompilerTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    private final DefaultProject project = HelperUtil.createRootProject(tmpDir.file('project'))
+    private final TestFile srcDir = tmpDir.file('src')
+    private final TestFile destDir = tmpDir.file('classes')
+    private final TestFile tempDir = tmpDir.file('tmp')
+    private final CrossBuildInMemoryCaches caches = new CrossBuildInMemoryCaches()
+    private final InProcessGroovyCompiler compiler = new InProcessGroovyCompiler(new DefaultClassLoaderFactory(), { tempDir } as Factory, caches)
+
+    def setup() {
+        destDir.createDir()
+        compiler.source = project.fileTree(srcDir)
+        compiler.destinationDir = destDir
+        compiler.classpath = []
+        compiler.groovyClasspath = [ClasspathUtil.getClasspathForClass(GroovyObject)]
+    }
+
+    def cleanup() {
+        caches.stop()
+    }
+
+    def compilesGroovySourceFiles() {
+        srcDir.file('org/gradle/Person.groovy') << 'package org.gradle; class Person { String name }'
+        srcDir.file('org/gradle/notes.txt') << 'not a source file'
+
+        when:
+        def result = compiler.execute()
+
+        then:
+        result.didWork
+        destDir.file('org/gradle/Person.class').isFile()
+    }
+
+    def compilesGroovyAndJavaSourceFilesJointly() {
+        srcDir.file('org/gradle/Person.groovy') << 'package org.gradle; class Person { Address address }'
+        srcDir.file('org/gradle/Address.java') << 'package org.gradle; public class Address { Person person; }'
+
+        when:
+        compiler.execute()
+
+        then:
+        destDir.file('org/gradle/Person.class').isFile()
+        destDir.file('org/gradle/Address.class').isFile()
+        !tempDir.file('groovy-java-stubs').exists()
+    }
+
+    def doesNoWorkWhenThereAreNoSourceFiles() {
+        srcDir.createDir()
+
+        expect:
+        !compiler.execute().didWork
+    }
+
+    def failsWhenSourceDoesNotCompile() {
+        srcDir.file('Broken.groovy') << 'class Broken { void m() { def } }'
+
+        when:
+        compiler.execute()
+
+        then:
+        thrown(GradleException)
+    }
+
+    def ignoresCompileFailureWhenFailOnErrorIsFalse() {
+        srcDir.file('Broken.groovy') << 'class Broken { void m() { def } }'
+        compiler.groovyCompileOptions.failOnError = false
+
+        when:
+        compiler.execute()
+
+        then:
+        !destDir.file('Broken.class').exists()
+    }
+
+    def cannotCompileWhenForkingJavaCompiler() {
+        expect:
+        InProcessGroovyCompiler.canCompile(compiler.groovyCompileOptions, compiler.compileOptions)
+
+        when:
+        compiler.compileOptions.fork = true
+
+        then:
+        !InProcessGroovyCompiler.canCompile(compiler.groovyCompileOptions, compiler.compileOptions)
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.api.GradleException
+import org.gradle.api.internal.project.DefaultProject
+import org.gradle.api.tasks.compile.CompileOptions
+import org.gradle.cache.internal.CrossBuildInMemoryCaches
+import org.gradle.util.HelperUtil
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+class InProcessJavaCompilerTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    private final DefaultProject project = HelperUtil.createRootProject(tmpDir.file('project'))
+    private final TestFile srcDir = tmpDir.file('src')
+    private final TestFile destDir = tmpDir.file('classes')
+    private final CrossBuildInMemoryCaches caches = new CrossBuildInMemoryCaches()
+    private final InProcessJavaCompiler compiler = new InProcessJavaCompiler(caches)
+
+    def setup() {
+        destDir.createDir()
+        compiler.source = project.fileTree(srcDir)
+        compiler.destinationDir = destDir
+        compiler.classpath = []
+    }
+
+    def cleanup() {
+        caches.stop()
+    }
+
+    def compilesSourceFiles() {
+        srcDir.file('org/gradle/Person.java') << 'package org.gradle; public class Person { Address address; }'
+        srcDir.file('org/gradle/Address.java') << 'package org.gradle; class Address { }'
+        srcDir.file('org/gradle/notes.txt') << 'not a source file'
+
+        when:
+        def result = compiler.execute()
+
+        then:
+        result.didWork
+        destDir.file('org/gradle/Person.class').isFile()
+        destDir.file('org/gradle/Address.class').isFile()
+    }
+
+    def doesNoWorkWhenThereAreNoSourceFiles() {
+        srcDir.createDir()
+
+        expect:
+        !compiler.execute().didWork
+    }
+
+    def compilesAgainstClasspath() {
+        TestFile libClassesDir = tmpDir.createDir('lib')
+        srcDir.file('Lib.java') << 'public class Lib { }'
+        compiler.destinationDir = libClassesDir
+        compiler.execute()
+
+        srcDir.file('Lib.java').delete()
+        srcDir.file('App.java') << 'public class App extends Lib { }'
+        compiler.destinationDir = destDir
+        compiler.classpath = [libClassesDir]
+
+        when:
+        compiler.execute()
+
+        then:
+        destDir.file('App.class').isFile()
+        !destDir.file('Lib.class').exists()
+    }
+
+    def failsWhenSourceDoesNotCompile() {
+        srcDir.file('Broken.java') << 'public class Broken extends Unknown { }'
+
+        when:
+        compiler.execute()
+
+        then:
+        GradleException e = thrown()
+        e.message == 'Compile failed; see the compiler error output for details.'
+    }
+
+    def doesNotFailWhenFailOnErrorIsFalse() {
+        srcDir.file('Broken.java') << 'public class Broken extends Unknown { }'
+        compiler.compileOptions.failOnError = false
+
+        when:
+        compiler.execute()
+
+        then:
+        notThrown(GradleException)
+    }
+
+    def appliesTargetCompatibility() {
+        srcDir.file('Person.java') << 'public class Person { }'
+        compiler.sourceCompatibility = '1.5'
+        compiler.targetCompatibility = '1.5'
+
+        when:
+        compiler.execute()
+
+        then:
+        classFileMajorVersion(destDir.file('Person.class')) == 49
+    }
+
+    def cannotCompileWhenOptionsRequireAnt() {
+        def options = new CompileOptions()
+
+        expect:
+        InProcessJavaCompiler.canCompile(options)
+
+        when:
+        options.fork = true
+
+        then:
+        !InProcessJavaCompiler.canCompile(options)
+
+        when:
+        options.fork = false
+        options.useDepend = true
+
+        then:
+        !InProcessJavaCompiler.canCompile(options)
+    }
+
+    def reusesFileManagerForCompilesWithSameClasspath() {
+        srcDir.file('Person.java') << 'public class Person { }'
+        def fileManagers = caches.getLruCache(InProcessJavaCompiler.name, 16)
+
+        when:
+        compiler.execute()
+        compiler.execute()
+
+        then:
+        fileManagers.size() == 1
+
+        when:
+        compiler.classpath = [tmpDir.createDir('lib')]
+        compiler.execute()
+
+        then:
+        fileManagers.size() == 2
+    }
+
+    private int classFileMajorVersion(File classFile) {
+        DataInputStream input = new DataInputStream(new FileInputStream(classFile))
+        try {
+            input.readInt()
+            input.readUnsignedShort()
+            return input.readUnsignedShort()
+        } finally {
+            input.close()
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.api.internal.project.DefaultProject
+import org.gradle.cache.internal.CrossBuildInMemoryCaches
+import org.gradle.util.HelperUtil
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+class SelectiveJavaCompilerTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    private final DefaultProject project = HelperUtil.createRootProject(tmpDir.file('project'))
+    private final TestFile srcDir = tmpDir.file('src')
+    private final TestFile destDir = tmpDir.file('classes')
+    private final StaleClassCleaner cleaner = Mock()
+    private final CrossBuildInMemoryCaches caches = new CrossBuildInMemoryCaches()
+    private final InProcessJavaCompiler target = new InProcessJavaCompiler(caches)
+    private final SelectiveJavaCompiler compiler = new SelectiveJavaCompiler(target, cleaner, tmpDir.createDir('state'))
+
+    def setup() {
+        destDir.createDir()
+        target.destinationDir = destDir
+        srcDir.file('org/gradle/Person.java') << 'package org.gradle; public class Person { Address address; }'
+        srcDir.file('org/gradle/Address.java') << 'package org.gradle; class Address { Street street; }'
+        srcDir.file('org/gradle/Street.java') << 'package org.gradle; class Street { }'
+        srcDir.file('org/gradle/Country.java') << 'package org.gradle; class Country { }'
+    }
+
+    def cleanup() {
+        caches.stop()
+    }
+
+    def compilesAllSourceFilesOnFirstExecution() {
+        when:
+        def result = execute()
+
+        then:
+        result.didWork
+        1 * cleaner.execute()
+        ['Person', 'Address', 'Street', 'Country'].each { assert destDir.file("org/gradle/${it}.class").isFile() }
+    }
+
+    def recompilesChangedSourceFileAndTheSourceFilesWhichDependOnIt() {
+        execute()
+        markClassFiles()
+        srcDir.file('org/gradle/Street.java').text = 'package org.gradle; class Street { String name; }'
+
+        when:
+        def result = execute()
+
+        then:
+        result.didWork
+        0 * cleaner.execute()
+        recompiled('Street')
+        recompiled('Address')
+        recompiled('Person')
+        !recompiled('Country')
+    }
+
+    def doesNoWorkWhenNothingHasChanged() {
+        execute()
+        markClassFiles()
+
+        when:
+        def result = execute()
+
+        then:
+        !result.didWork
+        0 * cleaner.execute()
+        !recompiled('Person')
+    }
+
+    def deletesClassesOfRemovedSourceFile() {
+        execute()
+        markClassFiles()
+        srcDir.file('org/gradle/Country.java').delete()
+
+        when:
+        def result = execute()
+
+        then:
+        result.didWork
+        0 * cleaner.execute()
+        !destDir.file('org/gradle/Country.class').exists()
+        !recompiled('Person')
+    }
+
+    def compilesAllSourceFilesWhenSourceFileIsAdded() {
+        execute()
+        srcDir.file('org/gradle/City.java') << 'package org.gradle; class City { }'
+
+        when:
+        execute()
+
+        then:
+        1 * cleaner.execute()
+        destDir.file('org/gradle/City.class').isFile()
+    }
+
+    def compilesAllSourceFilesWhenChangedClassDeclaresConstants() {
+        srcDir.file('org/gradle/Street.java').text = 'package org.gradle; class Street { static final int NUMBER = 1; }'
+        execute()
+        srcDir.file('org/gradle/Street.java').text = 'package org.gradle; class Street { static final int NUMBER = 2; }'
+
+        when:
+        execute()
+
+        then:
+        1 * cleaner.execute()
+    }
+
+    def compilesAllSourceFilesWhenCompileSettingsChange() {
+        execute()
+
+        when:
+        compiler.execute(project.fileTree(srcDir), destDir, [], 'other')
+
+        then:
+        1 * cleaner.execute()
+    }
+
+    private def execute() {
+        return compiler.execute(project.fileTree(srcDir), destDir, [], 'key')
+    }
+
+    private void markClassFiles() {
+        destDir.file('org/gradle').listFiles().each { it.lastModified = 0 }
+    }
+
+    private boolean recompiled(String name) {
+        return destDir.file("org/gradle/${name}.class").lastModified() != 0
+    }
+}
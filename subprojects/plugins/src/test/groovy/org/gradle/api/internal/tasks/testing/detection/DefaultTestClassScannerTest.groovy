@@ -27,6 +27,9 @@ import org.jmock.Sequence
 import org.gradle.api.file.FileTree
 import static org.hamcrest.Matchers.*
 import org.gradle.api.file.FileVisitDetails
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.messaging.concurrent.DefaultExecutorFactory
+import static org.junit.Assert.assertThat
 
 @RunWith(JMock.class)
 public class DefaultTestClassScannerTest {
@@ -51,8 +54,41 @@ public class DefaultTestClassScannerTest {
             one(detector).processTestClass(new File('class1.class'))
             one(detector).processTestClass(new File('class2.class'))
             inSequence(sequence)
+            one(detector).stopDetection()
+            inSequence(sequence)
         }
         
         scanner.run()
     }
+
+    @Test
+    public void passesEachClassFileToTestClassDetectorFromMultipleThreads() {
+        List<File> classFiles = (1..100).collect { new File("class${it}.class") }
+        Set<String> detected = Collections.synchronizedSet(new HashSet<String>())
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>())
+        TestFrameworkDetector detector = new TestFrameworkDetector() {
+            TestClassProcessor target
+            void startDetection(TestClassProcessor testClassProcessor) { target = testClassProcessor }
+            boolean processTestClass(File testClassFile) {
+                threads << Thread.currentThread()
+                target.processTestClass(new DefaultTestClassRunInfo(testClassFile.name))
+                return true
+            }
+            void stopDetection() { }
+        }
+        TestClassProcessor processor = { detected << it.testClassName } as TestClassProcessor
+        DefaultTestClassScanner scanner = new DefaultTestClassScanner(files, detector, processor, new DefaultExecutorFactory(), 4)
+
+        context.checking {
+            one(files).visit(withParam(notNullValue()))
+            will { visitor ->
+                classFiles.each { file -> visitor.visitFile({file} as FileVisitDetails) }
+            }
+        }
+
+        scanner.run()
+
+        assertThat(detected, equalTo(classFiles.collect { it.name } as Set))
+        assertThat(threads, not(hasItem(Thread.currentThread())))
+    }
 }
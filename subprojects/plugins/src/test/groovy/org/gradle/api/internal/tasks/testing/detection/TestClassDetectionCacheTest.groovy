@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.detection
+
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class TestClassDetectionCacheTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final File file = tmpDir.file("cache/detection.properties")
+    final TestFrameworkDetector detector = Mock()
+    final TestClassDetectionCache cache = new TestClassDetectionCache(file)
+
+    def "is empty when backing file does not exist"() {
+        when:
+        cache.load()
+
+        then:
+        cache.get("abc", detector) == null
+    }
+
+    def "persists details of each class file"() {
+        cache.put("abc", visitor("org/gradle/SomeTest", "junit/framework/TestCase", true, false))
+        cache.put("def", visitor("org/gradle/AbstractThing", null, false, true))
+
+        when:
+        cache.save()
+        def reloaded = new TestClassDetectionCache(file)
+        reloaded.load()
+
+        then:
+        def someTest = reloaded.get("abc", detector)
+        someTest.className == "org/gradle/SomeTest"
+        someTest.superClassName == "junit/framework/TestCase"
+        someTest.test
+        !someTest.abstract
+
+        and:
+        def abstractThing = reloaded.get("def", detector)
+        abstractThing.className == "org/gradle/AbstractThing"
+        abstractThing.superClassName == null
+        !abstractThing.test
+        abstractThing.abstract
+    }
+
+    def "only writes entries used since cache was loaded"() {
+        cache.put("abc", visitor("org/gradle/SomeTest", "java/lang/Object", true, false))
+        cache.put("def", visitor("org/gradle/OtherTest", "java/lang/Object", true, false))
+        cache.save()
+
+        when:
+        def reloaded = new TestClassDetectionCache(file)
+        reloaded.load()
+        reloaded.get("abc", detector)
+        reloaded.save()
+        def reloadedAgain = new TestClassDetectionCache(file)
+        reloadedAgain.load()
+
+        then:
+        reloadedAgain.get("abc", detector) != null
+        reloadedAgain.get("def", detector) == null
+    }
+
+    def "discards invalid entries"() {
+        file.parentFile.mkdirs()
+        file.text = "abc=broken\ndef=org/gradle/SomeTest,java/lang/Object,test\n"
+
+        when:
+        cache.load()
+
+        then:
+        cache.get("abc", detector) == null
+        cache.get("def", detector).test
+    }
+
+    def visitor(String className, String superClassName, boolean test, boolean isAbstract) {
+        return new TestClassVisitor(detector) {
+            String getClassName() { className }
+            String getSuperClassName() { superClassName }
+            boolean isTest() { test }
+            boolean isAbstract() { isAbstract }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.logging.internal.DefaultStandardOutputRedirector
+import org.gradle.logging.internal.PerThreadStandardOutputRedirector
+import org.gradle.messaging.concurrent.DefaultExecutorFactory
+import org.gradle.util.LongIdGenerator
+import org.gradle.util.RedirectStdOutAndErr
+import org.gradle.util.SystemProperties
+import org.junit.Rule
+import org.junit.Test
+import spock.lang.Specification
+
+class JUnitTestClassProcessorParallelExecutionTest extends Specification {
+    private static final String EOL = SystemProperties.lineSeparator
+
+    @Rule public final RedirectStdOutAndErr outputs = new RedirectStdOutAndErr()
+    private final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory()
+    private final JUnitTestClassProcessor processor = new JUnitTestClassProcessor(new LongIdGenerator(),
+            new PerThreadStandardOutputRedirector(new DefaultStandardOutputRedirector()), executorFactory, 2)
+    private final Map<Object, String> names = new ConcurrentHashMap<Object, String>()
+    private final Map<String, String> parents = new ConcurrentHashMap<String, String>()
+    private final Map<String, String> output = new ConcurrentHashMap<String, String>()
+    private final List<Throwable> failures = Collections.synchronizedList([])
+    private final TestResultProcessor resultProcessor = [
+            started: { TestDescriptorInternal test, TestStartEvent event ->
+                names[test.id] = test.name
+                if (event.parentId != null) {
+                    parents[test.name] = names[event.parentId]
+                }
+            },
+            output: { Object testId, TestOutputEvent event ->
+                String name = names[testId]
+                output[name] = (output[name] ?: '') + event.message
+            },
+            failure: { Object testId, Throwable failure -> failures << failure },
+            completed: { Object testId, event -> }
+    ] as TestResultProcessor
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def executesTestClassesConcurrently() {
+        ATestClassWhichAwaitsAnother.latch = new CountDownLatch(2)
+
+        when:
+        processor.startProcessing(resultProcessor)
+        processor.processTestClass(testClass(ATestClassWhichAwaitsAnother))
+        processor.processTestClass(testClass(ATestClassWhichAwaitsAnotherToo))
+        processor.stop()
+
+        then:
+        failures.isEmpty()
+        parents == [a: ATestClassWhichAwaitsAnother.name, b: ATestClassWhichAwaitsAnotherToo.name]
+    }
+
+    def attributesOutputToTheTestWhichWroteIt() {
+        ATestClassWhichAwaitsAnother.latch = new CountDownLatch(2)
+
+        when:
+        processor.startProcessing(resultProcessor)
+        processor.processTestClass(testClass(ATestClassWhichAwaitsAnother))
+        processor.processTestClass(testClass(ATestClassWhichAwaitsAnotherToo))
+        processor.stop()
+
+        then:
+        failures.isEmpty()
+        output == [a: "output from a$EOL".toString(), b: "output from b$EOL".toString()]
+        System.out == outputs.stdOutPrintStream
+    }
+
+    def executesMoreTestClassesThanThreads() {
+        when:
+        processor.startProcessing(resultProcessor)
+        5.times { processor.processTestClass(testClass(ATestClass)) }
+        processor.stop()
+
+        then:
+        failures.isEmpty()
+        names.values().findAll { it == 'ok' }.size() == 5
+    }
+
+    private TestClassRunInfo testClass(Class<?> type) {
+        return { type.name } as TestClassRunInfo
+    }
+}
+
+public class ATestClassWhichAwaitsAnother {
+    static CountDownLatch latch
+
+    static void awaitOtherTestClass() {
+        latch.countDown()
+        if (!latch.await(20, TimeUnit.SECONDS)) {
+            throw new AssertionError('Test classes were not executed concurrently.')
+        }
+    }
+
+    @Test
+    public void a() {
+        awaitOtherTestClass()
+        System.out.println('output from a')
+    }
+}
+
+public class ATestClassWhichAwaitsAnotherToo {
+    @Test
+    public void b() {
+        ATestClassWhichAwaitsAnother.awaitOtherTestClass()
+        System.out.println('output from b')
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit
+
+import org.gradle.api.internal.tasks.testing.junit.result.LargeTestOutputFixture
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultStore
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultStoreBuilder
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class JUnitXmlReportGeneratorTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestResultStoreBuilder results = new TestResultStoreBuilder(tmpDir.dir)
+    final JUnitXmlReportGenerator generator = new JUnitXmlReportGenerator(tmpDir.dir, new TestResultStore(tmpDir.dir))
+    final File reportFile = tmpDir.file("TEST-org.gradle.SomeTest.xml")
+
+    def "writes report for test class"() {
+        given:
+        results.testClass("org.gradle.SomeTest", 1000, 2000) {
+            test("ok", duration: 100, stdout: ["some <output>\n"])
+            test("broken", duration: 100, failures: [new RuntimeException("broken <test>")])
+            test("ignored", ignored: true)
+            stderr("error & more")
+        }
+        results.close()
+
+        when:
+        generator.generate()
+
+        then:
+        def testSuite = new XmlSlurper().parse(reportFile)
+        testSuite.@name == "org.gradle.SomeTest"
+        testSuite.@tests == "3"
+        testSuite.@failures == "1"
+        testSuite.@errors == "0"
+        testSuite.@time == "1.0"
+        testSuite.properties.size() == 1
+        testSuite.testcase.size() == 2
+        testSuite.testcase[0].@name == "ok"
+        testSuite.testcase[0].@classname == "org.gradle.SomeTest"
+        testSuite.testcase[0].@time == "0.1"
+        testSuite.testcase[0].failure.size() == 0
+        testSuite.testcase[1].@name == "broken"
+        testSuite.testcase[1].failure.@message == "java.lang.RuntimeException: broken <test>"
+        testSuite.testcase[1].failure.@type == "java.lang.RuntimeException"
+        testSuite.testcase[1].failure.text().startsWith("java.lang.RuntimeException: broken <test>")
+        testSuite.'ignored-testcase'.@name == "ignored"
+        testSuite.'system-out'.text() == "some <output>\n"
+        testSuite.'system-err'.text() == "error & more"
+
+        and:
+        tmpDir.dir.list() as Set == [reportFile.name, "binary"] as Set
+    }
+
+    def "writes report for each test class"() {
+        given:
+        results.testClass("org.gradle.SomeTest") {
+            test("ok")
+        }
+        results.testClass("org.gradle.OtherTest") {
+            test("ok")
+        }
+        results.close()
+
+        when:
+        generator.generate()
+
+        then:
+        tmpDir.dir.list() as Set == [reportFile.name, "TEST-org.gradle.OtherTest.xml", "binary"] as Set
+    }
+
+    def "escapes CDATA end marker and illegal characters in output"() {
+        given:
+        results.testClass("org.gradle.SomeTest") {
+            stdout("a]]>b]]")
+            stdout(">c\u0000]]\u0001>d")
+        }
+        results.close()
+
+        when:
+        generator.generate()
+
+        then:
+        def testSuite = new XmlSlurper().parse(reportFile)
+        testSuite.'system-out'.text() == "a]]>b]]>c]]>d"
+    }
+
+    def "writes all output of a test which produces output in many chunks"() {
+        def chunk = "x" * 1023 + "\n"
+        def chunks = 1024
+
+        given:
+        results.testClass("org.gradle.SomeTest") {
+            test("noisy", stdout: [chunk] * chunks)
+        }
+        results.close()
+
+        when:
+        generator.generate()
+
+        then:
+        def testSuite = new XmlSlurper().parse(reportFile)
+        testSuite.'system-out'.text() == chunk * chunks
+    }
+
+    def "generates report for a test which produces much more output than fits in the heap"() {
+        def outputBytes = 256 * 1024 * 1024L
+
+        when:
+        LargeTestOutputFixture.runWithMaxHeap("64m", tmpDir.dir, outputBytes, "report")
+
+        then:
+        reportFile.length() > outputBytes
+    }
+}
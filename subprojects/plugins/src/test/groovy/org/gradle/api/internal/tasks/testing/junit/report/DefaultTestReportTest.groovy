@@ -15,15 +15,19 @@
  */
 package org.gradle.api.internal.tasks.testing.junit.report
 
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultStoreBuilder
+import org.gradle.messaging.concurrent.DefaultExecutorFactory
 import org.gradle.util.TemporaryFolder
 import org.gradle.util.TestFile
 import org.junit.Rule
 import spock.lang.Specification
 import org.cyberneko.html.parsers.SAXParser
+import static org.gradle.api.internal.tasks.testing.junit.result.TestResultStoreBuilder.TestFailure
 
 class DefaultTestReportTest extends Specification {
     @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
-    final DefaultTestReport report = new DefaultTestReport()
+    final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory()
+    final DefaultTestReport report = new DefaultTestReport(executorFactory, 4)
     final TestFile reportDir = tmpDir.file('report')
     final TestFile resultsDir = tmpDir.file('results')
     final TestFile indexFile = reportDir.file('index.html')
@@ -33,6 +37,10 @@ class DefaultTestReportTest extends Specification {
         report.testResultsDir = resultsDir
     }
 
+    def cleanup() {
+        executorFactory.stop()
+    }
+
     def generatesReportWhenResultsDirectoryDoesNotExist() {
         when:
         report.generateReport()
@@ -57,23 +65,19 @@ class DefaultTestReportTest extends Specification {
         index.assertHasNoNavLinks()
     }
 
-    def generatesReportWhichIncludesContentsOfEachTestResultFile() {
-        resultsDir.file('TEST-someClass.xml') << '''
-<testsuite name="org.gradle.Test">
-    <testcase classname="org.gradle.Test" name="test1" time="0.0010"/>
-    <testcase classname="org.gradle.Test" name="test2" time="0.0040"/>
-    <system-out>this is
-standard output</system-out>
-    <system-err>this is
-standard error</system-err>
-</testsuite>
-'''
-        resultsDir.file('TEST-someOtherClass.xml') << '''
-<testsuite name="org.gradle.Test2">
-    <testcase classname="org.gradle.Test2" name="test1" time="102.0010"/>
-    <testcase classname="org.gradle.sub.Test" name="test1" time="12.9"/>
-</testsuite>
-'''
+    def generatesReportWhichIncludesContentsOfEachTestClass() {
+        def store = new TestResultStoreBuilder(resultsDir)
+        store.testClass('org.gradle.Test') {
+            test('test1', duration: 1)
+            test('test2', duration: 4)
+            stdout('this is\nstandard output')
+            stderr('this is\nstandard error')
+        }
+        store.testClass('org.gradle.Test2') {
+            test('test1', duration: 102001)
+            test('test1', className: 'org.gradle.sub.Test', duration: 12900)
+        }
+        store.close()
 
         when:
         report.generateReport()
@@ -110,17 +114,14 @@ standard error</system-err>
     }
 
     def generatesReportWhenThereAreFailures() {
-        resultsDir.file('TEST-someClass.xml') << '''
-<testsuite>
-    <testcase classname="org.gradle.Test" name="test1" time="0"><failure message="something failed">this is the failure
-at someClass
-</failure></testcase>
-    <testcase classname="org.gradle.Test" name="test2" time="0"><failure message="a multi-line
-message">this is a failure.</failure></testcase>
-    <testcase classname="org.gradle.Test2" name="test1" time="0"/>
-    <testcase classname="org.gradle.sub.Test" name="test1" time="0"/>
-</testsuite>
-'''
+        def store = new TestResultStoreBuilder(resultsDir)
+        store.testClass('org.gradle.Test') {
+            test('test1', failures: [new TestFailure('something failed', 'this is the failure\nat someClass\n')])
+            test('test2', failures: [new TestFailure('a multi-line\nmessage', 'this is a failure.')])
+            test('test1', className: 'org.gradle.Test2')
+            test('test1', className: 'org.gradle.sub.Test')
+        }
+        store.close()
 
         when:
         report.generateReport()
@@ -149,11 +150,11 @@ message">this is a failure.</failure></testcase>
     }
 
     def generatesReportWhenThereAreIgnoredTests() {
-        resultsDir.file('TEST-someClass.xml') << '''
-<testsuite>
-    <ignored-testcase classname="org.gradle.Test" name="test1"/>
-</testsuite>
-'''
+        def store = new TestResultStoreBuilder(resultsDir)
+        store.testClass('org.gradle.Test') {
+            test('test1', ignored: true)
+        }
+        store.close()
 
         when:
         report.generateReport()
@@ -178,12 +179,11 @@ message">this is a failure.</failure></testcase>
     }
 
     def reportsOnClassesInDefaultPackage() {
-        resultsDir.file('TEST-someClass.xml') << '''
-<testsuite name="Test">
-    <testcase classname="Test" name="test1" time="0">
-    </testcase>
-</testsuite>
-'''
+        def store = new TestResultStoreBuilder(resultsDir)
+        store.testClass('Test') {
+            test('test1')
+        }
+        store.close()
 
         when:
         report.generateReport()
@@ -198,15 +198,13 @@ message">this is a failure.</failure></testcase>
     }
 
     def escapesHtmlContentInReport() {
-        resultsDir.file('TEST-someClass.xml') << '''
-<testsuite name="org.gradle.Test">
-    <testcase classname="org.gradle.Test" name="test1 &lt; test2" time="0">
-        <failure message="something failed">&lt;a failure&gt;</failure>
-    </testcase>
-    <system-out>&lt;/html> &amp; </system-out>
-    <system-err>&lt;/div> &amp; </system-err>
-</testsuite>
-'''
+        def store = new TestResultStoreBuilder(resultsDir)
+        store.testClass('org.gradle.Test') {
+            test('test1 < test2', failures: [new TestFailure('something failed', '<a failure>')])
+            stdout('</html> & ')
+            stderr('</div> & ')
+        }
+        store.close()
 
         when:
         report.generateReport()
@@ -220,13 +218,13 @@ message">this is a failure.</failure></testcase>
     }
 
     def encodesUnicodeCharactersInReport() {
-        resultsDir.file('TEST-someClass.xml') << '''
-<testsuite name="org.gradle.Test">
-    <testcase classname="org.gradle.Test" name="&#x0107;" time="0"/>
-    <system-out>out:&#x0256;</system-out>
-    <system-err>err:&#x0102;</system-err>
-</testsuite>
-'''
+        def store = new TestResultStoreBuilder(resultsDir)
+        store.testClass('org.gradle.Test') {
+            test('\u0107')
+            stdout('out:\u0256')
+            stderr('err:\u0102')
+        }
+        store.close()
 
         when:
         report.generateReport()
@@ -238,19 +236,47 @@ message">this is a failure.</failure></testcase>
         testClassFile.assertHasStandardError('err:\u0102')
     }
 
-    def ignoresFilesWhichAreNotResultFiles() {
-        resultsDir.file('TEST-someClass.xml') << '''
-<testsuite name="org.gradle.Test">
-    <testcase classname="org.gradle.Test" name="test1" time="0"></testcase>
-</testsuite>
-'''
-        resultsDir.file('TESTS-broken.xml') << 'broken'
+    def generatesPagesForManyPackagesAndClassesUsingMultipleThreads() {
+        def packages = 5
+        def classesPerPackage = 20
+        def testsPerClass = 5
+        def output = "some output\n" * 10
+        def store = new TestResultStoreBuilder(resultsDir)
+        packages.times { p ->
+            classesPerPackage.times { c ->
+                store.testClass("org.gradle.p${p}.Test${c}") {
+                    testsPerClass.times { t ->
+                        def failures = t == 0 && c % 10 == 0 ? [new TestFailure('broken', output)] : []
+                        test("test${t}", duration: 10, failures: failures)
+                    }
+                    stdout(output)
+                    stderr(output)
+                }
+            }
+        }
+        store.close()
 
         when:
         report.generateReport()
 
         then:
-        results(indexFile).assertHasTests(1)
+        def index = results(indexFile)
+        index.assertHasTests(packages * classesPerPackage * testsPerClass)
+        index.assertHasFailures(packages * classesPerPackage / 10 as int)
+        index.assertHasFailedTest('org.gradle.p3.Test10', 'test0')
+
+        def packageFile = results(reportDir.file('org.gradle.p3.html'))
+        packageFile.assertHasTests(classesPerPackage * testsPerClass)
+        packageFile.assertHasFailures(classesPerPackage / 10 as int)
+
+        def testClassFile = results(reportDir.file('org.gradle.p3.Test10.html'))
+        testClassFile.assertHasTests(testsPerClass)
+        testClassFile.assertHasFailures(1)
+        testClassFile.assertHasFailure('test0', output)
+        testClassFile.assertHasStandardOutput(output)
+
+        and:
+        reportDir.list().findAll { it.endsWith('.html') }.size() == 1 + packages + packages * classesPerPackage
     }
 
     def results(TestFile file) {
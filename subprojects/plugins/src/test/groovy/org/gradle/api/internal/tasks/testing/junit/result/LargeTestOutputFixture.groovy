@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.result
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.internal.tasks.testing.junit.JUnitXmlReportGenerator
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.util.ClasspathUtil
+import org.gradle.util.Jvm
+
+/**
+ * Writes a large amount of test output, one line per output event, to a {@link TestResultStore} in a JVM with a small
+ * heap, and then either generates the JUnit XML report from the store or reads the output back. Used to check that the
+ * memory used does not depend on the amount of test output.
+ */
+class LargeTestOutputFixture {
+    static final String LINE = "x" * 99 + "\n"
+
+    /**
+     * Runs the given action in a forked JVM with the given maximum heap size. Fails when the forked JVM fails, for
+     * example because it runs out of memory.
+     */
+    static void runWithMaxHeap(String maxHeapSize, File testResultsDir, long outputBytes, String action) {
+        def classpath = ClasspathUtil.getClasspath(LargeTestOutputFixture.classLoader).collect { new File(it.toURI()) }
+        def command = [Jvm.current().javaExecutable.absolutePath, "-Xmx${maxHeapSize}".toString(), "-cp", classpath.join(File.pathSeparator),
+                LargeTestOutputFixture.name, testResultsDir.absolutePath, String.valueOf(outputBytes), action]
+        def process = new ProcessBuilder(command).redirectErrorStream(true).start()
+        def output = process.inputStream.text
+        assert process.waitFor() == 0: output
+    }
+
+    static void main(String[] args) {
+        File testResultsDir = new File(args[0])
+        long outputBytes = args[1] as long
+        String action = args[2]
+
+        def store = new TestResultStore(testResultsDir)
+        def writer = store.createWriter()
+        writer.started(new DefaultTestClassDescriptor(1, "org.gradle.SomeTest"), new TestStartEvent(0))
+        writer.started(new DefaultTestDescriptor(2, "org.gradle.SomeTest", "noisy"), new TestStartEvent(0, 1))
+        def event = new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, LINE)
+        for (long written = 0; written < outputBytes; written += LINE.length()) {
+            writer.output(2, event)
+        }
+        writer.completed(2, new TestCompleteEvent(0))
+        writer.completed(1, new TestCompleteEvent(0))
+        writer.close()
+
+        if (action == "report") {
+            new JUnitXmlReportGenerator(testResultsDir, store).generate()
+            return
+        }
+        assert action == "read"
+        long read = 0
+        def counter = [write: { char[] chars, int offset, int length -> read += length }, flush: {}, close: {}] as Writer
+        store.writeOutput("org.gradle.SomeTest", TestOutputEvent.Destination.StdOut, counter)
+        assert read >= outputBytes
+    }
+}
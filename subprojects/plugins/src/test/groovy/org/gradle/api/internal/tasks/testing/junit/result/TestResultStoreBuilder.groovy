@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.result
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.api.tasks.testing.TestResult
+
+/**
+ * Writes test results to a {@link TestResultStore}, for use in tests.
+ */
+class TestResultStoreBuilder {
+    final TestResultStoreWriter writer
+    private long lastId
+
+    TestResultStoreBuilder(File testResultsDir) {
+        writer = new TestResultStore(testResultsDir).createWriter()
+    }
+
+    void testClass(String className, long startTime = 0, long endTime = startTime, Closure cl = {}) {
+        def id = nextId()
+        writer.started(new DefaultTestClassDescriptor(id, className), new TestStartEvent(startTime))
+        def builder = new TestClassBuilder(this, id, className, startTime)
+        cl.delegate = builder
+        cl.resolveStrategy = Closure.DELEGATE_FIRST
+        cl.call()
+        builder.failures.each { writer.failure(id, it) }
+        writer.completed(id, new TestCompleteEvent(endTime))
+    }
+
+    void close() {
+        writer.close()
+    }
+
+    long nextId() {
+        return ++lastId
+    }
+
+    static class TestClassBuilder {
+        final TestResultStoreBuilder owner
+        final TestResultStoreWriter writer
+        final Object classId
+        final String className
+        final long startTime
+        final List<Throwable> failures = []
+
+        TestClassBuilder(TestResultStoreBuilder owner, Object classId, String className, long startTime) {
+            this.owner = owner
+            this.writer = owner.writer
+            this.classId = classId
+            this.className = className
+            this.startTime = startTime
+        }
+
+        void test(Map options = [:], String name) {
+            def id = owner.nextId()
+            def testClassName = options.className ?: className
+            writer.started(new DefaultTestDescriptor(id, testClassName, name), new TestStartEvent(startTime, classId))
+            options.failures?.each { writer.failure(id, it) }
+            options.stdout?.each { writer.output(id, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, it)) }
+            def resultType = options.ignored ? TestResult.ResultType.SKIPPED : null
+            writer.completed(id, new TestCompleteEvent(startTime + (options.duration ?: 0), resultType))
+        }
+
+        void failure(Throwable failure) {
+            failures << failure
+        }
+
+        void stdout(String message) {
+            writer.output(classId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, message))
+        }
+
+        void stderr(String message) {
+            writer.output(classId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, message))
+        }
+    }
+
+    /**
+     * A failure with a given message and stack trace.
+     */
+    static class TestFailure extends RuntimeException {
+        final String description
+        final String stackTraceText
+
+        TestFailure(String description, String stackTraceText = description) {
+            super(description)
+            this.description = description
+            this.stackTraceText = stackTraceText
+        }
+
+        String toString() {
+            description
+        }
+
+        void printStackTrace(PrintWriter writer) {
+            writer.print(stackTraceText)
+        }
+    }
+}
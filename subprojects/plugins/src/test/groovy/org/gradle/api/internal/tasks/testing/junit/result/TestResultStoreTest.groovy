@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.result
+
+import org.gradle.api.Action
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.DefaultTestSuiteDescriptor
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.api.tasks.testing.TestResult
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+import static org.gradle.api.internal.tasks.testing.junit.result.TestResultStoreBuilder.TestFailure
+
+class TestResultStoreTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestResultStore store = new TestResultStore(tmpDir.dir)
+
+    def "is empty when no results have been written"() {
+        expect:
+        classes() == []
+        store.getClassResult("org.gradle.SomeTest") == null
+        output("org.gradle.SomeTest", TestOutputEvent.Destination.StdOut) == ""
+    }
+
+    def "stores results of each test class"() {
+        def builder = new TestResultStoreBuilder(tmpDir.dir)
+        builder.testClass("org.gradle.SomeTest", 1000, 1500) {
+            test("ok", duration: 100)
+            test("broken", duration: 200, failures: [new TestFailure("broken", "broken\nat SomeTest")])
+            test("ignored", ignored: true)
+            test("other", className: "org.gradle.OtherTest")
+            failure(new TestFailure("class broken"))
+        }
+        builder.testClass("org.gradle.EmptyTest")
+        builder.close()
+
+        when:
+        def results = classes()
+
+        then:
+        results*.className == ["org.gradle.SomeTest", "org.gradle.EmptyTest"]
+
+        def someTest = results[0]
+        someTest.startTime == 1000
+        someTest.duration == 500
+        someTest.testCount == 4
+        someTest.failureCount == 1
+        someTest.failures*.message == ["class broken"]
+        someTest.results*.name == ["ok", "broken", "ignored", "other"]
+        someTest.results*.className == ["org.gradle.SomeTest", "org.gradle.SomeTest", "org.gradle.SomeTest", "org.gradle.OtherTest"]
+        someTest.results*.resultType == [TestResult.ResultType.SUCCESS, TestResult.ResultType.FAILURE, TestResult.ResultType.SKIPPED, TestResult.ResultType.SUCCESS]
+        someTest.results*.duration == [100, 200, 0, 0]
+
+        def failure = someTest.results[1].failures[0]
+        failure.message == "broken"
+        failure.exceptionType == TestFailure.name
+        failure.stackTrace == "broken\nat SomeTest"
+
+        results[1].results.empty
+    }
+
+    def "looks up results of test class"() {
+        def builder = new TestResultStoreBuilder(tmpDir.dir)
+        builder.testClass("org.gradle.SomeTest") {
+            test("ok")
+        }
+        builder.testClass("org.gradle.OtherTest") {
+            test("broken", failures: [new TestFailure("broken")])
+        }
+        builder.close()
+
+        expect:
+        def result = store.getClassResult("org.gradle.OtherTest")
+        result.className == "org.gradle.OtherTest"
+        result.results*.name == ["broken"]
+        result.results[0].failures*.message == ["broken"]
+        store.getClassResult("org.gradle.UnknownTest") == null
+    }
+
+    def "stores output of each test class when test classes execute concurrently"() {
+        def writer = store.createWriter()
+        writer.started(new DefaultTestSuiteDescriptor("root", "Test Run"), new TestStartEvent(0))
+        writer.started(new DefaultTestClassDescriptor(1, "org.gradle.SomeTest"), new TestStartEvent(0, "root"))
+        writer.started(new DefaultTestClassDescriptor(2, "org.gradle.OtherTest"), new TestStartEvent(0, "root"))
+        writer.started(new DefaultTestDescriptor(3, "org.gradle.SomeTest", "ok"), new TestStartEvent(0, 1))
+        writer.output(3, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "some "))
+        writer.output(2, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "other "))
+        writer.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "some error"))
+        writer.output(2, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "output"))
+        writer.output("root", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "ignored"))
+        writer.output(3, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "output ɖ"))
+        writer.completed(3, new TestCompleteEvent(0))
+        writer.completed(2, new TestCompleteEvent(0))
+        writer.completed(1, new TestCompleteEvent(0))
+        writer.completed("root", new TestCompleteEvent(0))
+        writer.close()
+
+        expect:
+        classes()*.className == ["org.gradle.OtherTest", "org.gradle.SomeTest"]
+        output("org.gradle.SomeTest", TestOutputEvent.Destination.StdOut) == "some output ɖ"
+        output("org.gradle.SomeTest", TestOutputEvent.Destination.StdErr) == "some error"
+        output("org.gradle.OtherTest", TestOutputEvent.Destination.StdOut) == "other output"
+        output("org.gradle.OtherTest", TestOutputEvent.Destination.StdErr) == ""
+        outputs("org.gradle.SomeTest") == ["some output ɖ", "some error"]
+        outputs("org.gradle.OtherTest") == ["other output", ""]
+    }
+
+    def "replaces previous results when writer is created"() {
+        def builder = new TestResultStoreBuilder(tmpDir.dir)
+        builder.testClass("org.gradle.SomeTest")
+        builder.close()
+        classes()
+
+        when:
+        builder = new TestResultStoreBuilder(tmpDir.dir)
+        builder.testClass("org.gradle.OtherTest")
+        builder.close()
+
+        then:
+        new TestResultStore(tmpDir.dir).getClassResult("org.gradle.SomeTest") == null
+        new TestResultStore(tmpDir.dir).getClassResult("org.gradle.OtherTest") != null
+    }
+
+    def classes() {
+        def classes = []
+        store.visitClasses({ classes << it } as Action)
+        return classes
+    }
+
+    def outputs(String className) {
+        def stdout = new StringWriter()
+        def stderr = new StringWriter()
+        store.writeOutput(className, stdout, stderr)
+        return [stdout.toString(), stderr.toString()]
+    }
+
+    def output(String className, TestOutputEvent.Destination destination) {
+        def writer = new StringWriter()
+        store.writeOutput(className, destination, writer)
+        return writer.toString()
+    }
+}
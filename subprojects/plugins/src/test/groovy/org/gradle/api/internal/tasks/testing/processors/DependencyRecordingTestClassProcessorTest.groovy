@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.changedetection.ClasspathSnapshot
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+class DependencyRecordingTestClassProcessorTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestClassProcessor target = Mock()
+    final TestFile classesDir = tmpDir.createDir("classes")
+    final TestClassDependencies dependencies = new TestClassDependencies(tmpDir.file("dependencies"))
+    final DependencyRecordingTestClassProcessor processor = new DependencyRecordingTestClassProcessor(target, [classesDir], dependencies)
+
+    def setup() {
+        copyClass(ClasspathSnapshot)
+        copyClass(TestClassDependencies)
+    }
+
+    def "records classes loaded from classpath directories while test class executes"() {
+        def testClass = new DefaultTestClassRunInfo("SomeTest")
+        ClassLoader contextClassLoader = Thread.currentThread().contextClassLoader
+        Class<?> loaded
+
+        when:
+        processor.processTestClass(testClass)
+
+        then:
+        1 * target.processTestClass(testClass) >> {
+            loaded = Class.forName(ClasspathSnapshot.name, true, Thread.currentThread().contextClassLoader)
+            Class.forName(String.name, true, Thread.currentThread().contextClassLoader)
+        }
+        loaded != ClasspathSnapshot
+        Thread.currentThread().contextClassLoader == contextClassLoader
+        dependencies.get("SomeTest") == [ClasspathSnapshot.name] as Set
+    }
+
+    def "loads each test class in a separate ClassLoader"() {
+        def classes = []
+
+        when:
+        processor.processTestClass(new DefaultTestClassRunInfo("Test1"))
+        processor.processTestClass(new DefaultTestClassRunInfo("Test2"))
+
+        then:
+        2 * target.processTestClass(_) >> {
+            classes << Class.forName(TestClassDependencies.name, true, Thread.currentThread().contextClassLoader)
+        }
+        classes[0] != classes[1]
+        dependencies.get("Test1") == [TestClassDependencies.name] as Set
+        dependencies.get("Test2") == [TestClassDependencies.name] as Set
+    }
+
+    def "does not record classes when test class cannot be executed"() {
+        def testClass = new DefaultTestClassRunInfo("SomeTest")
+
+        when:
+        processor.processTestClass(testClass)
+
+        then:
+        1 * target.processTestClass(testClass) >> {
+            Class.forName(ClasspathSnapshot.name, true, Thread.currentThread().contextClassLoader)
+            throw new RuntimeException("broken")
+        }
+        thrown(RuntimeException)
+        dependencies.get("SomeTest") == null
+    }
+
+    def "forwards start and stop to target processor"() {
+        TestResultProcessor resultProcessor = Mock()
+
+        when:
+        processor.startProcessing(resultProcessor)
+        processor.stop()
+
+        then:
+        1 * target.startProcessing(resultProcessor)
+        1 * target.stop()
+    }
+
+    def copyClass(Class<?> type) {
+        def resource = type.name.replace('.', '/') + ".class"
+        classesDir.file(resource).withOutputStream { it << type.classLoader.getResourceAsStream(resource) }
+    }
+}
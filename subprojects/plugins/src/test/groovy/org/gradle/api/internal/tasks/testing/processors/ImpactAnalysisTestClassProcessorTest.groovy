@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+class ImpactAnalysisTestClassProcessorTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestClassProcessor target = Mock()
+    final TestResultProcessor resultProcessor = Mock()
+    final TestFile classesDir = tmpDir.createDir("classes")
+    final TestFile stateDir = tmpDir.file("state")
+    final TestClassDependencies dependencies = new TestClassDependencies(stateDir.file("dependencies"))
+    final TestClassHistory history = new TestClassHistory(stateDir.file("history.properties"))
+
+    def setup() {
+        classesDir.file("Production1.class").write("1")
+        classesDir.file("Production2.class").write("2")
+        classesDir.file("Test1.class").write("test 1")
+        classesDir.file("Test2.class").write("test 2")
+        executed("Test1", ["Test1", "Production1"])
+        executed("Test2", ["Test2", "Production2"])
+        run(["Test1", "Test2"])
+    }
+
+    def "executes all test classes when there is no snapshot from a previous run"() {
+        stateDir.file("classpathSnapshot.properties").delete()
+
+        expect:
+        run(["Test1", "Test2"]) == ["Test1", "Test2"]
+    }
+
+    def "executes no test classes when nothing has changed"() {
+        expect:
+        run(["Test1", "Test2"]) == []
+    }
+
+    def "executes test classes which use a changed class"() {
+        when:
+        classesDir.file("Production1.class").write("changed")
+
+        then:
+        run(["Test1", "Test2"]) == ["Test1"]
+        run(["Test1", "Test2"]) == []
+    }
+
+    def "executes changed test class"() {
+        when:
+        classesDir.file("Test2.class").write("changed")
+
+        then:
+        run(["Test1", "Test2"]) == ["Test2"]
+    }
+
+    def "executes test classes which failed or did not execute in previous run"() {
+        history.testClassExecuted("Test2", 10, true)
+        history.save()
+
+        expect:
+        run(["Test1", "Test2", "Test3"]) == ["Test2", "Test3"]
+    }
+
+    def "executes test classes whose dependencies have not been recorded"() {
+        history.testClassExecuted("Test3", 10, false)
+        history.save()
+
+        expect:
+        run(["Test1", "Test3"]) == ["Test3"]
+    }
+
+    def "executes all test classes when something other than a class file has changed"() {
+        when:
+        classesDir.file("resource.txt").write("resource")
+
+        then:
+        run(["Test1", "Test2"]) == ["Test1", "Test2"]
+        run(["Test1", "Test2"]) == []
+    }
+
+    def "executes all test classes after the maximum number of selective runs"() {
+        when:
+        classesDir.file("Production1.class").write("changed")
+        def run1 = run(["Test1", "Test2"])
+        classesDir.file("Production1.class").write("changed again")
+        def run2 = run(["Test1", "Test2"])
+        def run3 = run(["Test1", "Test2"])
+        def run4 = run(["Test1", "Test2"])
+
+        then:
+        run1 == ["Test1"]
+        run2 == ["Test1"]
+        run3 == ["Test1", "Test2"]
+        run4 == []
+    }
+
+    def "does not update snapshot when test execution fails"() {
+        def processor = processor()
+        classesDir.file("Production1.class").write("changed")
+
+        when:
+        processor.startProcessing(resultProcessor)
+        processor.stop()
+
+        then:
+        1 * target.stop() >> { throw new RuntimeException("broken") }
+        thrown(RuntimeException)
+
+        and:
+        run(["Test1", "Test2"]) == ["Test1"]
+    }
+
+    def executed(String testClass, List<String> classes) {
+        dependencies.put(testClass, classes)
+        history.testClassExecuted(testClass, 10, false)
+        history.save()
+    }
+
+    def processor() {
+        history.load()
+        return new ImpactAnalysisTestClassProcessor(target, [classesDir], dependencies, history, stateDir, 2)
+    }
+
+    def run(List<String> testClasses) {
+        def executed = []
+        def target = [
+                startProcessing: {},
+                processTestClass: { executed << it.testClassName },
+                stop: {}
+        ] as TestClassProcessor
+        def processor = new ImpactAnalysisTestClassProcessor(target, [classesDir], dependencies, history, stateDir, 2)
+        history.load()
+        processor.startProcessing(resultProcessor)
+        testClasses.each { processor.processTestClass(new DefaultTestClassRunInfo(it)) }
+        processor.stop()
+        return executed
+    }
+}
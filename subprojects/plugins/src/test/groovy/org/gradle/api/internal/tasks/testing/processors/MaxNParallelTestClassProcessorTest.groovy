@@ -13,24 +13,25 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.gradle.api.internal.tasks.testing.processors
 
+import org.gradle.api.Transformer
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
 import org.gradle.messaging.actor.Actor
 import org.gradle.messaging.actor.ActorFactory
 import spock.lang.Specification
-import org.gradle.api.internal.Factory
 
 class MaxNParallelTestClassProcessorTest extends Specification {
-    private final Factory<TestClassProcessor> factory = Mock()
+    private final Transformer<TestClassProcessor, TestClassProcessedListener> factory = Mock()
     private final TestResultProcessor resultProcessor = Mock()
     private final TestResultProcessor asyncResultProcessor = Mock()
     private final Actor resultProcessorActor = Mock()
     private final ActorFactory actorFactory = Mock()
     private final MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(2, factory, actorFactory)
+    private final List<TestClassProcessedListener> listeners = []
 
     def createsThreadSafeWrapperForResultProcessorOnStart() {
         when:
@@ -48,7 +49,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         processor.stop()
 
         then:
-        0 * factory.create()
+        0 * factory.transform(_)
         1 * resultProcessorActor.stop()
     }
 
@@ -70,7 +71,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         processor.processTestClass(test)
 
         then:
-        1 * factory.create() >> processor1
+        1 * factory.transform(!null) >> { listeners << it[0]; processor1 }
         1 * actorFactory.createActor(processor1) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * asyncProcessor1.startProcessing(asyncResultProcessor)
@@ -100,7 +101,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         processor.processTestClass(test)
 
         then:
-        1 * factory.create() >> processor1
+        1 * factory.transform(!null) >> { listeners << it[0]; processor1 }
         1 * actorFactory.createActor(processor1) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * asyncProcessor1.startProcessing(asyncResultProcessor)
@@ -110,7 +111,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         processor.processTestClass(test)
 
         then:
-        1 * factory.create() >> processor2
+        1 * factory.transform(!null) >> { listeners << it[0]; processor2 }
         1 * actorFactory.createActor(processor2) >> actor2
         1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
         1 * asyncProcessor2.startProcessing(asyncResultProcessor)
@@ -124,47 +125,104 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * asyncProcessor2.stop()
     }
 
-    def roundRobinsTestClassesToProcessors() {
+    def givesEachProcessorALimitedNumberOfTestClassesAtATime() {
         TestClassRunInfo test = Mock()
-        TestClassProcessor processor1 = Mock()
-        TestClassProcessor processor2 = Mock()
         TestClassProcessor asyncProcessor1 = Mock()
         TestClassProcessor asyncProcessor2 = Mock()
-        Actor actor1 = Mock()
-        Actor actor2 = Mock()
 
         startProcessor()
+        startTwoProcessors(test, asyncProcessor1, asyncProcessor2)
 
         when:
         processor.processTestClass(test)
+        processor.processTestClass(test)
+        processor.processTestClass(test)
 
         then:
-        1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
-        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
-        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
         1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor2.processTestClass(test)
+        0 * asyncProcessor1._
+        0 * asyncProcessor2._
+    }
 
-        when:
+    def givesQueuedTestClassToTheProcessorWhichFinishesATestClassFirst() {
+        TestClassRunInfo test = Mock()
+        TestClassRunInfo queued = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+
+        startProcessor()
+        startTwoProcessors(test, asyncProcessor1, asyncProcessor2)
+        processor.processTestClass(test)
         processor.processTestClass(test)
 
+        when:
+        processor.processTestClass(queued)
+        listeners[1].testClassProcessed(test)
+
         then:
-        1 * factory.create() >> processor2
-        1 * actorFactory.createActor(processor2) >> actor2
-        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
-        1 * asyncProcessor2.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor2.processTestClass(test)
+        1 * asyncProcessor2.processTestClass(queued)
+        0 * asyncProcessor1._
+    }
+
+    def processorBusyWithASlowTestClassIsGivenFewerTestClasses() {
+        TestClassRunInfo slow = Mock()
+        TestClassRunInfo quick = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+
+        startProcessor()
+        startTwoProcessors(slow, asyncProcessor1, asyncProcessor2)
+        listeners[1].testClassProcessed(slow)
 
         when:
-        processor.processTestClass(test)
+        10.times { processor.processTestClass(quick) }
+        7.times { listeners[1].testClassProcessed(quick) }
 
         then:
-        1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor1.processTestClass(quick)
+        9 * asyncProcessor2.processTestClass(quick)
+    }
 
-        when:
+    def stopWaitsUntilAllQueuedTestClassesHaveBeenGivenToAProcessor() {
+        TestClassRunInfo test = Mock()
+        TestClassRunInfo queued = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+
+        startProcessor()
+        startTwoProcessors(test, asyncProcessor1, asyncProcessor2)
         processor.processTestClass(test)
+        processor.processTestClass(test)
+        processor.processTestClass(queued)
+
+        when:
+        Thread.start {
+            Thread.sleep(100)
+            listeners[0].testClassProcessed(test)
+        }
+        processor.stop()
 
         then:
-        1 * asyncProcessor2.processTestClass(test)
+        1 * asyncProcessor1.processTestClass(queued)
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
+
+    def startTwoProcessors(TestClassRunInfo test, TestClassProcessor asyncProcessor1, TestClassProcessor asyncProcessor2) {
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        1 * factory.transform(!null) >> { listeners << it[0]; processor1 }
+        1 * factory.transform(!null) >> { listeners << it[0]; processor2 }
+        actorFactory.createActor(processor1) >> actor1
+        actorFactory.createActor(processor2) >> actor2
+        actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        processor.processTestClass(test)
+        processor.processTestClass(test)
     }
 }
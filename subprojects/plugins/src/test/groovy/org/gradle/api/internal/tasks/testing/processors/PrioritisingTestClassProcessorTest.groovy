@@ -0,0 +1,190 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.*
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TimeProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class PrioritisingTestClassProcessorTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestClassProcessor target = Mock()
+    final TestResultProcessor resultProcessor = Mock()
+    final TimeProvider timeProvider = Mock()
+    final File historyFile = tmpDir.file("history.properties")
+    final PrioritisingTestClassProcessor processor = new PrioritisingTestClassProcessor(target, new TestClassHistory(historyFile), 2, timeProvider, true)
+
+    def "forwards test classes as soon as they are detected when there is no history"() {
+        def test1 = testClass("Test1")
+        def test2 = testClass("Test2")
+
+        given:
+        processor.startProcessing(resultProcessor)
+
+        when:
+        processor.processTestClass(test1)
+
+        then:
+        1 * target.processTestClass(test1)
+
+        when:
+        processor.processTestClass(test2)
+
+        then:
+        1 * target.processTestClass(test2)
+
+        when:
+        processor.stop()
+
+        then:
+        1 * target.stop()
+        0 * target.processTestClass(_)
+    }
+
+    def "forwards test classes as soon as they are detected when not prioritising"() {
+        def processor = new PrioritisingTestClassProcessor(target, new TestClassHistory(historyFile), 2, timeProvider, false)
+        def quick = testClass("Quick")
+        def slow = testClass("Slow")
+        def history = new TestClassHistory(historyFile)
+        history.testClassExecuted("Quick", 10, false)
+        history.testClassExecuted("Slow", 1000, false)
+        history.save()
+
+        given:
+        processor.startProcessing(resultProcessor)
+
+        when:
+        processor.processTestClass(quick)
+
+        then:
+        1 * target.processTestClass(quick)
+
+        when:
+        processor.processTestClass(slow)
+
+        then:
+        1 * target.processTestClass(slow)
+
+        when:
+        processor.stop()
+
+        then:
+        1 * target.stop()
+        0 * target.processTestClass(_)
+    }
+
+    def "forwards previously failed test classes first then the remaining test classes longest first"() {
+        def quick = testClass("Quick")
+        def unknown = testClass("Unknown")
+        def slow = testClass("Slow")
+        def failed = testClass("Failed")
+        def history = new TestClassHistory(historyFile)
+        history.testClassExecuted("Quick", 10, false)
+        history.testClassExecuted("Slow", 1000, false)
+        history.testClassExecuted("Failed", 50, true)
+        history.save()
+
+        given:
+        processor.startProcessing(resultProcessor)
+
+        when:
+        [quick, unknown, slow, failed].each { processor.processTestClass(it) }
+        processor.stop()
+
+        then:
+        1 * target.processTestClass(failed)
+
+        then:
+        1 * target.processTestClass(slow)
+
+        then:
+        1 * target.processTestClass(unknown)
+
+        then:
+        1 * target.processTestClass(quick)
+
+        then:
+        1 * target.stop()
+    }
+
+    def "records execution time and outcome of each test class"() {
+        TestResultProcessor wrappedResultProcessor
+        def suite = new DefaultTestSuiteDescriptor("worker", "worker")
+        def passedClass = new DefaultTestClassDescriptor("class1", "Passed")
+        def passedMethod = new DefaultTestMethodDescriptor("method1", "Passed", "ok")
+        def failedClass = new DefaultTestClassDescriptor("class2", "Failed")
+        def failedMethod = new DefaultTestMethodDescriptor("method2", "Failed", "broken")
+        def failure = new RuntimeException()
+
+        when:
+        processor.startProcessing(resultProcessor)
+
+        then:
+        1 * target.startProcessing(!null) >> { wrappedResultProcessor = it[0] }
+
+        when:
+        wrappedResultProcessor.started(suite, new TestStartEvent(0))
+        wrappedResultProcessor.started(passedClass, new TestStartEvent(100, "worker"))
+        wrappedResultProcessor.started(passedMethod, new TestStartEvent(110, "class1"))
+        wrappedResultProcessor.completed("method1", new TestCompleteEvent(190))
+        wrappedResultProcessor.completed("class1", new TestCompleteEvent(200))
+        wrappedResultProcessor.started(failedClass, new TestStartEvent(200, "worker"))
+        wrappedResultProcessor.started(failedMethod, new TestStartEvent(210, "class2"))
+        wrappedResultProcessor.failure("method2", failure)
+        wrappedResultProcessor.completed("method2", new TestCompleteEvent(240))
+        wrappedResultProcessor.completed("class2", new TestCompleteEvent(250))
+        wrappedResultProcessor.completed("worker", new TestCompleteEvent(250))
+
+        then:
+        1 * resultProcessor.started(passedClass, _)
+        1 * resultProcessor.failure("method2", failure)
+        1 * resultProcessor.completed("class2", _)
+
+        when:
+        processor.stop()
+        def history = new TestClassHistory(historyFile)
+        history.load()
+
+        then:
+        history.getExecutionTime("Passed") == 100
+        !history.isFailed("Passed")
+        history.getExecutionTime("Failed") == 50
+        history.isFailed("Failed")
+    }
+
+    def "updates history when target processor fails"() {
+        def failure = new RuntimeException()
+
+        given:
+        processor.startProcessing(resultProcessor)
+
+        when:
+        processor.stop()
+
+        then:
+        1 * target.stop() >> { throw failure }
+        RuntimeException e = thrown()
+        e == failure
+        historyFile.file
+    }
+
+    def testClass(String name) {
+        return new DefaultTestClassRunInfo(name)
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class TestClassHistoryTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final File file = tmpDir.file("history/history.properties")
+    final TestClassHistory history = new TestClassHistory(file)
+
+    def "is empty when backing file does not exist"() {
+        when:
+        history.load()
+
+        then:
+        history.empty
+        history.getExecutionTime("org.gradle.SomeTest") == null
+        !history.isFailed("org.gradle.SomeTest")
+    }
+
+    def "persists execution time and outcome of each test class"() {
+        history.testClassExecuted("org.gradle.SomeTest", 1200, false)
+        history.testClassExecuted("org.gradle.BrokenTest", 35, true)
+
+        when:
+        history.save()
+        def reloaded = new TestClassHistory(file)
+        reloaded.load()
+
+        then:
+        reloaded.getExecutionTime("org.gradle.SomeTest") == 1200
+        !reloaded.isFailed("org.gradle.SomeTest")
+        reloaded.getExecutionTime("org.gradle.BrokenTest") == 35
+        reloaded.isFailed("org.gradle.BrokenTest")
+    }
+
+    def "most recent execution replaces earlier one"() {
+        history.testClassExecuted("org.gradle.SomeTest", 35, true)
+
+        when:
+        history.testClassExecuted("org.gradle.SomeTest", 1200, false)
+
+        then:
+        history.getExecutionTime("org.gradle.SomeTest") == 1200
+        !history.isFailed("org.gradle.SomeTest")
+    }
+
+    def "discards entries which cannot be parsed"() {
+        file.parentFile.mkdirs()
+        file.text = """
+org.gradle.SomeTest=1200
+org.gradle.BrokenTest=broken,failed
+"""
+
+        when:
+        history.load()
+
+        then:
+        history.getExecutionTime("org.gradle.SomeTest") == 1200
+        history.getExecutionTime("org.gradle.BrokenTest") == null
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.internal.tasks.testing.junit.result.LargeTestOutputFixture
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultStore
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class TruncateTestOutputTestResultProcessorTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestResultProcessor target = Mock()
+    final TruncateTestOutputTestResultProcessor processor = new TruncateTestOutputTestResultProcessor(target, 10)
+    final def test = new DefaultTestDescriptor(1, "SomeTest", "test")
+
+    def "forwards output up to limit"() {
+        def stdout = new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "12345")
+        def stderr = new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "67890")
+
+        when:
+        processor.started(test, new TestStartEvent(0))
+        processor.output(1, stdout)
+        processor.output(1, stderr)
+
+        then:
+        1 * target.output(1, stdout)
+        1 * target.output(1, stderr)
+    }
+
+    def "replaces output beyond limit with truncation marker"() {
+        when:
+        processor.started(test, new TestStartEvent(0))
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "12345"))
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "6789abc"))
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "more"))
+
+        then:
+        1 * target.output(1, { it.message == "12345" })
+        1 * target.output(1, { TestOutputEvent event ->
+            event.destination == TestOutputEvent.Destination.StdErr &&
+                    event.message.startsWith("6789") &&
+                    event.message.contains("[Output truncated: more than 10 characters of output were written.]")
+        })
+        0 * target.output(_, _)
+    }
+
+    def "limits output of each test separately"() {
+        def other = new DefaultTestDescriptor(2, "SomeTest", "other")
+
+        when:
+        processor.started(test, new TestStartEvent(0))
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "1234567890"))
+        processor.completed(1, new TestCompleteEvent(0))
+        processor.started(other, new TestStartEvent(0))
+        processor.output(2, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "1234567890"))
+
+        then:
+        1 * target.output(1, { it.message == "1234567890" })
+        1 * target.output(2, { it.message == "1234567890" })
+    }
+
+    def "stores only output up to limit for test which writes output in many chunks"() {
+        def chunk = "x" * 100
+        def limit = 1000
+        def store = new TestResultStore(tmpDir.dir)
+        def writer = store.createWriter()
+        def processor = new TruncateTestOutputTestResultProcessor(writer, limit)
+
+        when:
+        processor.started(new DefaultTestClassDescriptor(1, "org.gradle.SomeTest"), new TestStartEvent(0))
+        processor.started(new DefaultTestDescriptor(2, "org.gradle.SomeTest", "noisy"), new TestStartEvent(0, 1))
+        1000.times {
+            processor.output(2, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, chunk))
+        }
+        processor.completed(2, new TestCompleteEvent(0))
+        processor.completed(1, new TestCompleteEvent(0))
+        writer.close()
+
+        then:
+        def output = new StringWriter()
+        store.writeOutput("org.gradle.SomeTest", TestOutputEvent.Destination.StdOut, output)
+        output.toString().startsWith("x" * limit)
+        output.toString().contains("[Output truncated")
+        output.toString().length() < 2 * limit
+    }
+
+    def "memory used to store and read back output does not depend on amount of output when output is not truncated"() {
+        expect:
+        LargeTestOutputFixture.runWithMaxHeap("64m", tmpDir.dir, 256 * 1024 * 1024L, "read")
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.messaging.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class BatchingTestResultProcessorTest extends Specification {
+    final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory()
+    final List<TestEventBatch> batches = new CopyOnWriteArrayList<TestEventBatch>()
+    final RemoteTestResultProcessor target = { batches << it } as RemoteTestResultProcessor
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "forwards events when flushed"() {
+        def processor = new BatchingTestResultProcessor(target, executorFactory, 64 * 1024, 60000)
+
+        when:
+        processor.started(new DefaultTestDescriptor(1, "SomeTest", "ok"), new TestStartEvent(100))
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "output"))
+        processor.failure(1, new RuntimeException())
+        processor.completed(1, new TestCompleteEvent(200))
+
+        then:
+        batches.empty
+
+        when:
+        processor.flush()
+        processor.flush()
+
+        then:
+        batches.size() == 1
+        decode(batches) == ["started", "output", "failure", "completed"]
+
+        cleanup:
+        processor.stop()
+    }
+
+    def "forwards events when batch reaches maximum size"() {
+        def processor = new BatchingTestResultProcessor(target, executorFactory, 100, 60000)
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "x" * 50))
+
+        then:
+        batches.empty
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "x" * 50))
+
+        then:
+        batches.size() == 1
+        decode(batches) == ["output", "output"]
+
+        cleanup:
+        processor.stop()
+    }
+
+    def "forwards events after maximum delay"() {
+        def processor = new BatchingTestResultProcessor(target, executorFactory, 64 * 1024, 50)
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "output"))
+        def timeout = System.currentTimeMillis() + 10000
+        while (batches.empty && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10)
+        }
+
+        then:
+        decode(batches) == ["output"]
+
+        cleanup:
+        processor.stop()
+    }
+
+    def "forwards pending events when stopped"() {
+        def processor = new BatchingTestResultProcessor(target, executorFactory, 64 * 1024, 60000)
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "output"))
+        processor.stop()
+
+        then:
+        decode(batches) == ["output"]
+    }
+
+    def decode(List<TestEventBatch> batches) {
+        def events = []
+        def processor = [
+                started: { test, event -> events << "started" },
+                completed: { id, event -> events << "completed" },
+                output: { id, event -> events << "output" },
+                failure: { id, failure -> events << "failure" }
+        ] as TestResultProcessor
+        def decoder = new TestEventDecoder(processor)
+        batches.each { decoder.process(it) }
+        return events
+    }
+}
@@ -13,23 +13,26 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.Action;
 import org.gradle.api.internal.Factory;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.messaging.remote.ObjectConnection;
 import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.ExecHandleListener;
 import org.gradle.process.internal.JavaExecHandleBuilder;
 import org.gradle.process.internal.WorkerProcess;
 import org.gradle.process.internal.WorkerProcessBuilder;
 import org.gradle.util.JUnit4GroovyMockery;
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -37,7 +40,9 @@ import java.io.File;
 import java.util.List;
 
 import static java.util.Arrays.asList;
-import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 @RunWith(JMock.class)
 public class ForkingTestClassProcessorTest {
@@ -50,11 +55,14 @@ public class ForkingTestClassProcessorTest {
     private final TestClassRunInfo test1 = context.mock(TestClassRunInfo.class, "test1");
     private final TestClassRunInfo test2 = context.mock(TestClassRunInfo.class, "test2");
     private final TestResultProcessor resultProcessor = context.mock(TestResultProcessor.class);
+    private final TestClassProcessedListener listener = context.mock(TestClassProcessedListener.class);
     private final List<File> appClassPath = asList(new File("classpath.jar"));
     private final JavaForkOptions options = context.mock(JavaForkOptions.class);
     @SuppressWarnings("unchecked")
     private final Action<WorkerProcessBuilder> action = context.mock(Action.class);
-    private final ForkingTestClassProcessor processor = new ForkingTestClassProcessor(workerFactory, processorFactory, options, appClassPath, action);
+    private final ForkingTestClassProcessor processor = new ForkingTestClassProcessor(workerFactory, processorFactory, options, appClassPath, action, listener);
+    private TestClassProcessedListener workerProgressListener;
+    private ExecHandleListener workerFinishedListener;
 
     @Test
     public void onFirstTestCaseStartsWorkerProcess() {
@@ -80,6 +88,73 @@ public class ForkingTestClassProcessorTest {
         processor.processTestClass(test2);
     }
 
+    @Test
+    public void notifiesListenerWhenWorkerProcessFinishesWithTestClass() {
+        final TestClassRunInfo copyOfTest1 = context.mock(TestClassRunInfo.class, "copyOfTest1");
+        expectWorkerProcessStarted();
+        context.checking(new Expectations() {{
+            one(worker).processTestClass(test1);
+            one(worker).processTestClass(test2);
+            allowing(test1).getTestClassName();
+            will(returnValue("Test1"));
+            allowing(test2).getTestClassName();
+            will(returnValue("Test2"));
+            allowing(copyOfTest1).getTestClassName();
+            will(returnValue("Test1"));
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        processor.processTestClass(test2);
+
+        context.checking(new Expectations() {{
+            one(listener).testClassProcessed(test1);
+        }});
+
+        workerProgressListener.testClassProcessed(copyOfTest1);
+    }
+
+    @Test
+    public void notifiesListenerOfUnfinishedTestClassesWhenWorkerProcessExits() {
+        expectWorkerProcessStarted();
+        context.checking(new Expectations() {{
+            one(worker).processTestClass(test1);
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+
+        context.checking(new Expectations() {{
+            one(listener).testClassProcessed(test1);
+        }});
+
+        workerFinishedListener.executionFinished(null, null);
+
+        context.checking(new Expectations() {{
+            one(listener).testClassProcessed(test2);
+        }});
+
+        processor.processTestClass(test2);
+    }
+
+    @Test
+    public void notifiesListenerWhenWorkerProcessCannotBeStarted() {
+        final RuntimeException failure = new RuntimeException("broken");
+        context.checking(new Expectations() {{
+            one(workerFactory).create();
+            will(throwException(failure));
+            one(listener).testClassProcessed(test1);
+        }});
+
+        processor.startProcessing(resultProcessor);
+        try {
+            processor.processTestClass(test1);
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e, sameInstance(failure));
+        }
+    }
+
     @Test
     public void onEndProcessingWaitsForWorkerProcessToStop() {
         expectWorkerProcessStarted();
@@ -87,6 +162,7 @@ public class ForkingTestClassProcessorTest {
             one(worker).processTestClass(test1);
             one(worker).stop();
             one(workerProcess).waitForStop();
+            one(listener).testClassProcessed(test1);
         }});
 
         processor.startProcessing(resultProcessor);
@@ -122,13 +198,29 @@ public class ForkingTestClassProcessorTest {
 
             one(options).copyTo(javaCommandBuilder);
 
+            one(javaCommandBuilder).listener(with(notNullValue(ExecHandleListener.class)));
+            will(new CustomAction("capture worker finished listener") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    workerFinishedListener = (ExecHandleListener) invocation.getParameter(0);
+                    return null;
+                }
+            });
+
             one(builder).build();
             will(returnValue(workerProcess));
 
             allowing(workerProcess).getConnection();
             will(returnValue(connection));
 
-            one(connection).addIncoming(TestResultProcessor.class, resultProcessor);
+            one(connection).addIncoming(with(equalTo(RemoteTestResultProcessor.class)), with(notNullValue(RemoteTestResultProcessor.class)));
+
+            one(connection).addIncoming(with(equalTo(TestClassProcessedListener.class)), with(notNullValue(TestClassProcessedListener.class)));
+            will(new CustomAction("capture worker progress listener") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    workerProgressListener = (TestClassProcessedListener) invocation.getParameter(1);
+                    return null;
+                }
+            });
             
             one(connection).addOutgoing(RemoteTestClassProcessor.class);
             will(returnValue(worker));
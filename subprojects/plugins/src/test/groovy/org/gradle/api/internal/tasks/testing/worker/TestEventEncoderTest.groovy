@@ -0,0 +1,187 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.DefaultTestSuiteDescriptor
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.api.tasks.testing.TestResult
+import org.gradle.messaging.remote.internal.Message
+import org.gradle.util.CompositeIdGenerator
+import org.gradle.util.LongIdGenerator
+import spock.lang.Specification
+
+class TestEventEncoderTest extends Specification {
+    final TestEventEncoder encoder = new TestEventEncoder()
+    final TestResultProcessor target = Mock()
+    final TestEventDecoder decoder = new TestEventDecoder(target)
+
+    def "decodes start events"() {
+        def failure = new RuntimeException("broken")
+        def other = new OtherDescriptor(id("other"), "other")
+
+        when:
+        encoder.started(new DefaultTestSuiteDescriptor(id("suite"), "suite"), new TestStartEvent(100))
+        encoder.started(new DefaultTestClassDescriptor(id("class"), "SomeTest"), new TestStartEvent(200, id("suite")))
+        encoder.started(new DefaultTestDescriptor(id("test"), "SomeTest", "ok"), new TestStartEvent(300, id("class")))
+        encoder.started(new DefaultTestMethodDescriptor(id("method"), "SomeTest", "method"), new TestStartEvent(400, id("class")))
+        encoder.started(other, new TestStartEvent(500, id("class")))
+        encoder.failure(id("test"), failure)
+        transfer()
+
+        then:
+        1 * target.started({ it.class == DefaultTestSuiteDescriptor && it.id == id("suite") && it.name == "suite" }, { it.startTime == 100 && it.parentId == null })
+        1 * target.started({ it.class == DefaultTestClassDescriptor && it.id == id("class") && it.className == "SomeTest" }, { it.startTime == 200 && it.parentId == id("suite") })
+        1 * target.started({ it.class == DefaultTestDescriptor && it.id == id("test") && it.className == "SomeTest" && it.name == "ok" }, { it.startTime == 300 && it.parentId == id("class") })
+        1 * target.started({ it.class == DefaultTestMethodDescriptor && it.id == id("method") && it.className == "SomeTest" && it.name == "method" }, { it.startTime == 400 })
+        1 * target.started({ it instanceof OtherDescriptor && it.id == id("other") }, { it.startTime == 500 })
+        1 * target.failure(id("test"), { it.message == "broken" })
+        0 * target._
+    }
+
+    def "decodes complete and output events"() {
+        when:
+        encoder.started(new DefaultTestClassDescriptor(id("class"), "SomeTest"), new TestStartEvent(200))
+        encoder.output(id("class"), new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "some output ɖ"))
+        encoder.output(id("unknown"), new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "some error"))
+        encoder.completed(id("class"), new TestCompleteEvent(300))
+        encoder.completed(id("unknown"), new TestCompleteEvent(400, TestResult.ResultType.SKIPPED))
+        transfer()
+
+        then:
+        1 * target.started(_, _)
+        1 * target.output(id("class"), { it.destination == TestOutputEvent.Destination.StdOut && it.message == "some output ɖ" })
+        1 * target.output(id("unknown"), { it.destination == TestOutputEvent.Destination.StdErr && it.message == "some error" })
+        1 * target.completed(id("class"), { it.endTime == 300 && it.resultType == null })
+        1 * target.completed(id("unknown"), { it.endTime == 400 && it.resultType == TestResult.ResultType.SKIPPED })
+        0 * target._
+    }
+
+    def "decodes events spread across multiple batches"() {
+        when:
+        encoder.started(new DefaultTestClassDescriptor(id("class"), "SomeTest"), new TestStartEvent(200))
+        encoder.started(new DefaultTestDescriptor(id("test1"), "SomeTest", "test1"), new TestStartEvent(200, id("class")))
+        transfer()
+        encoder.completed(id("test1"), new TestCompleteEvent(300))
+        encoder.started(new DefaultTestDescriptor(id("test2"), "SomeTest", "test2"), new TestStartEvent(300, id("class")))
+        transfer()
+        encoder.completed(id("test2"), new TestCompleteEvent(400))
+        encoder.completed(id("class"), new TestCompleteEvent(400))
+        transfer()
+
+        then:
+        1 * target.started({ it.id == id("class") }, _)
+        1 * target.started({ it.id == id("test1") }, { it.parentId == id("class") })
+        1 * target.completed(id("test1"), _)
+        1 * target.started({ it.id == id("test2") && it.className == "SomeTest" }, { it.parentId == id("class") })
+        1 * target.completed(id("test2"), _)
+        1 * target.completed(id("class"), _)
+        0 * target._
+    }
+
+    def "takes empty batch when no events written"() {
+        expect:
+        encoder.eventCount == 0
+        encoder.size == 0
+        encoder.takeBatch().events.length == 0
+    }
+
+    def "transfers many events in a small number of batches"() {
+        def classes = 200
+        def testsPerClass = 20
+        def events = classes * (testsPerClass * 3 + 2)
+        def ids = new CompositeIdGenerator("worker", new LongIdGenerator())
+        def received = []
+        def recorder = [started: {a, b -> received << a.id}, completed: {a, b -> received << a}, output: {a, b -> received << a}, failure: {a, b -> }] as TestResultProcessor
+        def batching = new BatchingProcessor(encoder, new TestEventDecoder(recorder))
+
+        when:
+        generateEvents(classes, testsPerClass, ids, batching)
+        batching.flush()
+
+        then:
+        received.size() == events
+        received.unique().size() == classes * (testsPerClass + 1)
+        batching.batches > 1
+        batching.batches < events / 100
+    }
+
+    def generateEvents(int classes, int testsPerClass, CompositeIdGenerator ids, TestResultProcessor processor) {
+        classes.times { c ->
+            def classId = ids.generateId()
+            processor.started(new DefaultTestClassDescriptor(classId, "org.gradle.SomeTest${c}"), new TestStartEvent(c))
+            testsPerClass.times { t ->
+                def testId = ids.generateId()
+                processor.started(new DefaultTestDescriptor(testId, "org.gradle.SomeTest${c}", "test${t}"), new TestStartEvent(c, classId))
+                processor.output(testId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "some output\n"))
+                processor.completed(testId, new TestCompleteEvent(c))
+            }
+            processor.completed(classId, new TestCompleteEvent(c))
+        }
+    }
+
+    def transfer() {
+        decoder.process(roundTrip(encoder.takeBatch()))
+    }
+
+    static def roundTrip(Object message) {
+        def outstr = new ByteArrayOutputStream()
+        Message.send(message, outstr)
+        return Message.receive(new ByteArrayInputStream(outstr.toByteArray()), TestEventEncoderTest.classLoader)
+    }
+
+    def id(String value) {
+        return value
+    }
+
+    static class OtherDescriptor extends DefaultTestSuiteDescriptor {
+        OtherDescriptor(Object id, String name) {
+            super(id, name)
+        }
+    }
+
+    /**
+     * Serializes events in batches of at most 64k.
+     */
+    static class BatchingProcessor implements TestResultProcessor {
+        @Delegate final TestEventEncoder encoder
+        final TestEventDecoder decoder
+        int batches
+
+        BatchingProcessor(TestEventEncoder encoder, TestEventDecoder decoder) {
+            this.encoder = encoder
+            this.decoder = decoder
+        }
+
+        void completed(Object testId, TestCompleteEvent event) {
+            encoder.completed(testId, event)
+            if (encoder.size > 64 * 1024) {
+                flush()
+            }
+        }
+
+        void flush() {
+            batches++
+            decoder.process(roundTrip(encoder.takeBatch()))
+        }
+    }
+}